@@ -49,6 +49,49 @@ public class ConfigConstants {
     public static final String MAX_CURSORS_PER_IDENTITY_KEY   = "max_cursors_per_identity";
     public static final String MAX_CURSORS_TOTAL_KEY          = "max_cursors_total";
 
+    // Query result cache keys
+    public static final String CACHE_KEY                       = "cache";
+    public static final String CACHE_TTL_KEY                   = "ttl";
+    public static final String CACHE_DIRECTORY_KEY             = "directory";
+    public static final String CACHE_HOUSEKEEPING_INTERVAL_KEY = "housekeeping_interval";
+    public static final String CACHE_MEMORY_SIZE_KEY           = "memory_size";
+    public static final String CACHE_MAX_ENTRY_SIZE_KEY        = "max_entry_size";
+
+    // Result streaming keys
+    public static final String STREAMING_KEY                        = "streaming";
+    public static final String STREAMING_MAX_IN_FLIGHT_BATCHES_KEY  = "max_in_flight_batches";
+    public static final String STREAMING_MAX_STALL_KEY              = "max_stall";
+    public static final String STREAMING_PREFETCH_DEPTH_KEY         = "prefetch_depth";
+    public static final String STREAMING_COALESCE_KEY               = "coalesce";
+
+    // Arrow memory budget keys
+    public static final String MEMORY_BUDGET_KEY                = "memory_budget";
+    public static final String MEMORY_BUDGET_PER_STATEMENT_KEY  = "per_statement";
+    public static final String MEMORY_BUDGET_PER_IDENTITY_KEY   = "per_identity";
+
+    // Query admission keys
+    public static final String ADMISSION_KEY                            = "admission";
+    public static final String ADMISSION_MAX_CONCURRENT_PER_TENANT_KEY  = "max_concurrent_per_tenant";
+    public static final String ADMISSION_MAX_QUEUED_PER_TENANT_KEY      = "max_queued_per_tenant";
+    public static final String ADMISSION_TENANT_CLAIM_KEY               = "tenant_claim";
+    public static final String ADMISSION_WEIGHTS_KEY                    = "weights";
+
+    // Connection pool keys
+    public static final String CONNECTION_POOL_KEY                  = "connection_pool";
+    public static final String CONNECTION_POOL_MIN_IDLE_KEY         = "min_idle";
+    public static final String CONNECTION_POOL_MAX_IDLE_KEY         = "max_idle";
+    public static final String CONNECTION_POOL_MAX_TOTAL_KEY        = "max_total";
+    public static final String CONNECTION_POOL_ACQUIRE_TIMEOUT_KEY  = "acquire_timeout";
+    public static final String CONNECTION_POOL_IDLE_TIMEOUT_KEY     = "idle_timeout";
+
+    // SQL parse cache key
+    public static final String PARSE_CACHE_MAX_BYTES_KEY = "parse_cache_max_bytes";
+
+    // Hive file listing cache keys
+    public static final String HIVE_LISTING_CACHE_KEY           = "hive_listing_cache";
+    public static final String HIVE_LISTING_CACHE_TTL_KEY       = "ttl";
+    public static final String HIVE_LISTING_CACHE_MAX_FILES_KEY = "max_files";
+
     // Ingestion configuration keys
     public static final String INGESTION_KEY = "ingestion";
     public static final String MIN_BUCKET_SIZE_KEY = "min_bucket_size";
@@ -59,6 +102,42 @@ public class ConfigConstants {
 
     public static final String QUEUE_CONFIG_REFRESH_DELAY_MS_KEY = "queue_config_refresh_delay_ms";
 
+    // Ingestion write-ahead log keys, under ingestion
+    public static final String INGESTION_WAL_KEY              = "wal";
+    public static final String INGESTION_WAL_DIRECTORY_KEY    = "directory";
+    public static final String INGESTION_WAL_SEGMENT_SIZE_KEY = "segment_size";
+    public static final String INGESTION_WAL_SYNC_KEY         = "sync";
+
+    // Ingestion key, under ingestion: bytes of ingested Arrow streams held in memory, 0 = off
+    public static final String INGESTION_IN_MEMORY_MAX_BYTES_KEY = "in_memory_max_bytes";
+
+    // Ingestion key, under ingestion: threads writing the buckets of all queues
+    public static final String INGESTION_WRITER_THREADS_KEY = "writer_threads";
+
+    // Ingestion key, under ingestion: concurrent COPYs a partitioned bucket is split into
+    public static final String INGESTION_WRITERS_PER_QUEUE_KEY = "writers_per_queue";
+
+    // Adaptive flush keys, under ingestion
+    public static final String INGESTION_ADAPTIVE_FLUSH_KEY         = "adaptive_flush";
+    public static final String ADAPTIVE_FLUSH_TARGET_FILE_SIZE_KEY  = "target_file_size";
+    public static final String ADAPTIVE_FLUSH_TARGET_LATENCY_MS_KEY = "target_latency_ms";
+    public static final String ADAPTIVE_FLUSH_MIN_DELAY_MS_KEY      = "min_delay_ms";
+
+    // Parquet output keys, under ingestion
+    public static final String INGESTION_PARQUET_WRITE_KEY           = "parquet_write";
+    public static final String PARQUET_WRITE_TARGET_FILE_SIZE_KEY    = "target_file_size";
+    public static final String PARQUET_WRITE_ROW_GROUP_SIZE_KEY      = "row_group_size";
+    public static final String PARQUET_WRITE_MAX_OPEN_PARTITIONS_KEY = "max_open_partitions";
+    public static final String PARQUET_WRITE_MIN_FILE_SIZE_KEY       = "min_file_size";
+    public static final String PARQUET_WRITE_MAX_DEFERRAL_MS_KEY     = "max_deferral_ms";
+
+    // Producer batch deduplication keys, under ingestion
+    public static final String INGESTION_PRODUCER_DEDUP_KEY      = "producer_dedup";
+    public static final String PRODUCER_DEDUP_WINDOW_KEY         = "window";
+    public static final String PRODUCER_DEDUP_MAX_PRODUCERS_KEY  = "max_producers";
+    public static final String PRODUCER_DEDUP_PERSISTENT_KEY     = "persistent";
+    public static final String PRODUCER_DEDUP_DIRECTORY_KEY      = "directory";
+
     // JWT Token configuration keys
     public static final String JWT_TOKEN_PREFIX = "jwt_token";
     public static final String JWT_TOKEN_EXPIRATION_KEY = "jwt_token.expiration";
@@ -81,6 +160,15 @@ public class ConfigConstants {
     public static final String ALLOW_ORIGIN_KEY = "allow-origin";
     public static final String NAMED_QUERY_TABLE_KEY = "named_query_table";
 
+    // Async query (spooled result) keys, under http
+    public static final String ASYNC_QUERY_KEY                       = "async_query";
+    public static final String ASYNC_QUERY_DIRECTORY_KEY             = "directory";
+    public static final String ASYNC_QUERY_RETENTION_KEY             = "retention";
+    public static final String ASYNC_QUERY_MAX_RESULT_BYTES_KEY      = "max_result_bytes";
+    public static final String ASYNC_QUERY_MAX_TOTAL_BYTES_KEY       = "max_total_bytes";
+    public static final String ASYNC_QUERY_HOUSEKEEPING_INTERVAL_KEY = "housekeeping_interval";
+    public static final String ASYNC_QUERY_QUERY_TIMEOUT_KEY         = "query_timeout";
+
     // Application identity keys (for client modules)
     public static final String APPLICATION_ID_KEY = "application_id";
     public static final String APPLICATION_NAME_KEY = "application_name";
@@ -118,6 +206,10 @@ public class ConfigConstants {
     public static final String INGESTION_CONFIG_PREFIX = "ingestion_task_factory_provider";
     public static final String INGESTION_QUEUE_TABLE_MAPPING_KEY = "ingestion_queue_table_mapping";
 
+    // DuckLake group commit keys, under ingestion_task_factory_provider
+    public static final String DUCKLAKE_COMMIT_KEY           = "ducklake_commit";
+    public static final String DUCKLAKE_COMMIT_MAX_FILES_KEY = "max_files";
+
     public static String getWarehousePath(Config config) {
         return config.getString(WAREHOUSE_CONFIG_KEY);
     }
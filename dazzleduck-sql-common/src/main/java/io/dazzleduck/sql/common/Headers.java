@@ -45,6 +45,8 @@ public class Headers {
     public static final String HEADER_DATA_LIMIT = "x-dd-limit";
     public static final String HEADER_DATA_OFFSET = "x-dd-offset";
     public static final String HEADER_QUERY_TIMEOUT = "x-dd-query-timeout";
+    // Result cache opt-in (seconds) for RESTRICT_READ_ONLY mode; named as in QUERY_CACHE_SPEC.md.
+    public static final String HEADER_CACHE_TTL = "cache_ttl";
     public static final String HEADER_APP_DATA_TRANSFORMATION = "x-dd-udf-transformation";
     public static final String HEADER_ARROW_COMPRESSION = "x-dd-arrow-compression";
 
@@ -68,6 +70,6 @@ public class Headers {
             HEADER_DATA_PARTITION, HEADER_DATA_FORMAT, HEADER_PRODUCER_ID, HEADER_PRODUCER_BATCH_ID, HEADER_SORT_ORDER,
             HEADER_APP_DATA_TRANSFORMATION, HEADER_PATH, HEADER_TABLE, HEADER_FUNCTION, HEADER_FILTER, HEADER_ACCESS,
             HEADER_ACCESS_TYPE, HEADER_ARROW_COMPRESSION, QUERY_PARAMETER_INGESTION_QUEUE,
-            HEADER_QUERY_TIMEOUT, HEADER_DATA_LIMIT, HEADER_DATA_OFFSET, HEADER_INGESTION_QUEUE);
+            HEADER_QUERY_TIMEOUT, HEADER_DATA_LIMIT, HEADER_DATA_OFFSET, HEADER_INGESTION_QUEUE, HEADER_CACHE_TTL);
 
 }
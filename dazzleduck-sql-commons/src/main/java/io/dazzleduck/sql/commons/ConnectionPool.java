@@ -30,6 +30,7 @@ public enum ConnectionPool {
 
     private static final String DUCKDB_PROPERTY_FILENAME = "duckdb.properties";
     private final DuckDBConnection connection;
+    private final SessionPool sessionPool;
 
 
     static {
@@ -50,6 +51,7 @@ public enum ConnectionPool {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        this.sessionPool = new SessionPool(SessionPoolConfig.DEFAULT, this::getConnectionInternal);
     }
 
     private static final int DEFAULT_ARROW_BATCH_SIZE = 1000;
@@ -430,6 +432,24 @@ public enum ConnectionPool {
         return connection;
     }
 
+    /**
+     * Returns a pooled connection already bound to {@code database.schema}. Closing it returns it
+     * to the pool; see {@link SessionPool}.
+     *
+     * @throws java.sql.SQLTimeoutException if the pool stays exhausted for the acquire timeout
+     * @throws SQLException if the database or schema does not exist
+     */
+    public static Connection getConnection(String database, String schema) throws SQLException {
+        return INSTANCE.sessionPool.acquire(database, schema);
+    }
+
+    /**
+     * @return the pool backing {@link #getConnection(String, String)}
+     */
+    public static SessionPool getSessionPool() {
+        return INSTANCE.sessionPool;
+    }
+
     /**
      *
      * @param reader
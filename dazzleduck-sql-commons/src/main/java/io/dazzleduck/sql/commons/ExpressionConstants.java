@@ -8,14 +8,21 @@ public class ExpressionConstants {
     public static final String COMPARISON_CLASS = "COMPARISON";
     public static final String OPERATOR_CLASS = "OPERATOR";
     public static final String SUBQUERY_CLASS = "SUBQUERY";
+    public static final String BETWEEN_CLASS = "BETWEEN";
 
     public static final String SUBQUERY_TYPE = "SUBQUERY";
     public static final String COMPARE_TYPE_EQUAL = "COMPARE_EQUAL";
+    public static final String COMPARE_TYPE_NOTEQUAL = "COMPARE_NOTEQUAL";
     public static final String COMPARE_TYPE_LESSTHANOREQUALTO = "COMPARE_LESSTHANOREQUALTO";
     public static final String COMPARE_TYPE_GREATERTHANOREQUALTO = "COMPARE_GREATERTHANOREQUALTO";
     public static final String COMPARE_TYPE_LESSTHAN = "COMPARE_LESSTHAN";
     public static final String COMPARE_TYPE_GREATERTHAN = "COMPARE_GREATERTHAN";
     public static final String COMPARE_IN_TYPE = "COMPARE_IN";
+    public static final String COMPARE_NOT_IN_TYPE = "COMPARE_NOT_IN";
+    public static final String COMPARE_BETWEEN_TYPE = "COMPARE_BETWEEN";
+    public static final String OPERATOR_TYPE_IS_NULL = "OPERATOR_IS_NULL";
+    public static final String OPERATOR_TYPE_IS_NOT_NULL = "OPERATOR_IS_NOT_NULL";
+    public static final String OPERATOR_TYPE_NOT = "OPERATOR_NOT";
     public static final String CASE_CLASS = "CASE";
     public static final String CASE_TYPE_EXPR = "CASE_EXPR";
     public static final String CAST_CLASS = "CAST";
@@ -25,6 +32,7 @@ public class ExpressionConstants {
     public static final String CONJUNCTION_TYPE_OR = "CONJUNCTION_OR";
     public static final String SELECT_NODE_TYPE = "SELECT_NODE";
     public static final String LIMIT_MODIFIER_TYPE = "LIMIT_MODIFIER";
+    public static final String DISTINCT_MODIFIER_TYPE = "DISTINCT_MODIFIER";
     public static final String FUNCTION_CLASS = "FUNCTION";
     public static final String FUNCTION_TYPE = "FUNCTION";
 
@@ -78,6 +86,11 @@ public class ExpressionConstants {
     public static final String FIELD_MODIFIERS = "modifiers";
     public static final String FIELD_LIMIT = "limit";
     public static final String FIELD_OFFSET = "offset";
+    public static final String FIELD_SELECT_LIST = "select_list";
+    public static final String FIELD_GROUP_EXPRESSIONS = "group_expressions";
+    public static final String FIELD_INPUT = "input";
+    public static final String FIELD_LOWER = "lower";
+    public static final String FIELD_UPPER = "upper";
 
     // Type ID constants for data types
     public static final String TYPE_VARCHAR = "VARCHAR";
@@ -91,6 +104,7 @@ public class ExpressionConstants {
     public static final String TYPE_BIGINT = "BIGINT";
     public static final String TYPE_DOUBLE = "DOUBLE";
     public static final String TYPE_FLOAT = "FLOAT";
+    public static final String TYPE_DATE = "DATE";
     public static final String TYPE_ORDER_MODIFIER = "ORDER_MODIFIER";
 
     // Constant values for boolean expressions
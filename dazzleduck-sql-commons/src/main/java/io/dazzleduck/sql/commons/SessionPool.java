@@ -0,0 +1,539 @@
+package io.dazzleduck.sql.commons;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.sql.Wrapper;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of DuckDB connections that are already bound to a database and schema, so the
+ * query path neither duplicates a connection nor runs {@code USE} on it.
+ *
+ * <p>Callers get a {@link Connection} whose {@code close()} hands the connection back. On return
+ * the session is reset: an open transaction is rolled back, auto-commit restored and the
+ * connection re-bound to its database/schema (in case the statement ran {@code USE}). This work
+ * happens after the caller is done with the result, off the latency path of the next query.
+ * Connections that fail the reset, or that would exceed {@code maxIdle}, are closed.
+ *
+ * <p>The reset cannot undo everything a session may hold, such as {@code SET} settings and
+ * variables, temporary tables or {@code PREPARE}d statements, and the next caller may be another
+ * identity. A connection is therefore only pooled again if every statement run or prepared on it
+ * parses as a query, see {@link #isSessionNeutral}; after any other statement it is closed on
+ * return. Statements, prepared and callable statements and the database metadata handed out by a
+ * pooled connection are wrapped so all SQL they run is inspected, and their
+ * {@code getConnection()} returns the pooled connection. Unwrapping any of them to the driver's
+ * own objects, or changing connection properties the reset does not restore, also closes the
+ * connection on return. Result sets are handed out as the driver returns them.
+ *
+ * <p>At most {@code maxTotal} connections are checked out at once; further acquirers wait up to
+ * {@code acquireTimeout} and then fail with {@link SQLTimeoutException}. {@link #maintain()} closes
+ * connections idle longer than {@code idleTimeout} (keeping {@code minIdle} per key) and tops
+ * keys up to {@code minIdle}; it is meant to be scheduled periodically.
+ */
+public final class SessionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private record Key(String database, String schema) {
+        String useSql() {
+            return "USE %s.%s".formatted(database, schema);
+        }
+    }
+
+    private record Idle(Connection connection, long idleSinceMillis) {}
+
+    /** Statement methods whose first argument is SQL to run. */
+    private static final Set<String> SQL_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+
+    /** Connection methods whose first argument is SQL to prepare. */
+    private static final Set<String> PREPARE_METHODS = Set.of("prepareStatement", "prepareCall");
+
+    /** Connection setters whose effect {@link #reset} undoes. */
+    private static final Set<String> RESET_SETTERS = Set.of("setAutoCommit", "setCatalog", "setSchema");
+
+    private final ConnectionFactory factory;
+    private final Clock clock;
+    private final ResizableSemaphore permits;
+    private final ConcurrentHashMap<Key, Deque<Idle>> idle = new ConcurrentHashMap<>();
+    private volatile SessionPoolConfig config;
+    private volatile boolean closed;
+    // Guarded by this
+    private ScheduledFuture<?> maintenance;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder acquireWaitNanos = new LongAdder();
+
+    public SessionPool(SessionPoolConfig config, ConnectionFactory factory) {
+        this(config, factory, Clock.systemUTC());
+    }
+
+    public SessionPool(SessionPoolConfig config, ConnectionFactory factory, Clock clock) {
+        this.config = config;
+        this.factory = factory;
+        this.clock = clock;
+        this.permits = new ResizableSemaphore(config.maxTotal());
+    }
+
+    /**
+     * Returns a connection bound to {@code database.schema}. Closing it returns it to the pool.
+     *
+     * @throws SQLTimeoutException if no connection became available within the acquire timeout
+     * @throws SQLException        if a new connection could not be created or bound
+     */
+    public Connection acquire(String database, String schema) throws SQLException {
+        var key = new Key(database, schema);
+        var current = config;
+        if (!current.enabled()) {
+            return open(key);
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(current.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after %d ms waiting for a connection (%d in use)"
+                        .formatted(current.acquireTimeout().toMillis(), activeCount.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            acquireWaitNanos.add(System.nanoTime() - start);
+        }
+        try {
+            Connection connection = pollIdle(key);
+            if (connection == null) {
+                connection = open(key);
+                created.increment();
+            } else {
+                reused.increment();
+            }
+            acquired.increment();
+            activeCount.incrementAndGet();
+            return wrap(key, connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies new settings. Connections already checked out are unaffected; idle ones are trimmed
+     * on the next {@link #maintain()}.
+     */
+    public synchronized void setConfig(SessionPoolConfig newConfig) {
+        permits.resize(config.maxTotal(), newConfig.maxTotal());
+        this.config = newConfig;
+    }
+
+    public SessionPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Runs {@link #maintain()} every {@code interval} on {@code executor}, replacing the schedule of
+     * an earlier call, so a process-wide pool keeps one maintenance task however often it is set up.
+     */
+    public synchronized void scheduleMaintenance(ScheduledExecutorService executor, Duration interval) {
+        if (maintenance != null) {
+            maintenance.cancel(false);
+        }
+        long intervalMs = Math.max(1, interval.toMillis());
+        maintenance = executor.scheduleWithFixedDelay(this::maintain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes idle connections past the idle timeout (keeping {@code minIdle} per key) and opens
+     * connections for keys below {@code minIdle}.
+     */
+    public void maintain() {
+        var current = config;
+        long expireBefore = clock.millis() - current.idleTimeout().toMillis();
+        for (var e : idle.entrySet()) {
+            var deque = e.getValue();
+            List<Connection> expired = new ArrayList<>();
+            synchronized (deque) {
+                // Oldest entries are at the tail: returns push to the head and acquires pop from it
+                while (deque.size() > current.minIdle()
+                        && (deque.peekLast().idleSinceMillis() < expireBefore || deque.size() > current.maxIdle())) {
+                    expired.add(deque.pollLast().connection());
+                    idleCount.decrementAndGet();
+                }
+            }
+            expired.forEach(this::discard);
+            topUp(e.getKey(), deque, current);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (maintenance != null) {
+                maintenance.cancel(false);
+            }
+        }
+        for (var deque : idle.values()) {
+            List<Connection> toClose;
+            synchronized (deque) {
+                toClose = deque.stream().map(Idle::connection).toList();
+                idleCount.addAndGet(-deque.size());
+                deque.clear();
+            }
+            toClose.forEach(this::discard);
+        }
+    }
+
+    public int getActive() {
+        return activeCount.get();
+    }
+
+    public int getIdle() {
+        return idleCount.get();
+    }
+
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getAcquireWaitNanos() {
+        return acquireWaitNanos.sum();
+    }
+
+    private Connection pollIdle(Key key) {
+        var deque = idle.get(key);
+        if (deque == null) {
+            return null;
+        }
+        while (true) {
+            Idle entry;
+            synchronized (deque) {
+                entry = deque.pollFirst();
+            }
+            if (entry == null) {
+                return null;
+            }
+            idleCount.decrementAndGet();
+            if (isUsable(entry.connection())) {
+                return entry.connection();
+            }
+            discard(entry.connection());
+        }
+    }
+
+    private Connection open(Key key) throws SQLException {
+        Connection connection = factory.create();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(key.useSql());
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+        return connection;
+    }
+
+    private void release(Key key, Connection connection, boolean sessionChanged) {
+        activeCount.decrementAndGet();
+        try {
+            var current = config;
+            if (sessionChanged) {
+                logger.debug("Closing connection for {}.{}, a statement changed its session", key.database(), key.schema());
+            }
+            if (closed || !current.enabled() || sessionChanged || !reset(key, connection)) {
+                discard(connection);
+                return;
+            }
+            var deque = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+            synchronized (deque) {
+                if (deque.size() < current.maxIdle()) {
+                    deque.addFirst(new Idle(connection, clock.millis()));
+                    idleCount.incrementAndGet();
+                    return;
+                }
+            }
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(Key key, Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(key.useSql());
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            logger.atDebug().setCause(e).log("Failed to reset pooled connection for {}.{}", key.database(), key.schema());
+            return false;
+        }
+    }
+
+    private void topUp(Key key, Deque<Idle> deque, SessionPoolConfig current) {
+        while (!closed) {
+            synchronized (deque) {
+                if (deque.size() >= current.minIdle()) {
+                    return;
+                }
+            }
+            Connection connection;
+            try {
+                connection = open(key);
+                created.increment();
+            } catch (SQLException | RuntimeException e) {
+                logger.atDebug().setCause(e).log("Failed to pre-open connection for {}.{}", key.database(), key.schema());
+                return;
+            }
+            synchronized (deque) {
+                deque.addLast(new Idle(connection, clock.millis()));
+                idleCount.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean isUsable(Connection connection) {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        discarded.increment();
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException | RuntimeException e) {
+            logger.atDebug().setCause(e).log("Failed to close connection");
+        }
+    }
+
+    private Connection wrap(Key key, Connection connection) {
+        var handle = new Handle(key, connection);
+        handle.connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handle);
+        return handle.connection;
+    }
+
+    /**
+     * Whether {@code sql} consists only of queries, which leave no session state behind once the
+     * connection is reset. The text is parsed with {@code json_serialize_sql}, which accepts nothing
+     * but {@code SELECT} statements; anything it rejects or that fails to parse changes the session.
+     */
+    static boolean isSessionNeutral(String sql) {
+        try {
+            var tree = Transformations.parseToTree(sql);
+            return !tree.path("error").asBoolean(true) && !tree.path("statements").isEmpty();
+        } catch (SQLException | JsonProcessingException | RuntimeException e) {
+            logger.atDebug().setCause(e).log("Failed to parse pooled connection statement");
+            return false;
+        }
+    }
+
+    /**
+     * Proxy handler of a checked-out connection: {@code close()} returns it to the pool, and every
+     * other call fails once it has been closed. Statements and metadata are watched for SQL that
+     * changes the session, see {@link #isSessionNeutral}.
+     */
+    private final class Handle implements InvocationHandler {
+        private final Key key;
+        private final Connection delegate;
+        private volatile boolean returned;
+        private volatile boolean sessionChanged;
+        // The proxy handed to the caller, returned by Statement.getConnection()
+        private Connection connection;
+
+        Handle(Key key, Connection delegate) {
+            this.key = key;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    synchronized (this) {
+                        if (returned) {
+                            return null;
+                        }
+                        returned = true;
+                    }
+                    release(key, delegate, sessionChanged);
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || delegate.isClosed();
+                }
+                case "unwrap" -> {
+                    var iface = (Class<?>) args[0];
+                    if (iface.isInstance(proxy)) {
+                        return proxy;
+                    }
+                    // SQL run on the driver's connection cannot be inspected
+                    sessionChanged = true;
+                    return iface.isInstance(delegate) ? delegate : delegate.unwrap(iface);
+                }
+                case "isWrapperFor" -> {
+                    var iface = (Class<?>) args[0];
+                    return iface.isInstance(delegate) || delegate.isWrapperFor(iface);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + key.database() + "." + key.schema() + "]" + delegate;
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (PREPARE_METHODS.contains(method.getName()) && args[0] instanceof String sql) {
+                        inspect(sql);
+                    } else if (method.getName().startsWith("set") && !RESET_SETTERS.contains(method.getName())) {
+                        sessionChanged = true;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    return switch (result) {
+                        case CallableStatement statement -> watch(statement, CallableStatement.class);
+                        case PreparedStatement statement -> watch(statement, PreparedStatement.class);
+                        case Statement statement -> watch(statement, Statement.class);
+                        case DatabaseMetaData metaData -> watch(metaData, DatabaseMetaData.class);
+                        case null, default -> result;
+                    };
+                }
+            }
+        }
+
+        private void inspect(String sql) {
+            if (!sessionChanged && !isSessionNeutral(sql)) {
+                sessionChanged = true;
+            }
+        }
+
+        /**
+         * Wraps a statement or metadata object handed out by the connection as {@code iface}, so the
+         * SQL it runs is inspected and it leads back only to the pooled connection.
+         */
+        private <T extends Wrapper> T watch(T target, Class<T> iface) {
+            return iface.cast(Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals" -> {
+                                return proxy == args[0];
+                            }
+                            case "hashCode" -> {
+                                return System.identityHashCode(proxy);
+                            }
+                            case "getConnection" -> {
+                                return connection;
+                            }
+                            case "unwrap" -> {
+                                var unwrapTo = (Class<?>) args[0];
+                                if (unwrapTo.isInstance(proxy)) {
+                                    return proxy;
+                                }
+                                sessionChanged = true;
+                                return unwrapTo.isInstance(target) ? target : target.unwrap(unwrapTo);
+                            }
+                            default -> {
+                                if (SQL_METHODS.contains(method.getName()) && args != null && args.length > 0
+                                        && args[0] instanceof String sql) {
+                                    inspect(sql);
+                                }
+                                try {
+                                    return method.invoke(target, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            }
+                        }
+                    }));
+        }
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        void resize(int from, int to) {
+            if (to > from) {
+                release(to - from);
+            } else if (to < from) {
+                reducePermits(from - to);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.dazzleduck.sql.commons;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Settings of the pool of connections pre-bound to a database/schema
+ * ({@code dazzleduck_server.connection_pool}).
+ *
+ * @param minIdle        idle connections kept per (database, schema) once it has been used
+ * @param maxIdle        idle connections kept per (database, schema); extra ones are closed on return
+ * @param maxTotal       connections checked out at once across all keys; acquirers wait beyond this
+ * @param acquireTimeout how long an acquirer waits for a free slot before failing
+ * @param idleTimeout    idle connections above {@code minIdle} are closed after this long
+ */
+public record SessionPoolConfig(
+        boolean enabled,
+        int minIdle,
+        int maxIdle,
+        int maxTotal,
+        Duration acquireTimeout,
+        Duration idleTimeout
+) {
+
+    public static final SessionPoolConfig DEFAULT = new SessionPoolConfig(true, 0, 8, 4096,
+            Duration.ofSeconds(10), Duration.ofMinutes(5));
+
+    public static SessionPoolConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.CONNECTION_POOL_KEY)) {
+            return DEFAULT;
+        }
+        var pool = config.getConfig(ConfigConstants.CONNECTION_POOL_KEY);
+        return new SessionPoolConfig(
+                pool.getBoolean(ConfigConstants.ENABLED_KEY),
+                pool.getInt(ConfigConstants.CONNECTION_POOL_MIN_IDLE_KEY),
+                pool.getInt(ConfigConstants.CONNECTION_POOL_MAX_IDLE_KEY),
+                pool.getInt(ConfigConstants.CONNECTION_POOL_MAX_TOTAL_KEY),
+                pool.getDuration(ConfigConstants.CONNECTION_POOL_ACQUIRE_TIMEOUT_KEY),
+                pool.getDuration(ConfigConstants.CONNECTION_POOL_IDLE_TIMEOUT_KEY)
+        );
+    }
+}
@@ -0,0 +1,228 @@
+package io.dazzleduck.sql.commons;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, size-aware cache of the two DuckDB parser round trips made by {@link Transformations}:
+ * SQL text to {@code json_serialize_sql} tree, and tree (as JSON text) to {@code json_deserialize_sql} SQL.
+ *
+ * <p>Both directions are pure functions of their input, so entries never go stale; they are only
+ * evicted least-recently-used once the estimated footprint exceeds {@link #getMaxBytes()}. The map is
+ * split into independently locked segments to keep contention low under many concurrent queries.
+ *
+ * <p>Trees are mutated in place by most transformations, so callers always receive a deep copy and
+ * the cached instance is never handed out.
+ */
+public final class SqlParseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Rough per-character cost of a parsed tree relative to its JSON text: node objects, field maps
+     * and boxed values take several times the bytes of the serialized form.
+     */
+    private static final int TREE_BYTES_PER_JSON_CHAR = 6;
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<String, JsonNode> trees = new Segment<>();
+    private final Segment<String, String> sqls = new Segment<>();
+    private volatile long maxBytes;
+
+    private final LongAdder treeHits = new LongAdder();
+    private final LongAdder treeMisses = new LongAdder();
+    private final LongAdder sqlHits = new LongAdder();
+    private final LongAdder sqlMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SqlParseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a private copy of the tree for {@code sql}, parsing it with {@code parser} on a miss.
+     */
+    public JsonNode getTree(String sql, Function<String, JsonNode> parser) {
+        JsonNode cached = maxBytes > 0 ? trees.get(sql) : null;
+        if (cached != null) {
+            treeHits.increment();
+            return cached.deepCopy();
+        }
+        treeMisses.increment();
+        JsonNode tree = parser.apply(sql);
+        if (maxBytes > 0) {
+            long weight = 2L * sql.length() + (long) TREE_BYTES_PER_JSON_CHAR * tree.toString().length();
+            trees.put(sql, tree.deepCopy(), weight, segmentBudget());
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the SQL for {@code treeJson} (a tree's {@code toString()}), deserializing it with
+     * {@code deserializer} on a miss.
+     */
+    public String getSql(String treeJson, Function<String, String> deserializer) {
+        String cached = maxBytes > 0 ? sqls.get(treeJson) : null;
+        if (cached != null) {
+            sqlHits.increment();
+            return cached;
+        }
+        sqlMisses.increment();
+        String sql = deserializer.apply(treeJson);
+        if (maxBytes > 0 && sql != null) {
+            sqls.put(treeJson, sql, 2L * (treeJson.length() + sql.length()), segmentBudget());
+        }
+        return sql;
+    }
+
+    /**
+     * Changes the byte budget, evicting entries as needed. {@code 0} disables caching.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trees.trim(segmentBudget());
+        sqls.trim(segmentBudget());
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void clear() {
+        trees.trim(0);
+        sqls.trim(0);
+    }
+
+    public long getTreeHits() {
+        return treeHits.sum();
+    }
+
+    public long getTreeMisses() {
+        return treeMisses.sum();
+    }
+
+    public long getSqlHits() {
+        return sqlHits.sum();
+    }
+
+    public long getSqlMisses() {
+        return sqlMisses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits over lookups across both directions, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hits = treeHits.sum() + sqlHits.sum();
+        long total = hits + treeMisses.sum() + sqlMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return estimated bytes held by cached entries
+     */
+    public long getEstimatedBytes() {
+        return trees.bytes() + sqls.bytes();
+    }
+
+    public long getEntryCount() {
+        return trees.size() + sqls.size();
+    }
+
+    /**
+     * Each direction gets half of the budget, divided evenly across its segments.
+     */
+    private long segmentBudget() {
+        return maxBytes / 2 / SEGMENTS;
+    }
+
+    private final class Segment<K, V> {
+        @SuppressWarnings("unchecked")
+        private final Lru<K, V>[] parts = new Lru[SEGMENTS];
+
+        Segment() {
+            for (int i = 0; i < SEGMENTS; i++) {
+                parts[i] = new Lru<>();
+            }
+        }
+
+        private Lru<K, V> part(K key) {
+            int h = key.hashCode();
+            return parts[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+        }
+
+        V get(K key) {
+            var part = part(key);
+            synchronized (part) {
+                var entry = part.map.get(key);
+                return entry == null ? null : entry.value();
+            }
+        }
+
+        void put(K key, V value, long weight, long budget) {
+            if (weight > budget) {
+                return;
+            }
+            var part = part(key);
+            synchronized (part) {
+                var previous = part.map.put(key, new Weighted<>(value, weight));
+                part.bytes += weight - (previous == null ? 0 : previous.weight());
+                part.trim(budget);
+            }
+        }
+
+        void trim(long budget) {
+            for (var part : parts) {
+                synchronized (part) {
+                    part.trim(budget);
+                }
+            }
+        }
+
+        long bytes() {
+            long total = 0;
+            for (var part : parts) {
+                synchronized (part) {
+                    total += part.bytes;
+                }
+            }
+            return total;
+        }
+
+        long size() {
+            long total = 0;
+            for (var part : parts) {
+                synchronized (part) {
+                    total += part.map.size();
+                }
+            }
+            return total;
+        }
+    }
+
+    private record Weighted<V>(V value, long weight) {}
+
+    private final class Lru<K, V> {
+        private final LinkedHashMap<K, Weighted<V>> map = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        void trim(long budget) {
+            Iterator<Map.Entry<K, Weighted<V>>> it = map.entrySet().iterator();
+            while (bytes > budget && it.hasNext()) {
+                bytes -= it.next().getValue().weight();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
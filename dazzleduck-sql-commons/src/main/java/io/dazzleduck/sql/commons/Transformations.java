@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
@@ -505,16 +506,46 @@ public class Transformations {
         }
     }
 
+    /**
+     * Cache of parser round trips shared by {@link #parseToTree} and {@link #parseToSql}.
+     * Size it with {@link SqlParseCache#setMaxBytes}; {@code 0} disables it.
+     */
+    public static final SqlParseCache PARSE_CACHE = new SqlParseCache(SqlParseCache.DEFAULT_MAX_BYTES);
+
     public static JsonNode parseToTree(Connection connection, String sql) throws JsonProcessingException {
-        String escapeSql = escapeSpecialChar(sql);
-        String jsonString = ConnectionPool.collectFirst(connection, String.format(JSON_SERIALIZE_SQL, escapeSql), String.class);
-        return objectMapper.readTree(jsonString);
+        try {
+            return PARSE_CACHE.getTree(sql, s -> {
+                String escapeSql = escapeSpecialChar(s);
+                return readTree(ConnectionPool.collectFirst(connection, String.format(JSON_SERIALIZE_SQL, escapeSql), String.class));
+            });
+        } catch (UncheckedIOException e) {
+            throw (JsonProcessingException) e.getCause();
+        }
     }
 
     public static JsonNode parseToTree(String sql) throws SQLException, JsonProcessingException {
-        String escapeSql = escapeSpecialChar(sql);
-        String jsonString = ConnectionPool.collectFirst(String.format(JSON_SERIALIZE_SQL, escapeSql), String.class);
-        return objectMapper.readTree(jsonString);
+        try {
+            return PARSE_CACHE.getTree(sql, s -> {
+                String escapeSql = escapeSpecialChar(s);
+                try {
+                    return readTree(ConnectionPool.collectFirst(String.format(JSON_SERIALIZE_SQL, escapeSql), String.class));
+                } catch (SQLException e) {
+                    throw new RuntimeSqlException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw (JsonProcessingException) e.getCause();
+        } catch (RuntimeSqlException e) {
+            throw e.sqlException;
+        }
+    }
+
+    private static JsonNode readTree(String jsonString) {
+        try {
+            return objectMapper.readTree(jsonString);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public static Function<String, JsonNode> start(String sql) {
@@ -557,13 +588,22 @@ public class Transformations {
 
 
     public static String parseToSql(Connection connection, JsonNode node) throws SQLException {
-        String sql = String.format(JSON_DESERIALIZE_SQL, node.toString());
-        return ConnectionPool.collectFirst(connection, sql, String.class);
+        return PARSE_CACHE.getSql(node.toString(), json ->
+                ConnectionPool.collectFirst(connection, String.format(JSON_DESERIALIZE_SQL, json), String.class));
     }
 
     public static String parseToSql(JsonNode node) throws SQLException {
-        String sql = String.format(JSON_DESERIALIZE_SQL, node.toString());
-        return ConnectionPool.collectFirst(sql, String.class);
+        try {
+            return PARSE_CACHE.getSql(node.toString(), json -> {
+                try {
+                    return ConnectionPool.collectFirst(String.format(JSON_DESERIALIZE_SQL, json), String.class);
+                } catch (SQLException e) {
+                    throw new RuntimeSqlException(e);
+                }
+            });
+        } catch (RuntimeSqlException e) {
+            throw e.sqlException;
+        }
     }
 
     public static List<JsonNode> collectReferencesWithCast(JsonNode tree)                { return collect(tree, IS_REFERENCE_CAST); }
@@ -817,6 +857,120 @@ public class Transformations {
 
     public static Function<JsonNode, JsonNode> FIRST_STATEMENT_NODE = Transformations::getFirstStatementNode;
 
+    /**
+     * Aggregate functions whose presence in the select list makes a query eligible for the result cache.
+     */
+    public static final Set<String> CACHEABLE_AGGREGATE_FUNCTIONS = Set.of(
+            "count", "sum", "avg", "min", "max", "count_star",
+            "approx_count_distinct", "stddev", "variance");
+
+    /**
+     * Functions whose result can differ between two executions of the same statement: sequences,
+     * random values and the clock.
+     */
+    public static final Set<String> VOLATILE_FUNCTIONS = Set.of(
+            "nextval", "currval", "random", "setseed", "uuid", "gen_random_uuid", "uuidv4", "uuidv7",
+            "now", "current_timestamp", "get_current_timestamp", "transaction_timestamp",
+            "current_date", "current_time", "get_current_time", "today",
+            "current_localtimestamp", "current_localtime");
+
+    /**
+     * Returns true when {@code tree} calls one of the {@link #VOLATILE_FUNCTIONS} anywhere,
+     * including subqueries and CTEs.
+     *
+     * @param tree the output of {@link #parseToTree}, or any node of it
+     */
+    public static boolean hasVolatileFunction(JsonNode tree) {
+        if (tree == null) {
+            return false;
+        }
+        if (tree.isObject() && isClassAndType(FUNCTION_CLASS, FUNCTION_TYPE).apply(tree)
+                && VOLATILE_FUNCTIONS.contains(tree.path(FIELD_FUNCTION_NAME).asText().toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        for (JsonNode child : tree) {
+            if (hasVolatileFunction(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of {@code tree} without the {@code query_location} of its nodes, so that the
+     * same expression at different offsets of a query serializes the same, e.g. as a cache key.
+     */
+    public static JsonNode withoutQueryLocations(JsonNode tree) {
+        var copy = tree.deepCopy();
+        removeQueryLocations(copy);
+        return copy;
+    }
+
+    private static void removeQueryLocations(JsonNode node) {
+        if (node instanceof ObjectNode objectNode) {
+            objectNode.remove(FIELD_QUERY_LOCATION);
+        }
+        for (JsonNode child : node) {
+            removeQueryLocations(child);
+        }
+    }
+
+    /**
+     * Returns true when {@code tree} holds exactly one statement and it is a SELECT.
+     *
+     * @param tree the output of {@link #parseToTree}
+     */
+    public static boolean isSingleSelect(JsonNode tree) {
+        return getSingleSelectNode(tree) != null;
+    }
+
+    private static JsonNode getSingleSelectNode(JsonNode tree) {
+        if (tree == null || tree.path("error").asBoolean(false)) {
+            return null;
+        }
+        JsonNode statements = tree.get(FIELD_STATEMENTS);
+        if (statements == null || !statements.isArray() || statements.size() != 1) {
+            return null;
+        }
+        JsonNode node = statements.get(0).get(FIELD_NODE);
+        return node != null && IS_SELECT.apply(node) ? node : null;
+    }
+
+    /**
+     * Returns true when the single statement in {@code tree} is a SELECT whose result is small
+     * relative to its input and therefore worth caching: it has a GROUP BY, an aggregate
+     * function in the select list, or is a SELECT DISTINCT.
+     *
+     * @param tree the output of {@link #parseToTree}
+     */
+    public static boolean isCacheable(JsonNode tree) {
+        JsonNode node = getSingleSelectNode(tree);
+        if (node == null) {
+            return false;
+        }
+        JsonNode groups = node.get(FIELD_GROUP_EXPRESSIONS);
+        if (groups != null && groups.isArray() && !groups.isEmpty()) {
+            return true;
+        }
+        JsonNode modifiers = node.get(FIELD_MODIFIERS);
+        if (modifiers != null) {
+            for (JsonNode modifier : modifiers) {
+                if (DISTINCT_MODIFIER_TYPE.equals(modifier.path(FIELD_TYPE).asText())) {
+                    return true;
+                }
+            }
+        }
+        if (node.path(FIELD_DISTINCT).asBoolean(false)) {
+            return true;
+        }
+        JsonNode selectList = node.get(FIELD_SELECT_LIST);
+        if (selectList == null) {
+            return false;
+        }
+        return !collect(selectList, n -> isClassAndType(FUNCTION_CLASS, FUNCTION_TYPE).apply(n)
+                && CACHEABLE_AGGREGATE_FUNCTIONS.contains(n.path(FIELD_FUNCTION_NAME).asText())).isEmpty();
+    }
+
     public static JsonNode getTableFunction(JsonNode tree)       { return getTableFunctionNode(tree, false); }
     public static JsonNode getTableFunctionParent(JsonNode tree) { return getTableFunctionNode(tree, true); }
 
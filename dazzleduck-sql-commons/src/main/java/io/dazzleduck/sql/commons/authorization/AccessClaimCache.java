@@ -0,0 +1,154 @@
+package io.dazzleduck.sql.commons.authorization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Compiled forms of the {@code access} and {@code filter} JWT claims, keyed by a SHA-256 digest of
+ * the claim text. A caller sends the same claim for the whole lifetime of its token, so after the
+ * first request authorization only has to splice the cached filter trees into the query.
+ *
+ * <p>Shared by every {@link SqlAuthorizer} through {@link SqlAuthorizer#CLAIM_CACHE}. Cached filter
+ * trees are never handed out: callers get copies, since they end up inside query trees that are
+ * mutated by later transformations. Claims that fail to compile are not cached.
+ */
+public final class AccessClaimCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    @FunctionalInterface
+    public interface Compiler<T> {
+        T compile(String claim) throws UnauthorizedException;
+    }
+
+    private final Lru<List<TableAccessEntry>> tableAccess = new Lru<>();
+    private final Lru<JsonNode> filters = new Lru<>();
+    private volatile int maxEntries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AccessClaimCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the entries of an {@code access} claim, compiling them with {@code compiler} on a miss.
+     */
+    public List<TableAccessEntry> getTableAccess(String claim, Compiler<List<TableAccessEntry>> compiler)
+            throws UnauthorizedException {
+        String key = digest(claim);
+        List<TableAccessEntry> cached = tableAccess.get(key);
+        if (cached == null) {
+            misses.increment();
+            cached = List.copyOf(compiler.compile(claim));
+            tableAccess.put(key, cached, maxEntries);
+        } else {
+            hits.increment();
+        }
+        List<TableAccessEntry> result = new ArrayList<>(cached.size());
+        for (var entry : cached) {
+            result.add(new TableAccessEntry(entry.type(), entry.name(), copy(entry.filter())));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the WHERE expression tree of a {@code filter} claim, compiling it with {@code compiler} on a miss.
+     */
+    public JsonNode getFilter(String claim, Function<String, JsonNode> compiler) {
+        String key = digest(claim);
+        JsonNode cached = filters.get(key);
+        if (cached == null) {
+            misses.increment();
+            cached = compiler.apply(claim);
+            if (cached == null) {
+                return null;
+            }
+            filters.put(key, cached, maxEntries);
+        } else {
+            hits.increment();
+        }
+        return cached.deepCopy();
+    }
+
+    /**
+     * Changes the maximum number of entries per claim kind. {@code 0} disables caching.
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        tableAccess.trim(maxEntries);
+        filters.trim(maxEntries);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void clear() {
+        tableAccess.trim(0);
+        filters.trim(0);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getEntryCount() {
+        return tableAccess.size() + filters.size();
+    }
+
+    private static JsonNode copy(JsonNode node) {
+        return node == null ? null : node.deepCopy();
+    }
+
+    static String digest(String claim) {
+        try {
+            var md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(claim.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Lru<V> {
+        private final LinkedHashMap<String, V> map = new LinkedHashMap<>(64, 0.75f, true);
+
+        synchronized V get(String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(String key, V value, int maxEntries) {
+            if (maxEntries <= 0) {
+                return;
+            }
+            map.put(key, value);
+            trim(maxEntries);
+        }
+
+        synchronized void trim(int maxEntries) {
+            var it = map.entrySet().iterator();
+            while (map.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
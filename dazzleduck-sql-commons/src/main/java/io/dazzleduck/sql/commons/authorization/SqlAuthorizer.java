@@ -29,6 +29,12 @@ public interface SqlAuthorizer {
 
     SqlAuthorizer RESTRICT_READ_ONLY_AUTHORIZER = RestrictedReadOnlyAuthorizer.INSTANCE;
 
+    /**
+     * Compiled {@code access}/{@code filter} claims shared by all authorizers; see {@link #parseTableAccess}
+     * and {@link #compileFilterString}.
+     */
+    AccessClaimCache CLAIM_CACHE = new AccessClaimCache(AccessClaimCache.DEFAULT_MAX_ENTRIES);
+
     static JsonNode addFilterViaCtes(JsonNode query, JsonNode filter) {
         return Transformations.injectFilterCtes(query, filter);
     }
@@ -86,8 +92,13 @@ public interface SqlAuthorizer {
      *   <li><b>projection</b> — must be {@code "*"} (column restriction not yet implemented)</li>
      *   <li><b>filter</b>     — SQL WHERE expression; use {@code "true"} for no row restriction</li>
      * </ul>
+     * Results are memoized in {@link #CLAIM_CACHE} per distinct claim.
      */
     static List<TableAccessEntry> parseTableAccess(String json) throws UnauthorizedException {
+        return CLAIM_CACHE.getTableAccess(json, SqlAuthorizer::compileTableAccess);
+    }
+
+    private static List<TableAccessEntry> compileTableAccess(String json) throws UnauthorizedException {
         try {
             JsonNode root = TABLE_ACCESS_MAPPER.readTree(json);
             if (!root.isArray()) {
@@ -114,7 +125,7 @@ public interface SqlAuthorizer {
                             "Column projection is not yet supported; use \"*\" for entry " + i +
                             " (got: \"" + projection + "\")");
                 }
-                result.add(new TableAccessEntry(type, name, compileFilterString(filter)));
+                result.add(new TableAccessEntry(type, name, compileFilter(filter)));
             }
             return result;
         } catch (UnauthorizedException e) {
@@ -124,7 +135,15 @@ public interface SqlAuthorizer {
         }
     }
 
+    /**
+     * Compiles a SQL WHERE expression into its expression tree. Results are memoized in
+     * {@link #CLAIM_CACHE}; the returned tree is the caller's to modify.
+     */
     static JsonNode compileFilterString(String stringFilter) {
+        return CLAIM_CACHE.getFilter(stringFilter, SqlAuthorizer::compileFilter);
+    }
+
+    private static JsonNode compileFilter(String stringFilter) {
         var sql = "select * from t where " + stringFilter;
         JsonNode tree;
         try {
@@ -0,0 +1,67 @@
+package io.dazzleduck.sql.commons.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * First line of a cached {@code .arrow} file. Informational; lookups use it only to
+ * verify that the entry found under a hash really belongs to the query being served.
+ * Expiry is taken from the marker file name, never from {@link #ttl}.
+ */
+public record CacheHeader(String query,
+                          String database,
+                          String schema,
+                          long ttl,
+                          Instant createdAt,
+                          Long snapshotId) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String FIELD_QUERY = "query";
+    private static final String FIELD_DATABASE = "database";
+    private static final String FIELD_SCHEMA = "schema";
+    private static final String FIELD_TTL = "ttl";
+    private static final String FIELD_CREATED_AT = "created_at";
+    private static final String FIELD_SNAPSHOT_ID = "snapshot_id";
+
+    public String toJson() {
+        var node = MAPPER.createObjectNode();
+        node.put(FIELD_QUERY, query);
+        node.put(FIELD_DATABASE, database);
+        node.put(FIELD_SCHEMA, schema);
+        node.put(FIELD_TTL, ttl);
+        node.put(FIELD_CREATED_AT, createdAt.toString());
+        if (snapshotId == null) {
+            node.putNull(FIELD_SNAPSHOT_ID);
+        } else {
+            node.put(FIELD_SNAPSHOT_ID, snapshotId);
+        }
+        return node.toString();
+    }
+
+    public static CacheHeader fromJson(String line) throws JsonProcessingException {
+        JsonNode node = MAPPER.readTree(line);
+        JsonNode snapshot = node.get(FIELD_SNAPSHOT_ID);
+        return new CacheHeader(
+                node.get(FIELD_QUERY).asText(),
+                node.get(FIELD_DATABASE).asText(),
+                node.get(FIELD_SCHEMA).asText(),
+                node.get(FIELD_TTL).asLong(),
+                Instant.parse(node.get(FIELD_CREATED_AT).asText()),
+                snapshot == null || snapshot.isNull() ? null : snapshot.asLong());
+    }
+
+    /**
+     * @return true when {@code other} describes the same query against the same database and schema
+     */
+    public boolean matches(CacheHeader other) {
+        return other != null
+                && Objects.equals(query, other.query)
+                && Objects.equals(database, other.database)
+                && Objects.equals(schema, other.schema);
+    }
+}
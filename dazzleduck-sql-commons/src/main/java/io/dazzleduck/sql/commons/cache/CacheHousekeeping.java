@@ -0,0 +1,150 @@
+package io.dazzleduck.sql.commons.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static io.dazzleduck.sql.commons.cache.FileBasedQueryResultCache.*;
+
+/**
+ * Periodic cleanup of a {@link FileBasedQueryResultCache} directory.
+ *
+ * <ol>
+ *   <li>Walk marker files in name order (= expiry order) and delete expired entries, stopping
+ *       at the first live marker</li>
+ *   <li>Delete {@code .arrow} files without a marker and markers without an {@code .arrow} file</li>
+ *   <li>Delete temp files older than {@link #TMP_MAX_AGE}</li>
+ * </ol>
+ */
+public class CacheHousekeeping implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheHousekeeping.class);
+
+    static final Duration TMP_MAX_AGE = Duration.ofMinutes(10);
+
+    private final Path cacheDir;
+    private final Clock clock;
+
+    public CacheHousekeeping(Path cacheDir) {
+        this(cacheDir, Clock.systemUTC());
+    }
+
+    public CacheHousekeeping(Path cacheDir, Clock clock) {
+        this.cacheDir = cacheDir;
+        this.clock = clock;
+    }
+
+    @Override
+    public void run() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task
+            logger.atWarn().setCause(e).log("Cache housekeeping failed for {}", cacheDir);
+        }
+    }
+
+    void runOnce() throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        long now = clock.instant().getEpochSecond();
+        List<String> markers = new ArrayList<>();
+        Set<String> arrowHashes = new HashSet<>();
+        List<Path> tmpFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.forEach(p -> {
+                String name = p.getFileName().toString();
+                if (name.endsWith(MARKER_SUFFIX)) {
+                    markers.add(name);
+                } else if (name.endsWith(ARROW_SUFFIX)) {
+                    arrowHashes.add(name.substring(0, name.length() - ARROW_SUFFIX.length()));
+                } else if (name.contains(TMP_INFIX)) {
+                    tmpFiles.add(p);
+                }
+            });
+        }
+        markers.sort(null);
+
+        // Expired entries. A hash may briefly have two markers after a re-store; the arrow file
+        // is kept as long as any of its markers is live.
+        int firstLive = 0;
+        while (firstLive < markers.size() && expiryOf(markers.get(firstLive)) < now) {
+            firstLive++;
+        }
+        Set<String> liveHashes = new HashSet<>();
+        for (String marker : markers.subList(firstLive, markers.size())) {
+            liveHashes.add(hashOf(marker));
+        }
+        int expired = 0;
+        for (String marker : markers.subList(0, firstLive)) {
+            String hash = hashOf(marker);
+            deleteQuietly(cacheDir.resolve(marker));
+            if (!liveHashes.contains(hash)) {
+                deleteQuietly(arrowFile(cacheDir, hash));
+                arrowHashes.remove(hash);
+                expired++;
+            }
+        }
+
+        // Orphans on either side
+        for (String hash : arrowHashes) {
+            if (!liveHashes.contains(hash)) {
+                deleteQuietly(arrowFile(cacheDir, hash));
+            }
+        }
+        for (String marker : markers.subList(firstLive, markers.size())) {
+            if (!arrowHashes.contains(hashOf(marker))) {
+                // A store between its marker and rename is indistinguishable from a crashed one,
+                // so only drop markers whose temp file has had time to be renamed.
+                Path path = cacheDir.resolve(marker);
+                if (isOlderThan(path, TMP_MAX_AGE)) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+
+        for (Path tmp : tmpFiles) {
+            if (isOlderThan(tmp, TMP_MAX_AGE)) {
+                deleteQuietly(tmp);
+            }
+        }
+        if (expired > 0) {
+            logger.debug("Cache housekeeping expired {} entries in {}", expired, cacheDir);
+        }
+    }
+
+    /**
+     * Deletes every cache file in {@code cacheDir}. Called at startup so entries written under a
+     * previous TTL configuration are never served.
+     */
+    public static void clear(Path cacheDir) throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith(ARROW_SUFFIX) || name.endsWith(MARKER_SUFFIX) || name.contains(TMP_INFIX);
+            }).forEach(FileBasedQueryResultCache::deleteQuietly);
+        }
+    }
+
+    private boolean isOlderThan(Path path, Duration age) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().plus(age).isBefore(clock.instant());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.dazzleduck.sql.commons.cache;
+
+import io.dazzleduck.sql.common.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Computes the lookup key of a cached query result.
+ *
+ * <pre>
+ * SHA-256(canonical_sql | database | schema | sorted_claims) -> 64 char hex string
+ * </pre>
+ *
+ * Only the claims that change what a query is allowed to see take part in the key
+ * ({@link #KEY_CLAIMS}); per-request claims such as producer id or query id would
+ * otherwise make every request a miss.
+ */
+public final class CacheKey {
+
+    public static final Set<String> KEY_CLAIMS = Set.of(
+            Headers.HEADER_FILTER,
+            Headers.HEADER_TABLE,
+            Headers.HEADER_ACCESS,
+            Headers.HEADER_DATABASE,
+            Headers.HEADER_SCHEMA);
+
+    private static final String SEPARATOR = "|";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private CacheKey() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    public static String compute(String canonicalSql, String database, String schema,
+                                 Map<String, String> authClaims) {
+        var sb = new StringBuilder()
+                .append(canonicalSql)
+                .append(SEPARATOR).append(database)
+                .append(SEPARATOR).append(schema);
+        if (authClaims != null) {
+            var sorted = new TreeMap<String, String>();
+            authClaims.forEach((k, v) -> {
+                if (KEY_CLAIMS.contains(k)) {
+                    sorted.put(k, v);
+                }
+            });
+            sorted.forEach((k, v) -> sb.append(SEPARATOR).append(k).append('=').append(v));
+        }
+        return sha256(sb.toString());
+    }
+
+    private static String sha256(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HEX.formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package io.dazzleduck.sql.commons.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@link QueryResultCache} backed by flat files in a single directory, fronted by a bounded
+ * in-memory tier holding the most recently used entries.
+ *
+ * <p>Each entry is two files:
+ * <ul>
+ *   <li>{@code {hash}.arrow} - a {@link CacheHeader} JSON line, a blank line, then the Arrow IPC stream</li>
+ *   <li>{@code {expiry_epoch_seconds}_{hash}.marker} - an empty file; sorted names = sorted expiry,
+ *       which lets {@link CacheHousekeeping} expire entries without opening files</li>
+ * </ul>
+ *
+ * <p>Stores write a temp file, then the marker, then atomically rename the temp file, so a
+ * crash never leaves a readable {@code .arrow} file without a marker.
+ */
+public class FileBasedQueryResultCache implements QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileBasedQueryResultCache.class);
+
+    static final String ARROW_SUFFIX = ".arrow";
+    static final String MARKER_SUFFIX = ".marker";
+    static final String TMP_INFIX = ".tmp.";
+
+    public static final long DEFAULT_MEMORY_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Path cacheDir;
+    private final long ttlSeconds;
+    private final long memoryMaxBytes;
+    private final long maxEntryBytes;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    private record MemoryEntry(CacheHeader header, long expiryEpochSeconds, byte[] arrowIpc) {}
+
+    public FileBasedQueryResultCache(Path cacheDir, long ttlSeconds) {
+        this(cacheDir, ttlSeconds, DEFAULT_MEMORY_MAX_BYTES, Long.MAX_VALUE, Clock.systemUTC());
+    }
+
+    /**
+     * @param memoryMaxBytes total bytes held by the in-memory tier; entries larger than this are
+     *                       only kept on disk. {@code 0} disables the in-memory tier.
+     * @param maxEntryBytes  results larger than this are not cached at all
+     */
+    public FileBasedQueryResultCache(Path cacheDir, long ttlSeconds, long memoryMaxBytes, long maxEntryBytes, Clock clock) {
+        this.cacheDir = cacheDir;
+        this.ttlSeconds = ttlSeconds;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.clock = clock;
+        try {
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create cache directory " + cacheDir, e);
+        }
+    }
+
+    @Override
+    public long ttlSeconds() {
+        return ttlSeconds;
+    }
+
+    @Override
+    public long maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    @Override
+    public Optional<byte[]> lookup(String hash, CacheHeader expected) {
+        long now = clock.instant().getEpochSecond();
+        var fromMemory = lookupMemory(hash, expected, now);
+        if (fromMemory != null) {
+            return Optional.of(fromMemory);
+        }
+
+        Path arrowFile = arrowFile(cacheDir, hash);
+        if (!Files.exists(arrowFile)) {
+            return Optional.empty();
+        }
+        try {
+            List<Path> markers = markersFor(hash);
+            if (markers.isEmpty()) {
+                deleteQuietly(arrowFile);
+                return Optional.empty();
+            }
+            long expiry = markers.stream().mapToLong(m -> expiryOf(m.getFileName().toString())).max().getAsLong();
+            if (expiry < now) {
+                deleteEntry(hash, markers);
+                return Optional.empty();
+            }
+            byte[] content = Files.readAllBytes(arrowFile);
+            int newline = indexOfNewline(content);
+            if (newline < 0 || newline + 2 > content.length) {
+                deleteEntry(hash, markers);
+                return Optional.empty();
+            }
+            CacheHeader header = CacheHeader.fromJson(new String(content, 0, newline, StandardCharsets.UTF_8));
+            if (!header.matches(expected)) {
+                logger.warn("Cache header mismatch for {}, dropping entry", hash);
+                deleteEntry(hash, markers);
+                return Optional.empty();
+            }
+            byte[] ipc = Arrays.copyOfRange(content, newline + 2, content.length);
+            putMemory(hash, new MemoryEntry(header, expiry, ipc));
+            return Optional.of(ipc);
+        } catch (NoSuchFileException e) {
+            // Removed concurrently by housekeeping
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            logger.atWarn().setCause(e).log("Failed to read cache entry {}", hash);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void store(String hash, CacheHeader header, byte[] arrowIpc) {
+        long ttl = Math.min(header.ttl(), ttlSeconds);
+        if (ttl <= 0 || arrowIpc.length > maxEntryBytes) {
+            return;
+        }
+        long expiry = clock.instant().getEpochSecond() + ttl;
+        Path tmp = cacheDir.resolve(hash + TMP_INFIX + UUID.randomUUID());
+        try {
+            List<Path> previousMarkers = markersFor(hash);
+            try (var out = Files.newOutputStream(tmp)) {
+                out.write(header.toJson().getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+                out.write('\n');
+                out.write(arrowIpc);
+            }
+            Files.createFile(markerFile(cacheDir, expiry, hash));
+            Files.move(tmp, arrowFile(cacheDir, hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path previous : previousMarkers) {
+                if (expiryOf(previous.getFileName().toString()) != expiry) {
+                    deleteQuietly(previous);
+                }
+            }
+            putMemory(hash, new MemoryEntry(header, expiry, arrowIpc));
+        } catch (IOException e) {
+            // FileAlreadyExistsException on the marker means a concurrent store of the same result
+            logger.atDebug().setCause(e).log("Failed to store cache entry {}", hash);
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Drops every entry held by the in-memory tier. Disk entries are left to {@link CacheHousekeeping}.
+     */
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private synchronized byte[] lookupMemory(String hash, CacheHeader expected, long now) {
+        var entry = memory.get(hash);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiryEpochSeconds() < now || !entry.header().matches(expected)) {
+            removeMemory(hash);
+            return null;
+        }
+        return entry.arrowIpc();
+    }
+
+    private synchronized void putMemory(String hash, MemoryEntry entry) {
+        long size = entry.arrowIpc().length;
+        if (size > memoryMaxBytes) {
+            removeMemory(hash);
+            return;
+        }
+        removeMemory(hash);
+        memory.put(hash, entry);
+        memoryBytes += size;
+        Iterator<Map.Entry<String, MemoryEntry>> it = memory.entrySet().iterator();
+        while (memoryBytes > memoryMaxBytes && it.hasNext()) {
+            memoryBytes -= it.next().getValue().arrowIpc().length;
+            it.remove();
+        }
+    }
+
+    private void removeMemory(String hash) {
+        var removed = memory.remove(hash);
+        if (removed != null) {
+            memoryBytes -= removed.arrowIpc().length;
+        }
+    }
+
+    private List<Path> markersFor(String hash) throws IOException {
+        var result = new ArrayList<Path>(1);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*_" + hash + MARKER_SUFFIX)) {
+            stream.forEach(result::add);
+        }
+        return result;
+    }
+
+    private void deleteEntry(String hash, List<Path> markers) {
+        synchronized (this) {
+            removeMemory(hash);
+        }
+        deleteQuietly(arrowFile(cacheDir, hash));
+        markers.forEach(FileBasedQueryResultCache::deleteQuietly);
+    }
+
+    private static int indexOfNewline(byte[] content) {
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static Path arrowFile(Path dir, String hash) {
+        return dir.resolve(hash + ARROW_SUFFIX);
+    }
+
+    static Path markerFile(Path dir, long expiryEpochSeconds, String hash) {
+        return dir.resolve(expiryEpochSeconds + "_" + hash + MARKER_SUFFIX);
+    }
+
+    /**
+     * @return expiry epoch seconds encoded in a marker file name, or -1 if the name is malformed
+     */
+    static long expiryOf(String markerName) {
+        int idx = markerName.indexOf('_');
+        if (idx <= 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(markerName.substring(0, idx));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String hashOf(String markerName) {
+        int idx = markerName.indexOf('_');
+        return markerName.substring(idx + 1, markerName.length() - MARKER_SUFFIX.length());
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.atDebug().setCause(e).log("Failed to delete {}", path);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.dazzleduck.sql.commons.cache;
+
+import java.util.Optional;
+
+/**
+ * Cache of query results stored as Arrow IPC stream bytes, keyed by {@link CacheKey}.
+ *
+ * @see FileBasedQueryResultCache
+ */
+public interface QueryResultCache {
+
+    /**
+     * @param hash     key computed by {@link CacheKey#compute}
+     * @param expected header of the query being served, used to verify the stored entry
+     * @return the Arrow IPC stream bytes of a live entry, or empty on a miss
+     */
+    Optional<byte[]> lookup(String hash, CacheHeader expected);
+
+    /**
+     * Stores {@code arrowIpc} under {@code hash}; the entry expires {@code header.ttl()} seconds from now.
+     */
+    void store(String hash, CacheHeader header, byte[] arrowIpc);
+
+    /**
+     * @return the maximum TTL in seconds an entry may be stored with
+     */
+    long ttlSeconds();
+
+    /**
+     * @return the largest result in bytes worth capturing for this cache
+     */
+    default long maxEntryBytes() {
+        return Long.MAX_VALUE;
+    }
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    QueryResultCache NOOP = new QueryResultCache() {
+        @Override
+        public Optional<byte[]> lookup(String hash, CacheHeader expected) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void store(String hash, CacheHeader header, byte[] arrowIpc) {
+        }
+
+        @Override
+        public long ttlSeconds() {
+            return 0;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+}
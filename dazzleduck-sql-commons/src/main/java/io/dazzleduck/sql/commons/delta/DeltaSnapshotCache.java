@@ -0,0 +1,336 @@
+package io.dazzleduck.sql.commons.delta;
+
+import io.dazzleduck.sql.commons.FileStatus;
+import io.delta.kernel.Scan;
+import io.delta.kernel.Snapshot;
+import io.delta.kernel.Table;
+import io.delta.kernel.data.FilteredColumnarBatch;
+import io.delta.kernel.data.Row;
+import io.delta.kernel.defaults.engine.DefaultEngine;
+import io.delta.kernel.engine.Engine;
+import io.delta.kernel.expressions.Predicate;
+import io.delta.kernel.internal.InternalScanFileUtils;
+import io.delta.kernel.utils.CloseableIterator;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Delta tables and their latest snapshots, kept between queries so planning does not replay the
+ * {@code _delta_log} each time.
+ *
+ * <p>One {@link Engine} is shared by all tables, and each table keeps its {@link Table}, whose
+ * snapshot hint lets the kernel load a newer snapshot by reading only the commits after the one it
+ * already has. A lookup checks for a newer version by listing {@code _delta_log} from the next
+ * commit file, which finds nothing while the table is unchanged. The files of a scan are kept per
+ * snapshot version and filter, so repeated queries on the same version reuse them.
+ *
+ * <p>Concurrent lookups of a table share one snapshot load, and concurrent scans with the same
+ * filter share one scan. Least recently used tables are evicted past {@link #MAX_TABLES} or once
+ * the scans of the cached tables hold more than {@code maxFiles} files, and scans past
+ * {@link #MAX_SCANS_PER_TABLE} per table.
+ */
+public final class DeltaSnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaSnapshotCache.class);
+
+    static final int MAX_TABLES = 256;
+    static final int MAX_SCANS_PER_TABLE = 64;
+
+    /** Files held by the scans of all cached tables unless configured otherwise. */
+    public static final long DEFAULT_MAX_FILES = 2_000_000;
+
+    private static final Pattern COMMIT_FILE = Pattern.compile("(\\d{20})\\.json");
+
+    private final Engine engine;
+    private final long maxFiles;
+
+    // Guarded by this
+    private final LinkedHashMap<String, CachedTable> tables = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTable> eldest) {
+            if (size() <= MAX_TABLES) {
+                return false;
+            }
+            cachedFiles -= eldest.getValue().accountedFiles;
+            return true;
+        }
+    };
+    private long cachedFiles;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder snapshotLoads = new LongAdder();
+    private final LongAdder scanHits = new LongAdder();
+    private final LongAdder kernelScans = new LongAdder();
+
+    public DeltaSnapshotCache() {
+        this(DefaultEngine.create(new Configuration()));
+    }
+
+    public DeltaSnapshotCache(Engine engine) {
+        this(engine, DEFAULT_MAX_FILES);
+    }
+
+    public DeltaSnapshotCache(Engine engine, long maxFiles) {
+        this.engine = engine;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Returns the files of the latest snapshot of the table at {@code basePath} that may match
+     * {@code filter}, oldest first.
+     *
+     * @param filterKey identifies {@code filter} among the scans of a snapshot; empty when it is null
+     * @param filter    the predicate the kernel prunes files with, or null for all files
+     */
+    public List<FileStatus> scanFiles(String basePath, String filterKey, Predicate filter) throws IOException {
+        lookups.increment();
+        CachedTable table;
+        synchronized (this) {
+            table = tables.computeIfAbsent(basePath, p -> new CachedTable(p, Table.forPath(engine, p)));
+        }
+        var version = table.refresh();
+        var files = version.scanFiles(filterKey, filter);
+        account(basePath, table, version.cachedFiles());
+        return files;
+    }
+
+    /** Counts the files of a table's scans and evicts the least recently used tables beyond the limit. */
+    private synchronized void account(String basePath, CachedTable table, long files) {
+        if (tables.get(basePath) == table) {
+            cachedFiles += files - table.accountedFiles;
+            table.accountedFiles = files;
+        }
+        var eldest = tables.values().iterator();
+        while (cachedFiles > maxFiles && eldest.hasNext()) {
+            cachedFiles -= eldest.next().accountedFiles;
+            eldest.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        tables.clear();
+        cachedFiles = 0;
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /** Snapshots loaded, for tables not cached yet or with new commits. */
+    public long getSnapshotLoads() {
+        return snapshotLoads.sum();
+    }
+
+    /** Scans answered from a cached scan of the same version and filter. */
+    public long getScanHits() {
+        return scanHits.sum();
+    }
+
+    /** Scans run against the kernel. */
+    public long getKernelScans() {
+        return kernelScans.sum();
+    }
+
+    public synchronized int getCachedTables() {
+        return tables.size();
+    }
+
+    /** Files held by the scans of the cached tables. */
+    public synchronized long getCachedFiles() {
+        return cachedFiles;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof UncheckedIOException u) {
+                throw u.getCause();
+            }
+            if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+            throw e;
+        }
+    }
+
+    private final class CachedTable {
+        private final String basePath;
+        private final String logPath;
+        private final Table table;
+        // Guarded by this
+        private CompletableFuture<CachedVersion> current;
+        // Guarded by the cache
+        private long accountedFiles;
+
+        CachedTable(String basePath, Table table) {
+            this.basePath = basePath;
+            this.logPath = basePath.replaceFirst("/+$", "") + "/_delta_log/";
+            this.table = table;
+        }
+
+        /** Returns the latest version, loading its snapshot if a newer commit exists. */
+        CachedVersion refresh() throws IOException {
+            CompletableFuture<CachedVersion> loaded;
+            synchronized (this) {
+                loaded = current;
+            }
+            if (loaded == null) {
+                return join(load(null, -1));
+            }
+            if (!loaded.isDone()) {
+                return join(loaded);
+            }
+            var cached = join(loaded);
+            long latest = latestVersion(cached.version);
+            if (latest == cached.version) {
+                return cached;
+            }
+            return join(load(loaded, latest));
+        }
+
+        /**
+         * Loads the snapshot at {@code version}, or the latest one if it is -1, unless another thread
+         * replaced {@code seen} in the meantime; its load is then shared.
+         */
+        private CompletableFuture<CachedVersion> load(CompletableFuture<CachedVersion> seen, long version) {
+            CompletableFuture<CachedVersion> future;
+            synchronized (this) {
+                if (current != seen && current != null) {
+                    return current;
+                }
+                future = new CompletableFuture<>();
+                current = future;
+            }
+            try {
+                snapshotLoads.increment();
+                long start = System.nanoTime();
+                Snapshot snapshot = version < 0
+                        ? table.getLatestSnapshot(engine)
+                        : table.getSnapshotAsOfVersion(engine, version);
+                var loadedVersion = new CachedVersion(snapshot, snapshot.getVersion(engine));
+                logger.debug("Loaded version {} of {} in {} ms", loadedVersion.version, basePath,
+                        (System.nanoTime() - start) / 1_000_000);
+                future.complete(loadedVersion);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (current == future) {
+                        current = null;
+                    }
+                }
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        /** The newest commit version in the log, {@code known} if there is none after it. */
+        private long latestVersion(long known) throws IOException {
+            long latest = known;
+            try (var files = engine.getFileSystemClient().listFrom(logPath + "%020d.json".formatted(known + 1))) {
+                while (files.hasNext()) {
+                    var path = files.next().getPath();
+                    var matcher = COMMIT_FILE.matcher(path.substring(path.lastIndexOf('/') + 1));
+                    if (matcher.matches()) {
+                        latest = Math.max(latest, Long.parseLong(matcher.group(1)));
+                    }
+                }
+            }
+            return latest;
+        }
+    }
+
+    private final class CachedVersion {
+        private final Snapshot snapshot;
+        private final long version;
+        // Guarded by this
+        private final LinkedHashMap<String, CompletableFuture<List<FileStatus>>> scans =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<List<FileStatus>>> eldest) {
+                        return size() > MAX_SCANS_PER_TABLE;
+                    }
+                };
+
+        CachedVersion(Snapshot snapshot, long version) {
+            this.snapshot = snapshot;
+            this.version = version;
+        }
+
+        /** Files of the completed scans. */
+        synchronized long cachedFiles() {
+            long files = 0;
+            for (var scan : scans.values()) {
+                if (scan.isDone() && !scan.isCompletedExceptionally()) {
+                    files += scan.join().size();
+                }
+            }
+            return files;
+        }
+
+        List<FileStatus> scanFiles(String filterKey, Predicate filter) throws IOException {
+            CompletableFuture<List<FileStatus>> future;
+            boolean owner = false;
+            synchronized (this) {
+                future = scans.get(filterKey);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    scans.put(filterKey, future);
+                    owner = true;
+                }
+            }
+            if (!owner) {
+                scanHits.increment();
+                return join(future);
+            }
+            try {
+                kernelScans.increment();
+                future.complete(List.copyOf(scan(filter)));
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    scans.remove(filterKey, future);
+                }
+                future.completeExceptionally(e instanceof IOException io ? new UncheckedIOException(io) : e);
+            }
+            return join(future);
+        }
+
+        private List<FileStatus> scan(Predicate filter) throws IOException {
+            var builder = snapshot.getScanBuilder(engine);
+            if (filter != null) {
+                builder = builder.withFilter(engine, filter);
+            }
+            Scan scan = builder.build();
+            List<FileStatus> result = new ArrayList<>();
+            try (CloseableIterator<FilteredColumnarBatch> fileIter = scan.getScanFiles(engine)) {
+                while (fileIter.hasNext()) {
+                    FilteredColumnarBatch batch = fileIter.next();
+                    try (CloseableIterator<Row> rowIter = batch.getRows()) {
+                        while (rowIter.hasNext()) {
+                            var fileStatus = InternalScanFileUtils.getAddFileStatus(rowIter.next());
+                            result.add(new FileStatus(
+                                    fileStatus.getPath().replaceFirst("^file:", ""),
+                                    fileStatus.getSize(),
+                                    fileStatus.getModificationTime()));
+                        }
+                    }
+                }
+            }
+            result.sort(Comparator.comparing(FileStatus::lastModified));
+            return result;
+        }
+    }
+}
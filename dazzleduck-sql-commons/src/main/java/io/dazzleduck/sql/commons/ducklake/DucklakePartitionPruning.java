@@ -7,16 +7,37 @@ import io.dazzleduck.sql.commons.ConnectionPool;
 import io.dazzleduck.sql.commons.FileStatus;
 import io.dazzleduck.sql.commons.Transformations;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Prunes the data files of DuckLake tables by their column statistics.
+ *
+ * <p>Statistics are held per table in a {@link DucklakeStatsIndex}. Each call reads the latest snapshot
+ * id and, if it moved, loads only the files added and removed since the index's snapshot; filters are
+ * then evaluated in Java by {@link DucklakeStatsFilter}. Filters it cannot evaluate run as a DuckDB
+ * query over {@code ducklake_file_column_stats} instead. Table ids, paths and columns are cached per
+ * schema version.
+ *
+ * <p>The indexes hold every live file of a table with the statistics of all its columns, a few
+ * hundred bytes per file and column. Tables are evicted least recently used once more than
+ * {@code maxCachedFiles} files are indexed; a table with more files than that is not kept at all.
+ */
 public class DucklakePartitionPruning {
 
+    private static final Logger logger = LoggerFactory.getLogger(DucklakePartitionPruning.class);
+
     private static final String NESTED = "{'key' : concat('min_', column_id), 'value' : min_value }," +
             " {'key' : concat('max_', column_id), 'value' :  max_value}," +
             " {'key' : concat('null_count_', column_id), 'value' : cast(null_count as varchar)}," +
@@ -29,7 +50,15 @@ public class DucklakePartitionPruning {
                      sv AS (SELECT max(schema_version) as version FROM %s.ducklake_snapshot )
                      SELECT c.column_id as id, c.column_name as name, c.column_type as "type", sv.version as schemaVersion FROM c, s, t, sv WHERE c.table_id = t.table_id AND  s.schema_id = t.schema_id ;
                     """;
-    private static final String SCHEMA_VERSION_QUERY = "SELECT max(schema_version) FROM %s.ducklake_snapshot";
+    private static final String LATEST_SNAPSHOT_QUERY = "SELECT snapshot_id, schema_version FROM %s.ducklake_snapshot ORDER BY snapshot_id DESC LIMIT 1";
+    // Files and stats that changed in (%s, %s]: added files still live at the later snapshot, and removed files
+    private static final String ADDED_FILES_QUERY = "SELECT data_file_id, path, path_is_relative, file_size_bytes FROM %s.ducklake_data_file " +
+            "WHERE table_id = %s AND begin_snapshot > %s AND begin_snapshot <= %s AND (end_snapshot IS NULL OR end_snapshot > %s)";
+    private static final String ADDED_STATS_QUERY = "SELECT s.data_file_id, s.column_id, s.min_value, s.max_value, s.null_count, s.contains_nan " +
+            "FROM %s.ducklake_file_column_stats s JOIN %s.ducklake_data_file f ON s.data_file_id = f.data_file_id " +
+            "WHERE s.table_id = %s AND f.table_id = %s AND f.begin_snapshot > %s AND f.begin_snapshot <= %s AND (f.end_snapshot IS NULL OR f.end_snapshot > %s)";
+    private static final String REMOVED_FILES_QUERY = "SELECT data_file_id FROM %s.ducklake_data_file " +
+            "WHERE table_id = %s AND end_snapshot > %s AND end_snapshot <= %s";
     private static final String TABLE_ID_QUERY = "select table_id from %s.ducklake_table t, %s.ducklake_schema s " +
             "where s.schema_name = '%s' and t.table_name = '%s' " +
             "and s.schema_id  = t.schema_id";
@@ -41,19 +70,40 @@ public class DucklakePartitionPruning {
                     " P AS (PIVOT AA ON column_id IN (%s) USING first(value) GROUP BY data_file_id),\n" +
                     " R AS (%s)\n" +
                     " SELECT L.path, L.file_size_bytes, cast(0  as  bigint), L.path_is_relative, L.table_id, L.mapping_id FROM L INNER JOIN R ON L.data_file_id = R.data_file_id LEFT OUTER JOIN M ON M.mapping_id = L.mapping_id ORDER BY L.data_file_id";
-    private static final String NO_FILTER_QUERY = "SELECT L.path, L.file_size_bytes, cast(0  as  bigint), L.path_is_relative, L.table_id, L.mapping_id FROM %s.ducklake_data_file L WHERE table_id = %s ORDER by L.data_file_id";
+    private static final String NO_FILTER_QUERY = "SELECT L.path, L.file_size_bytes, cast(0  as  bigint), L.path_is_relative, L.table_id, L.mapping_id FROM %s.ducklake_data_file L WHERE table_id = %s and end_snapshot is null ORDER by L.data_file_id";
     private static final String PIVOT_TABLE_ALIAS = "P";
 
+    /** Files indexed across all tables of one metadata database unless configured otherwise. */
+    public static final long DEFAULT_MAX_CACHED_FILES = 1_000_000;
+
     private final String metadataDatabase;
     private final String schemaQualifier;
     private final Map<String, VersionEntity<Map<String, ColumnInfo>>> columnInfoCache = new ConcurrentHashMap<>();
     private final Map<Long, VersionEntity<String>> relativePathCache = new ConcurrentHashMap<>();
+    private final Map<String, VersionEntity<Long>> tableIdCache = new ConcurrentHashMap<>();
+    private final long maxCachedFiles;
+
+    // Guarded by itself, in access order
+    private final LinkedHashMap<Long, CachedIndex> statsIndexes = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedFiles;
+
     public DucklakePartitionPruning(String metadataDatabase) {
         this(metadataDatabase, ".");
     }
     public DucklakePartitionPruning(String metadataDatabase, String schemaQualifier) {
+        this(metadataDatabase, schemaQualifier, DEFAULT_MAX_CACHED_FILES);
+    }
+
+    public DucklakePartitionPruning(String metadataDatabase, String schemaQualifier, long maxCachedFiles) {
         this.metadataDatabase = metadataDatabase;
         this.schemaQualifier = schemaQualifier;
+        this.maxCachedFiles = maxCachedFiles;
+    }
+
+    /** An index and the files it was last counted with in {@link #cachedFiles}. */
+    private static final class CachedIndex {
+        final DucklakeStatsIndex index = new DucklakeStatsIndex();
+        int accountedFiles;
     }
 
     private String getNoFilterQuery(long tableId) {
@@ -70,8 +120,8 @@ public class DucklakePartitionPruning {
         return COLUMN_INFO_QUERY.formatted(metadataDatabase, schema, metadataDatabase, table, metadataDatabase, metadataDatabase);
     }
 
-    private String getSchemaVersionQuery() {
-        return SCHEMA_VERSION_QUERY.formatted(metadataDatabase);
+    private String getLatestSnapshotQuery() {
+        return LATEST_SNAPSHOT_QUERY.formatted(metadataDatabase);
     }
 
     private String getTableIdQuery(String schema, String table) {
@@ -83,15 +133,8 @@ public class DucklakePartitionPruning {
         return sql.formatted(metadataDatabase, metadataDatabase, metadataDatabase, tableId);
     }
 
-    private String getTablePath(long tableId) {
+    private String getTablePath(long tableId, long latestSchemaVersion) {
         var versionEntity = relativePathCache.compute(tableId, (key, oldValue) -> {
-            Long latestSchemaVersion;
-            try {
-                var schemaVersionQuery = getSchemaVersionQuery();
-                latestSchemaVersion = ConnectionPool.collectFirst(schemaVersionQuery, Long.class);
-            } catch (SQLException e) {
-                throw new RuntimeException("Failed to get schema version", e);
-            }
             if (oldValue == null || oldValue.version() < latestSchemaVersion) {
                 return new VersionEntity<>(latestSchemaVersion, getRelativePathFromDB(tableId));
             } else {
@@ -109,16 +152,9 @@ public class DucklakePartitionPruning {
         }
     }
 
-    private Map<String, ColumnInfo> getColumnIdMap(String schema, String table) {
+    private Map<String, ColumnInfo> getColumnIdMap(String schema, String table, long latestSchemaVersion) {
         var schemaTable = "%s.%s".formatted(schema, table);
         var versionEntity = columnInfoCache.compute(schemaTable, (key, oldValue) -> {
-            Long latestSchemaVersion;
-            try {
-                var schemaVersionQuery = getSchemaVersionQuery();
-                latestSchemaVersion = ConnectionPool.collectFirst(schemaVersionQuery, Long.class);
-            } catch (SQLException e) {
-                throw new RuntimeException("Failed to get schema version", e);
-            }
             if (oldValue == null || oldValue.version() < latestSchemaVersion) {
                 List<ColumnInfo> info;
                 try {
@@ -156,37 +192,79 @@ public class DucklakePartitionPruning {
                 .andThen(Transformations::getFirstStatementNode)
                 .andThen(Transformations::getWhereClauseForBaseTable)
                 .apply(tree);
-        var tableId = getTableId(schema, table);
+        var snapshot = getLatestSnapshot();
+        var tableId = getTableId(schema, table, snapshot.schemaVersion());
         if (tableId == null) {
             throw new SQLException("Table Not Found :%s".formatted(table));
         }
-        String tableRelativePath = getTablePath(tableId);
-        String toRun;
-        if (where == null || where instanceof NullNode) {
-            toRun = getNoFilterQuery(tableId);
-        } else {
-            var columnMap = getColumnIdMap(schema, table);
-            var maxMap = new HashMap<String, String>();
-            var minMap = new HashMap<String, String>();
-            var typeMap = new HashMap<String, String>();
-            for (var e : columnMap.entrySet()) {
-                minMap.put(e.getKey(), "min_" + e.getValue().id());
-                maxMap.put(e.getKey(), "max_" + e.getValue().id());
-                typeMap.put(e.getKey(), e.getValue().type());
+        String tableRelativePath = getTablePath(tableId, snapshot.schemaVersion());
+        var filter = DucklakeStatsFilter.ACCEPT_ALL;
+        Map<String, ColumnInfo> columnMap = Map.of();
+        if (where != null && !(where instanceof NullNode) && !Transformations.collectReferences(where).isEmpty()) {
+            columnMap = getColumnIdMap(schema, table, snapshot.schemaVersion());
+            filter = DucklakeStatsFilter.compile(where, columnMap);
+        }
+        if (filter != null) {
+            CachedIndex cached;
+            synchronized (statsIndexes) {
+                cached = statsIndexes.get(tableId);
+                // A snapshot older than the index means the catalog was replaced, so its files are reloaded
+                if (cached == null || cached.index.snapshotId() > snapshot.id()) {
+                    if (cached != null) {
+                        cachedFiles -= cached.accountedFiles;
+                    }
+                    cached = new CachedIndex();
+                    statsIndexes.put(tableId, cached);
+                }
+            }
+            var index = cached.index;
+            synchronized (index) {
+                refresh(index, tableId, snapshot.id());
+                account(tableId, cached, index.size());
+                try {
+                    var result = new ArrayList<FileStatus>();
+                    for (var file : index.files()) {
+                        if (filter.test(file)) {
+                            result.add(new DucklakeFileStatus(file.path(), file.size(), 0L, file.pathIsRelative(), tableId, null)
+                                    .resolvedFileStatus(tableRelativePath));
+                        }
+                    }
+                    return result;
+                } catch (IllegalArgumentException e) {
+                    logger.debug("Statistics of {}.{} need DuckDB casts: {}", schema, table, e.getMessage());
+                }
             }
+        }
+        return pruneFilesInDuckDB(tree, tableId, tableRelativePath, columnMap);
+    }
 
-            var partitionQuery = Transformations.replaceEqualMinMaxInQuery(PIVOT_TABLE_ALIAS, minMap, maxMap, typeMap)
-                    .apply(tree);
+    /**
+     * Prunes with a DuckDB query over the stats catalog, for filters {@link DucklakeStatsFilter} does not evaluate.
+     */
+    private List<FileStatus> pruneFilesInDuckDB(JsonNode tree, long tableId, String tableRelativePath,
+                                                Map<String, ColumnInfo> columnMap) throws SQLException {
+        var where = Transformations.getWhereClauseForBaseTable(Transformations.getFirstStatementNode(tree));
+        var maxMap = new HashMap<String, String>();
+        var minMap = new HashMap<String, String>();
+        var typeMap = new HashMap<String, String>();
+        for (var e : columnMap.entrySet()) {
+            minMap.put(e.getKey(), "min_" + e.getValue().id());
+            maxMap.put(e.getKey(), "max_" + e.getValue().id());
+            typeMap.put(e.getKey(), e.getValue().type());
+        }
 
-            var references = Transformations.collectReferences(where);
-            if (references.isEmpty()) {
-                toRun = getNoFilterQuery(tableId);
-            } else {
-                var columnIds = references.stream().map(n -> columnMap.get(Transformations.getReferenceName(n)[0]).id())
-                        .collect(Collectors.toSet());
-                var partitionSql = Transformations.parseToSql(partitionQuery);
-                toRun = partitionSql(partitionSql, tableId, columnIds);
-            }
+        var partitionQuery = Transformations.replaceEqualMinMaxInQuery(PIVOT_TABLE_ALIAS, minMap, maxMap, typeMap)
+                .apply(tree);
+
+        var references = Transformations.collectReferences(where);
+        String toRun;
+        if (references.isEmpty()) {
+            toRun = getNoFilterQuery(tableId);
+        } else {
+            var columnIds = references.stream().map(n -> columnMap.get(Transformations.getReferenceName(n)[0]).id())
+                    .collect(Collectors.toSet());
+            var partitionSql = Transformations.parseToSql(partitionQuery);
+            toRun = partitionSql(partitionSql, tableId, columnIds);
         }
         try (var connection = ConnectionPool.getConnection()) {
             var res = ConnectionPool.collectAll(connection, toRun, DucklakeFileStatus.class);
@@ -198,6 +276,79 @@ public class DucklakePartitionPruning {
         }
     }
 
+    /** Counts the files of a refreshed index and evicts the least recently used tables beyond the limit. */
+    private void account(long tableId, CachedIndex cached, int files) {
+        synchronized (statsIndexes) {
+            if (statsIndexes.get(tableId) == cached) {
+                cachedFiles += files - cached.accountedFiles;
+                cached.accountedFiles = files;
+            }
+            var eldest = statsIndexes.values().iterator();
+            while (cachedFiles > maxCachedFiles && eldest.hasNext()) {
+                cachedFiles -= eldest.next().accountedFiles;
+                eldest.remove();
+            }
+        }
+    }
+
+    /** Tables whose statistics are indexed. */
+    int cachedTables() {
+        synchronized (statsIndexes) {
+            return statsIndexes.size();
+        }
+    }
+
+    /**
+     * Brings {@code index} to {@code snapshotId} from the files added and removed since its snapshot.
+     */
+    private void refresh(DucklakeStatsIndex index, long tableId, long snapshotId) throws SQLException {
+        long since = index.snapshotId();
+        if (since >= snapshotId) {
+            return;
+        }
+        try (var connection = ConnectionPool.getConnection()) {
+            var removed = new ArrayList<Long>();
+            if (since >= 0) {
+                var removedQuery = REMOVED_FILES_QUERY.formatted(metadataDatabase, tableId, since, snapshotId);
+                ConnectionPool.collectFirstColumn(connection, removedQuery, Long.class).forEach(removed::add);
+            }
+            var stats = new HashMap<Long, Map<Long, DucklakeStatsIndex.ColumnStats>>();
+            var statsQuery = ADDED_STATS_QUERY.formatted(metadataDatabase, metadataDatabase, tableId, tableId, since, snapshotId, snapshotId);
+            for (var row : collect(connection, statsQuery, StatsRow.class)) {
+                stats.computeIfAbsent(row.dataFileId(), id -> new HashMap<>())
+                        .put(row.columnId(), new DucklakeStatsIndex.ColumnStats(row.minValue(), row.maxValue(), row.nullCount(), row.containsNan()));
+            }
+            var added = new ArrayList<DucklakeStatsIndex.DataFile>();
+            var filesQuery = ADDED_FILES_QUERY.formatted(metadataDatabase, tableId, since, snapshotId, snapshotId);
+            for (var row : collect(connection, filesQuery, FileRow.class)) {
+                added.add(new DucklakeStatsIndex.DataFile(row.dataFileId(), row.path(), Boolean.TRUE.equals(row.pathIsRelative()),
+                        row.fileSizeBytes(), Map.copyOf(stats.getOrDefault(row.dataFileId(), Map.of()))));
+            }
+            index.advance(snapshotId, removed, added);
+            logger.debug("Stats of table {} moved from snapshot {} to {}: {} files added, {} removed, {} live",
+                    tableId, since, snapshotId, added.size(), removed.size(), index.size());
+        }
+    }
+
+    private static <R extends Record> Iterable<R> collect(Connection connection, String sql, Class<R> rClass) throws SQLException {
+        try {
+            var result = new ArrayList<R>();
+            ConnectionPool.collectAll(connection, sql, rClass).forEach(result::add);
+            return result;
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException s) {
+                throw s;
+            }
+            throw e;
+        }
+    }
+
+    private Snapshot getLatestSnapshot() throws SQLException {
+        try (var connection = ConnectionPool.getConnection()) {
+            return collect(connection, getLatestSnapshotQuery(), Snapshot.class).iterator().next();
+        }
+    }
+
     public List<FileStatus> pruneFiles(String schema,
                                        String table,
                                        String sql) throws SQLException, JsonProcessingException {
@@ -205,7 +356,20 @@ public class DucklakePartitionPruning {
         return pruneFiles(schema, table, tree);
     }
 
-    private Long getTableId(String schema, String table) throws SQLException {
+    private Long getTableId(String schema, String table, long latestSchemaVersion) throws SQLException {
+        var key = "%s.%s".formatted(schema, table);
+        var cached = tableIdCache.get(key);
+        if (cached != null && cached.version() >= latestSchemaVersion) {
+            return cached.entity();
+        }
+        var tableId = getTableIdFromDB(schema, table);
+        if (tableId != null) {
+            tableIdCache.put(key, new VersionEntity<>(latestSchemaVersion, tableId));
+        }
+        return tableId;
+    }
+
+    private Long getTableIdFromDB(String schema, String table) throws SQLException {
         var query = getTableIdQuery(schema, table);
         try {
             return ConnectionPool.collectFirst(query, Long.class);
@@ -223,4 +387,13 @@ public class DucklakePartitionPruning {
 
     public record VersionEntity<E>(long version, E entity) {
     }
+
+    public record Snapshot(Long id, Long schemaVersion) {
+    }
+
+    public record FileRow(Long dataFileId, String path, Boolean pathIsRelative, Long fileSizeBytes) {
+    }
+
+    public record StatsRow(Long dataFileId, Long columnId, String minValue, String maxValue, Long nullCount, Boolean containsNan) {
+    }
 }
@@ -0,0 +1,211 @@
+package io.dazzleduck.sql.commons.ducklake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dazzleduck.sql.commons.Transformations;
+import io.dazzleduck.sql.commons.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.dazzleduck.sql.commons.ExpressionConstants.*;
+
+/**
+ * Min/max pruning of DuckLake files in Java, against a {@link DucklakeStatsIndex}.
+ *
+ * <p>Applies the same bounds {@code Transformations.replaceEqualMinMaxInQuery} builds for the DuckDB
+ * pruning query: each comparison of a table column with a constant, alone or in a top-level
+ * {@code AND}, drops files whose min is above an upper bound or whose max is below a lower bound;
+ * everything else keeps the file. A file without statistics for the column is kept.
+ *
+ * <p>{@link #compile} returns null when a bounded column has a type whose DuckDB cast is not mirrored
+ * here (floating point, time zones and others), and {@link #test} throws {@link IllegalArgumentException}
+ * when a statistic does not parse; the caller then runs the DuckDB query.
+ */
+final class DucklakeStatsFilter {
+
+    static final DucklakeStatsFilter ACCEPT_ALL = new DucklakeStatsFilter(List.of());
+
+    private final List<Bound> bounds;
+
+    private DucklakeStatsFilter(List<Bound> bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * @param where   the where clause of the query, or null
+     * @param columns the table's columns by name
+     * @return the filter, or null if it needs DuckDB to be evaluated
+     */
+    static DucklakeStatsFilter compile(JsonNode where, Map<String, DucklakePartitionPruning.ColumnInfo> columns) {
+        if (where == null || where.isNull()) {
+            return ACCEPT_ALL;
+        }
+        List<JsonNode> predicates = new ArrayList<>();
+        if (Transformations.IS_CONJUNCTION_AND.apply(where)) {
+            where.path(FIELD_CHILDREN).forEach(predicates::add);
+        } else if (Transformations.IS_COMPARISON.apply(where)) {
+            predicates.add(where);
+        }
+        var bounds = new ArrayList<Bound>();
+        for (var predicate : predicates) {
+            var references = Transformations.collectReferences(predicate);
+            var literals = Transformations.collectLiterals(predicate);
+            if (references.size() != 1 || literals.size() != 1) {
+                continue;
+            }
+            var name = Transformations.getReferenceName(references.get(0));
+            var column = name.length == 1 ? columns.get(name[0]) : null;
+            boolean upper = Transformations.isUpperBound(predicate);
+            boolean lower = Transformations.isLowerBound(predicate);
+            if (column == null || !(upper || lower)) {
+                continue;
+            }
+            var type = StatsType.of(column.type());
+            if (type == null) {
+                return null;
+            }
+            Comparable<?> literal;
+            try {
+                literal = literal(literals.get(0), type);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            bounds.add(new Bound(column.id(), type, literal, upper, lower));
+        }
+        return bounds.isEmpty() ? ACCEPT_ALL : new DucklakeStatsFilter(List.copyOf(bounds));
+    }
+
+    boolean acceptsAll() {
+        return bounds.isEmpty();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a statistic does not parse as its column type
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    boolean test(DucklakeStatsIndex.DataFile file) {
+        for (var bound : bounds) {
+            if (bound.literal() == null) {
+                // Comparing with NULL is never true
+                return false;
+            }
+            var stats = file.stats().get(bound.columnId());
+            if (stats == null) {
+                continue;
+            }
+            Comparable literal = bound.literal();
+            if (bound.upper() && stats.min() != null && bound.type().compare(bound.type().parse(stats.min()), literal) > 0) {
+                return false;
+            }
+            if (bound.lower() && stats.max() != null && bound.type().compare(bound.type().parse(stats.max()), literal) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Comparable<?> literal(JsonNode constant, StatsType type) {
+        var value = constant.path(FIELD_VALUE);
+        if (value.path(FIELD_IS_NULL).asBoolean(false)) {
+            return null;
+        }
+        return switch (value.path(FIELD_TYPE).path(FIELD_ID).asText()) {
+            case TYPE_VARCHAR, TYPE_INTEGER, TYPE_BIGINT -> type.parse(value.path(FIELD_VALUE).asText());
+            default -> throw new IllegalArgumentException("Unsupported constant " + constant);
+        };
+    }
+
+    /** An upper bound drops files with {@code min > literal}, a lower bound files with {@code max < literal}. */
+    private record Bound(long columnId, StatsType type, Comparable<?> literal, boolean upper, boolean lower) { }
+
+    private enum Kind { INTEGER, DECIMAL, VARCHAR, BOOLEAN, DATE, TIMESTAMP }
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd")
+            .optionalStart()
+            .appendPattern("[' ']['T']HH:mm")
+            .optionalStart()
+            .appendPattern(":ss")
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+            .optionalEnd()
+            .optionalEnd()
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .toFormatter(Locale.ROOT);
+
+    /** A DuckLake column type whose statistics and casts are evaluated here; {@code scale} is for decimals. */
+    private record StatsType(Kind kind, int scale) {
+
+        static StatsType of(String name) {
+            var type = name.trim().toLowerCase(Locale.ROOT);
+            if (type.startsWith("decimal(") && type.endsWith(")")) {
+                var parts = type.substring("decimal(".length(), type.length() - 1).split(",");
+                if (parts.length != 2) {
+                    return null;
+                }
+                try {
+                    return new StatsType(Kind.DECIMAL, Integer.parseInt(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            var kind = switch (type) {
+                case "int8", "int16", "int32", "int64", "uint8", "uint16", "uint32", "uint64",
+                     "tinyint", "smallint", "integer", "int", "bigint", "hugeint" -> Kind.INTEGER;
+                case "varchar", "string" -> Kind.VARCHAR;
+                case "boolean", "bool" -> Kind.BOOLEAN;
+                case "date" -> Kind.DATE;
+                case "timestamp", "timestamp_us", "timestamp_ms", "timestamp_ns", "timestamp_s" -> Kind.TIMESTAMP;
+                default -> null;
+            };
+            return kind == null ? null : new StatsType(kind, 0);
+        }
+
+        /**
+         * Parses a statistic or literal. Numbers DuckDB would round when casting, such as a fraction
+         * for an integer column, are rejected rather than compared unrounded.
+         */
+        Comparable<?> parse(String text) {
+            var trimmed = text.strip();
+            try {
+                return switch (kind) {
+                    case INTEGER, DECIMAL -> {
+                        var value = new BigDecimal(trimmed);
+                        if (value.stripTrailingZeros().scale() > scale) {
+                            throw new IllegalArgumentException("%s has more digits than %s".formatted(text, this));
+                        }
+                        yield value;
+                    }
+                    case VARCHAR -> text;
+                    case BOOLEAN -> switch (trimmed.toLowerCase(Locale.ROOT)) {
+                        case "true", "t" -> true;
+                        case "false", "f" -> false;
+                        default -> throw new IllegalArgumentException("Not a boolean: " + text);
+                    };
+                    case DATE -> LocalDate.parse(trimmed);
+                    case TIMESTAMP -> LocalDateTime.parse(trimmed, TIMESTAMP_FORMAT);
+                };
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Cannot parse %s as %s".formatted(text, kind), e);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int compare(Comparable left, Comparable right) {
+            return kind == Kind.VARCHAR
+                    ? StringUtils.compareCodePoints((String) left, (String) right)
+                    : left.compareTo(right);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.dazzleduck.sql.commons.ducklake;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The live data files of one DuckLake table as of a snapshot, with their column statistics, kept in
+ * memory so repeat queries are pruned without reading the metadata catalog. {@link #advance} moves the
+ * index to a later snapshot from only the files added and removed in between.
+ *
+ * <p>Not thread-safe; {@link DucklakePartitionPruning} holds the index's monitor while refreshing or
+ * reading it.
+ */
+public final class DucklakeStatsIndex {
+
+    /** Statistics of one column of a file, as stored in {@code ducklake_file_column_stats}. */
+    public record ColumnStats(String min, String max, Long nullCount, Boolean containsNan) { }
+
+    /** A data file; {@code stats} is keyed by column id. */
+    public record DataFile(long id, String path, boolean pathIsRelative, long size, Map<Long, ColumnStats> stats) { }
+
+    private final TreeMap<Long, DataFile> files = new TreeMap<>();
+    private volatile long snapshotId = -1;
+
+    /** The snapshot the index reflects, or -1 before it is first loaded. */
+    public long snapshotId() {
+        return snapshotId;
+    }
+
+    /** Live files in {@code data_file_id} order. */
+    public Collection<DataFile> files() {
+        return Collections.unmodifiableCollection(files.values());
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * @param snapshotId the snapshot the index reflects after the change
+     * @param removed    ids of files that ended since the previous snapshot
+     * @param added      files that began since the previous snapshot and are still live
+     */
+    public void advance(long snapshotId, Collection<Long> removed, Collection<DataFile> added) {
+        if (snapshotId < this.snapshotId) {
+            throw new IllegalArgumentException("Snapshot %s is older than %s".formatted(snapshotId, this.snapshotId));
+        }
+        removed.forEach(files::remove);
+        for (var file : added) {
+            files.put(file.id(), file);
+        }
+        this.snapshotId = snapshotId;
+    }
+}
@@ -0,0 +1,87 @@
+package io.dazzleduck.sql.commons.hive;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reads cached {@link HiveFileListingCache.ListedFile}s in the shape of the {@code read_blob} partition
+ * query: {@code filename}, {@code size}, {@code last_modified} (epoch millis) and the escaped
+ * {@code partitions}. Vectors are allocated per batch since {@link io.dazzleduck.sql.commons.MappedReader}
+ * transfers them away.
+ */
+class FileListingReader extends ArrowReader {
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            Field.nullable("filename", new ArrowType.Utf8()),
+            Field.nullable("size", new ArrowType.Int(64, true)),
+            Field.nullable("last_modified", new ArrowType.Int(64, true)),
+            new Field("partitions", FieldType.nullable(new ArrowType.List()),
+                    List.of(Field.nullable("element", new ArrowType.Utf8())))));
+
+    private final List<HiveFileListingCache.ListedFile> files;
+    private final int batchSize;
+    private int position;
+
+    FileListingReader(BufferAllocator allocator, List<HiveFileListingCache.ListedFile> files, int batchSize) {
+        super(allocator);
+        this.files = files;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean loadNextBatch() throws IOException {
+        var root = getVectorSchemaRoot();
+        if (position >= files.size()) {
+            return false;
+        }
+        int count = Math.min(batchSize, files.size() - position);
+        var filename = (VarCharVector) root.getVector("filename");
+        var size = (BigIntVector) root.getVector("size");
+        var lastModified = (BigIntVector) root.getVector("last_modified");
+        var partitions = (ListVector) root.getVector("partitions");
+        root.getFieldVectors().forEach(vector -> vector.allocateNew());
+        var writer = partitions.getWriter();
+        for (int i = 0; i < count; i++) {
+            var file = files.get(position + i);
+            filename.setSafe(i, file.status().fileName().getBytes(StandardCharsets.UTF_8));
+            size.setSafe(i, file.status().size());
+            lastModified.setSafe(i, file.status().lastModified());
+            writer.setPosition(i);
+            writer.startList();
+            for (var partition : file.partitions()) {
+                writer.writeVarChar(new Text(partition));
+            }
+            writer.endList();
+        }
+        writer.setValueCount(count);
+        root.setRowCount(count);
+        position += count;
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        return 0;
+    }
+
+    @Override
+    protected void closeReadSource() throws IOException {
+    }
+
+    @Override
+    protected Schema readSchema() throws IOException {
+        return SCHEMA;
+    }
+}
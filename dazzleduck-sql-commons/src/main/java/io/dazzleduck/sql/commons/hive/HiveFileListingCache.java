@@ -0,0 +1,349 @@
+package io.dazzleduck.sql.commons.hive;
+
+import io.dazzleduck.sql.commons.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * File listings of local hive tables, kept between queries so planning does not glob the whole
+ * table each time.
+ *
+ * <p>A listing is the tree of partition directories of a table, each with the modification time
+ * it had when it was listed. A lookup checks those times and re-lists only the directories that
+ * changed: adding or removing a partition touches its parent, adding or removing a file touches
+ * its partition directory. A directory modified shortly before it was listed is re-listed on the
+ * next lookup as well, since a later change may fall in the same timestamp tick. A file rewritten
+ * in place changes no directory, so a table is listed from scratch once its listing is older than
+ * the configured TTL.
+ *
+ * <p>Tables are evicted least recently used once more than {@code maxFiles} files are cached.
+ * Only local directories are cached; object store paths and globs return null, for the caller
+ * to list them with DuckDB.
+ */
+public final class HiveFileListingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HiveFileListingCache.class);
+
+    /** A listed file and the values of its partition directories, outermost first, still escaped. */
+    public record ListedFile(FileStatus status, List<String> partitions) { }
+
+    /** A directory modified this close to its listing is re-listed on the next lookup. */
+    private static final long RACY_MILLIS = 2000;
+
+    private static final String FILE_SUFFIX = ".parquet";
+
+    private final Clock clock;
+    private volatile HiveListingCacheConfig config;
+
+    // Guarded by this
+    private final LinkedHashMap<Key, Table> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedFiles;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder fullListings = new LongAdder();
+    private final LongAdder relistedDirectories = new LongAdder();
+    private final LongAdder listingNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HiveFileListingCache(HiveListingCacheConfig config) {
+        this(config, Clock.systemUTC());
+    }
+
+    public HiveFileListingCache(HiveListingCacheConfig config, Clock clock) {
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /** Whether {@code basePath} is a plain local path, as opposed to an object store URL or a glob. */
+    public static boolean isCacheable(String basePath) {
+        return basePath != null && !basePath.isBlank() && !basePath.contains("://")
+                && basePath.chars().noneMatch(c -> c == '*' || c == '?' || c == '[');
+    }
+
+    /**
+     * Lists the {@code .parquet} files {@code partitionLevels} directories below {@code basePath},
+     * as {@code read_blob('<basePath>/*}{@code /.../*.parquet')} would, with file names in the same
+     * form. Returns null when the cache is disabled or the path is not a local directory.
+     */
+    public List<ListedFile> list(String basePath, int partitionLevels) throws IOException {
+        var config = this.config;
+        if (!config.enabled() || !isCacheable(basePath) || !Files.isDirectory(Path.of(basePath))) {
+            return null;
+        }
+        lookups.increment();
+        var key = new Key(basePath, partitionLevels);
+        Table table;
+        synchronized (this) {
+            table = tables.computeIfAbsent(key, k -> new Table(k.basePath(), k.partitionLevels()));
+        }
+        long start = System.nanoTime();
+        List<ListedFile> files;
+        synchronized (table) {
+            files = table.refresh(config.ttl().toMillis());
+        }
+        long elapsed = System.nanoTime() - start;
+        listingNanos.add(elapsed);
+        logger.debug("Listed {} files of {} in {} ms", files.size(), basePath, elapsed / 1_000_000);
+        synchronized (this) {
+            if (tables.get(key) == table) {
+                cachedFiles += files.size() - table.accountedFiles;
+                table.accountedFiles = files.size();
+            }
+            var eldest = tables.entrySet().iterator();
+            while (cachedFiles > config.maxFiles() && eldest.hasNext()) {
+                cachedFiles -= eldest.next().getValue().accountedFiles;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return files;
+    }
+
+    /** Applies new settings; disabling the cache drops all listings. */
+    public synchronized void setConfig(HiveListingCacheConfig config) {
+        this.config = config;
+        if (!config.enabled()) {
+            clear();
+        }
+    }
+
+    public HiveListingCacheConfig getConfig() {
+        return config;
+    }
+
+    public synchronized void clear() {
+        tables.clear();
+        cachedFiles = 0;
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /** Lookups that listed a table from scratch, because it was not cached or its TTL passed. */
+    public long getFullListings() {
+        return fullListings.sum();
+    }
+
+    /** Directories listed, by full listings and by lookups that found them changed. */
+    public long getRelistedDirectories() {
+        return relistedDirectories.sum();
+    }
+
+    /** Total time lookups spent checking and listing directories. */
+    public long getListingMillis() {
+        return listingNanos.sum() / 1_000_000;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getCachedTables() {
+        return tables.size();
+    }
+
+    public synchronized long getCachedFiles() {
+        return cachedFiles;
+    }
+
+    /** Age of the oldest full listing held, i.e. how long a file rewritten in place may go unnoticed. */
+    public synchronized long getStalenessMillis() {
+        long now = clock.millis();
+        long oldest = 0;
+        for (var table : tables.values()) {
+            if (table.listedAt >= 0) {
+                oldest = Math.max(oldest, now - table.listedAt);
+            }
+        }
+        return oldest;
+    }
+
+    private record Key(String basePath, int partitionLevels) { }
+
+    private static final class Directory {
+        private final String path;
+        private final List<String> partitions;
+        private long modified;
+        private long listedAt;
+        private List<Directory> children = List.of();
+        private List<ListedFile> files = List.of();
+
+        private Directory(String path, List<String> partitions) {
+            this.path = path;
+            this.partitions = partitions;
+        }
+
+        private String name() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+
+    private final class Table {
+        private final String basePath;
+        private final int levels;
+        private Directory root;
+        /** Clock millis of the last full listing, negative before the first. */
+        private long listedAt = -1;
+        private List<ListedFile> files = List.of();
+        private boolean changed;
+        /** Files counted in {@link #cachedFiles}; guarded by the cache. */
+        private long accountedFiles;
+
+        private Table(String basePath, int levels) {
+            this.basePath = basePath;
+            this.levels = levels;
+        }
+
+        private List<ListedFile> refresh(long ttlMillis) throws IOException {
+            long now = clock.millis();
+            changed = false;
+            if (root == null || now - listedAt >= ttlMillis) {
+                fullListings.increment();
+                root = new Directory(basePath, List.of());
+                relist(root, 0);
+                listedAt = now;
+            } else {
+                root = refresh(root, 0);
+            }
+            if (root == null) {
+                files = List.of();
+            } else if (changed) {
+                var all = new ArrayList<ListedFile>();
+                collect(root, all);
+                files = List.copyOf(all);
+            }
+            return files;
+        }
+
+        /** Re-lists {@code dir} if it changed, else checks its subdirectories; null if it is gone. */
+        private Directory refresh(Directory dir, int level) throws IOException {
+            long modified;
+            try {
+                modified = modifiedMillis(dir.path);
+            } catch (NoSuchFileException e) {
+                changed = true;
+                return null;
+            }
+            if (modified != dir.modified || modified >= dir.listedAt - RACY_MILLIS) {
+                try {
+                    relist(dir, level);
+                } catch (NoSuchFileException e) {
+                    changed = true;
+                    return null;
+                }
+                return dir;
+            }
+            if (level < levels) {
+                var children = new ArrayList<Directory>(dir.children.size());
+                for (var child : dir.children) {
+                    var refreshed = refresh(child, level + 1);
+                    if (refreshed != null) {
+                        children.add(refreshed);
+                    }
+                }
+                if (children.size() != dir.children.size()) {
+                    dir.children = children;
+                }
+            }
+            return dir;
+        }
+
+        /** Lists {@code dir}, keeping the listings of subdirectories that did not change. */
+        private void relist(Directory dir, int level) throws IOException {
+            relistedDirectories.increment();
+            changed = true;
+            // Taken before listing, so a change made while listing is seen by the next lookup
+            dir.modified = modifiedMillis(dir.path);
+            dir.listedAt = System.currentTimeMillis();
+            var prefix = dir.path + "/";
+            if (level < levels) {
+                var existing = new HashMap<String, Directory>();
+                dir.children.forEach(child -> existing.put(child.name(), child));
+                var children = new ArrayList<Directory>();
+                try (var entries = Files.newDirectoryStream(Path.of(dir.path))) {
+                    for (var entry : entries) {
+                        var name = entry.getFileName().toString();
+                        if (name.startsWith(".") || !Files.isDirectory(entry)) {
+                            continue;
+                        }
+                        var child = existing.get(name);
+                        if (child != null) {
+                            child = refresh(child, level + 1);
+                        } else {
+                            var partitions = new ArrayList<>(dir.partitions);
+                            partitions.add(partitionValue(name));
+                            child = new Directory(prefix + name, List.copyOf(partitions));
+                            try {
+                                relist(child, level + 1);
+                            } catch (NoSuchFileException e) {
+                                child = null;
+                            }
+                        }
+                        if (child != null) {
+                            children.add(child);
+                        }
+                    }
+                }
+                children.sort(Comparator.comparing(child -> child.path));
+                dir.children = children;
+            } else {
+                var files = new ArrayList<ListedFile>();
+                try (var entries = Files.newDirectoryStream(Path.of(dir.path))) {
+                    for (var entry : entries) {
+                        var name = entry.getFileName().toString();
+                        if (name.startsWith(".") || !name.endsWith(FILE_SUFFIX)) {
+                            continue;
+                        }
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                        } catch (NoSuchFileException e) {
+                            continue;
+                        }
+                        if (attributes.isRegularFile()) {
+                            files.add(new ListedFile(new FileStatus(prefix + name, attributes.size(),
+                                    attributes.lastModifiedTime().toMillis()), dir.partitions));
+                        }
+                    }
+                }
+                files.sort(Comparator.comparing(file -> file.status().fileName()));
+                dir.files = files;
+            }
+        }
+
+        private void collect(Directory dir, List<ListedFile> result) {
+            result.addAll(dir.files);
+            for (var child : dir.children) {
+                collect(child, result);
+            }
+        }
+    }
+
+    private static long modifiedMillis(String path) throws IOException {
+        return Files.getLastModifiedTime(Path.of(path)).toMillis();
+    }
+
+    /** The value of a {@code key=value} directory name, as {@code split_part(name, '=', 2)} takes it. */
+    static String partitionValue(String name) {
+        int start = name.indexOf('=');
+        if (start < 0) {
+            return "";
+        }
+        int end = name.indexOf('=', start + 1);
+        return end < 0 ? name.substring(start + 1) : name.substring(start + 1, end);
+    }
+}
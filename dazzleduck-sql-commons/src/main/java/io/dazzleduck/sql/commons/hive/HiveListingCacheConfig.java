@@ -0,0 +1,39 @@
+package io.dazzleduck.sql.commons.hive;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link HiveFileListingCache} ({@code dazzleduck_server.hive_listing_cache}).
+ *
+ * @param ttl      a table is listed from scratch once its listing is this old
+ * @param maxFiles files cached across all tables; least recently used tables are evicted beyond it
+ */
+public record HiveListingCacheConfig(
+        boolean enabled,
+        Duration ttl,
+        long maxFiles
+) {
+
+    public static final HiveListingCacheConfig DEFAULT = new HiveListingCacheConfig(true, Duration.ofMinutes(5), 2_000_000);
+
+    public static final HiveListingCacheConfig DISABLED = new HiveListingCacheConfig(false, Duration.ZERO, 0);
+
+    public static HiveListingCacheConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.HIVE_LISTING_CACHE_KEY)) {
+            return DEFAULT;
+        }
+        var cache = config.getConfig(ConfigConstants.HIVE_LISTING_CACHE_KEY);
+        if (!cache.getBoolean(ConfigConstants.ENABLED_KEY)) {
+            return DISABLED;
+        }
+        return new HiveListingCacheConfig(
+                true,
+                cache.hasPath(ConfigConstants.HIVE_LISTING_CACHE_TTL_KEY)
+                        ? cache.getDuration(ConfigConstants.HIVE_LISTING_CACHE_TTL_KEY) : DEFAULT.ttl(),
+                cache.hasPath(ConfigConstants.HIVE_LISTING_CACHE_MAX_FILES_KEY)
+                        ? cache.getLong(ConfigConstants.HIVE_LISTING_CACHE_MAX_FILES_KEY) : DEFAULT.maxFiles());
+    }
+}
@@ -0,0 +1,438 @@
+package io.dazzleduck.sql.commons.hive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dazzleduck.sql.commons.FileStatus;
+import io.dazzleduck.sql.commons.util.StringUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import static io.dazzleduck.sql.commons.ExpressionConstants.*;
+
+/**
+ * Partition predicates of a hive table scan, evaluated in Java over the file listing instead of in
+ * DuckDB over a temp table of it.
+ *
+ * <p>Covers what {@code Transformations.removeNonPartitionColumnsPredicatesInQuery} leaves of typical
+ * filters: comparisons, {@code BETWEEN}, {@code IN}, {@code IS [NOT] NULL}, {@code NOT}, {@code AND} and
+ * {@code OR} over partition columns of type varchar, integer, boolean or date, and literals DuckDB would
+ * cast to those types. {@link #compile} returns null for anything else, and {@link #test} throws
+ * {@link IllegalArgumentException} for a partition value that does not cast to its column type; in
+ * both cases the caller runs the pruning query in DuckDB, which decides the outcome. Evaluation follows
+ * SQL three-valued logic, a file being kept only when the filter is true.
+ */
+public final class HivePartitionFilter {
+
+    private static final HivePartitionFilter ACCEPT_ALL = new HivePartitionFilter(null, new ColumnType[0]);
+
+    private final Expression expression;
+    private final ColumnType[] columns;
+
+    private HivePartitionFilter(Expression expression, ColumnType[] columns) {
+        this.expression = expression;
+        this.columns = columns;
+    }
+
+    /**
+     * @param where              the where clause left after removing predicates on other columns, or null
+     * @param partitionDataTypes name and type of each partition level
+     * @return the filter, or null if it needs DuckDB to be evaluated
+     */
+    public static HivePartitionFilter compile(JsonNode where, String[][] partitionDataTypes) {
+        if (where == null || where.isNull()) {
+            return ACCEPT_ALL;
+        }
+        var columns = new ColumnType[partitionDataTypes.length];
+        var compiler = new Compiler(partitionDataTypes, columns);
+        try {
+            var expression = compiler.predicate(where);
+            return new HivePartitionFilter(expression, columns);
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    public boolean acceptsAll() {
+        return expression == null;
+    }
+
+    /**
+     * @param partitions the escaped partition values of a file, outermost first
+     * @throws IllegalArgumentException if a value the filter reads does not cast to its column type
+     */
+    public boolean test(List<String> partitions) {
+        if (expression == null) {
+            return true;
+        }
+        var row = new Comparable<?>[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null && i < partitions.size() && partitions.get(i) != null) {
+                row[i] = columns[i].parse(HivePartitionPruning.unescapePathName(partitions.get(i)));
+            }
+        }
+        return expression.evaluate(row) == Boolean.TRUE;
+    }
+
+    /**
+     * Keeps the files the filter is true for, oldest first. Files of the same partition share one
+     * evaluation.
+     *
+     * @throws IllegalArgumentException if a partition value does not cast to its column type
+     */
+    public List<FileStatus> prune(List<HiveFileListingCache.ListedFile> files) {
+        var decisions = new HashMap<List<String>, Boolean>();
+        var result = new ArrayList<FileStatus>();
+        for (var file : files) {
+            var partitions = file.partitions();
+            var keep = decisions.get(partitions);
+            if (keep == null) {
+                keep = test(partitions);
+                decisions.put(partitions, keep);
+            }
+            if (keep) {
+                result.add(file.status());
+            }
+        }
+        result.sort(Comparator.comparing(FileStatus::lastModified));
+        return result;
+    }
+
+    /** Partition column and cast target types the filter can evaluate. */
+    enum ColumnType {
+        VARCHAR(Kind.STRING),
+        TINYINT(Kind.INTEGER, Byte.MIN_VALUE, Byte.MAX_VALUE),
+        SMALLINT(Kind.INTEGER, Short.MIN_VALUE, Short.MAX_VALUE),
+        INTEGER(Kind.INTEGER, Integer.MIN_VALUE, Integer.MAX_VALUE),
+        BIGINT(Kind.INTEGER, Long.MIN_VALUE, Long.MAX_VALUE),
+        BOOLEAN(Kind.BOOLEAN),
+        DATE(Kind.DATE);
+
+        private final Kind kind;
+        private final long min;
+        private final long max;
+
+        ColumnType(Kind kind) {
+            this(kind, 0, 0);
+        }
+
+        ColumnType(Kind kind, long min, long max) {
+            this.kind = kind;
+            this.min = min;
+            this.max = max;
+        }
+
+        /** The type for a DuckDB type name or alias, or null if not supported. */
+        static ColumnType of(String name) {
+            return switch (name.trim().toUpperCase(Locale.ROOT)) {
+                case "VARCHAR", "STRING", "TEXT", "CHAR", "BPCHAR" -> VARCHAR;
+                case "TINYINT", "INT1" -> TINYINT;
+                case "SMALLINT", "INT2", "SHORT" -> SMALLINT;
+                case "INTEGER", "INT", "INT4", "SIGNED" -> INTEGER;
+                case "BIGINT", "INT8", "LONG" -> BIGINT;
+                case "BOOLEAN", "BOOL", "LOGICAL" -> BOOLEAN;
+                case "DATE" -> DATE;
+                default -> null;
+            };
+        }
+
+        /** Casts text as DuckDB would, throwing where DuckDB would raise a conversion error. */
+        Comparable<?> parse(String text) {
+            switch (kind) {
+                case STRING -> {
+                    return text;
+                }
+                case INTEGER -> {
+                    long value = Long.parseLong(text.strip());
+                    if (value < min || value > max) {
+                        throw new IllegalArgumentException(text + " is out of range for " + this);
+                    }
+                    return value;
+                }
+                case BOOLEAN -> {
+                    return switch (text.strip().toLowerCase(Locale.ROOT)) {
+                        case "true", "t" -> true;
+                        case "false", "f" -> false;
+                        default -> throw new IllegalArgumentException("Not a boolean: " + text);
+                    };
+                }
+                default -> {
+                    try {
+                        return LocalDate.parse(text.strip());
+                    } catch (DateTimeParseException e) {
+                        throw new IllegalArgumentException("Not a date: " + text, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private enum Kind { STRING, INTEGER, BOOLEAN, DATE }
+
+    private interface Expression {
+        /** TRUE, FALSE or null for unknown. */
+        Boolean evaluate(Comparable<?>[] row);
+    }
+
+    /** A column or literal operand; literals typed by a cast or by their constant type. */
+    private record Operand(int column, Kind kind, Object value, boolean untyped) {
+
+        boolean isColumn() {
+            return column >= 0;
+        }
+
+        Comparable<?> get(Comparable<?>[] row) {
+            return isColumn() ? row[column] : (Comparable<?>) value;
+        }
+    }
+
+    private static final class Unsupported extends RuntimeException {
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Compiler {
+        private final String[][] partitionDataTypes;
+        private final ColumnType[] columns;
+
+        private Compiler(String[][] partitionDataTypes, ColumnType[] columns) {
+            this.partitionDataTypes = partitionDataTypes;
+            this.columns = columns;
+        }
+
+        private Expression predicate(JsonNode node) {
+            var clazz = node.path(FIELD_CLASS).asText();
+            var type = node.path(FIELD_TYPE).asText();
+            switch (clazz) {
+                case CONJUNCTION_CLASS -> {
+                    var children = new ArrayList<Expression>();
+                    node.path(FIELD_CHILDREN).forEach(child -> children.add(predicate(child)));
+                    if (CONJUNCTION_TYPE_AND.equals(type)) {
+                        return row -> and(children, row);
+                    }
+                    if (CONJUNCTION_TYPE_OR.equals(type)) {
+                        return row -> or(children, row);
+                    }
+                }
+                case COMPARISON_CLASS -> {
+                    return comparison(type, node.get(FIELD_LEFT), node.get(FIELD_RIGHT));
+                }
+                case BETWEEN_CLASS -> {
+                    var lower = comparison(COMPARE_TYPE_GREATERTHANOREQUALTO, node.get(FIELD_INPUT), node.get(FIELD_LOWER));
+                    var upper = comparison(COMPARE_TYPE_LESSTHANOREQUALTO, node.get(FIELD_INPUT), node.get(FIELD_UPPER));
+                    var both = List.of(lower, upper);
+                    return row -> and(both, row);
+                }
+                case OPERATOR_CLASS -> {
+                    return operator(type, node.path(FIELD_CHILDREN));
+                }
+                case CONSTANT_CLASS, CAST_CLASS -> {
+                    var constant = operand(node);
+                    var value = coerce(constant, ColumnType.BOOLEAN);
+                    return row -> (Boolean) value;
+                }
+                default -> {
+                }
+            }
+            throw new Unsupported();
+        }
+
+        private Expression operator(String type, JsonNode children) {
+            if (children.isEmpty()) {
+                throw new Unsupported();
+            }
+            switch (type) {
+                case OPERATOR_TYPE_NOT -> {
+                    var child = predicate(children.get(0));
+                    return row -> not(child.evaluate(row));
+                }
+                case OPERATOR_TYPE_IS_NULL, OPERATOR_TYPE_IS_NOT_NULL -> {
+                    var input = operand(children.get(0));
+                    if (!input.isColumn()) {
+                        throw new Unsupported();
+                    }
+                    boolean isNull = OPERATOR_TYPE_IS_NULL.equals(type);
+                    return row -> (row[input.column()] == null) == isNull;
+                }
+                case COMPARE_IN_TYPE, COMPARE_NOT_IN_TYPE -> {
+                    var equals = new ArrayList<Expression>();
+                    for (int i = 1; i < children.size(); i++) {
+                        equals.add(comparison(COMPARE_TYPE_EQUAL, children.get(0), children.get(i)));
+                    }
+                    if (equals.isEmpty()) {
+                        throw new Unsupported();
+                    }
+                    boolean negated = COMPARE_NOT_IN_TYPE.equals(type);
+                    return row -> {
+                        var in = or(equals, row);
+                        return negated ? not(in) : in;
+                    };
+                }
+                default -> throw new Unsupported();
+            }
+        }
+
+        private Expression comparison(String type, JsonNode leftNode, JsonNode rightNode) {
+            if (leftNode == null || rightNode == null) {
+                throw new Unsupported();
+            }
+            var left = operand(leftNode);
+            var right = operand(rightNode);
+            if (left.isColumn() && right.isColumn()) {
+                if (columns[left.column()].kind != columns[right.column()].kind) {
+                    throw new Unsupported();
+                }
+            } else if (left.isColumn()) {
+                right = literal(coerce(right, columns[left.column()]), columns[left.column()].kind);
+            } else if (right.isColumn()) {
+                left = literal(coerce(left, columns[right.column()]), columns[right.column()].kind);
+            } else {
+                throw new Unsupported();
+            }
+            var l = left;
+            var r = right;
+            return switch (type) {
+                case COMPARE_TYPE_EQUAL -> row -> test(l, r, row, c -> c == 0);
+                case COMPARE_TYPE_NOTEQUAL -> row -> test(l, r, row, c -> c != 0);
+                case COMPARE_TYPE_LESSTHAN -> row -> test(l, r, row, c -> c < 0);
+                case COMPARE_TYPE_LESSTHANOREQUALTO -> row -> test(l, r, row, c -> c <= 0);
+                case COMPARE_TYPE_GREATERTHAN -> row -> test(l, r, row, c -> c > 0);
+                case COMPARE_TYPE_GREATERTHANOREQUALTO -> row -> test(l, r, row, c -> c >= 0);
+                default -> throw new Unsupported();
+            };
+        }
+
+        private Operand operand(JsonNode node) {
+            var clazz = node.path(FIELD_CLASS).asText();
+            switch (clazz) {
+                case COLUMN_REF_CLASS -> {
+                    var names = node.path(FIELD_COLUMN_NAMES);
+                    if (names.size() == 1) {
+                        var name = names.get(0).asText();
+                        for (int i = 0; i < partitionDataTypes.length; i++) {
+                            if (partitionDataTypes[i][0].equals(name)) {
+                                if (columns[i] == null) {
+                                    columns[i] = ColumnType.of(partitionDataTypes[i][1]);
+                                    if (columns[i] == null) {
+                                        throw new Unsupported();
+                                    }
+                                }
+                                return new Operand(i, columns[i].kind, null, false);
+                            }
+                        }
+                    }
+                }
+                case CONSTANT_CLASS -> {
+                    var value = node.path(FIELD_VALUE);
+                    if (value.path(FIELD_IS_NULL).asBoolean(false)) {
+                        return literal(null, null);
+                    }
+                    var raw = value.path(FIELD_VALUE);
+                    switch (value.path(FIELD_TYPE).path(FIELD_ID).asText()) {
+                        case TYPE_VARCHAR -> {
+                            return new Operand(-1, Kind.STRING, raw.asText(), true);
+                        }
+                        case TYPE_INTEGER, TYPE_BIGINT -> {
+                            if (raw.canConvertToLong()) {
+                                return literal(raw.asLong(), Kind.INTEGER);
+                            }
+                        }
+                        case TYPE_BOOLEAN -> {
+                            if (raw.isBoolean()) {
+                                return literal(raw.asBoolean(), Kind.BOOLEAN);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+                case CAST_CLASS -> {
+                    if (!node.path(FIELD_TRY_CAST).asBoolean(false)) {
+                        var target = ColumnType.of(node.path(FIELD_CAST_TYPE).path(FIELD_ID).asText());
+                        var child = operand(node.path(FIELD_CHILD));
+                        if (target != null && !child.isColumn()) {
+                            return literal(coerce(child, target), target.kind);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+            throw new Unsupported();
+        }
+
+        /** The literal's value as {@code type}, for the casts DuckDB applies implicitly. */
+        private static Object coerce(Operand literal, ColumnType type) {
+            if (literal.value() == null) {
+                return null;
+            }
+            if (literal.untyped()) {
+                try {
+                    return type.parse((String) literal.value());
+                } catch (IllegalArgumentException e) {
+                    throw new Unsupported();
+                }
+            }
+            if (literal.kind() == type.kind) {
+                return literal.value();
+            }
+            throw new Unsupported();
+        }
+
+        private static Operand literal(Object value, Kind kind) {
+            return new Operand(-1, kind, value, false);
+        }
+    }
+
+    private interface Outcome {
+        boolean of(int comparison);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Boolean test(Operand left, Operand right, Comparable<?>[] row, Outcome outcome) {
+        Comparable l = left.get(row);
+        Comparable r = right.get(row);
+        if (l == null || r == null) {
+            return null;
+        }
+        int comparison = l instanceof String ls ? StringUtils.compareCodePoints(ls, (String) r) : l.compareTo(r);
+        return outcome.of(comparison);
+    }
+
+    private static Boolean and(List<Expression> children, Comparable<?>[] row) {
+        Boolean result = Boolean.TRUE;
+        for (var child : children) {
+            var value = child.evaluate(row);
+            if (value == Boolean.FALSE) {
+                return Boolean.FALSE;
+            }
+            if (value == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    private static Boolean or(List<Expression> children, Comparable<?>[] row) {
+        Boolean result = Boolean.FALSE;
+        for (var child : children) {
+            var value = child.evaluate(row);
+            if (value == Boolean.TRUE) {
+                return Boolean.TRUE;
+            }
+            if (value == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    private static Boolean not(Boolean value) {
+        return value == null ? null : !value;
+    }
+}
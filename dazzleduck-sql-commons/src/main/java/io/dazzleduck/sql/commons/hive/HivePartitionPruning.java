@@ -19,6 +19,8 @@ import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.util.Text;
 import org.duckdb.DuckDBConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -29,6 +31,8 @@ import java.util.stream.Collectors;
 
 public class HivePartitionPruning extends PartitionPruning {
 
+    private static final Logger logger = LoggerFactory.getLogger(HivePartitionPruning.class);
+
     private static final String READ_PARTITION_BLOB_SQL = "SELECT filename, size, epoch_ms(last_modified) as last_modified, list_transform(parse_path(substring(filename, len('%s') + 2))[1:%s], x -> split_part(x, '=', 2)) as partitions " +
             "FROM read_blob('%s')";
     private static final String PARTITION_SQL = "WITH A AS (SELECT * FROM %s)," +
@@ -36,6 +40,9 @@ public class HivePartitionPruning extends PartitionPruning {
             " SELECT * FROM B where %s";
     private static final String READ_BLOB_NO_PARTITION_SQL = "SELECT filename, size, epoch_ms(last_modified) as last_modified FROM read_blob('%s')";
 
+    /** Listings of local tables, configured by the server from {@code dazzleduck_server.hive_listing_cache}. */
+    public static final HiveFileListingCache LISTING_CACHE = new HiveFileListingCache(HiveListingCacheConfig.DEFAULT);
+
     public static final Field UNSCAPE_PARTITION_FIELD =
             new Field("unescaped_partitions", FieldType.notNullable(new ArrowType.List()),
                     List.of(new Field("children", FieldType.notNullable(new ArrowType.Utf8()), null)));
@@ -93,10 +100,13 @@ public class HivePartitionPruning extends PartitionPruning {
     }
 
     private static String doQueryTransformation(Connection connection, String sql, Set<String> partitionColumns) throws SQLException, JsonProcessingException {
+        return Transformations.parseToSql(connection, transformToTree(connection, sql, partitionColumns));
+    }
+
+    private static JsonNode transformToTree(Connection connection, String sql, Set<String> partitionColumns) throws JsonProcessingException {
         JsonNode tree = Transformations.parseToTree(connection, sql);
-        JsonNode newTree = Transformations.transform(tree, Transformations.IS_SELECT,
+        return Transformations.transform(tree, Transformations.IS_SELECT,
                 Transformations.removeNonPartitionColumnsPredicatesInQuery(partitionColumns));
-        return Transformations.parseToSql(connection, newTree);
     }
 
     /**
@@ -114,6 +124,10 @@ public class HivePartitionPruning extends PartitionPruning {
      *                      3. Serialize the data in step 2 as temp table and run the pruning sql
      *                      Final Sql looks something like `select size, filename, cast(unescape_partitions[1] as date) as dt, ....from temp table where dt = ?
      *                      4. Remove all the filterExpression which do not have partition columns
+     *                      Local tables are listed through {@link #LISTING_CACHE} instead of read_blob in step 1.
+     *                      Steps 2 and 3 run only when {@link HivePartitionFilter} cannot evaluate the remaining
+     *                      filter in Java over the listing, which covers comparisons, IN and IS NULL on
+     *                      varchar, integer, boolean and date partitions.
      */
     public static List<FileStatus> pruneFiles(String basePath,
                                               String filterExpression,
@@ -121,19 +135,30 @@ public class HivePartitionPruning extends PartitionPruning {
         if (partitionDataTypes == null || partitionDataTypes.length == 0) {
             return pruneFilesNoPartition(basePath);
         }
-        String firstSql = getQueryString(basePath, partitionDataTypes.length);
         String tempTableName = "connection_temp_table_" + System.currentTimeMillis();
         List<FileStatus> result = new ArrayList<>();
         try (DuckDBConnection readConnection = ConnectionPool.getConnection()) {
             String partitionSql = HivePartitionPruning.getPartitionSql(partitionDataTypes, tempTableName, filterExpression);
-            String transformed = doQueryTransformation(readConnection, partitionSql,
+            JsonNode transformed = transformToTree(readConnection, partitionSql,
                     Arrays.stream(partitionDataTypes).map(ss -> ss[0]).collect(Collectors.toSet()));
+            var listed = listFiles(readConnection, basePath, partitionDataTypes.length);
+            var filter = HivePartitionFilter.compile(
+                    Transformations.getFirstStatementNode(transformed).get(ExpressionConstants.FIELD_WHERE_CLAUSE),
+                    partitionDataTypes);
+            if (filter != null) {
+                try {
+                    return filter.prune(listed);
+                } catch (IllegalArgumentException e) {
+                    logger.debug("Partition values of {} need DuckDB casts: {}", basePath, e.getMessage());
+                }
+            }
             try (DuckDBConnection writeConnection = ConnectionPool.getConnection();
                  BufferAllocator allocator = new RootAllocator();
-                 ArrowReader reader1 = ConnectionPool.getReader(readConnection, allocator, firstSql, 1000);
+                 ArrowReader reader1 = new FileListingReader(allocator, listed, 1000);
                  Closeable ignored = ConnectionPool.createTempTableWithMap(writeConnection, allocator, reader1,
                          UNESCAPE_FN, List.of("partitions"), UNSCAPE_PARTITION_FIELD, tempTableName);
-                 ArrowReader reader2 = ConnectionPool.getReader(writeConnection, allocator, transformed, 100)) {
+                 ArrowReader reader2 = ConnectionPool.getReader(writeConnection, allocator,
+                         Transformations.parseToSql(readConnection, transformed), 100)) {
                 while (reader2.loadNextBatch()) {
                     VectorSchemaRoot root = reader2.getVectorSchemaRoot();
                     VarCharVector filename = (VarCharVector) root.getVector("filename");
@@ -149,6 +174,35 @@ public class HivePartitionPruning extends PartitionPruning {
         }
     }
 
+    /**
+     * Files of the table with their escaped partition values, from {@link #LISTING_CACHE} or else read_blob.
+     */
+    private static List<HiveFileListingCache.ListedFile> listFiles(DuckDBConnection connection,
+                                                                   String basePath,
+                                                                   int partitionsLen) throws SQLException, IOException {
+        var cached = LISTING_CACHE.list(basePath, partitionsLen);
+        if (cached != null) {
+            return cached;
+        }
+        List<HiveFileListingCache.ListedFile> result = new ArrayList<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowReader reader = ConnectionPool.getReader(connection, allocator, getQueryString(basePath, partitionsLen), 1000)) {
+            while (reader.loadNextBatch()) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                VarCharVector filename = (VarCharVector) root.getVector("filename");
+                BigIntVector size = (BigIntVector) root.getVector("size");
+                BigIntVector lastModifier = (BigIntVector) root.getVector("last_modified");
+                ListVector partitions = (ListVector) root.getVector("partitions");
+                for (int i = 0; i < root.getRowCount(); i++) {
+                    List<String> values = partitions.getObject(i).stream().map(Object::toString).toList();
+                    result.add(new HiveFileListingCache.ListedFile(
+                            new FileStatus(new String(filename.get(i)), size.get(i), lastModifier.get(i)), values));
+                }
+            }
+        }
+        return result;
+    }
+
 
     public static List<FileStatus> pruneFiles(String basePath,
                                               JsonNode tree,
@@ -165,6 +219,10 @@ public class HivePartitionPruning extends PartitionPruning {
      * @throws IOException If there is an I/O error during the handling of file data.
      */
     private static List<FileStatus> pruneFilesNoPartition(String basePath) throws SQLException, IOException {
+        var listed = LISTING_CACHE.list(basePath, 0);
+        if (listed != null) {
+            return listed.stream().map(HiveFileListingCache.ListedFile::status).collect(Collectors.toList());
+        }
         String sql = String.format(READ_BLOB_NO_PARTITION_SQL, basePath + "/*.parquet");
         List<FileStatus> result = new ArrayList<>();
         try(DuckDBConnection connection = ConnectionPool.getConnection();
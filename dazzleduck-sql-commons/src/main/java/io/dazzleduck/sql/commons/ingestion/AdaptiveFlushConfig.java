@@ -0,0 +1,62 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Settings of adaptive flushing ({@code ingestion.adaptive_flush}), see {@link FlushController}.
+ *
+ * <p>When enabled, each queue picks the bucket size that triggers a write and the delay after
+ * which a partial bucket is written from its arrival rate and write time, aiming at files of
+ * {@code targetFileSize} bytes while keeping batches from waiting longer than
+ * {@code targetLatency} from arrival to written. The size stays between the queue's
+ * {@code minBucketSize} and {@code maxBucketSize}, the delay between {@code minDelay} and
+ * {@code maxDelay}. When disabled the queue's static {@code minBucketSize} and {@code maxDelay}
+ * are used.
+ */
+public record AdaptiveFlushConfig(boolean enabled,
+                                  long targetFileSize,
+                                  Duration targetLatency,
+                                  Duration minDelay,
+                                  Duration maxDelay) {
+
+    public static final long     DEFAULT_TARGET_FILE_SIZE = 128L * 1024 * 1024; // 128 MB
+    public static final Duration DEFAULT_TARGET_LATENCY   = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_MIN_DELAY        = Duration.ofMillis(100);
+    public static final Duration DEFAULT_MAX_DELAY        = Duration.ofSeconds(30);
+
+    public static final AdaptiveFlushConfig DISABLED = new AdaptiveFlushConfig(false, DEFAULT_TARGET_FILE_SIZE,
+            DEFAULT_TARGET_LATENCY, DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY);
+
+    public AdaptiveFlushConfig {
+        if (targetFileSize < 1) {
+            throw new IllegalArgumentException("targetFileSize must be positive: " + targetFileSize);
+        }
+        if (minDelay.isNegative() || maxDelay.compareTo(minDelay) < 0) {
+            throw new IllegalArgumentException("Expected 0 <= minDelay <= maxDelay, got %s and %s".formatted(minDelay, maxDelay));
+        }
+    }
+
+    /** @param config the {@code ingestion} config */
+    public static AdaptiveFlushConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.INGESTION_ADAPTIVE_FLUSH_KEY)) {
+            return DISABLED;
+        }
+        var flush = config.getConfig(ConfigConstants.INGESTION_ADAPTIVE_FLUSH_KEY);
+        if (!flush.getBoolean(ConfigConstants.ENABLED_KEY)) {
+            return DISABLED;
+        }
+        return new AdaptiveFlushConfig(
+                true,
+                flush.hasPath(ConfigConstants.ADAPTIVE_FLUSH_TARGET_FILE_SIZE_KEY)
+                        ? flush.getBytes(ConfigConstants.ADAPTIVE_FLUSH_TARGET_FILE_SIZE_KEY) : DEFAULT_TARGET_FILE_SIZE,
+                flush.hasPath(ConfigConstants.ADAPTIVE_FLUSH_TARGET_LATENCY_MS_KEY)
+                        ? Duration.ofMillis(flush.getLong(ConfigConstants.ADAPTIVE_FLUSH_TARGET_LATENCY_MS_KEY)) : DEFAULT_TARGET_LATENCY,
+                flush.hasPath(ConfigConstants.ADAPTIVE_FLUSH_MIN_DELAY_MS_KEY)
+                        ? Duration.ofMillis(flush.getLong(ConfigConstants.ADAPTIVE_FLUSH_MIN_DELAY_MS_KEY)) : DEFAULT_MIN_DELAY,
+                flush.hasPath(ConfigConstants.MAX_DELAY_MS_KEY)
+                        ? Duration.ofMillis(flush.getLong(ConfigConstants.MAX_DELAY_MS_KEY)) : DEFAULT_MAX_DELAY);
+    }
+}
@@ -0,0 +1,13 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+/**
+ * A batch with the same producer batch id was accepted and is still being written, so whether it
+ * is written is not known yet. Retrying after {@link #getRetryAfterSeconds()} either finds it
+ * written or, if its write failed, writes the retried batch.
+ */
+public class BatchInProgressException extends PendingWriteExceededException {
+    public BatchInProgressException(String producerId, long producerBatchId, int retryAfterSeconds) {
+        super("Batch %s of producer %s is still being written".formatted(producerBatchId, producerId),
+                retryAfterSeconds);
+    }
+}
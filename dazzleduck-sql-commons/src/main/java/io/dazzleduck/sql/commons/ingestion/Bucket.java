@@ -37,7 +37,7 @@ public class Bucket<T, R> {
         batches.add(batch);
         futures.add(future);
         if (batch.producerId() != null) {
-            producerMaxBatchId.put(batch.producerId(), batch.producerBatchId());
+            producerMaxBatchId.merge(batch.producerId(), batch.producerBatchId(), Math::max);
         }
         size += batch.totalSize();
         if (batch.receivedTime().isBefore(minReceiveInstance)) {
@@ -63,6 +63,11 @@ public class Bucket<T, R> {
 
     boolean isEmpty() {return size == 0;}
 
+    /** Time the oldest batch of the bucket was received, {@link Instant#MAX} while it is empty. */
+    public Instant oldestReceived() {
+        return minReceiveInstance;
+    }
+
     public boolean timeExpired(Instant now) {
         return minReceiveInstance.plus(maxWriteDelay).isBefore(now);
     }
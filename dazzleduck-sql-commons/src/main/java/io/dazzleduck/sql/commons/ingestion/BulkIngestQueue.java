@@ -12,11 +12,11 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAccumulator;
 
 public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<T, R> {
@@ -47,6 +47,26 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
      */
     protected void onBatchAbandoned(Batch<T> batch) {}
 
+    /**
+     * Called under the queue lock for each batch that passed the pending-write and sequence checks,
+     * in the order batches are accepted, which is the order they are written in. Returns the batch
+     * to queue in its place; throwing rejects the batch.
+     */
+    protected Batch<T> beforeAccept(Batch<T> batch) throws IOException {
+        return batch;
+    }
+
+    /**
+     * Called under the queue lock when the flush delay of a bucket that is not full elapsed, as long
+     * as less than half of {@code maxPendingWrite} is pending. Returns how much longer to hold the
+     * bucket back so it collects more batches, or {@link Duration#ZERO} to write it now. The bucket
+     * is checked again after that time or the flush delay, whichever is shorter, and written once
+     * it is full.
+     */
+    protected Duration deferWrite(Bucket<T, R> bucket, Instant now) {
+        return Duration.ZERO;
+    }
+
     /**
      * Creates a new combined bucket from multiple buckets.
      * The combined bucket contains all batches and futures from the source buckets.
@@ -76,13 +96,11 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
         return (currentSize + candidate.size() <= maxSize) &&
                (currentBatchCount + candidate.batchCount() <= maxBatchCount);
     }
-    private static final int MAX_PRODUCER_IDS = 10000;
-    private final Map<String, Long> inProgressBatchIds = new LinkedHashMap<>(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
-            return size() > MAX_PRODUCER_IDS;
-        }
-    };
+    /** Producer batch ids of the batches accepted and not failed, written or not. */
+    private final ProducerSequences acceptedBatchIds;
+    /** Producer batch ids of the written batches; those of {@link #sequenceStore} when there is one. */
+    private final ProducerSequences writtenBatchIds;
+    private final ProducerSequenceStore sequenceStore;
     private final long minBucketSize;
     private final long maxBucketSize;
     private final int maxBatches;
@@ -91,6 +109,7 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
     private final ScheduledExecutorService executorService;
     private final Duration maxDelay;
     private final Clock clock;
+    private final FlushController flushController;
     private Instant lastWrite = Instant.EPOCH;
     private Bucket<T, R> currentBucket;
     private volatile boolean terminating;
@@ -99,7 +118,11 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
     private long writeTaskId;
 
     private final BlockingQueue<WriteTask<T, R>> writeQueue = new LinkedBlockingQueue<>();
+    /** Dedicated writer thread, or null when buckets are written by {@link #writerPool}. */
     private final Thread writeThread;
+    private final IngestionWriterPool writerPool;
+    /** Whether a drain task of this queue is in {@link #writerPool}; guarded by itself. */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
     private final LongAccumulator totalWriteBatches = new LongAccumulator(Long::sum, 0L);
     private final LongAccumulator totalWriteBuckets = new LongAccumulator(Long::sum, 0L);
     private final LongAccumulator acceptedBatches = new LongAccumulator(Long::sum, 0L);
@@ -107,6 +130,10 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
     private final LongAccumulator bucketsCreated = new LongAccumulator(Long::sum, 0L);
     private final LongAccumulator totalWrite = new LongAccumulator(Long::sum, 0L);
     private final LongAccumulator timeSpentWriting = new LongAccumulator(Long::sum, 0L);
+    private final LongAccumulator dedupHits = new LongAccumulator(Long::sum, 0L);
+    private final LongAccumulator dedupMisses = new LongAccumulator(Long::sum, 0L);
+    private final LongAccumulator outOfWindowBatches = new LongAccumulator(Long::sum, 0L);
+    private final LongAccumulator sequenceCommitFailures = new LongAccumulator(Long::sum, 0L);
 
     public BulkIngestQueue(String identifier,
                            long minBucketSize,
@@ -116,6 +143,41 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
                            Duration maxDelay,
                            ScheduledExecutorService executorService,
                            Clock clock) {
+        this(identifier, minBucketSize, maxBucketSize, maxBatches, maxPendingWrite, maxDelay, executorService, clock,
+                IngestionQueueOptions.DEFAULT);
+    }
+
+    /**
+     * Same as above, with the optional features of {@code options}:
+     * <ul>
+     *   <li>with a {@code writerPool}, buckets are written on it instead of a thread of the queue's
+     *       own; {@code executorService} is then typically the pool's {@link IngestionWriterPool#timer()};</li>
+     *   <li>with {@code adaptiveFlush} enabled, the size and delay at which buckets are written
+     *       follow the queue's traffic, see {@link FlushController};</li>
+     *   <li>the last {@code producerDedup.window()} batch ids of each producer are remembered to
+     *       recognize retried batches. With a {@code sequenceStore}, whose settings then apply, the
+     *       ids of written batches start from those it restored and are persisted by
+     *       {@link #commitSequences} before the batches are acknowledged, see there for when that
+     *       fails; subclasses close the store after their last write.</li>
+     * </ul>
+     */
+    public BulkIngestQueue(String identifier,
+                           long minBucketSize,
+                           long maxBucketSize,
+                           int maxBatches,
+                           long maxPendingWrite,
+                           Duration maxDelay,
+                           ScheduledExecutorService executorService,
+                           Clock clock,
+                           IngestionQueueOptions options) {
+        var sequenceStore = options.sequenceStore();
+        var writerPool = options.writerPool();
+        var dedup = sequenceStore == null ? options.producerDedup() : sequenceStore.config();
+        this.sequenceStore = sequenceStore;
+        this.writtenBatchIds = sequenceStore == null
+                ? new ProducerSequences(dedup.window(), dedup.maxProducers()) : sequenceStore.sequences();
+        this.acceptedBatchIds = new ProducerSequences(dedup.window(), dedup.maxProducers());
+        this.acceptedBatchIds.markAll(writtenBatchIds);
         this.minBucketSize = minBucketSize;
         this.maxBucketSize = maxBucketSize;
         this.maxBatches = maxBatches;
@@ -124,15 +186,22 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
         this.executorService = executorService;
         this.maxDelay = maxDelay;
         this.clock = clock;
+        this.writerPool = writerPool;
+        this.flushController = new FlushController(options.adaptiveFlush(), minBucketSize, maxBucketSize, maxPendingWrite,
+                maxDelay, clock.instant());
         createNewBucket();
-        this.writeThread = new Thread(this::processWriteQueue, "BulkIngestQueue-" + identifier + "-writer");
-        this.writeThread.setDaemon(true);
-        this.writeThread.start();
-        executorService.schedule(this::triggerWriteIfRequired, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+        if (writerPool == null) {
+            this.writeThread = new Thread(this::processWriteQueue, "BulkIngestQueue-" + identifier + "-writer");
+            this.writeThread.setDaemon(true);
+            this.writeThread.start();
+        } else {
+            this.writeThread = null;
+        }
+        executorService.schedule(this::triggerWriteIfRequired, flushController.flushDelay().toMillis(), TimeUnit.MILLISECONDS);
     }
 
     private void createNewBucket(){
-        this.currentBucket = new Bucket<>(minBucketSize, maxBatches, maxDelay);
+        this.currentBucket = new Bucket<>(flushController.flushSize(), maxBatches, flushController.flushDelay());
         bucketsCreated.accumulate(1);
     }
 
@@ -140,69 +209,117 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
     private void processWriteQueue() {
         while (!terminating) {
             try {
-                var task = writeQueue.take();
-
-                // Try to combine with additional buckets from the queue
-                var bucketsToCombine = new ArrayList<Bucket<T, R>>();
-                bucketsToCombine.add(task.bucket());
-                long combinedSize = task.bucket().size();
-                int combinedBatchCount = task.bucket().batchCount();
-
-                // Poll additional tasks while they can be combined
-                WriteTask<T, R> nextTask;
-                while ((nextTask = writeQueue.peek()) != null) {
-                    var nextBucket = nextTask.bucket();
-                    if (canCombine(combinedSize, combinedBatchCount, nextBucket, maxBucketSize, maxBatches)) {
-                        writeQueue.poll(); // Remove from queue
-                        bucketsToCombine.add(nextBucket);
-                        combinedSize += nextBucket.size();
-                        combinedBatchCount += nextBucket.batchCount();
-                    } else {
-                        break; // Can't combine more
-                    }
-                }
+                processWriteTask(writeQueue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /** Runs on {@link #writerPool}: writes one bucket, then yields the thread to other queues. */
+    private void drain() {
+        try {
+            var task = terminating ? null : writeQueue.poll();
+            if (task != null) {
+                processWriteTask(task);
+            }
+        } finally {
+            synchronized (drainScheduled) {
+                drainScheduled.set(false);
+                drainScheduled.notifyAll();
+            }
+            if (!terminating && !writeQueue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
 
-                // Create combined bucket if we have multiple, otherwise use original
-                Bucket<T, R> bucketToWrite;
-                if (bucketsToCombine.size() > 1) {
-                    bucketToWrite = combineBuckets(bucketsToCombine, minBucketSize, maxBatches, maxDelay);
-                } else {
-                    bucketToWrite = task.bucket();
+    private void scheduleDrain() {
+        if (writerPool != null && drainScheduled.compareAndSet(false, true)) {
+            try {
+                writerPool.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (drainScheduled) {
+                    drainScheduled.set(false);
+                    drainScheduled.notifyAll();
                 }
+                throw e;
+            }
+        }
+    }
+
+    private void processWriteTask(WriteTask<T, R> task) {
+        // Try to combine with additional buckets from the queue
+        var bucketsToCombine = new ArrayList<Bucket<T, R>>();
+        bucketsToCombine.add(task.bucket());
+        long combinedSize = task.bucket().size();
+        int combinedBatchCount = task.bucket().batchCount();
+
+        // Poll additional tasks while they can be combined
+        WriteTask<T, R> nextTask;
+        while ((nextTask = writeQueue.peek()) != null) {
+            var nextBucket = nextTask.bucket();
+            if (canCombine(combinedSize, combinedBatchCount, nextBucket, maxBucketSize, maxBatches)) {
+                writeQueue.poll(); // Remove from queue
+                bucketsToCombine.add(nextBucket);
+                combinedSize += nextBucket.size();
+                combinedBatchCount += nextBucket.batchCount();
+            } else {
+                break; // Can't combine more
+            }
+        }
 
-                var combinedTask = new WriteTask<>(task.taskId(), task.startTime(), bucketToWrite);
-                runningWrite = combinedTask;
-
-                try {
-                    var start = clock.instant();
-                    write(combinedTask);
-                    var end = clock.instant();
-                    totalWriteBatches.accumulate(bucketToWrite.batches().size());
-                    totalWrite.accumulate(bucketToWrite.size());
-                    totalWriteBuckets.accumulate(bucketsToCombine.size());
-                    timeSpentWriting.accumulate(Duration.between(start, end).toMillis());
-                } catch (Exception e) {
-                    // Complete futures with exception but continue processing remaining tasks
-                    for (var future : bucketToWrite.futures()) {
-                        if (!future.isDone()) {
-                            future.completeExceptionally(e);
-                        }
-                    }
-                    // Don't break - continue processing the next task in the queue
-                } finally {
-                    runningWrite = null;
+        // Create combined bucket if we have multiple, otherwise use original
+        Bucket<T, R> bucketToWrite;
+        if (bucketsToCombine.size() > 1) {
+            bucketToWrite = combineBuckets(bucketsToCombine, minBucketSize, maxBatches, maxDelay);
+        } else {
+            bucketToWrite = task.bucket();
+        }
+
+        var combinedTask = new WriteTask<>(task.taskId(), task.startTime(), bucketToWrite);
+        runningWrite = combinedTask;
+
+        try {
+            var start = clock.instant();
+            write(combinedTask);
+            var end = clock.instant();
+            totalWriteBatches.accumulate(bucketToWrite.batches().size());
+            totalWrite.accumulate(bucketToWrite.size());
+            totalWriteBuckets.accumulate(bucketsToCombine.size());
+            timeSpentWriting.accumulate(Duration.between(start, end).toMillis());
+            flushController.onWritten(bucketToWrite.size(), Duration.between(start, end));
+        } catch (Exception e) {
+            // Complete futures with exception but continue processing remaining tasks
+            for (var future : bucketToWrite.futures()) {
+                if (!future.isDone()) {
+                    future.completeExceptionally(e);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
             }
+            // Don't break - continue processing the next task in the queue
+        } finally {
+            runningWrite = null;
         }
     }
 
     @Override
     public Stats getStats(){
         return new Stats(identifier, totalWrite.get(), totalWriteBatches.get(), totalWriteBuckets.get(),
-                timeSpentWriting.get(), getPendingBatches(), getPendingBuckets());
+                timeSpentWriting.get(), getPendingBatches(), getPendingBuckets(), getWriterStats(),
+                flushController.stats(), getFileSizeStats());
+    }
+
+    /** Per-writer progress for {@link Stats#writers()}; queues that do not track writers return none. */
+    @Override
+    public List<WriterStats> getWriterStats() {
+        return List.of();
+    }
+
+    /** Sizes of the written files for {@link Stats#files()}; queues that do not track them return null. */
+    @Override
+    public FileSizeStats getFileSizeStats() {
+        return null;
     }
 
     public long getTotalWriteBatches() {
@@ -277,18 +394,25 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
                     new PendingWriteExceededException(currentPending, maxPendingWrite, retryAfterSeconds));
         }
         if (batch.producerId() != null) {
-            var progressBatch = inProgressBatchIds.get(batch.producerId());
-            if (progressBatch != null && progressBatch >= batch.producerBatchId()) {
-                return CompletableFuture.failedFuture(
-                        new OutOfSequenceBatch(progressBatch, batch.producerBatchId()));
+            var rejected = checkSequence(batch);
+            if (rejected != null) {
+                return CompletableFuture.failedFuture(rejected);
             }
         }
+        final Batch<T> accepted;
+        try {
+            accepted = beforeAccept(batch);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
         var result = new CompletableFuture<R>();
-        currentBucket.add(batch, result);
+        currentBucket.add(accepted, result);
         acceptedBatches.accumulate(1);
-        acceptedBytes.accumulate(batch.totalSize());
-        if (batch.producerId() != null) {
-            inProgressBatchIds.put(batch.producerId(), batch.producerBatchId());
+        acceptedBytes.accumulate(accepted.totalSize());
+        flushController.onAccepted(accepted.totalSize());
+        if (accepted.producerId() != null) {
+            dedupMisses.accumulate(1);
+            trackSequence(accepted, result);
         }
         if (currentBucket.isFull()) {
            submitWriteTask();
@@ -296,31 +420,151 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
         return result;
     }
 
+    /**
+     * Why a batch of a producer is rejected, or null if it is new. A batch written before is a
+     * {@link DuplicateBatch}; one accepted but not written yet may still fail, so the retry is
+     * asked to come back later.
+     */
+    private Exception checkSequence(Batch<T> batch) {
+        var producerId = batch.producerId();
+        long batchId = batch.producerBatchId();
+        switch (acceptedBatchIds.check(producerId, batchId)) {
+            case NEW:
+                return null;
+            case TOO_OLD:
+                outOfWindowBatches.accumulate(1);
+                return new OutOfSequenceBatch(acceptedBatchIds.highest(producerId), batchId);
+            default:
+                dedupHits.accumulate(1);
+                if (writtenBatchIds.check(producerId, batchId) == ProducerSequences.Seen.NEW) {
+                    long delay = flushController.flushDelay().toMillis();
+                    return new BatchInProgressException(producerId, batchId, (int) Math.max(1, (delay + 999) / 1000));
+                }
+                return new DuplicateBatch(producerId, batchId);
+        }
+    }
+
+    /** Marks the batch id as accepted; it counts as written once the batch is, or is forgotten if it fails. */
+    private void trackSequence(Batch<T> batch, CompletableFuture<R> result) {
+        var producerId = batch.producerId();
+        long batchId = batch.producerBatchId();
+        acceptedBatchIds.mark(producerId, batchId);
+        result.whenComplete((r, error) -> {
+            if (error == null) {
+                writtenBatchIds.mark(producerId, batchId);
+            } else {
+                acceptedBatchIds.unmark(producerId, batchId);
+            }
+        });
+    }
+
+    /**
+     * Persists the producer batch ids of a written bucket to the sequence store, if there is one.
+     * Subclasses call it before completing the bucket's futures, so that a retry of an acknowledged
+     * batch is recognized across a restart. A failure is counted in
+     * {@link #getSequenceCommitFailures()}; since the bucket is written, subclasses still acknowledge
+     * it rather than have the clients write it again, and a retry of one of its batches is then
+     * only recognized until the next restart.
+     */
+    protected void commitSequences(Bucket<T, R> bucket) throws IOException {
+        if (sequenceStore == null) {
+            return;
+        }
+        try {
+            sequenceStore.commit(bucket.batches());
+        } catch (IOException e) {
+            sequenceCommitFailures.accumulate(1);
+            throw e;
+        }
+    }
+
+    /** Written buckets whose producer batch ids could not be persisted to the sequence store. */
+    public long getSequenceCommitFailures() {
+        return sequenceCommitFailures.get();
+    }
+
+    /** Retried batches recognized as written or being written. */
+    public long getDedupHits() {
+        return dedupHits.get();
+    }
+
+    /** Batches with a producer id seen for the first time. */
+    public long getDedupMisses() {
+        return dedupMisses.get();
+    }
+
+    /** Batches rejected as out of sequence because their id is below the producer's window. */
+    public long getOutOfWindowBatches() {
+        return outOfWindowBatches.get();
+    }
+
+    /**
+     * Queues batches accepted before a restart, e.g. read back from a write-ahead log, without the
+     * pending-write and sequence checks. {@code producerBatchIds} restores the sequence check of
+     * producers whose batches were already written.
+     *
+     * @return the futures of the batches, in order
+     */
+    protected synchronized List<CompletableFuture<R>> replay(Map<String, Long> producerBatchIds, List<Batch<T>> batches) {
+        // The log only knows the highest id per producer; a sequence store, committed first, knows each
+        if (sequenceStore == null) {
+            producerBatchIds.forEach((producerId, batchId) -> {
+                acceptedBatchIds.markThrough(producerId, batchId);
+                writtenBatchIds.markThrough(producerId, batchId);
+            });
+        }
+        var results = new ArrayList<CompletableFuture<R>>(batches.size());
+        for (var batch : batches) {
+            var result = new CompletableFuture<R>();
+            currentBucket.add(batch, result);
+            acceptedBatches.accumulate(1);
+            acceptedBytes.accumulate(batch.totalSize());
+            if (batch.producerId() != null) {
+                trackSequence(batch, result);
+            }
+            if (currentBucket.isFull()) {
+                submitWriteTask();
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
     private synchronized void triggerWriteIfRequired() {
         if (terminating) {
             return;
         }
         var now = clock.instant();
+        flushController.update(now);
         if (currentBucket.isEmpty()) {
-            // Nothing to flush — schedule the next check at a full maxDelay interval.
+            // Nothing to flush — schedule the next check at a full flush delay interval.
             // Using scheduleNextTrigger here is unsafe: when lastWrite == Instant.EPOCH
             // (initial state), nextTrigger is decades in the past, so timeRemaining is
             // deeply negative and Math.max(0, ...) collapses to 0, creating a tight
             // spin-loop that consumes 100% CPU and starves all other threads.
-            executorService.schedule(this::triggerWriteIfRequired, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            executorService.schedule(this::triggerWriteIfRequired, flushController.flushDelay().toMillis(), TimeUnit.MILLISECONDS);
             return;
         }
 
-        var nextWrite = lastWrite.plus(maxDelay);
-        if (currentBucket.isFull() || !nextWrite.isAfter(now)) {
+        var nextWrite = lastWrite.plus(flushController.flushDelay());
+        if (currentBucket.isFull()) {
             submitWriteTask();
+        } else if (!nextWrite.isAfter(now)) {
+            // A held back bucket must not push producers into the pending-write limit
+            var deferral = pendingWrite() < maxPendingWrite / 2 ? deferWrite(currentBucket, now) : Duration.ZERO;
+            if (deferral.compareTo(Duration.ZERO) > 0) {
+                var recheck = deferral.compareTo(flushController.flushDelay()) < 0 ? deferral : flushController.flushDelay();
+                executorService.schedule(this::triggerWriteIfRequired, Math.max(1, recheck.toMillis()), TimeUnit.MILLISECONDS);
+            } else {
+                submitWriteTask();
+            }
         } else {
             scheduleNextTrigger(now);
         }
     }
 
     private void scheduleNextTrigger(Instant now) {
-        var nextTrigger = lastWrite.plus(maxDelay);
+        var nextTrigger = lastWrite.plus(flushController.flushDelay());
         var timeRemaining = Duration.between(now, nextTrigger);
         executorService.schedule(this::triggerWriteIfRequired, Math.max(0, timeRemaining.toMillis()), TimeUnit.MILLISECONDS);
     }
@@ -331,10 +575,12 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
         }
         var toWrite = currentBucket;
         toWrite.markFinalized();
+        flushController.update(clock.instant());
         createNewBucket();
         var writeTask = new WriteTask<>(writeTaskId++, clock.instant(), toWrite);
         lastWrite = clock.instant();
         writeQueue.offer(writeTask);
+        scheduleDrain();
         if (!terminating) {
             scheduleNextTrigger(clock.instant());
         }
@@ -350,8 +596,17 @@ public abstract class BulkIngestQueue<T, R> implements BulkIngestQueueInterface<
         // Interrupt and wait for write thread to finish processing
         // The write thread will exit the loop when it sees terminating=true,
         // or when interrupted if it's blocked waiting for a task
-        writeThread.interrupt();
-        writeThread.join();
+        if (writeThread != null) {
+            writeThread.interrupt();
+            writeThread.join();
+        } else {
+            // A drain task that has not started yet sees terminating=true and writes nothing
+            synchronized (drainScheduled) {
+                while (drainScheduled.get()) {
+                    drainScheduled.wait();
+                }
+            }
+        }
 
         // Fail any futures in the current bucket and release their resources
         var exception = new IllegalStateException("Server shutting down before batch could be written");
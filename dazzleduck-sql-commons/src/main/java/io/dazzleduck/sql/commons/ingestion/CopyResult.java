@@ -1,5 +1,11 @@
 package io.dazzleduck.sql.commons.ingestion;
 
-public record CopyResult(Long count, Object[] files) {
+/**
+ * @param fileSizes bytes of each of {@code files}, in no particular order; null when they were not or could not be read
+ */
+public record CopyResult(Long count, Object[] files, long[] fileSizes) {
 
+    public CopyResult(Long count, Object[] files) {
+        this(count, files, null);
+    }
 }
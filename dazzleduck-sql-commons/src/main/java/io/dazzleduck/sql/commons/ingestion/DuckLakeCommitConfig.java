@@ -0,0 +1,44 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Settings of the DuckLake group commit ({@code ingestion_task_factory_provider.ducklake_commit}),
+ * see {@link DuckLakeGroupCommitter}.
+ *
+ * <p>The files of consecutive writes to a table are added in one DuckLake snapshot, committed at
+ * most {@code maxDelay} after the first of them was written or as soon as {@code maxFiles} are
+ * waiting. With a {@code maxDelay} of zero a commit starts right away, and the files written while
+ * it runs go into the next one.
+ */
+public record DuckLakeCommitConfig(Duration maxDelay, int maxFiles) {
+
+    public static final int DEFAULT_MAX_FILES = 1000;
+
+    public static final DuckLakeCommitConfig DEFAULT = new DuckLakeCommitConfig(Duration.ZERO, DEFAULT_MAX_FILES);
+
+    public DuckLakeCommitConfig {
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxDelay must not be negative: " + maxDelay);
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("maxFiles must be positive: " + maxFiles);
+        }
+    }
+
+    /** @param config the {@code ingestion_task_factory_provider} config */
+    public static DuckLakeCommitConfig fromConfig(Config config) {
+        if (config == null || !config.hasPath(ConfigConstants.DUCKLAKE_COMMIT_KEY)) {
+            return DEFAULT;
+        }
+        var commit = config.getConfig(ConfigConstants.DUCKLAKE_COMMIT_KEY);
+        return new DuckLakeCommitConfig(
+                commit.hasPath(ConfigConstants.MAX_DELAY_MS_KEY)
+                        ? Duration.ofMillis(commit.getLong(ConfigConstants.MAX_DELAY_MS_KEY)) : DEFAULT.maxDelay(),
+                commit.hasPath(ConfigConstants.DUCKLAKE_COMMIT_MAX_FILES_KEY)
+                        ? commit.getInt(ConfigConstants.DUCKLAKE_COMMIT_MAX_FILES_KEY) : DEFAULT_MAX_FILES);
+    }
+}
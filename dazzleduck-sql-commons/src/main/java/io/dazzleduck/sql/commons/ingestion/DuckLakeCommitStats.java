@@ -0,0 +1,23 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+/**
+ * Progress of the group commit of one DuckLake table, see {@link DuckLakeGroupCommitter}.
+ *
+ * @param table               {@code catalog.schema.table}
+ * @param snapshots           DuckLake snapshots committed
+ * @param files               files added by those snapshots
+ * @param writes              queue writes whose files those snapshots added
+ * @param snapshotsLastMinute snapshots committed in the last minute
+ * @param totalCommitTime     milliseconds spent committing snapshots
+ * @param lastCommitTime      milliseconds the last commit took
+ * @param maxCommitTime       milliseconds the slowest commit took
+ */
+public record DuckLakeCommitStats(String table,
+                                  long snapshots,
+                                  long files,
+                                  long writes,
+                                  long snapshotsLastMinute,
+                                  long totalCommitTime,
+                                  long lastCommitTime,
+                                  long maxCommitTime) {
+}
@@ -0,0 +1,175 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds the files of consecutive writes to a DuckLake table in one snapshot.
+ *
+ * <p>Each write {@link #submit}s its files and gets a future that completes once they are
+ * committed. The first file waiting starts a flush after {@link DuckLakeCommitConfig#maxDelay()};
+ * reaching {@link DuckLakeCommitConfig#maxFiles()} flushes at once. A flush commits the waiting
+ * writes, up to {@code maxFiles} files, in one transaction. Flushes run on the executor of the
+ * {@link DuckLakeIngestionHandler}, a single thread, so the commits of a table are made in the order
+ * the writes were submitted and never overlap.
+ */
+public final class DuckLakeGroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DuckLakeGroupCommitter.class);
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private record Pending(List<String> files, CompletableFuture<Void> committed) {}
+
+    private final String catalogName;
+    private final String schemaName;
+    private final String tableName;
+    private final DuckLakeCommitConfig config;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final List<Pending> pending = new ArrayList<>();
+    private int pendingFiles;
+    private Future<?> scheduledFlush;
+    private boolean closed;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong totalCommitTime = new AtomicLong();
+    private final AtomicLong lastCommitTime = new AtomicLong();
+    private final AtomicLong maxCommitTime = new AtomicLong();
+    // Guarded by itself: end times of the commits of the last minute, in System.nanoTime()
+    private final ArrayDeque<Long> recentCommits = new ArrayDeque<>();
+
+    DuckLakeGroupCommitter(String catalogName, String schemaName, String tableName,
+                           DuckLakeCommitConfig config, ScheduledExecutorService executor) {
+        this.catalogName = catalogName;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /** @return a future completed once {@code files} are committed to the table, or failed if the commit failed */
+    public CompletableFuture<Void> submit(List<String> files) {
+        if (files.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var committed = new CompletableFuture<Void>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException(
+                        "DuckLake committer of table %s is closed".formatted(table())));
+            }
+            pending.add(new Pending(List.copyOf(files), committed));
+            pendingFiles += files.size();
+            scheduleFlush(pendingFiles >= config.maxFiles());
+        }
+        return committed;
+    }
+
+    /** Must be called holding the lock. */
+    private void scheduleFlush(boolean now) {
+        if (scheduledFlush != null) {
+            if (!now) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = now || config.maxDelay().isZero()
+                ? executor.submit(this::flush)
+                : executor.schedule(this::flush, config.maxDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        var group = new ArrayList<Pending>();
+        synchronized (this) {
+            scheduledFlush = null;
+            int groupFiles = 0;
+            // Whole writes only, at least one, and no more than maxFiles files when there are several;
+            // once closed everything left, as the executor is shutting down
+            while (!pending.isEmpty()
+                    && (group.isEmpty() || closed || groupFiles + pending.get(0).files().size() <= config.maxFiles())) {
+                var next = pending.remove(0);
+                group.add(next);
+                groupFiles += next.files().size();
+            }
+            pendingFiles -= groupFiles;
+            if (!pending.isEmpty()) {
+                scheduleFlush(pendingFiles >= config.maxFiles());
+            }
+        }
+        if (!group.isEmpty()) {
+            commit(group);
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        var groupFiles = group.stream().flatMap(p -> p.files().stream()).toList();
+        long start = System.nanoTime();
+        try {
+            DuckLakePostIngestionTask.addFilesInTransaction(catalogName, schemaName, tableName, groupFiles);
+        } catch (Exception e) {
+            logger.error("Failed to add {} files of {} writes to DuckLake table {}", groupFiles.size(), group.size(), table(), e);
+            var error = new RuntimeException("Failed to execute DuckLake post-ingestion task for table " + tableName, e);
+            group.forEach(p -> p.committed().completeExceptionally(error));
+            return;
+        }
+        long end = System.nanoTime();
+        long commitTime = TimeUnit.NANOSECONDS.toMillis(end - start);
+        snapshots.incrementAndGet();
+        files.addAndGet(groupFiles.size());
+        writes.addAndGet(group.size());
+        totalCommitTime.addAndGet(commitTime);
+        lastCommitTime.set(commitTime);
+        maxCommitTime.accumulateAndGet(commitTime, Math::max);
+        synchronized (recentCommits) {
+            recentCommits.addLast(end);
+            pruneRecentCommits(end);
+        }
+        logger.info("Added {} files of {} writes to DuckLake table {} in {} ms", groupFiles.size(), group.size(), table(), commitTime);
+        group.forEach(p -> p.committed().complete(null));
+    }
+
+    /** Must be called holding the {@code recentCommits} lock. */
+    private void pruneRecentCommits(long now) {
+        while (!recentCommits.isEmpty() && now - recentCommits.peekFirst() > MINUTE_NANOS) {
+            recentCommits.removeFirst();
+        }
+    }
+
+    public DuckLakeCommitStats getStats() {
+        long lastMinute;
+        synchronized (recentCommits) {
+            pruneRecentCommits(System.nanoTime());
+            lastMinute = recentCommits.size();
+        }
+        return new DuckLakeCommitStats(table(), snapshots.get(), files.get(), writes.get(), lastMinute,
+                totalCommitTime.get(), lastCommitTime.get(), maxCommitTime.get());
+    }
+
+    /**
+     * Rejects further submits and commits the writes submitted already without waiting for
+     * {@code maxDelay}. Shut the executor down gracefully afterwards, so that commit runs.
+     */
+    synchronized void close() {
+        closed = true;
+        if (!pending.isEmpty()) {
+            scheduleFlush(true);
+        }
+    }
+
+    private String table() {
+        return catalogName + "." + schemaName + "." + tableName;
+    }
+}
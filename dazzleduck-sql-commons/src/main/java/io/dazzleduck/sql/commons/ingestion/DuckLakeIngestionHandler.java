@@ -13,6 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link IngestionHandler} backed by DuckLake metadata.
@@ -30,6 +33,10 @@ import java.util.concurrent.ConcurrentHashMap;
  *       exactly once per queue ID (via {@link #getOrCreateQueue}) and is never replaced unless
  *       the target path disappears and the queue is evicted.</li>
  * </ul>
+ *
+ * <p>Written files are added to their table by one {@link DuckLakeGroupCommitter} per table, which
+ * commits the files of consecutive writes in one snapshot. The commits of all tables run on one
+ * thread, so the DuckLake metadata database sees one writer at a time.
  */
 public class DuckLakeIngestionHandler implements IngestionHandler {
 
@@ -76,17 +83,37 @@ public class DuckLakeIngestionHandler implements IngestionHandler {
 
     private final ConcurrentHashMap<String, ParquetIngestionQueue> queueCache = new ConcurrentHashMap<>();
 
+    // -----------------------------------------------------------------------
+    // Group commit — one committer per catalog.schema.table, created on first write
+    // -----------------------------------------------------------------------
+
+    private final ConcurrentHashMap<String, DuckLakeGroupCommitter> committers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService commitExecutor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ducklake-commit");
+                t.setDaemon(true);
+                return t;
+            });
+
     private final Duration refreshInterval;
     private final Clock clock;
+    private final DuckLakeCommitConfig commitConfig;
 
     public DuckLakeIngestionHandler(Map<String, QueueIdToTableMapping> mappings, Duration refreshInterval) {
         this(mappings, refreshInterval, Clock.systemUTC());
     }
 
     public DuckLakeIngestionHandler(Map<String, QueueIdToTableMapping> mappings, Duration refreshInterval, Clock clock) {
+        this(mappings, refreshInterval, clock, DuckLakeCommitConfig.DEFAULT);
+    }
+
+    public DuckLakeIngestionHandler(Map<String, QueueIdToTableMapping> mappings, Duration refreshInterval, Clock clock,
+                                    DuckLakeCommitConfig commitConfig) {
         this.queueIdsToTableMappings = new ConcurrentHashMap<>(mappings);
         this.refreshInterval = refreshInterval;
         this.clock = clock;
+        this.commitConfig = commitConfig;
         mappings.forEach((id, mapping) -> stateCache.put(id, buildState(mapping, clock.instant())));
     }
 
@@ -155,15 +182,31 @@ public class DuckLakeIngestionHandler implements IngestionHandler {
 
     @Override
     public PostIngestionTask createPostIngestionTask(IngestionResult result) {
-        QueueIdToTableMapping mapping = queueIdsToTableMappings.get(result.queueName());
-        if (mapping == null) mapping = queueIdsToTableMappings.get(extractSuffix(result.queueName()));
+        QueueIdToTableMapping mapping = findMapping(result.queueName());
         if (mapping == null) {
             // No DuckLake mapping for this queue — write-only mode, no catalog registration.
             logger.atDebug().log("No DuckLake mapping for queue '{}', skipping catalog registration", result.queueName());
             return PostIngestionTask.NOOP;
         }
         return new DuckLakePostIngestionTask(result, mapping.catalog(), mapping.table(), mapping.schema(),
-                mapping.additionalParameters());
+                mapping.additionalParameters(), committerFor(mapping));
+    }
+
+    @Override
+    public DuckLakeCommitStats getCommitStats(String queueId) {
+        QueueIdToTableMapping mapping = findMapping(queueId);
+        return mapping != null ? committerFor(mapping).getStats() : null;
+    }
+
+    private QueueIdToTableMapping findMapping(String queueId) {
+        QueueIdToTableMapping mapping = queueIdsToTableMappings.get(queueId);
+        return mapping != null ? mapping : queueIdsToTableMappings.get(extractSuffix(queueId));
+    }
+
+    private DuckLakeGroupCommitter committerFor(QueueIdToTableMapping mapping) {
+        String table = mapping.catalog() + "." + mapping.schema() + "." + mapping.table();
+        return committers.computeIfAbsent(table, t -> new DuckLakeGroupCommitter(
+                mapping.catalog(), mapping.schema(), mapping.table(), commitConfig, commitExecutor));
     }
 
     // -----------------------------------------------------------------------
@@ -217,6 +260,18 @@ public class DuckLakeIngestionHandler implements IngestionHandler {
             }
         });
         queueCache.clear();
+        // The queues waited for their commits; commit anything left and stop the commit thread
+        committers.values().forEach(DuckLakeGroupCommitter::close);
+        commitExecutor.shutdown();
+        try {
+            if (!commitExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("DuckLake commits did not finish within 30 seconds");
+                commitExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            commitExecutor.shutdownNow();
+        }
     }
 
     // -----------------------------------------------------------------------
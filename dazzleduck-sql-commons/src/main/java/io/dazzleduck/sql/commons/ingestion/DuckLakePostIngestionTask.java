@@ -8,11 +8,14 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Post-ingestion task that adds newly ingested files to a DuckLake table.
  * This task executes the ducklake_add_data_files procedure for each ingested file
- * within a transaction to ensure atomicity.
+ * within a transaction to ensure atomicity. Given a {@link DuckLakeGroupCommitter},
+ * {@link #executeAsync()} hands the files to it instead, to be committed in one snapshot
+ * with the files of other writes.
  */
 public class DuckLakePostIngestionTask implements PostIngestionTask {
 
@@ -24,16 +27,27 @@ public class DuckLakePostIngestionTask implements PostIngestionTask {
     private final String catalogName;
     private final String tableName;
     private final String schemaName;
+    private final DuckLakeGroupCommitter committer;
 
     public DuckLakePostIngestionTask(IngestionResult ingestionResult,
                                      String catalogName,
                                      String tableName,
                                      String schemaName,
                                      Map<String, String> additionalParameters) {
+        this(ingestionResult, catalogName, tableName, schemaName, additionalParameters, null);
+    }
+
+    public DuckLakePostIngestionTask(IngestionResult ingestionResult,
+                                     String catalogName,
+                                     String tableName,
+                                     String schemaName,
+                                     Map<String, String> additionalParameters,
+                                     DuckLakeGroupCommitter committer) {
         this.ingestionResult = ingestionResult;
         this.catalogName = catalogName;
         this.tableName = tableName;
         this.schemaName = schemaName;
+        this.committer = committer;
     }
 
     @Override
@@ -45,7 +59,7 @@ public class DuckLakePostIngestionTask implements PostIngestionTask {
         }
 
         try {
-            addFilesInTransaction(files);
+            addFilesInTransaction(catalogName, schemaName, tableName, files);
             logger.info("Successfully added {} files to DuckLake table {}.{}.{}", files.size(), catalogName, schemaName, tableName);
         } catch (SQLException e) {
             logger.error("Failed to add files to DuckLake table {}.{}.{}", catalogName, schemaName, tableName, e);
@@ -53,11 +67,21 @@ public class DuckLakePostIngestionTask implements PostIngestionTask {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> executeAsync() {
+        List<String> files = ingestionResult.filesCreated();
+        if (committer == null || files == null || files.isEmpty()) {
+            return PostIngestionTask.super.executeAsync();
+        }
+        return committer.submit(files);
+    }
+
     /**
      * Adds files to DuckLake table within a transaction.
      * All files are added atomically - if any file fails, all changes are rolled back.
      */
-    private void addFilesInTransaction(List<String> files) throws SQLException {
+    static void addFilesInTransaction(String catalogName, String schemaName, String tableName,
+                                      List<String> files) throws SQLException {
         try (Connection conn = ConnectionPool.getConnection()) {
             String[] queries = files.stream().map(file -> ADD_FILE_QUERY.formatted(catalogName, tableName, file, schemaName)).toArray(String[]::new);
             ConnectionPool.executeBatchInTxn(conn, queries);
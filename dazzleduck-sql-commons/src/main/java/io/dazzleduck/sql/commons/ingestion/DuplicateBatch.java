@@ -0,0 +1,11 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+/**
+ * The batch was written before, e.g. the client retries a batch whose acknowledgement it did not
+ * receive. Callers acknowledge it like a written batch.
+ */
+public class DuplicateBatch extends OutOfSequenceBatch {
+    public DuplicateBatch(String producerId, long producerBatchId) {
+        super("Batch %s of producer %s was already written".formatted(producerBatchId, producerId));
+    }
+}
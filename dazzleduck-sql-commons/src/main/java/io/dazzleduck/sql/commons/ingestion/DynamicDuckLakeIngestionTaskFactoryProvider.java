@@ -62,7 +62,8 @@ public class DynamicDuckLakeIngestionTaskFactoryProvider extends AbstractIngesti
             Connection readConn = repo.openReadOnlyConnection();
             Map<String, QueueIdToTableMapping> initial = DynamicQueueRepository.loadAll(readConn);
             logger.info("DynamicIngestionHandler: {} queue(s) loaded from {}", initial.size(), dbPath);
-            return new DynamicIngestionHandler(dbPath, readConn, initial, Duration.ofMillis(intervalMs));
+            return new DynamicIngestionHandler(dbPath, readConn, initial, Duration.ofMillis(intervalMs),
+                    DuckLakeCommitConfig.fromConfig(config));
         } catch (SQLException e) {
             repo.close();
             throw new RuntimeException("Failed to initialise DynamicIngestionHandler for: " + dbPath, e);
@@ -54,11 +54,19 @@ public class DynamicIngestionHandler extends DuckLakeIngestionHandler {
                                    Connection readConn,
                                    Map<String, QueueIdToTableMapping> initialMappings,
                                    Duration checkInterval) {
+        this(dbPath, readConn, initialMappings, checkInterval, DuckLakeCommitConfig.DEFAULT);
+    }
+
+    public DynamicIngestionHandler(String dbPath,
+                                   Connection readConn,
+                                   Map<String, QueueIdToTableMapping> initialMappings,
+                                   Duration checkInterval,
+                                   DuckLakeCommitConfig commitConfig) {
         // Start with no mappings so the superclass does no eager DuckLake reads, then feed the
         // initial set via updateMappings (which rebuilds derived state lazily, deferring metadata
         // reads until the tables actually exist). checkInterval doubles as the DuckLake-state
         // refresh interval for already-known queues.
-        super(Map.of(), checkInterval, Clock.systemUTC());
+        super(Map.of(), checkInterval, Clock.systemUTC(), commitConfig);
         this.dbPath   = dbPath;
         this.readConn = readConn;
         // Prepare the change-detection query once; the poller reuses it. If preparing fails, fall
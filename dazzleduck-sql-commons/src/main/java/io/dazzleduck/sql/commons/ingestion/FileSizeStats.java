@@ -0,0 +1,80 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Sizes of the files a queue wrote, see {@link ParquetIngestionQueue}. Only {@code files} is
+ * counted unless the queue reads the sizes back, see {@link ParquetWriteConfig#collectsFileSizes()}.
+ *
+ * @param files      files written
+ * @param bytes      bytes of all files written
+ * @param smallest   bytes of the smallest file, 0 before the first
+ * @param largest    bytes of the largest file
+ * @param smallFiles files smaller than the queue's {@code min_file_size}, 0 when it has none
+ * @param histogram  files per size range: entry {@code i} counts the files smaller than
+ *                   {@code HISTOGRAM_BOUNDS[i]} and not counted before, the last entry the rest
+ */
+public record FileSizeStats(long files,
+                            long bytes,
+                            long smallest,
+                            long largest,
+                            long smallFiles,
+                            List<Long> histogram) {
+
+    private static final long MB = 1024 * 1024;
+
+    /** Upper bounds of the histogram ranges: 1 MB, 8 MB, 32 MB, 128 MB and 512 MB. */
+    public static final List<Long> HISTOGRAM_BOUNDS = List.of(MB, 8 * MB, 32 * MB, 128 * MB, 512 * MB);
+
+    /** Mean file size in bytes. */
+    public long averageSize() {
+        return files == 0 ? 0 : bytes / files;
+    }
+
+    static final class Accumulator {
+        private final long minFileSize;
+        private final LongAccumulator files = new LongAccumulator(Long::sum, 0L);
+        private final LongAccumulator bytes = new LongAccumulator(Long::sum, 0L);
+        private final LongAccumulator smallest = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator largest = new LongAccumulator(Math::max, 0L);
+        private final LongAccumulator smallFiles = new LongAccumulator(Long::sum, 0L);
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BOUNDS.size() + 1);
+
+        Accumulator(long minFileSize) {
+            this.minFileSize = minFileSize;
+        }
+
+        /** Counts files whose sizes were not read. */
+        void recordUnsized(long count) {
+            files.accumulate(count);
+        }
+
+        void record(long size) {
+            files.accumulate(1);
+            bytes.accumulate(size);
+            smallest.accumulate(size);
+            largest.accumulate(size);
+            if (size < minFileSize) {
+                smallFiles.accumulate(1);
+            }
+            int range = 0;
+            while (range < HISTOGRAM_BOUNDS.size() && size >= HISTOGRAM_BOUNDS.get(range)) {
+                range++;
+            }
+            histogram.incrementAndGet(range);
+        }
+
+        FileSizeStats snapshot() {
+            var counts = new ArrayList<Long>(histogram.length());
+            for (int i = 0; i < histogram.length(); i++) {
+                counts.add(histogram.get(i));
+            }
+            long min = smallest.get();
+            return new FileSizeStats(files.get(), bytes.get(), min == Long.MAX_VALUE ? 0 : min, largest.get(),
+                    smallFiles.get(), List.copyOf(counts));
+        }
+    }
+}
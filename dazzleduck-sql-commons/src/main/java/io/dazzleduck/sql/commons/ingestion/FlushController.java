@@ -0,0 +1,116 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Picks the flush size and delay of a {@link BulkIngestQueue} from its traffic.
+ *
+ * <p>The queue reports the bytes it accepts and the time its writes take; both are smoothed with
+ * an exponentially weighted moving average. A batch waits for the flush delay and then for its
+ * write, so the delay may use what the target latency leaves after the write time. At the arrival
+ * rate that fills a bucket of
+ * <pre>  flushSize  = clamp(min(targetFileSize, rate * (targetLatency - writeTime)), minBucketSize, maxSize)</pre>
+ * bytes, reached after
+ * <pre>  flushDelay = clamp(flushSize / rate, minDelay, min(maxDelay, targetLatency - writeTime))</pre>
+ * A quiet queue thus waits out its latency budget and writes one larger file rather than one per
+ * tick, while a busy queue writes files of the target size as soon as they are full. When the
+ * queue receives faster than it writes, the size goes to {@code maxSize} so each write carries as
+ * much as allowed; {@code maxSize} is the queue's {@code maxBucketSize} but at most half its
+ * {@code maxPendingWrite}, so a filling bucket never holds back the next.
+ *
+ * <p>Disabled, it always returns the queue's static {@code minBucketSize} and {@code maxDelay}.
+ */
+final class FlushController {
+
+    /** Weight of a new sample in the moving averages. */
+    private static final double ALPHA = 0.3;
+    /** Accepted bytes are folded into the rate at most this often, so bursts are not sampled alone. */
+    private static final Duration MIN_SAMPLE_INTERVAL = Duration.ofMillis(100);
+
+    private final AdaptiveFlushConfig config;
+    private final long minSize;
+    private final long maxSize;
+
+    // Guarded by this; the rates are bytes per millisecond and times milliseconds, negative until sampled
+    private long bytesSinceSample;
+    private Instant lastSample;
+    private double arrivalRate = -1;
+    private double writeTime = -1;
+    private double writeRate = -1;
+    private long flushSize;
+    private Duration flushDelay;
+
+    FlushController(AdaptiveFlushConfig config, long minBucketSize, long maxBucketSize, long maxPendingWrite,
+                    Duration maxDelay, Instant now) {
+        this.config = config;
+        this.minSize = minBucketSize;
+        this.maxSize = Math.max(minBucketSize, Math.min(maxBucketSize, maxPendingWrite / 2));
+        this.lastSample = now;
+        this.flushSize = minBucketSize;
+        this.flushDelay = config.enabled() ? clampDelay(maxDelay, config.maxDelay()) : maxDelay;
+    }
+
+    synchronized long flushSize() {
+        return flushSize;
+    }
+
+    synchronized Duration flushDelay() {
+        return flushDelay;
+    }
+
+    synchronized void onAccepted(long bytes) {
+        bytesSinceSample += bytes;
+    }
+
+    synchronized void onWritten(long bytes, Duration time) {
+        long millis = Math.max(1, time.toMillis());
+        writeTime = writeTime < 0 ? millis : ALPHA * millis + (1 - ALPHA) * writeTime;
+        double rate = (double) bytes / millis;
+        writeRate = writeRate < 0 ? rate : ALPHA * rate + (1 - ALPHA) * writeRate;
+    }
+
+    /** Folds the bytes accepted since the last call into the arrival rate and recomputes the thresholds. */
+    synchronized void update(Instant now) {
+        if (!config.enabled()) {
+            return;
+        }
+        long elapsed = Duration.between(lastSample, now).toMillis();
+        if (elapsed < MIN_SAMPLE_INTERVAL.toMillis()) {
+            return;
+        }
+        double rate = (double) bytesSinceSample / elapsed;
+        arrivalRate = arrivalRate < 0 ? rate : ALPHA * rate + (1 - ALPHA) * arrivalRate;
+        bytesSinceSample = 0;
+        lastSample = now;
+
+        long budget = Math.max(config.minDelay().toMillis(), config.targetLatency().toMillis() - (long) Math.max(0, writeTime));
+        Duration maxDelay = Duration.ofMillis(Math.min(config.maxDelay().toMillis(), budget));
+        if (arrivalRate <= 0) {
+            flushSize = maxSize;
+            flushDelay = clampDelay(maxDelay, maxDelay);
+            return;
+        }
+        long size;
+        if (writeRate > 0 && arrivalRate >= writeRate) {
+            size = maxSize;
+        } else {
+            size = (long) Math.min(config.targetFileSize(), arrivalRate * budget);
+        }
+        flushSize = Math.max(minSize, Math.min(maxSize, size));
+        flushDelay = clampDelay(Duration.ofMillis((long) (flushSize / arrivalRate)), maxDelay);
+    }
+
+    private Duration clampDelay(Duration delay, Duration max) {
+        var upper = max.compareTo(config.minDelay()) < 0 ? config.minDelay() : max;
+        if (delay.compareTo(config.minDelay()) < 0) {
+            return config.minDelay();
+        }
+        return delay.compareTo(upper) > 0 ? upper : delay;
+    }
+
+    synchronized FlushStats stats() {
+        return new FlushStats(config.enabled(), flushSize, flushDelay.toMillis(),
+                (long) (Math.max(0, arrivalRate) * 1000), (long) Math.max(0, writeTime));
+    }
+}
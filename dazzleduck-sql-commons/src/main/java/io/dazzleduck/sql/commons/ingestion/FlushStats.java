@@ -0,0 +1,17 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+/**
+ * Flush thresholds a queue currently uses, see {@link FlushController}.
+ *
+ * @param adaptive    whether the thresholds are adjusted to the traffic, or the static ones
+ * @param flushSize   bucket size, in bytes, that triggers a write
+ * @param flushDelay  milliseconds after the previous write a partial bucket is written
+ * @param arrivalRate estimated bytes per second the queue receives
+ * @param writeTime   estimated milliseconds a write of the queue takes
+ */
+public record FlushStats(boolean adaptive,
+                         long flushSize,
+                         long flushDelay,
+                         long arrivalRate,
+                         long writeTime) {
+}
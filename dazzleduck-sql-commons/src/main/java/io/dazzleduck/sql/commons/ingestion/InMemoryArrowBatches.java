@@ -0,0 +1,300 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.apache.arrow.c.ArrowArrayStream;
+import org.apache.arrow.c.Data;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.duckdb.DuckDBConnection;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingested Arrow streams held in memory instead of in temp Arrow files.
+ *
+ * <p>{@link #receive} keeps the record batches of a stream as the reader loaded them: the buffers
+ * stay with the reader's allocator and are retained rather than copied. The stream is then
+ * identified by a {@link Batch#record()} starting with {@value #RECORD_PREFIX}, which
+ * {@link ParquetIngestionQueue} hands to DuckDB as an Arrow stream instead of reading a file.
+ * Streams are held only while the {@link Budget} has room; the stream that crosses it is spilled
+ * to a temp Arrow file, as every stream is when in-memory ingestion is off.
+ */
+public final class InMemoryArrowBatches {
+
+    public static final String RECORD_PREFIX = "arrow-memory:";
+
+    private static final Map<String, InMemoryArrowBatches> REGISTRY = new ConcurrentHashMap<>();
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /**
+     * Memory ceiling shared by the streams held in memory, and the allocator DuckDB reads them
+     * through. Must be a child of the allocator the ingested streams are read with.
+     */
+    public static final class Budget implements AutoCloseable {
+        private final long limit;
+        private final AtomicLong used = new AtomicLong();
+        private final BufferAllocator allocator;
+
+        public Budget(BufferAllocator parent, long limit) {
+            this.limit = limit;
+            this.allocator = parent.newChildAllocator("in-memory-ingestion", 0, Long.MAX_VALUE);
+        }
+
+        boolean tryReserve(long bytes) {
+            while (true) {
+                long current = used.get();
+                if (current + bytes > limit) {
+                    return false;
+                }
+                if (used.compareAndSet(current, current + bytes)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long bytes) {
+            used.addAndGet(-bytes);
+        }
+
+        /** @return bytes of the record batches currently held in memory */
+        public long getUsed() {
+            return used.get();
+        }
+
+        public long getLimit() {
+            return limit;
+        }
+
+        @Override
+        public void close() {
+            allocator.close();
+        }
+    }
+
+    /**
+     * @param record the {@link Batch#record()} of the stream: a key for a stream held in memory,
+     *               otherwise the absolute path of its temp Arrow file
+     * @param size   body bytes of the batches held in memory, or the size of the file
+     */
+    public record Received(String record, long size) {
+        public boolean inMemory() {
+            return isInMemory(record);
+        }
+    }
+
+    private final Schema schema;
+    private final List<ArrowRecordBatch> batches;
+    private final long size;
+    private final Budget budget;
+
+    private InMemoryArrowBatches(Schema schema, List<ArrowRecordBatch> batches, long size, Budget budget) {
+        this.schema = schema;
+        this.batches = batches;
+        this.size = size;
+        this.budget = budget;
+    }
+
+    /**
+     * Reads {@code reader} to the end, holding its batches in memory while {@code budget} has room
+     * for them. Once it runs out the batches held so far and the rest of the stream are written to a
+     * temp Arrow file in {@code tempDir}, as {@link BulkIngestQueue#writeAndValidateTempArrowFile}
+     * does. Either way an invalid stream fails here, before anything is queued.
+     */
+    public static Received receive(ArrowReader reader, Budget budget, Path tempDir) throws IOException {
+        var root = reader.getVectorSchemaRoot();
+        var held = new ArrayList<ArrowRecordBatch>();
+        long reserved = 0;
+        try {
+            while (reader.loadNextBatch()) {
+                var batch = new VectorUnloader(root).getRecordBatch();
+                held.add(batch);
+                long bytes = batch.computeBodyLength();
+                if (!budget.tryReserve(bytes)) {
+                    var file = spill(tempDir, reader, held);
+                    AutoCloseables.close(held);
+                    budget.release(reserved);
+                    return new Received(file.toAbsolutePath().toString(), Files.size(file));
+                }
+                reserved += bytes;
+            }
+        } catch (Exception e) {
+            try {
+                AutoCloseables.close(held);
+            } catch (Exception suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            budget.release(reserved);
+            if (e instanceof IOException ioe) throw ioe;
+            throw new IOException(e);
+        }
+        var record = RECORD_PREFIX + IDS.incrementAndGet();
+        REGISTRY.put(record, new InMemoryArrowBatches(root.getSchema(), held, reserved, budget));
+        return new Received(record, reserved);
+    }
+
+    /** Writes the {@code held} batches followed by the rest of {@code reader} to a temp Arrow file. */
+    private static Path spill(Path tempDir, ArrowReader reader, List<ArrowRecordBatch> held) throws IOException {
+        var root = reader.getVectorSchemaRoot();
+        var file = tempDir.resolve("ingestion_" + UUID.randomUUID() + ".arrow");
+        try (var fos = new FileOutputStream(file.toString());
+             var writer = new ArrowStreamWriter(root, null, Channels.newChannel(fos))) {
+            var loader = new VectorLoader(root);
+            for (var batch : held) {
+                loader.load(batch);
+                writer.writeBatch();
+            }
+            while (reader.loadNextBatch()) {
+                writer.writeBatch();
+            }
+            writer.end();
+        } catch (Exception e) {
+            Files.deleteIfExists(file);
+            if (e instanceof IOException ioe) throw ioe;
+            throw new IOException(e);
+        }
+        return file;
+    }
+
+    public static boolean isInMemory(String record) {
+        return record != null && record.startsWith(RECORD_PREFIX);
+    }
+
+    /** Frees the batches of an in-memory record. Records that are gone already are ignored. */
+    public static void release(String record) {
+        var entry = REGISTRY.remove(record);
+        if (entry == null) {
+            return;
+        }
+        try {
+            AutoCloseables.close(entry.batches);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to release in-memory batches of " + record, e);
+        } finally {
+            entry.budget.release(entry.size);
+        }
+    }
+
+    /**
+     * @return the number of Arrow streams {@link #register} creates for {@code records}: one per
+     * distinct schema
+     */
+    public static int streamCount(List<String> records) {
+        return groupBySchema(records).size();
+    }
+
+    /**
+     * Registers the batches of {@code records} on {@code connection}, one Arrow stream per distinct
+     * schema, named {@code tableNames} in order. The records stay held until {@link #release}d;
+     * closing the returned handle only closes the streams.
+     */
+    public static Closeable register(DuckDBConnection connection, List<String> records, List<String> tableNames) {
+        var groups = groupBySchema(records);
+        if (groups.size() != tableNames.size()) {
+            throw new IllegalArgumentException("Expected %d table names, got %d".formatted(groups.size(), tableNames.size()));
+        }
+        var resources = new ArrayList<AutoCloseable>();
+        int i = 0;
+        try {
+            for (var group : groups.entrySet()) {
+                var allocator = group.getValue().get(0).budget.allocator;
+                var batches = group.getValue().stream().flatMap(e -> e.batches.stream()).toList();
+                var reader = new RecordBatchReader(allocator, group.getKey(), batches);
+                resources.add(reader);
+                var stream = ArrowArrayStream.allocateNew(allocator);
+                resources.add(stream);
+                Data.exportArrayStream(allocator, reader, stream);
+                connection.registerArrowStream(tableNames.get(i++), stream);
+            }
+        } catch (RuntimeException e) {
+            closeAll(resources, e);
+            throw e;
+        }
+        return () -> {
+            try {
+                AutoCloseables.close(resources);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        };
+    }
+
+    private static void closeAll(List<AutoCloseable> resources, Exception cause) {
+        try {
+            AutoCloseables.close(resources);
+        } catch (Exception suppressed) {
+            cause.addSuppressed(suppressed);
+        }
+    }
+
+    private static Map<Schema, List<InMemoryArrowBatches>> groupBySchema(List<String> records) {
+        var groups = new LinkedHashMap<Schema, List<InMemoryArrowBatches>>();
+        for (var record : records) {
+            var entry = REGISTRY.get(record);
+            if (entry == null) {
+                throw new IllegalStateException("In-memory batches " + record + " were released");
+            }
+            groups.computeIfAbsent(entry.schema, s -> new ArrayList<>()).add(entry);
+        }
+        return groups;
+    }
+
+    /**
+     * Replays held record batches. The batches are loaded without being closed, so they can be read
+     * again if the write is retried; they are freed by {@link #release}.
+     */
+    private static final class RecordBatchReader extends ArrowReader {
+        private final Schema schema;
+        private final Iterator<ArrowRecordBatch> batches;
+        private VectorLoader loader;
+
+        RecordBatchReader(BufferAllocator allocator, Schema schema, List<ArrowRecordBatch> batches) {
+            super(allocator);
+            this.schema = schema;
+            this.batches = batches.iterator();
+        }
+
+        @Override
+        public boolean loadNextBatch() throws IOException {
+            if (!batches.hasNext()) {
+                return false;
+            }
+            if (loader == null) {
+                loader = new VectorLoader(getVectorSchemaRoot());
+            }
+            loader.load(batches.next());
+            return true;
+        }
+
+        @Override
+        public long bytesRead() {
+            return 0;
+        }
+
+        @Override
+        protected void closeReadSource() {
+        }
+
+        @Override
+        protected Schema readSchema() {
+            return schema;
+        }
+    }
+}
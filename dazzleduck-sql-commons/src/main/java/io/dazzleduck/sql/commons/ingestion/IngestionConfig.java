@@ -10,20 +10,45 @@ import java.time.Duration;
  *
  * <p>Separates operational concerns (flush thresholds, delays) from domain concerns
  * (output path, transformation, partition columns) which are provided by
- * {@link IngestionHandler}.
+ * {@link IngestionHandler}. {@link #wal()} optionally logs accepted batches so they survive a
+ * restart, see {@link IngestionWal}. {@link #inMemoryMaxBytes()} bounds the ingested Arrow streams
+ * held in memory rather than written to temp files, see {@link InMemoryArrowBatches}; 0 disables it.
+ * {@link #writerThreads()} sizes the {@link IngestionWriterPool} all queues of a server write on, and
+ * {@link #writersPerQueue()} is how many COPYs a partitioned bucket is split into.
+ * {@link #adaptiveFlush()} optionally lets each queue adjust its flush size and delay to its traffic,
+ * {@link #parquetWrite()} shapes the files the queues write, and {@link #producerDedup()} how client
+ * retries of a batch are recognized, see {@link ProducerSequenceStore}.
  */
 public record IngestionConfig(long minBucketSize,
                                long maxBucketSize,
                                int  maxBatches,
                                long maxPendingWrite,
                                Duration maxDelay,
-                               Duration configRefreshDelay) {
+                               Duration configRefreshDelay,
+                               IngestionWalConfig wal,
+                               long inMemoryMaxBytes,
+                               int writerThreads,
+                               int writersPerQueue,
+                               AdaptiveFlushConfig adaptiveFlush,
+                               ParquetWriteConfig parquetWrite,
+                               ProducerDedupConfig producerDedup) {
 
     public static final long     DEFAULT_MAX_BUCKET_SIZE   = 100L * 1024 * 1024; // 100 MB
     public static final long     DEFAULT_MAX_PENDING_WRITE = 500L * 1024 * 1024; // 500 MB
     public static final int      DEFAULT_MAX_BATCHES       = Integer.MAX_VALUE;
     public static final Duration DEFAULT_CONFIG_REFRESH    = Duration.ofMinutes(2);
 
+    public IngestionConfig(long minBucketSize,
+                           long maxBucketSize,
+                           int maxBatches,
+                           long maxPendingWrite,
+                           Duration maxDelay,
+                           Duration configRefreshDelay) {
+        this(minBucketSize, maxBucketSize, maxBatches, maxPendingWrite, maxDelay, configRefreshDelay,
+                IngestionWalConfig.DISABLED, 0, IngestionWriterPool.DEFAULT_THREADS, 1, AdaptiveFlushConfig.DISABLED,
+                ParquetWriteConfig.DEFAULT, ProducerDedupConfig.DEFAULT);
+    }
+
     public static IngestionConfig fromConfig(Config config) {
         return new IngestionConfig(
                 config.getLong(ConfigConstants.MIN_BUCKET_SIZE_KEY),
@@ -36,6 +61,16 @@ public record IngestionConfig(long minBucketSize,
                 Duration.ofMillis(config.getLong(ConfigConstants.MAX_DELAY_MS_KEY)),
                 config.hasPath(ConfigConstants.QUEUE_CONFIG_REFRESH_DELAY_MS_KEY)
                         ? Duration.ofMillis(config.getLong(ConfigConstants.QUEUE_CONFIG_REFRESH_DELAY_MS_KEY))
-                        : DEFAULT_CONFIG_REFRESH);
+                        : DEFAULT_CONFIG_REFRESH,
+                IngestionWalConfig.fromConfig(config),
+                config.hasPath(ConfigConstants.INGESTION_IN_MEMORY_MAX_BYTES_KEY)
+                        ? config.getBytes(ConfigConstants.INGESTION_IN_MEMORY_MAX_BYTES_KEY) : 0,
+                config.hasPath(ConfigConstants.INGESTION_WRITER_THREADS_KEY)
+                        ? config.getInt(ConfigConstants.INGESTION_WRITER_THREADS_KEY) : IngestionWriterPool.DEFAULT_THREADS,
+                config.hasPath(ConfigConstants.INGESTION_WRITERS_PER_QUEUE_KEY)
+                        ? config.getInt(ConfigConstants.INGESTION_WRITERS_PER_QUEUE_KEY) : 1,
+                AdaptiveFlushConfig.fromConfig(config),
+                ParquetWriteConfig.fromConfig(config),
+                ProducerDedupConfig.fromConfig(config));
     }
 }
@@ -32,6 +32,12 @@ public interface IngestionHandler {
     /** Returns stats for all currently cached queues. */
     default java.util.List<Stats> getQueueStats() { return java.util.List.of(); }
 
+    /**
+     * Returns the catalog commit stats of the table the writes of {@code queueId} are committed
+     * to, or {@code null} when they are not committed to a catalog.
+     */
+    default DuckLakeCommitStats getCommitStats(String queueId) { return null; }
+
     /** Closes and clears all cached queues on producer shutdown. */
     default void closeQueues() {}
 
@@ -0,0 +1,63 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+/**
+ * Optional features of a {@link BulkIngestQueue}, passed as one argument so that a new feature does
+ * not add another constructor overload.
+ *
+ * <p>{@code writerPool} writes buckets on a shared pool instead of a thread of the queue's own,
+ * {@code adaptiveFlush} adjusts the flush size and delay to the queue's traffic, and
+ * {@code producerDedup} and {@code sequenceStore} recognize retried batches, see the
+ * {@link BulkIngestQueue} constructor. {@code wal}, {@code writers} and {@code parquetWrite} only
+ * apply to a {@link ParquetIngestionQueue}. A queue owns the log and the store it is given and
+ * closes them.
+ *
+ * <p>{@link #DEFAULT} turns all of them off; the {@code with} methods return a copy with one
+ * setting replaced.
+ */
+public record IngestionQueueOptions(
+        IngestionWriterPool writerPool,
+        AdaptiveFlushConfig adaptiveFlush,
+        ProducerDedupConfig producerDedup,
+        ProducerSequenceStore sequenceStore,
+        IngestionWal wal,
+        int writers,
+        ParquetWriteConfig parquetWrite
+) {
+
+    public static final IngestionQueueOptions DEFAULT = new IngestionQueueOptions(null,
+            AdaptiveFlushConfig.DISABLED, ProducerDedupConfig.DEFAULT, null, null, 1, ParquetWriteConfig.DEFAULT);
+
+    public IngestionQueueOptions {
+        if (writers < 1) {
+            throw new IllegalArgumentException("writers must be positive: " + writers);
+        }
+    }
+
+    public IngestionQueueOptions withWriterPool(IngestionWriterPool writerPool) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withAdaptiveFlush(AdaptiveFlushConfig adaptiveFlush) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withProducerDedup(ProducerDedupConfig producerDedup) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withSequenceStore(ProducerSequenceStore sequenceStore) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withWal(IngestionWal wal) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withWriters(int writers) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+
+    public IngestionQueueOptions withParquetWrite(ParquetWriteConfig parquetWrite) {
+        return new IngestionQueueOptions(writerPool, adaptiveFlush, producerDedup, sequenceStore, wal, writers, parquetWrite);
+    }
+}
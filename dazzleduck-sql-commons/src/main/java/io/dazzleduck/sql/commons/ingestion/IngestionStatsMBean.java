@@ -1,10 +1,21 @@
 package io.dazzleduck.sql.commons.ingestion;
 
 import java.time.Duration;
+import java.util.List;
 
 public interface IngestionStatsMBean {
 
 
     String identifier();
     Stats getStats();
+
+    /** Throughput and lag of each writer of the queue. */
+    default List<WriterStats> getWriterStats() {
+        return getStats().writers();
+    }
+
+    /** Sizes of the files the queue wrote, null when it does not track them. */
+    default FileSizeStats getFileSizeStats() {
+        return getStats().files();
+    }
 }
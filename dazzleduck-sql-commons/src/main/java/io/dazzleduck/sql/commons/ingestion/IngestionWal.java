@@ -0,0 +1,563 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the batches a {@link ParquetIngestionQueue} accepted but has not written yet.
+ *
+ * <p>Each queue has a directory {@code <wal.directory>/<url-encoded queue id>}. Its {@code data/}
+ * directory holds the batch files, moved there from the temp write location when the batch is
+ * accepted, and the {@code <number>.wal} files are the log segments, numbered in the order they
+ * were started. A segment is a sequence of
+ * {@code [int length][int crc32][payload]} records, the payload being one of
+ * <ul>
+ *   <li>{@code ADD}: a batch, with its sequence number, file and producer id / batch id;</li>
+ *   <li>{@code COMMIT}: all batches up to a sequence number have been written, with the highest
+ *       batch id per producer among them;</li>
+ *   <li>{@code SNAPSHOT}: the committed sequence number and the batch id of every known producer,
+ *       written at the start of each segment so that older segments can be deleted.</li>
+ * </ul>
+ * A queue writes batches in the order it accepted them, so commits always advance a prefix of the
+ * log. A segment is deleted once it is no longer the active one and all batches it added are
+ * committed.
+ *
+ * <p>Opening the log reads it back: the batches after the last commit whose files still exist are
+ * {@link #recovered()} for the queue to replay, a torn record at the end of a segment is
+ * truncated, and batch files no pending batch refers to are deleted.
+ *
+ * <p>With {@link SyncPolicy#GROUP}, {@link #sync()} fsyncs every record appended so far; callers
+ * that arrive while an fsync is running wait for the next one, which then covers all of them.
+ *
+ * <p>A batch is committed after its queue wrote it and ran the post-ingestion task, so a crash in
+ * between replays it once more. The recovered producer batch ids make a client's retry of a batch
+ * that is replayed fail as out of sequence instead of being ingested twice.
+ */
+public final class IngestionWal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionWal.class);
+
+    public enum SyncPolicy { GROUP, NONE }
+
+    /** State read back on open: producer batch ids of written batches, and the batches to replay in order. */
+    public record Recovered(Map<String, Long> producerBatchIds, List<Batch<String>> batches) { }
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String DATA_DIRECTORY = "data";
+    private static final String LOCK_FILE = "LOCK";
+    private static final byte ADD = 1;
+    private static final byte COMMIT = 2;
+    private static final byte SNAPSHOT = 3;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_PRODUCER_IDS = 10000;
+
+    private final Path directory;
+    private final Path dataDirectory;
+    private final IngestionWalConfig config;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    /** Segments oldest first; the last one is active. */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    /** Sequence numbers of the appended batches not committed yet, in the order they were appended. */
+    private final ArrayDeque<Long> pending = new ArrayDeque<>();
+    private final Map<String, Long> producerBatchIds = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_PRODUCER_IDS;
+        }
+    };
+    private final Recovered recovered;
+    private FileChannel channel;
+    private long nextSequence;
+    private long nextSegment;
+    private long committedSequence;
+    private IOException failure;
+    private boolean closed;
+
+    /** Number of records written so far; {@link #sync()} fsyncs up to the value it reads. */
+    private volatile long written;
+    private final Object syncLock = new Object();
+    private boolean syncing;
+    private long synced;
+
+    /** Directory of the log of {@code queueId}. */
+    public static Path queueDirectory(Path walDirectory, String queueId) {
+        return walDirectory.resolve(URLEncoder.encode(queueId, StandardCharsets.UTF_8));
+    }
+
+    /** Ids of the queues that have a log under {@code walDirectory}. */
+    public static List<String> queueIds(Path walDirectory) throws IOException {
+        if (!Files.isDirectory(walDirectory)) {
+            return List.of();
+        }
+        try (var entries = Files.list(walDirectory)) {
+            return entries.filter(Files::isDirectory)
+                    .map(p -> URLDecoder.decode(p.getFileName().toString(), StandardCharsets.UTF_8))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Opens the log of {@code queueId}, creating it if needed.
+     *
+     * @throws IOException if the log cannot be read, or another queue already has it open
+     */
+    public static IngestionWal open(IngestionWalConfig config, String queueId) throws IOException {
+        return new IngestionWal(queueDirectory(config.directory(), queueId), config);
+    }
+
+    private IngestionWal(Path directory, IngestionWalConfig config) throws IOException {
+        this.directory = directory;
+        this.dataDirectory = directory.resolve(DATA_DIRECTORY);
+        this.config = config;
+        Files.createDirectories(dataDirectory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Ingestion write-ahead log " + directory + " is in use by another queue");
+        }
+        this.lock = acquired;
+        try {
+            this.recovered = recover();
+            roll();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** The producer batch ids and batches read back on open. */
+    public Recovered recovered() {
+        return recovered;
+    }
+
+    /**
+     * Moves the batch's file into the log and appends the batch. Must be called in the order the
+     * queue accepts batches; the record is durable once a later {@link #sync()} returns.
+     *
+     * @return the batch, referring to its file's new location
+     */
+    public synchronized Batch<String> append(Batch<String> batch) throws IOException {
+        ensureUsable();
+        var source = Path.of(batch.record());
+        var target = dataDirectory.resolve(nextSequence + "-" + source.getFileName());
+        Files.move(source, target);
+        var moved = new Batch<>(batch.sortOrder(), batch.partitionBy(), target.toString(), batch.producerId(),
+                batch.producerBatchId(), batch.totalSize(), batch.format(), batch.receivedTime());
+        try {
+            writeRecord(encodeAdd(nextSequence, moved));
+        } catch (IOException e) {
+            // The segment may now end in a partial record: refuse further appends
+            failure = e;
+            try {
+                Files.move(target, source);
+            } catch (IOException restore) {
+                e.addSuppressed(restore);
+            }
+            throw e;
+        }
+        segments.getLast().maxSequence = nextSequence;
+        pending.addLast(nextSequence++);
+        rollIfFull();
+        return moved;
+    }
+
+    /**
+     * Records that the next {@code batches} appended or recovered batches have been written and
+     * syncs the record.
+     */
+    public void commit(int batches, Map<String, Long> producerMaxBatchId) throws IOException {
+        synchronized (this) {
+            ensureUsable();
+            long through = committedSequence;
+            for (int i = 0; i < batches && !pending.isEmpty(); i++) {
+                through = pending.pollFirst();
+            }
+            committedSequence = through;
+            producerMaxBatchId.forEach((producer, id) -> producerBatchIds.merge(producer, id, Math::max));
+            try {
+                writeRecord(encodeCheckpoint(COMMIT, through, producerMaxBatchId));
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            if (!rollIfFull()) {
+                deleteCommittedSegments();
+            }
+        }
+        sync();
+    }
+
+    /** Forces a batch file to disk before its batch is appended; a no-op unless {@link SyncPolicy#GROUP}. */
+    public void forceFile(Path file) throws IOException {
+        if (config.sync() != SyncPolicy.GROUP) {
+            return;
+        }
+        try (var fileChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            fileChannel.force(true);
+        }
+    }
+
+    /**
+     * Returns once every record written before the call is on disk; a no-op unless
+     * {@link SyncPolicy#GROUP}. Concurrent callers share fsyncs.
+     */
+    public void sync() throws IOException {
+        if (config.sync() != SyncPolicy.GROUP) {
+            return;
+        }
+        long target = written;
+        while (true) {
+            synchronized (syncLock) {
+                while (syncing && synced < target) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for the ingestion write-ahead log sync");
+                    }
+                }
+                if (synced >= target) {
+                    return;
+                }
+                syncing = true;
+            }
+            long covering;
+            FileChannel active;
+            synchronized (this) {
+                ensureUsable();
+                covering = written;
+                active = channel;
+            }
+            boolean done = false;
+            try {
+                try {
+                    active.force(false);
+                } catch (ClosedChannelException e) {
+                    // Rolled or closed meanwhile, both of which force the segment first
+                }
+                forceDirectory(dataDirectory);
+                done = true;
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+                throw e;
+            } finally {
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (done) {
+                        synced = Math.max(synced, covering);
+                    }
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                if (config.sync() == SyncPolicy.GROUP && failure == null) {
+                    channel.force(false);
+                }
+                channel.close();
+            }
+        } finally {
+            try {
+                lock.release();
+            } finally {
+                lockChannel.close();
+            }
+        }
+    }
+
+    private void ensureUsable() throws IOException {
+        if (closed) {
+            throw new IOException("Ingestion write-ahead log " + directory + " is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Ingestion write-ahead log " + directory + " failed earlier", failure);
+        }
+    }
+
+    private Recovered recover() throws IOException {
+        List<Path> files;
+        try (var entries = Files.list(directory)) {
+            files = entries.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(IngestionWal::segmentNumber))
+                    .toList();
+        }
+        this.nextSegment = files.isEmpty() ? 0 : segmentNumber(files.get(files.size() - 1)) + 1;
+        var added = new TreeMap<Long, Batch<String>>();
+        long maxSequence = -1;
+        long committed = -1;
+        for (var file : files) {
+            var segment = new Segment(file);
+            for (var record : readSegment(file)) {
+                try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+                    byte type = in.readByte();
+                    long sequence = in.readLong();
+                    maxSequence = Math.max(maxSequence, sequence);
+                    if (type == ADD) {
+                        added.put(sequence, decodeAdd(in));
+                        segment.maxSequence = Math.max(segment.maxSequence, sequence);
+                    } else {
+                        committed = Math.max(committed, sequence);
+                        int producers = in.readInt();
+                        for (int i = 0; i < producers; i++) {
+                            producerBatchIds.merge(in.readUTF(), in.readLong(), Math::max);
+                        }
+                    }
+                }
+            }
+            segments.addLast(segment);
+        }
+        this.nextSequence = maxSequence + 1;
+        this.committedSequence = committed;
+
+        var batches = new ArrayList<Batch<String>>();
+        var referenced = new HashSet<Path>();
+        for (var entry : added.tailMap(committed, false).entrySet()) {
+            var batch = entry.getValue();
+            var file = Path.of(batch.record());
+            if (Files.exists(file)) {
+                batches.add(batch);
+                referenced.add(file);
+                pending.addLast(entry.getKey());
+            } else {
+                logger.warn("Ingestion write-ahead log {}: file {} of batch {} is missing, skipping it",
+                        directory, file, entry.getKey());
+            }
+        }
+        try (var entries = Files.list(dataDirectory)) {
+            for (var file : (Iterable<Path>) entries::iterator) {
+                if (!referenced.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (!batches.isEmpty()) {
+            logger.info("Ingestion write-ahead log {}: recovered {} batches", directory, batches.size());
+        }
+        return new Recovered(Map.copyOf(producerBatchIds), List.copyOf(batches));
+    }
+
+    /** Valid records of a segment; truncates the segment at the first torn or corrupt record. */
+    static List<byte[]> readSegment(Path file) throws IOException {
+        var records = new ArrayList<byte[]>();
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            var payload = new byte[length];
+            buffer.get(payload);
+            var crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            records.add(payload);
+        }
+        if (buffer.hasRemaining()) {
+            logger.warn("Log segment {} ends in a torn record at {}, truncating it",
+                    file, buffer.position());
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+            }
+        }
+        return records;
+    }
+
+    private static long segmentNumber(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private boolean rollIfFull() throws IOException {
+        if (channel.position() < config.segmentSize()) {
+            return false;
+        }
+        roll();
+        return true;
+    }
+
+    /** Starts a new segment with a snapshot of the committed state, and drops committed segments. */
+    private void roll() throws IOException {
+        if (channel != null) {
+            if (config.sync() == SyncPolicy.GROUP) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+        var path = directory.resolve("%020d%s".formatted(nextSegment++, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.addLast(new Segment(path));
+        writeRecord(encodeCheckpoint(SNAPSHOT, committedSequence, producerBatchIds));
+        if (config.sync() == SyncPolicy.GROUP) {
+            channel.force(false);
+            forceDirectory(directory);
+        }
+        deleteCommittedSegments();
+    }
+
+    private void deleteCommittedSegments() throws IOException {
+        while (segments.size() > 1 && segments.getFirst().maxSequence <= committedSequence) {
+            Files.deleteIfExists(segments.removeFirst().path);
+        }
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        var crc = new CRC32();
+        crc.update(payload);
+        var buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written++;
+    }
+
+    static void forceDirectory(Path path) throws IOException {
+        try (var dir = FileChannel.open(path, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory for syncing
+            logger.trace("Could not sync directory {}", path, e);
+        }
+    }
+
+    private static byte[] encodeAdd(long sequence, Batch<String> batch) throws IOException {
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(ADD);
+            out.writeLong(sequence);
+            writeNullable(out, batch.producerId());
+            out.writeLong(batch.producerBatchId());
+            out.writeLong(batch.totalSize());
+            writeNullable(out, batch.format());
+            out.writeUTF(batch.record());
+            out.writeLong(batch.receivedTime().getEpochSecond());
+            out.writeInt(batch.receivedTime().getNano());
+            writeArray(out, batch.sortOrder());
+            writeArray(out, batch.partitionBy());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Batch<String> decodeAdd(DataInputStream in) throws IOException {
+        var producerId = readNullable(in);
+        long producerBatchId = in.readLong();
+        long totalSize = in.readLong();
+        var format = readNullable(in);
+        var record = in.readUTF();
+        var receivedTime = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        var sortOrder = readArray(in);
+        var partitionBy = readArray(in);
+        return new Batch<>(sortOrder, partitionBy, record, producerId, producerBatchId, totalSize, format, receivedTime);
+    }
+
+    private static byte[] encodeCheckpoint(byte type, long sequence, Map<String, Long> producers) throws IOException {
+        var bytes = new ByteArrayOutputStream(16 + producers.size() * 32);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeLong(sequence);
+            out.writeInt(producers.size());
+            for (var entry : producers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeArray(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null) {
+            for (var value : values) {
+                writeNullable(out, value);
+            }
+        }
+    }
+
+    private static String[] readArray(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readNullable(in);
+        }
+        return values;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        /** Highest sequence number of a batch added in this segment, -1 if none. */
+        private long maxSequence = -1;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+}
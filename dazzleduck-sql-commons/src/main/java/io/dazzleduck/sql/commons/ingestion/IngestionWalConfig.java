@@ -0,0 +1,44 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Settings of the ingestion write-ahead log ({@code ingestion.wal}), see {@link IngestionWal}.
+ *
+ * <p>{@code sync} is {@link IngestionWal.SyncPolicy#GROUP} to fsync log records and batch files
+ * before {@code add} returns, several concurrent adds sharing one fsync; or
+ * {@link IngestionWal.SyncPolicy#NONE} to leave them in the page cache, which survives a crash
+ * of the process but not of the host.
+ */
+public record IngestionWalConfig(boolean enabled,
+                                 Path directory,
+                                 long segmentSize,
+                                 IngestionWal.SyncPolicy sync) {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024; // 64 MB
+
+    public static final IngestionWalConfig DISABLED =
+            new IngestionWalConfig(false, null, DEFAULT_SEGMENT_SIZE, IngestionWal.SyncPolicy.GROUP);
+
+    public static IngestionWalConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.INGESTION_WAL_KEY)) {
+            return DISABLED;
+        }
+        var wal = config.getConfig(ConfigConstants.INGESTION_WAL_KEY);
+        if (!wal.getBoolean(ConfigConstants.ENABLED_KEY)) {
+            return DISABLED;
+        }
+        return new IngestionWalConfig(
+                true,
+                Path.of(wal.getString(ConfigConstants.INGESTION_WAL_DIRECTORY_KEY)),
+                wal.hasPath(ConfigConstants.INGESTION_WAL_SEGMENT_SIZE_KEY)
+                        ? wal.getBytes(ConfigConstants.INGESTION_WAL_SEGMENT_SIZE_KEY) : DEFAULT_SEGMENT_SIZE,
+                wal.hasPath(ConfigConstants.INGESTION_WAL_SYNC_KEY)
+                        ? IngestionWal.SyncPolicy.valueOf(wal.getString(ConfigConstants.INGESTION_WAL_SYNC_KEY).toUpperCase(Locale.ROOT))
+                        : IngestionWal.SyncPolicy.GROUP);
+    }
+}
@@ -0,0 +1,60 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writer threads and flush timer shared by many {@link BulkIngestQueue}s, so the thread count does
+ * not grow with the number of queues.
+ *
+ * <p>A queue has at most one drain task in the pool at a time. The task writes one bucket and, if
+ * the queue has more, goes back to the end of the pool's FIFO queue: buckets of one queue are
+ * written in order, and busy queues take turns with the others rather than holding a thread.
+ */
+public final class IngestionWriterPool implements AutoCloseable {
+
+    public static final int DEFAULT_THREADS = 4;
+
+    private final ExecutorService writers;
+    private final ScheduledExecutorService timer;
+
+    public IngestionWriterPool(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.writers = Executors.newFixedThreadPool(threads, daemonThreads("ingestion-writer-"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("ingestion-timer-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        var count = new AtomicInteger();
+        return r -> {
+            var t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    void execute(Runnable drain) {
+        writers.execute(drain);
+    }
+
+    /** @return the scheduler queues use for their time-based flushes */
+    public ScheduledExecutorService timer() {
+        return timer;
+    }
+
+    /** Stops the threads. Close the queues using the pool first so their writes can finish. */
+    @Override
+    public void close() throws InterruptedException {
+        timer.shutdownNow();
+        writers.shutdown();
+        if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+            writers.shutdownNow();
+        }
+    }
+}
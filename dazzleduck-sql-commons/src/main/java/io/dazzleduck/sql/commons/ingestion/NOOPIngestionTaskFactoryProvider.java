@@ -1,15 +1,24 @@
 package io.dazzleduck.sql.commons.ingestion;
 
 import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * No-operation implementation of IngestionTaskFactoryProvider.
  * Returns a factory that creates NOOP tasks which do nothing.
+ *
+ * <p>The handler creates one queue per queue ID and keeps it until {@link IngestionHandler#closeQueues()},
+ * since a queue with a write-ahead log holds that log exclusively.
  */
 public class NOOPIngestionTaskFactoryProvider implements IngestionTaskFactoryProvider {
 
+    private static final Logger logger = LoggerFactory.getLogger(NOOPIngestionTaskFactoryProvider.class);
+
     private Config config;
     private String ingestionPath;
 
@@ -29,6 +38,8 @@ public class NOOPIngestionTaskFactoryProvider implements IngestionTaskFactoryPro
     @Override
     public IngestionHandler getIngestionHandler() {
         return new IngestionHandler() {
+            private final ConcurrentHashMap<String, ParquetIngestionQueue> queueCache = new ConcurrentHashMap<>();
+
             @Override
             public PostIngestionTask createPostIngestionTask(IngestionResult ingestionResult) {
                 return PostIngestionTask.NOOP;
@@ -43,6 +54,30 @@ public class NOOPIngestionTaskFactoryProvider implements IngestionTaskFactoryPro
             public String[] getPartitionBy(String queueId) {
                 return new String[0];
             }
+
+            @Override
+            public ParquetIngestionQueue getOrCreateQueue(String queueId, QueueCreator creator, QueueEventListener listener) {
+                return queueCache.computeIfAbsent(queueId, id -> {
+                    var queue = creator.create(id, getTargetPath(id));
+                    listener.onCreated(id);
+                    return queue;
+                });
+            }
+
+            @Override
+            public List<Stats> getQueueStats() {
+                return queueCache.values().stream().map(ParquetIngestionQueue::getStats).toList();
+            }
+
+            @Override
+            public void closeQueues() {
+                queueCache.forEach((id, queue) -> {
+                    try { queue.close(); } catch (Exception e) {
+                        logger.atWarn().setCause(e).log("Failed to close ingestion queue: {}", id);
+                    }
+                });
+                queueCache.clear();
+            }
         };
 
     }
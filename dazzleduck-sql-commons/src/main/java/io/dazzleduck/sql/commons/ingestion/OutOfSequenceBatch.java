@@ -4,4 +4,8 @@ public class OutOfSequenceBatch extends Exception {
     public OutOfSequenceBatch(long current,  long produced) {
         super("Out of sequence batch current %s, produced %s".formatted(current, produced) );
     }
+
+    protected OutOfSequenceBatch(String message) {
+        super(message);
+    }
 }
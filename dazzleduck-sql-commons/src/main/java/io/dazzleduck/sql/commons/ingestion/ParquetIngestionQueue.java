@@ -4,14 +4,25 @@ import io.dazzleduck.sql.commons.ConnectionPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResult> {
@@ -25,11 +36,50 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
      */
     private static final ExecutorService CLEANUP_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
 
+    private static final AtomicLong WRITER_THREAD_IDS = new AtomicLong();
+
+    /**
+     * Runs the COPYs of the writers of a bucket split across several. They block in DuckDB through
+     * JNI, which would pin the carrier of a virtual thread, so they run on platform threads, at most
+     * one per processor across all queues.
+     */
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                var thread = new Thread(r, "ingestion-writer-" + WRITER_THREAD_IDS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** How long {@link #close()} waits for the post-ingestion tasks of written buckets. */
+    private static final Duration POST_INGESTION_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Keeps the names of the Arrow streams registered for in-memory batches unique across queues. */
+    private static final AtomicLong INSTANCE_IDS = new AtomicLong();
+
+    /** Weight of the last write in the estimates of partitions per write and output bytes per input byte. */
+    private static final double ESTIMATE_WEIGHT = 0.3;
+
     private final String outputPath;
     private final String queueId;
     private final IngestionHandler postIngestionHandler;
     private final String applicationId;
     private final String inputFormat;
+    private final IngestionWal wal;
+    private final ProducerSequenceStore sequenceStore;
+    private final long instanceId = INSTANCE_IDS.incrementAndGet();
+    private final List<WriterStats.Accumulator> writers;
+    private final ParquetWriteConfig parquetWrite;
+    private final FileSizeStats.Accumulator fileSizes;
+
+    // Estimated from the previous writes, negative until the first one
+    private volatile double partitionsPerWrite = -1;
+    private volatile double outputRatio = -1;
+
+    /**
+     * Completes when the post-ingestion tasks of all writes so far completed and their batches
+     * were acknowledged. Each write chains onto it, so writes are acknowledged in order.
+     */
+    private volatile CompletableFuture<Void> lastPostIngestion = CompletableFuture.completedFuture(null);
 
     /**
      * @param applicationId    producer identifier
@@ -58,14 +108,123 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
                                  IngestionHandler postIngestionHandler,
                                  ScheduledExecutorService executorService,
                                  Clock clock) {
-        super(ingestionQueue, minBucketSize, maxBucketSize, maxBatches, maxPendingWrite, maxDelay, executorService, clock);
+        this(applicationId, inputFormat, outputPath, ingestionQueue, minBucketSize, maxBucketSize, maxBatches,
+                maxPendingWrite, maxDelay, postIngestionHandler, executorService, clock, IngestionQueueOptions.DEFAULT);
+    }
+
+    /**
+     * Same as above, with the optional features of {@code options}, besides those of
+     * {@link BulkIngestQueue}:
+     * <ul>
+     *   <li>with a {@code wal}, accepted batches are logged to it. The batches the log recovered are
+     *       queued again right away;</li>
+     *   <li>the write of a partitioned bucket is split across {@code writers} concurrent COPYs. The
+     *       bucket is read once into a staging table where each row is routed to a writer by a hash
+     *       of the first partition column, so two writers never write into the same partition; the
+     *       bucket's post-ingestion task runs once all of them are done, so buckets are still
+     *       committed in order;</li>
+     *   <li>{@code parquetWrite} shapes the written files: their target size, row group size, the
+     *       partitions one COPY writes at most, and holding back buckets expected to produce files
+     *       below the minimum size;</li>
+     *   <li>with a {@code sequenceStore}, the ids of a written bucket are persisted before its
+     *       batches are acknowledged, so retries are recognized after a restart.</li>
+     * </ul>
+     * The queue owns the log and the store and closes them.
+     */
+    public ParquetIngestionQueue(String applicationId,
+                                 String inputFormat,
+                                 String outputPath,
+                                 String ingestionQueue,
+                                 long minBucketSize,
+                                 long maxBucketSize,
+                                 int maxBatches,
+                                 long maxPendingWrite,
+                                 Duration maxDelay,
+                                 IngestionHandler postIngestionHandler,
+                                 ScheduledExecutorService executorService,
+                                 Clock clock,
+                                 IngestionQueueOptions options) {
+        super(ingestionQueue, minBucketSize, maxBucketSize, maxBatches, maxPendingWrite, maxDelay, executorService,
+                clock, options);
+        var wal = options.wal();
+        var parquetWrite = options.parquetWrite();
+        int writers = options.writers();
+        this.sequenceStore = options.sequenceStore();
         this.outputPath = outputPath;
         this.queueId = ingestionQueue;
         this.postIngestionHandler = postIngestionHandler;
         this.applicationId = applicationId;
         this.inputFormat = inputFormat;
+        this.wal = wal;
+        this.parquetWrite = parquetWrite;
+        this.fileSizes = new FileSizeStats.Accumulator(parquetWrite.minFileSize());
+        var accumulators = new ArrayList<WriterStats.Accumulator>(writers);
+        for (int i = 0; i < writers; i++) {
+            accumulators.add(new WriterStats.Accumulator(i));
+        }
+        this.writers = List.copyOf(accumulators);
         // The output path (local or object store) is expected to already exist — provisioning it is
         // the operator's responsibility, outside the scope of this project. We never create it here.
+        if (wal != null) {
+            var recovered = wal.recovered();
+            if (!recovered.batches().isEmpty()) {
+                logger.info("Ingestion queue '{}' replaying {} batches from its write-ahead log",
+                        queueId, recovered.batches().size());
+            }
+            replay(recovered.producerBatchIds(), recovered.batches());
+        }
+    }
+
+    /**
+     * With a write-ahead log the batch is logged before it is queued, and the call returns once
+     * the log record and the batch file are synced according to the log's sync policy.
+     */
+    @Override
+    public CompletableFuture<IngestionResult> add(Batch<String> batch) {
+        if (wal == null || InMemoryArrowBatches.isInMemory(batch.record())) {
+            return super.add(batch);
+        }
+        try {
+            wal.forceFile(Path.of(batch.record()));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var result = super.add(batch);
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            // The log refuses further batches from now on; this one is queued already
+            logger.atError().setCause(e).log("Failed to sync the write-ahead log of queue {}", queueId);
+        }
+        return result;
+    }
+
+    @Override
+    protected Batch<String> beforeAccept(Batch<String> batch) throws IOException {
+        if (wal != null && InMemoryArrowBatches.isInMemory(batch.record())) {
+            throw new IOException("Queue " + queueId + " has a write-ahead log and cannot accept in-memory batches");
+        }
+        return wal == null ? batch : wal.append(batch);
+    }
+
+    /**
+     * Holds a bucket back while its files are expected to be smaller than {@code min_file_size},
+     * up to {@code max_deferral} after its oldest batch arrived. A partitioned bucket is expected to
+     * spread its bytes over as many partitions as the previous writes did.
+     */
+    @Override
+    protected Duration deferWrite(Bucket<String, IngestionResult> bucket, Instant now) {
+        if (!parquetWrite.defersSmallFiles()) {
+            return Duration.ZERO;
+        }
+        var holdUntil = bucket.oldestReceived().plus(parquetWrite.maxDeferral());
+        if (!holdUntil.isAfter(now)) {
+            return Duration.ZERO;
+        }
+        double ratio = outputRatio < 0 ? 1 : outputRatio;
+        double partitions = partitionsPerWrite < 1 ? 1 : partitionsPerWrite;
+        double expectedFileSize = bucket.size() * ratio / partitions;
+        return expectedFileSize < parquetWrite.minFileSize() ? Duration.between(now, holdUntil) : Duration.ZERO;
     }
 
     @Override
@@ -74,30 +233,131 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
                 queueId, writeTask.bucket().batches().size(), outputPath);
         try {
             IngestionResult ingestionResult = tryWrite(writeTask);
-            var postIngestionTask = postIngestionHandler.createPostIngestionTask(ingestionResult);
-            postIngestionTask.execute();
-            writeTask.bucket().futures().forEach(action -> action.complete(ingestionResult));
+            var postIngestion = postIngestionHandler.createPostIngestionTask(ingestionResult).executeAsync();
+            // The task may complete later, e.g. in a group commit; the next bucket is written meanwhile
+            lastPostIngestion = lastPostIngestion.thenCompose(previous -> postIngestion.handle((v, error) -> {
+                try {
+                    completeWrite(writeTask, ingestionResult, error);
+                } catch (RuntimeException e) {
+                    // Keep the chain going for the writes after this one
+                    logger.atError().setCause(e).log("Failed to complete write {} to queue {}", writeTask.taskId(), queueId);
+                }
+                return null;
+            }));
         } catch (Exception e) {
-            var sql = constructWriteQuery(writeTask);
+            var sql = constructWriteQuery(writeTask, inMemoryTables(writeTask, inMemoryRecords(writeTask)));
             logger.atError().setCause(e).log("Failed to write to queue {} sql {}", queueId, sql);
-            writeTask.bucket().futures().forEach(action -> action.completeExceptionally(e));
+            // A write cancelled by close() is left in the write-ahead log, to be replayed on restart
+            boolean retain = wal != null && writeTask.isCancel();
+            // The log commits its oldest pending batches, so a failed bucket is committed and
+            // failed in order, after the buckets before it were acknowledged
+            lastPostIngestion = lastPostIngestion.thenRun(() -> failWrite(writeTask, e, retain));
+        }
+    }
+
+    private void failWrite(WriteTask<String, IngestionResult> writeTask, Exception error, boolean retain) {
+        try {
+            if (!retain) {
+                commitToWal(writeTask);
+            }
+            writeTask.bucket().futures().forEach(action -> action.completeExceptionally(error));
+        } catch (RuntimeException e) {
+            // Keep the chain going for the writes after this one
+            logger.atError().setCause(e).log("Failed to complete failed write {} to queue {}", writeTask.taskId(), queueId);
+        } finally {
+            if (!retain) {
+                cleanupInputFiles(writeTask);
+            }
+        }
+    }
+
+    private void completeWrite(WriteTask<String, IngestionResult> writeTask, IngestionResult ingestionResult, Throwable error) {
+        try {
+            if (error == null) {
+                commitSequenceStore(writeTask);
+            }
+            commitToWal(writeTask);
+            if (error == null) {
+                writeTask.bucket().futures().forEach(action -> action.complete(ingestionResult));
+            } else {
+                var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.atError().setCause(cause).log("Post-ingestion task of write {} to queue {} failed, files {}",
+                        writeTask.taskId(), queueId, ingestionResult.filesCreated());
+                writeTask.bucket().futures().forEach(action -> action.completeExceptionally(cause));
+            }
         } finally {
             cleanupInputFiles(writeTask);
         }
     }
 
+    private void commitSequenceStore(WriteTask<String, IngestionResult> writeTask) {
+        try {
+            commitSequences(writeTask.bucket());
+        } catch (IOException e) {
+            // The batches are written; failing them would have the clients write them again.
+            // commitSequences counted the failure.
+            logger.atError().setCause(e).log("Failed to persist the producer batch ids of write task {} to queue {}",
+                    writeTask.taskId(), queueId);
+        }
+    }
+
+    private void commitToWal(WriteTask<String, IngestionResult> writeTask) {
+        if (wal == null) {
+            return;
+        }
+        try {
+            wal.commit(writeTask.bucket().batchCount(), writeTask.bucket().getProducerMaxBatchId());
+        } catch (IOException e) {
+            logger.atError().setCause(e).log("Failed to commit write task {} to the write-ahead log of queue {}",
+                    writeTask.taskId(), queueId);
+        }
+    }
+
     /**
      * Asynchronously cleans up input files using virtual threads.
      * This is fire-and-forget - we don't wait for deletion to complete
      * since it doesn't affect the write result.
      */
     private void cleanupInputFiles(WriteTask<String, IngestionResult> writeTask) {
-        writeTask.bucket().batches().forEach(this::onBatchAbandoned);
+        writeTask.bucket().batches().forEach(this::deleteInputFile);
     }
 
+    /** With a write-ahead log the files of abandoned batches are kept, to be replayed on restart. */
     @Override
     protected void onBatchAbandoned(Batch<String> batch) {
+        if (wal == null) {
+            deleteInputFile(batch);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            super.close();
+            try {
+                lastPostIngestion.get(POST_INGESTION_CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Post-ingestion tasks of queue {} did not complete within {}", queueId, POST_INGESTION_CLOSE_TIMEOUT);
+            }
+        } finally {
+            try {
+                if (wal != null) {
+                    wal.close();
+                }
+            } finally {
+                if (sequenceStore != null) {
+                    sequenceStore.close();
+                }
+            }
+        }
+    }
+
+    private void deleteInputFile(Batch<String> batch) {
         final String filePath = batch.record();
+        if (InMemoryArrowBatches.isInMemory(filePath)) {
+            InMemoryArrowBatches.release(filePath);
+            return;
+        }
         CLEANUP_EXECUTOR.execute(() -> {
             try {
                 Files.deleteIfExists(Path.of(filePath));
@@ -116,16 +376,106 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
         }
     }
 
-    private String constructWriteQuery(WriteTask<String, IngestionResult> writeTask) {
-        var batches = writeTask.bucket().batches();
-        // All Arrow files
-        var arrowFiles = batches.stream().map(Batch::record).map("'%s'"::formatted).collect(Collectors.joining(","));
-        String[] batchPartitionBy = batches.get(0).partitionBy();
-        String[] effectivePartitionBy = (batchPartitionBy != null && batchPartitionBy.length > 0)
+    private static List<String> inMemoryRecords(WriteTask<String, IngestionResult> writeTask) {
+        return writeTask.bucket().batches().stream().map(Batch::record).filter(InMemoryArrowBatches::isInMemory).toList();
+    }
+
+    /** Names of the Arrow streams {@link InMemoryArrowBatches#register} creates for {@code writeTask}. */
+    private List<String> inMemoryTables(WriteTask<String, IngestionResult> writeTask, List<String> inMemoryRecords) {
+        if (inMemoryRecords.isEmpty()) {
+            return List.of();
+        }
+        int count = InMemoryArrowBatches.streamCount(inMemoryRecords);
+        var names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add("__dd_ingest_%d_%d_%d".formatted(instanceId, writeTask.taskId(), i));
+        }
+        return names;
+    }
+
+    private String[] partitionBy(WriteTask<String, IngestionResult> writeTask) {
+        String[] batchPartitionBy = writeTask.bucket().batches().get(0).partitionBy();
+        return (batchPartitionBy != null && batchPartitionBy.length > 0)
                 ? batchPartitionBy
                 : postIngestionHandler.getPartitionBy(queueId);
-        String partitionByClause = getClause(effectivePartitionBy, ", PARTITION_BY(%s)");
+    }
+
+    /**
+     * Writes of a partitioned bucket are split across the queue's writers; an unpartitioned bucket
+     * has nothing to split on and is written by one.
+     */
+    private int shards(String[] partitionBy) {
+        return partitionBy != null && partitionBy.length > 0 ? writers.size() : 1;
+    }
+
+    /**
+     * COPYs each writer of a partitioned bucket runs one after the other, so that none writes more
+     * than {@code max_open_partitions} partitions, judged by the partitions of the previous writes.
+     */
+    private int passes(String[] partitionBy, int shards) {
+        if (parquetWrite.maxOpenPartitions() == 0 || partitionBy == null || partitionBy.length == 0
+                || partitionsPerWrite < 0) {
+            return 1;
+        }
+        long partitionsPerShard = (long) Math.ceil(partitionsPerWrite / shards);
+        int maxOpen = parquetWrite.maxOpenPartitions();
+        return (int) Math.max(1, (partitionsPerShard + maxOpen - 1) / maxOpen);
+    }
+
+    private String constructWriteQuery(WriteTask<String, IngestionResult> writeTask, List<String> inMemoryTables) {
+        return constructCopy(writeTask, constructSelect(writeTask, inMemoryTables));
+    }
+
+    /** The rows of the bucket: its Arrow files and in-memory batches, sorted and transformed. */
+    private String constructSelect(WriteTask<String, IngestionResult> writeTask, List<String> inMemoryTables) {
+        var batches = writeTask.bucket().batches();
+        // All Arrow files
+        var arrowFiles = batches.stream().map(Batch::record).filter(r -> !InMemoryArrowBatches.isInMemory(r))
+                .map("'%s'"::formatted).collect(Collectors.joining(","));
         String sortOrderClause = getClause(batches.get(0).sortOrder(), "ORDER BY %s ");
+
+        // Inner SQL reads from the temp Arrow files and the Arrow streams of in-memory batches
+        var sources = new ArrayList<String>();
+        if (!arrowFiles.isEmpty()) {
+            sources.add("read_%s([%s])".formatted(this.inputFormat, arrowFiles));
+        }
+        sources.addAll(inMemoryTables);
+        String innerSql;
+        if (sources.size() == 1) {
+            innerSql = "SELECT * FROM %s %s".formatted(sources.get(0), sortOrderClause);
+        } else {
+            var union = sources.stream().map("SELECT * FROM %s"::formatted).collect(Collectors.joining(" UNION ALL BY NAME "));
+            innerSql = "SELECT * FROM (%s) %s".formatted(union, sortOrderClause);
+        }
+
+        // Fetch transformation fresh from the handler on every write so view-based
+        // and handler-refreshed transformations are always current without caching.
+        String transformation = postIngestionHandler.getTransformation(queueId);
+        return (transformation != null && !transformation.isBlank())
+                ? "WITH __this AS (%s) %s".formatted(innerSql, transformation)
+                : innerSql;
+    }
+
+    /**
+     * Stages the rows of a bucket split across writers or passes into {@code table}, tagging each
+     * with the writer ({@code __dd_shard}) and pass ({@code __dd_pass}) that writes it.
+     */
+    private String constructStageQuery(WriteTask<String, IngestionResult> writeTask, String table, String querySql,
+                                       int shards, int passes) {
+        String[] effectivePartitionBy = partitionBy(writeTask);
+        var partitionColumns = Arrays.stream(effectivePartitionBy).filter(Objects::nonNull).map(String::trim)
+                .collect(Collectors.joining(", "));
+        // Hashing only the first partition column gives every writer its own top-level partition
+        // directories, so concurrent COPYs never create files or directories in the same one.
+        // Dividing by shards first keeps the pass independent of the shard when both hash one column.
+        return "CREATE TABLE %s AS SELECT *, hash(%s) %% %d AS __dd_shard, hash(%s) // %d %% %d AS __dd_pass FROM (%s);"
+                .formatted(table, effectivePartitionBy[0].trim(), shards, partitionColumns, shards, passes, querySql);
+    }
+
+    private String constructCopy(WriteTask<String, IngestionResult> writeTask, String querySql) {
+        var batches = writeTask.bucket().batches();
+        String[] effectivePartitionBy = partitionBy(writeTask);
+        String partitionByClause = getClause(effectivePartitionBy, ", PARTITION_BY(%s)");
         // Last format
         var outputFormat = batches.isEmpty() ? "" : batches.get(batches.size() - 1).format();
         String fullFilePath;
@@ -135,16 +485,14 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
         } else {
             fullFilePath = this.outputPath;
         }
-
-        // Inner SQL reads from the temp Arrow files
-        var innerSql = "SELECT * FROM read_%s([%s]) %s".formatted(this.inputFormat, arrowFiles, sortOrderClause);
-
-        // Fetch transformation fresh from the handler on every write so view-based
-        // and handler-refreshed transformations are always current without caching.
-        String transformation = postIngestionHandler.getTransformation(queueId);
-        var querySql = (transformation != null && !transformation.isBlank())
-                ? "WITH __this AS (%s) %s".formatted(innerSql, transformation)
-                : innerSql;
+        var options = new StringBuilder();
+        if (parquetWrite.rowGroupSize() > 0 && "parquet".equalsIgnoreCase(outputFormat)) {
+            options.append(", ROW_GROUP_SIZE ").append(parquetWrite.rowGroupSize());
+        }
+        if (parquetWrite.targetFileSize() > 0 && !partitionByClause.isEmpty()) {
+            // An unpartitioned bucket goes to one file named by us, sized by the bucket thresholds
+            options.append(", FILE_SIZE_BYTES ").append(parquetWrite.targetFileSize());
+        }
 
         // Build SQL
         // https://duckdb.org/docs/stable/sql/statements/copy
@@ -152,52 +500,286 @@ public class ParquetIngestionQueue extends BulkIngestQueue<String, IngestionResu
                 COPY
                     (%s)
                     TO '%s'
-                    (FORMAT %s %s, RETURN_FILES, APPEND);
-                """.formatted(querySql, fullFilePath, outputFormat, partitionByClause);
+                    (FORMAT %s %s%s, RETURN_FILES, APPEND);
+                """.formatted(querySql, fullFilePath, outputFormat, partitionByClause, options);
         return sql;
     }
 
     private IngestionResult tryWrite(WriteTask<String, IngestionResult> writeTask) throws Exception {
-        var sql = constructWriteQuery(writeTask);
-        logger.debug("Executing COPY SQL: {}", sql);
+        var inMemoryRecords = inMemoryRecords(writeTask);
+        var partitionBy = partitionBy(writeTask);
+        int shards = shards(partitionBy);
+        int passes = passes(partitionBy, shards);
+        // One hook cancels the COPYs of all writers
+        var statements = ConcurrentHashMap.<Statement>newKeySet();
+        var cancelHookSet = writeTask.setCancelHook(() -> statements.forEach(stmt -> {
+            try {
+                stmt.cancel();
+            } catch (Exception e) {
+                // Ignore cancellation errors
+            }
+        }));
+        // If cancel was already called, don't execute the query
+        if (!cancelHookSet) {
+            throw new IllegalStateException("Write task was cancelled");
+        }
+        var oldestBatch = writeTask.bucket().batches().stream().map(Batch::receivedTime)
+                .filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(Instant.now());
+
+        var tables = inMemoryTables(writeTask, inMemoryRecords);
+        var results = new ArrayList<CopyResult>(shards);
+        String sql;
+        if (shards == 1 && passes == 1) {
+            sql = constructWriteQuery(writeTask, tables);
+            results.add(copy(writeTask, sql, inMemoryRecords, tables, statements, 0, oldestBatch));
+        } else {
+            sql = writeStaged(writeTask, inMemoryRecords, tables, shards, passes, statements, oldestBatch, results);
+        }
+
         List<String> files = new ArrayList<>();
         long count = 0;
+        for (var result : results) {
+            count += result.count();
+            files.addAll(Arrays.stream(result.files()).map(Object::toString).toList());
+        }
+        recordFiles(writeTask.bucket().size(), files, results);
+        logger.debug("COPY completed for queue '{}': {} rows written, {} files: {}",
+                queueId, count, files.size(), files);
+        return new IngestionResult(this.queueId, writeTask.taskId(), this.applicationId,
+                writeTask.bucket().getProducerMaxBatchId(),
+                count,
+                files, sql);
+    }
+
+    /**
+     * Writes a bucket split across writers or passes. The bucket is read, transformed and tagged with
+     * its writer and pass once, into a table of the in-memory catalog, and each COPY then writes the
+     * rows of its writer and pass from there. So the input is decoded once however many COPYs there
+     * are; each COPY still scans the staged rows, which is cheap next to reading the input again, and
+     * the bucket, at most the queue's maximum bucket size, is held by DuckDB until all of them are done.
+     *
+     * @return the statements run, for the {@link IngestionResult}
+     */
+    private String writeStaged(WriteTask<String, IngestionResult> writeTask,
+                               List<String> inMemoryRecords,
+                               List<String> inMemoryTables,
+                               int shards,
+                               int passes,
+                               Set<Statement> statements,
+                               Instant oldestBatch,
+                               List<CopyResult> results) throws Exception {
+        var staged = "memory.main.__dd_bucket_%d_%d".formatted(instanceId, writeTask.taskId());
+        var stageSql = constructStageQuery(writeTask, staged, constructSelect(writeTask, inMemoryTables), shards, passes);
+        var queries = new ArrayList<String>(shards * passes + 1);
+        queries.add(stageSql);
+        var shardPasses = new ArrayList<List<String>>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            var shardQueries = new ArrayList<String>(passes);
+            for (int pass = 0; pass < passes; pass++) {
+                var passSql = constructCopy(writeTask,
+                        "SELECT * EXCLUDE (__dd_shard, __dd_pass) FROM %s WHERE __dd_shard = %d AND __dd_pass = %d"
+                                .formatted(staged, shard, pass));
+                queries.add(passSql);
+                shardQueries.add(passSql);
+            }
+            shardPasses.add(shardQueries);
+        }
+
+        logger.debug("Staging bucket: {}", stageSql);
         try (var conn = ConnectionPool.getConnection();
+             var streams = InMemoryArrowBatches.register(conn, inMemoryRecords, inMemoryTables);
              var stmt = conn.createStatement()) {
+            statements.add(stmt);
+            try {
+                if (writeTask.isCancel()) {
+                    throw new IllegalStateException("Write task was cancelled");
+                }
+                stmt.execute(stageSql);
+            } finally {
+                statements.remove(stmt);
+            }
+            try {
+                results.addAll(copyShards(writeTask, shardPasses, statements, oldestBatch));
+            } finally {
+                try {
+                    stmt.execute("DROP TABLE IF EXISTS " + staged);
+                } catch (SQLException e) {
+                    logger.atWarn().setCause(e).log("Failed to drop staged bucket {} of queue {}", staged, queueId);
+                }
+            }
+        }
+        return String.join("", queries);
+    }
 
-            // Set up cancellation hook
-            var cancelHookSet = writeTask.setCancelHook(() -> {
+    /** Runs the COPYs of each writer, the writers concurrently. */
+    private List<CopyResult> copyShards(WriteTask<String, IngestionResult> writeTask,
+                                        List<List<String>> shardPasses,
+                                        Set<Statement> statements,
+                                        Instant oldestBatch) throws Exception {
+        int shards = shardPasses.size();
+        if (shards == 1) {
+            return List.of(copyPasses(writeTask, shardPasses.get(0), statements, 0, oldestBatch));
+        }
+        var futures = new ArrayList<CompletableFuture<CopyResult>>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            var writerPasses = shardPasses.get(shard);
+            int writer = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
                 try {
-                    stmt.cancel();
+                    return copyPasses(writeTask, writerPasses, statements, writer, oldestBatch);
                 } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, WRITER_EXECUTOR));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            // Stop the other writers, their output is not committed either
+            statements.forEach(stmt -> {
+                try {
+                    stmt.cancel();
+                } catch (Exception ignored) {
                     // Ignore cancellation errors
                 }
             });
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(t -> null).join();
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /** Runs the COPYs of one writer one after the other. */
+    private CopyResult copyPasses(WriteTask<String, IngestionResult> writeTask,
+                                  List<String> passes,
+                                  Set<Statement> statements,
+                                  int writer,
+                                  Instant oldestBatch) throws Exception {
+        if (passes.size() == 1) {
+            return copy(writeTask, passes.get(0), List.of(), List.of(), statements, writer, oldestBatch);
+        }
+        long count = 0;
+        var files = new ArrayList<Object>();
+        var sizes = new ArrayList<Long>();
+        boolean sized = true;
+        for (var pass : passes) {
+            var result = copy(writeTask, pass, List.of(), List.of(), statements, writer, oldestBatch);
+            count += result.count();
+            files.addAll(Arrays.asList(result.files()));
+            if (result.fileSizes() == null) {
+                sized = false;
+            } else {
+                Arrays.stream(result.fileSizes()).forEach(sizes::add);
+            }
+        }
+        return new CopyResult(count, files.toArray(),
+                sized ? sizes.stream().mapToLong(Long::longValue).toArray() : null);
+    }
 
-            // If cancel was already called, don't execute the query
-            if (!cancelHookSet) {
-                throw new IllegalStateException("Write task was cancelled");
-            }
-
-            // Execute the query using our statement so the cancel hook works
-            stmt.execute(sql);
-            try (var rs = stmt.getResultSet()) {
-                while (rs.next()) {
-                    var rowCount = rs.getLong("count");
-                    var rowFilesArray = rs.getArray("files");
-                    count += rowCount;
-                    if (rowFilesArray != null) {
-                        var rowFiles = (Object[]) rowFilesArray.getArray();
-                        files.addAll(Arrays.stream(rowFiles).map(Object::toString).toList());
+    /**
+     * Records the files of a write, with their sizes when read, and updates the estimates of how many partitions a
+     * write spans and how many bytes it writes per byte of input.
+     */
+    private void recordFiles(long inputBytes, List<String> files, List<CopyResult> results) {
+        long outputBytes = 0;
+        boolean sized = true;
+        for (var result : results) {
+            if (result.fileSizes() == null) {
+                fileSizes.recordUnsized(result.files().length);
+                sized = false;
+                continue;
+            }
+            for (long size : result.fileSizes()) {
+                fileSizes.record(size);
+                outputBytes += size;
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        long partitions = files.stream().map(ParquetIngestionQueue::directory).distinct().count();
+        partitionsPerWrite = partitionsPerWrite < 0 ? partitions
+                : ESTIMATE_WEIGHT * partitions + (1 - ESTIMATE_WEIGHT) * partitionsPerWrite;
+        if (sized && inputBytes > 0) {
+            double ratio = (double) outputBytes / inputBytes;
+            outputRatio = outputRatio < 0 ? ratio : ESTIMATE_WEIGHT * ratio + (1 - ESTIMATE_WEIGHT) * outputRatio;
+        }
+    }
+
+    private static String directory(String file) {
+        int separator = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+        return separator < 0 ? "" : file.substring(0, separator);
+    }
+
+    private CopyResult copy(WriteTask<String, IngestionResult> writeTask,
+                            String sql,
+                            List<String> inMemoryRecords,
+                            List<String> inMemoryTables,
+                            Set<Statement> statements,
+                            int writer,
+                            Instant oldestBatch) throws Exception {
+        logger.debug("Executing COPY SQL: {}", sql);
+        var start = System.nanoTime();
+        List<Object> files = new ArrayList<>();
+        long count = 0;
+        long[] sizes;
+        try (var conn = ConnectionPool.getConnection();
+             var streams = InMemoryArrowBatches.register(conn, inMemoryRecords, inMemoryTables);
+             var stmt = conn.createStatement()) {
+            statements.add(stmt);
+            try {
+                if (writeTask.isCancel()) {
+                    throw new IllegalStateException("Write task was cancelled");
+                }
+                // Execute the query using our statement so the cancel hook works
+                stmt.execute(sql);
+                try (var rs = stmt.getResultSet()) {
+                    while (rs.next()) {
+                        var rowCount = rs.getLong("count");
+                        var rowFilesArray = rs.getArray("files");
+                        count += rowCount;
+                        if (rowFilesArray != null) {
+                            files.addAll(Arrays.asList((Object[]) rowFilesArray.getArray()));
+                        }
                     }
                 }
+            } finally {
+                statements.remove(stmt);
             }
+            sizes = parquetWrite.collectsFileSizes() ? fileSizes(conn, files) : null;
         }
-        logger.debug("COPY completed for queue '{}': {} rows written, {} files: {}",
-                queueId, count, files.size(), files);
-        return new IngestionResult(this.queueId, writeTask.taskId(), this.applicationId,
-                writeTask.bucket().getProducerMaxBatchId(),
-                count,
-                files, sql);
+        writers.get(writer).record(count, Duration.ofNanos(System.nanoTime() - start),
+                Duration.between(oldestBatch, Instant.now()));
+        return new CopyResult(count, files.toArray(), sizes);
+    }
+
+    /** Bytes of the written files, or null when they cannot be read; the write itself succeeded either way. */
+    private long[] fileSizes(Connection conn, List<Object> files) {
+        if (files.isEmpty()) {
+            return new long[0];
+        }
+        var list = files.stream().map(f -> "'%s'".formatted(f.toString().replace("'", "''")))
+                .collect(Collectors.joining(","));
+        var sizes = new ArrayList<Long>(files.size());
+        try (var stmt = conn.createStatement();
+             var rs = stmt.executeQuery("SELECT size FROM read_blob([%s])".formatted(list))) {
+            while (rs.next()) {
+                sizes.add(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            logger.atWarn().setCause(e).log("Failed to read the sizes of the files written to queue {}", queueId);
+            return null;
+        }
+        return sizes.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public List<WriterStats> getWriterStats() {
+        return writers.stream().map(WriterStats.Accumulator::snapshot).toList();
+    }
+
+    @Override
+    public FileSizeStats getFileSizeStats() {
+        return fileSizes.snapshot();
     }
 }
@@ -0,0 +1,73 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Shape of the files a {@link ParquetIngestionQueue} writes ({@code ingestion.parquet_write}).
+ *
+ * <p>{@code targetFileSize} rolls the file of a partition over once it reaches that many bytes
+ * ({@code FILE_SIZE_BYTES}); an unpartitioned bucket is always written to one file, sized by the
+ * bucket thresholds. {@code rowGroupSize} is the rows per Parquet row group
+ * ({@code ROW_GROUP_SIZE}). {@code maxOpenPartitions} bounds the partitions one COPY writes: a
+ * write expected to span more is split into sequential passes over disjoint sets of partitions,
+ * so no partition file is closed early and reopened as a second, smaller one.
+ *
+ * <p>{@code minFileSize} holds back a bucket that is due but whose files are expected to be
+ * smaller, so it collects the batches of later flushes, for at most {@code maxDeferral} after its
+ * oldest batch arrived. The expected file size follows from the bucket size and the bytes and
+ * partitions of the queue's previous writes.
+ *
+ * <p>The sizes of the written files are read back after each write, one metadata lookup per
+ * file, only while {@code minFileSize} is set; without it the queue stats count the files written
+ * but not their bytes.
+ *
+ * <p>A value of 0 leaves the respective setting to DuckDB or disables it.
+ */
+public record ParquetWriteConfig(long targetFileSize,
+                                 long rowGroupSize,
+                                 int maxOpenPartitions,
+                                 long minFileSize,
+                                 Duration maxDeferral) {
+
+    public static final ParquetWriteConfig DEFAULT = new ParquetWriteConfig(0, 0, 0, 0, Duration.ZERO);
+
+    public ParquetWriteConfig {
+        if (targetFileSize < 0 || rowGroupSize < 0 || maxOpenPartitions < 0 || minFileSize < 0 || maxDeferral.isNegative()) {
+            throw new IllegalArgumentException("Parquet write settings must not be negative: " +
+                    "targetFileSize=%d, rowGroupSize=%d, maxOpenPartitions=%d, minFileSize=%d, maxDeferral=%s"
+                            .formatted(targetFileSize, rowGroupSize, maxOpenPartitions, minFileSize, maxDeferral));
+        }
+    }
+
+    /** Whether buckets expected to produce small files are held back. */
+    public boolean defersSmallFiles() {
+        return minFileSize > 0 && maxDeferral.compareTo(Duration.ZERO) > 0;
+    }
+
+    /** Whether the sizes of written files are read back, for the queue stats and the deferral estimate. */
+    public boolean collectsFileSizes() {
+        return minFileSize > 0;
+    }
+
+    /** @param config the {@code ingestion} config */
+    public static ParquetWriteConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.INGESTION_PARQUET_WRITE_KEY)) {
+            return DEFAULT;
+        }
+        var write = config.getConfig(ConfigConstants.INGESTION_PARQUET_WRITE_KEY);
+        return new ParquetWriteConfig(
+                write.hasPath(ConfigConstants.PARQUET_WRITE_TARGET_FILE_SIZE_KEY)
+                        ? write.getBytes(ConfigConstants.PARQUET_WRITE_TARGET_FILE_SIZE_KEY) : 0,
+                write.hasPath(ConfigConstants.PARQUET_WRITE_ROW_GROUP_SIZE_KEY)
+                        ? write.getLong(ConfigConstants.PARQUET_WRITE_ROW_GROUP_SIZE_KEY) : 0,
+                write.hasPath(ConfigConstants.PARQUET_WRITE_MAX_OPEN_PARTITIONS_KEY)
+                        ? write.getInt(ConfigConstants.PARQUET_WRITE_MAX_OPEN_PARTITIONS_KEY) : 0,
+                write.hasPath(ConfigConstants.PARQUET_WRITE_MIN_FILE_SIZE_KEY)
+                        ? write.getBytes(ConfigConstants.PARQUET_WRITE_MIN_FILE_SIZE_KEY) : 0,
+                write.hasPath(ConfigConstants.PARQUET_WRITE_MAX_DEFERRAL_MS_KEY)
+                        ? Duration.ofMillis(write.getLong(ConfigConstants.PARQUET_WRITE_MAX_DEFERRAL_MS_KEY)) : Duration.ZERO);
+    }
+}
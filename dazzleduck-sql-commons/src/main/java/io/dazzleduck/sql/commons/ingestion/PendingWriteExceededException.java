@@ -15,6 +15,11 @@ public class PendingWriteExceededException extends Exception {
         this.retryAfterSeconds = retryAfterSeconds;
     }
 
+    protected PendingWriteExceededException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
     /**
      * Returns the suggested wait time in seconds before retrying.
      */
@@ -1,12 +1,27 @@
 package io.dazzleduck.sql.commons.ingestion;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface PostIngestionTask {
     void execute();
 
+    /**
+     * Runs the task, possibly together with the tasks of other writes. The write is acknowledged
+     * once the returned future completes. The default implementation runs {@link #execute()}.
+     */
+    default CompletableFuture<Void> executeAsync() {
+        try {
+            execute();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     static PostIngestionTask NOOP = new PostIngestionTask() {
         @Override
         public void execute() {
 
         }
     };
-}
+}
\ No newline at end of file
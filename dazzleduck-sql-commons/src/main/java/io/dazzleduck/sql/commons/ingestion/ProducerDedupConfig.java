@@ -0,0 +1,53 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.nio.file.Path;
+
+/**
+ * Deduplication of retried batches by producer id and batch id ({@code ingestion.producer_dedup}).
+ *
+ * <p>A queue remembers the last {@code window} batch ids of up to {@code maxProducers} producers;
+ * a window of 1 only remembers the highest, so batch ids must then increase. When
+ * {@code persistent}, the ids of written batches are kept in a {@link ProducerSequenceStore} under
+ * {@code directory} and survive a restart.
+ */
+public record ProducerDedupConfig(int window,
+                                  int maxProducers,
+                                  boolean persistent,
+                                  Path directory) {
+
+    public static final int DEFAULT_WINDOW = 1;
+    public static final int DEFAULT_MAX_PRODUCERS = 10000;
+
+    public static final ProducerDedupConfig DEFAULT =
+            new ProducerDedupConfig(DEFAULT_WINDOW, DEFAULT_MAX_PRODUCERS, false, null);
+
+    public ProducerDedupConfig {
+        if (window < 1 || maxProducers < 1) {
+            throw new IllegalArgumentException("Producer dedup window and max producers must be positive: %d, %d"
+                    .formatted(window, maxProducers));
+        }
+        if (persistent && directory == null) {
+            throw new IllegalArgumentException("Persistent producer dedup needs a directory");
+        }
+    }
+
+    /** @param config the {@code ingestion} config */
+    public static ProducerDedupConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.INGESTION_PRODUCER_DEDUP_KEY)) {
+            return DEFAULT;
+        }
+        var dedup = config.getConfig(ConfigConstants.INGESTION_PRODUCER_DEDUP_KEY);
+        boolean persistent = dedup.hasPath(ConfigConstants.PRODUCER_DEDUP_PERSISTENT_KEY)
+                && dedup.getBoolean(ConfigConstants.PRODUCER_DEDUP_PERSISTENT_KEY);
+        return new ProducerDedupConfig(
+                dedup.hasPath(ConfigConstants.PRODUCER_DEDUP_WINDOW_KEY)
+                        ? dedup.getInt(ConfigConstants.PRODUCER_DEDUP_WINDOW_KEY) : DEFAULT_WINDOW,
+                dedup.hasPath(ConfigConstants.PRODUCER_DEDUP_MAX_PRODUCERS_KEY)
+                        ? dedup.getInt(ConfigConstants.PRODUCER_DEDUP_MAX_PRODUCERS_KEY) : DEFAULT_MAX_PRODUCERS,
+                persistent,
+                persistent ? Path.of(dedup.getString(ConfigConstants.PRODUCER_DEDUP_DIRECTORY_KEY)) : null);
+    }
+}
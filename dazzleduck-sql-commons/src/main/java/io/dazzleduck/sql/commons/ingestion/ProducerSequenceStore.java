@@ -0,0 +1,235 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Producer batch ids of the batches a queue wrote, kept on disk so a client's retry of a written
+ * batch is recognized after a restart.
+ *
+ * <p>Each queue has a directory {@code <producer_dedup.directory>/<url-encoded queue id>} of
+ * {@code <number>.seq} segments, laid out like those of {@link IngestionWal}: a sequence of
+ * {@code [int length][int crc32][payload]} records, the payload being one of
+ * <ul>
+ *   <li>{@code COMMIT}: the producer id and batch id of every batch of one written bucket;</li>
+ *   <li>{@code SNAPSHOT}: the id window of every known producer, written at the start of each
+ *       segment so that older segments can be deleted.</li>
+ * </ul>
+ * A commit is synced before the bucket's batches are acknowledged; a bucket whose commit fails is
+ * acknowledged all the same, see {@link BulkIngestQueue#commitSequences}. Once the active
+ * segment reaches {@link #SEGMENT_SIZE} a new one is started and the older ones deleted. Opening
+ * the store reads the segments back into {@link #sequences()}, truncating a torn record at the
+ * end of a segment.
+ */
+public final class ProducerSequenceStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProducerSequenceStore.class);
+
+    static final long SEGMENT_SIZE = 16L * 1024 * 1024; // 16 MB
+
+    private static final String SEGMENT_SUFFIX = ".seq";
+    private static final String LOCK_FILE = "LOCK";
+    private static final byte COMMIT = 1;
+    private static final byte SNAPSHOT = 2;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final ProducerDedupConfig config;
+    private final ProducerSequences sequences;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    /** Segments oldest first; the last one is active. */
+    private final List<Path> segments = new ArrayList<>();
+    private FileChannel channel;
+    private long nextSegment;
+    private boolean closed;
+
+    /** Directory of the store of {@code queueId}. */
+    public static Path queueDirectory(Path directory, String queueId) {
+        return directory.resolve(URLEncoder.encode(queueId, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the store of {@code queueId}, creating it if needed.
+     *
+     * @throws IOException if the store cannot be read, or another queue already has it open
+     */
+    public static ProducerSequenceStore open(ProducerDedupConfig config, String queueId) throws IOException {
+        return new ProducerSequenceStore(queueDirectory(config.directory(), queueId), config);
+    }
+
+    private ProducerSequenceStore(Path directory, ProducerDedupConfig config) throws IOException {
+        this.directory = directory;
+        this.config = config;
+        this.sequences = new ProducerSequences(config.window(), config.maxProducers());
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Producer sequence store " + directory + " is in use by another queue");
+        }
+        this.lock = acquired;
+        try {
+            recover();
+            roll();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public ProducerDedupConfig config() {
+        return config;
+    }
+
+    /** Batch ids of the written batches, restored on open and updated by {@link #commit}. */
+    ProducerSequences sequences() {
+        return sequences;
+    }
+
+    /** Records the producer batch ids of {@code batches} as written, and syncs them. */
+    public synchronized <T> void commit(List<Batch<T>> batches) throws IOException {
+        if (closed) {
+            throw new IOException("Producer sequence store " + directory + " is closed");
+        }
+        var bytes = new ByteArrayOutputStream(64);
+        int count = 0;
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(COMMIT);
+            out.writeInt(0);
+            for (var batch : batches) {
+                if (batch.producerId() != null) {
+                    out.writeUTF(batch.producerId());
+                    out.writeLong(batch.producerBatchId());
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        var payload = bytes.toByteArray();
+        ByteBuffer.wrap(payload).putInt(1, count);
+        writeRecord(payload);
+        channel.force(false);
+        for (var batch : batches) {
+            if (batch.producerId() != null) {
+                sequences.mark(batch.producerId(), batch.producerBatchId());
+            }
+        }
+        if (channel.position() >= SEGMENT_SIZE) {
+            roll();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            try {
+                lock.release();
+            } finally {
+                lockChannel.close();
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (var entries = Files.list(directory)) {
+            files = entries.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(ProducerSequenceStore::segmentNumber))
+                    .toList();
+        }
+        this.nextSegment = files.isEmpty() ? 0 : segmentNumber(files.get(files.size() - 1)) + 1;
+        for (var file : files) {
+            for (var record : IngestionWal.readSegment(file)) {
+                try (var in = new DataInputStream(new ByteArrayInputStream(record))) {
+                    if (in.readByte() == SNAPSHOT) {
+                        sequences.read(in);
+                    } else {
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            sequences.mark(in.readUTF(), in.readLong());
+                        }
+                    }
+                }
+            }
+            segments.add(file);
+        }
+        if (!files.isEmpty()) {
+            logger.info("Producer sequence store {}: restored batch ids of {} producers", directory, sequences.size());
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Starts a new segment with a snapshot of all batch ids, and deletes the older segments. */
+    private void roll() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        var path = directory.resolve("%020d%s".formatted(nextSegment++, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(SNAPSHOT);
+            sequences.write(out);
+        }
+        writeRecord(bytes.toByteArray());
+        channel.force(false);
+        IngestionWal.forceDirectory(directory);
+        for (var segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+        segments.clear();
+        segments.add(path);
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        var crc = new CRC32();
+        crc.update(payload);
+        var buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
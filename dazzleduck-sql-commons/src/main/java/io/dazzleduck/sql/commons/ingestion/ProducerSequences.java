@@ -0,0 +1,181 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Batch ids seen per producer, for deduplicating retried batches.
+ *
+ * <p>Each producer has a window of the {@code window} ids up to the highest one seen, kept as a
+ * ring of bits, so a lookup is a hash lookup and a bit test. An id in the window is new or a
+ * duplicate; an id below it is too old to tell. Ids may arrive in any order within the window;
+ * with a window of 1 every id up to the highest counts as seen. At most {@code maxProducers}
+ * producers are kept, dropping the least recently used.
+ */
+final class ProducerSequences {
+
+    enum Seen { NEW, DUPLICATE, TOO_OLD }
+
+    private final int window;
+    private final int words;
+    private final Map<String, Window> producers;
+
+    ProducerSequences(int window, int maxProducers) {
+        if (window < 1 || maxProducers < 1) {
+            throw new IllegalArgumentException("window and maxProducers must be positive: %d, %d"
+                    .formatted(window, maxProducers));
+        }
+        this.window = window;
+        this.words = (window + Long.SIZE - 1) / Long.SIZE;
+        this.producers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxProducers;
+            }
+        };
+    }
+
+    synchronized Seen check(String producer, long id) {
+        var seen = producers.get(producer);
+        if (seen == null || id > seen.highest) {
+            return Seen.NEW;
+        }
+        if (id <= seen.highest - window) {
+            return Seen.TOO_OLD;
+        }
+        return seen.get(id) ? Seen.DUPLICATE : Seen.NEW;
+    }
+
+    /** Highest id seen of {@code producer}, -1 if none. */
+    synchronized long highest(String producer) {
+        var seen = producers.get(producer);
+        return seen == null ? -1 : seen.highest;
+    }
+
+    synchronized void mark(String producer, long id) {
+        var seen = producers.computeIfAbsent(producer, p -> new Window(words));
+        if (id > seen.highest) {
+            seen.advance(id);
+        } else if (id <= seen.highest - window) {
+            return;
+        }
+        seen.set(id);
+    }
+
+    /** Marks every id up to {@code id}, for producers of which only the highest id is known. */
+    synchronized void markThrough(String producer, long id) {
+        var seen = producers.computeIfAbsent(producer, p -> new Window(words));
+        if (id > seen.highest) {
+            seen.advance(id);
+        }
+        for (long i = Math.max(seen.highest - window + 1, id - window + 1); i <= id; i++) {
+            seen.set(i);
+        }
+    }
+
+    /** Forgets {@code id}, e.g. because its batch failed and may be sent again. */
+    synchronized void unmark(String producer, long id) {
+        var seen = producers.get(producer);
+        if (seen != null && id <= seen.highest && id > seen.highest - window) {
+            seen.clear(id);
+        }
+    }
+
+    synchronized int size() {
+        return producers.size();
+    }
+
+    /** Marks every id {@code other} has seen. */
+    synchronized void markAll(ProducerSequences other) {
+        synchronized (other) {
+            other.producers.forEach((producer, seen) -> markWindow(producer, seen, other.window));
+        }
+    }
+
+    synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(window);
+        out.writeInt(producers.size());
+        for (var entry : producers.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().highest);
+            out.writeInt(entry.getValue().bits.length);
+            for (long word : entry.getValue().bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /** Marks the ids of producers written by {@link #write}, which may have used another window. */
+    synchronized void read(DataInputStream in) throws IOException {
+        int sourceWindow = in.readInt();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            var producer = in.readUTF();
+            var seen = new Window(0);
+            seen.highest = in.readLong();
+            seen.bits = new long[in.readInt()];
+            for (int w = 0; w < seen.bits.length; w++) {
+                seen.bits[w] = in.readLong();
+            }
+            markWindow(producer, seen, sourceWindow);
+        }
+    }
+
+    private void markWindow(String producer, Window seen, int sourceWindow) {
+        long lowest = seen.highest - Math.min(sourceWindow, window);
+        mark(producer, seen.highest);
+        if (!seen.get(seen.highest)) {
+            unmark(producer, seen.highest);
+        }
+        for (long id = seen.highest - 1; id > lowest; id--) {
+            if (seen.get(id)) {
+                mark(producer, id);
+            }
+        }
+    }
+
+    private static final class Window {
+        private long highest = Long.MIN_VALUE;
+        private long[] bits;
+
+        private Window(int words) {
+            this.bits = new long[words];
+        }
+
+        private int index(long id) {
+            return (int) Math.floorMod(id, (long) bits.length * Long.SIZE);
+        }
+
+        private boolean get(long id) {
+            int index = index(id);
+            return (bits[index / Long.SIZE] & (1L << index)) != 0;
+        }
+
+        private void set(long id) {
+            int index = index(id);
+            bits[index / Long.SIZE] |= 1L << index;
+        }
+
+        private void clear(long id) {
+            int index = index(id);
+            bits[index / Long.SIZE] &= ~(1L << index);
+        }
+
+        /** Moves the window up to {@code id}, clearing the slots of the ids it now covers. */
+        private void advance(long id) {
+            long ring = (long) bits.length * Long.SIZE;
+            if (highest == Long.MIN_VALUE || id - highest >= ring) {
+                Arrays.fill(bits, 0);
+            } else {
+                for (long i = highest + 1; i <= id; i++) {
+                    clear(i);
+                }
+            }
+            highest = id;
+        }
+    }
+}
@@ -1,12 +1,58 @@
 package io.dazzleduck.sql.commons.ingestion;
 
 
+import java.util.List;
+
+/**
+ * @param writers progress of each writer of the queue, empty when the queue does not track them
+ * @param flush   the flush thresholds the queue currently uses, null when not reported
+ * @param files   sizes of the files the queue wrote, null when not reported
+ */
 public record Stats(String identifier,
                     long totalWriteBytes,
                     long totalWriteBatches,
                     long totalWriteBuckets,
                     long timeSpentWriting,
                     long pendingBatches,
-                    long pendingBuckets
+                    long pendingBuckets,
+                    List<WriterStats> writers,
+                    FlushStats flush,
+                    FileSizeStats files
                     ) {
+
+    public Stats(String identifier,
+                 long totalWriteBytes,
+                 long totalWriteBatches,
+                 long totalWriteBuckets,
+                 long timeSpentWriting,
+                 long pendingBatches,
+                 long pendingBuckets,
+                 List<WriterStats> writers,
+                 FlushStats flush) {
+        this(identifier, totalWriteBytes, totalWriteBatches, totalWriteBuckets, timeSpentWriting,
+                pendingBatches, pendingBuckets, writers, flush, null);
+    }
+
+    public Stats(String identifier,
+                 long totalWriteBytes,
+                 long totalWriteBatches,
+                 long totalWriteBuckets,
+                 long timeSpentWriting,
+                 long pendingBatches,
+                 long pendingBuckets,
+                 List<WriterStats> writers) {
+        this(identifier, totalWriteBytes, totalWriteBatches, totalWriteBuckets, timeSpentWriting,
+                pendingBatches, pendingBuckets, writers, null);
+    }
+
+    public Stats(String identifier,
+                 long totalWriteBytes,
+                 long totalWriteBatches,
+                 long totalWriteBuckets,
+                 long timeSpentWriting,
+                 long pendingBatches,
+                 long pendingBuckets) {
+        this(identifier, totalWriteBytes, totalWriteBatches, totalWriteBuckets, timeSpentWriting,
+                pendingBatches, pendingBuckets, List.of());
+    }
 }
@@ -0,0 +1,50 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Progress of one writer of a queue, see {@link ParquetIngestionQueue}.
+ *
+ * @param writer           index of the writer within its queue
+ * @param totalWrites      COPYs the writer completed
+ * @param totalRows        rows the writer wrote
+ * @param timeSpentWriting milliseconds the writer spent in COPY
+ * @param lastLag          milliseconds between receiving the oldest batch of the writer's last
+ *                         write and completing that write
+ */
+public record WriterStats(int writer,
+                          long totalWrites,
+                          long totalRows,
+                          long timeSpentWriting,
+                          long lastLag) {
+
+    /** Rows written per second spent writing. */
+    public double rowsPerSecond() {
+        return timeSpentWriting == 0 ? 0 : totalRows * 1000.0 / timeSpentWriting;
+    }
+
+    static final class Accumulator {
+        private final int writer;
+        private final LongAccumulator writes = new LongAccumulator(Long::sum, 0L);
+        private final LongAccumulator rows = new LongAccumulator(Long::sum, 0L);
+        private final LongAccumulator timeSpentWriting = new LongAccumulator(Long::sum, 0L);
+        private final AtomicLong lastLag = new AtomicLong();
+
+        Accumulator(int writer) {
+            this.writer = writer;
+        }
+
+        void record(long rowCount, Duration writeTime, Duration lag) {
+            writes.accumulate(1);
+            rows.accumulate(rowCount);
+            timeSpentWriting.accumulate(writeTime.toMillis());
+            lastLag.set(lag.toMillis());
+        }
+
+        WriterStats snapshot() {
+            return new WriterStats(writer, writes.get(), rows.get(), timeSpentWriting.get(), lastLag.get());
+        }
+    }
+}
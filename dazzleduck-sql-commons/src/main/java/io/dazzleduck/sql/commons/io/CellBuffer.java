@@ -0,0 +1,146 @@
+package io.dazzleduck.sql.commons.io;
+
+import org.apache.arrow.memory.ArrowBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The rendered cells of one column of a batch, used by the text encoders ({@link TsvEncoder},
+ * {@link JsonEncoder}): cell {@code i} spans {@code data[cellStart(i), ends[i])}. Buffers are
+ * kept across batches and only grow.
+ */
+class CellBuffer {
+
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    byte[] data = new byte[4096];
+    int[] ends = new int[0];
+    int size;
+
+    /** Prepares the buffer for a batch of {@code rowCount} cells. */
+    void reset(int rowCount) {
+        if (ends.length < rowCount) {
+            ends = new int[rowCount];
+        }
+        size = 0;
+    }
+
+    /** Marks the end of cell {@code row} at the current position. */
+    void endCell(int row) {
+        ends[row] = size;
+    }
+
+    int cellStart(int row) {
+        return row == 0 ? 0 : ends[row - 1];
+    }
+
+    void ensureCapacity(int extra) {
+        if (data.length - size < extra) {
+            int capacity = Math.max(data.length * 2, size + extra);
+            data = Arrays.copyOf(data, capacity);
+        }
+    }
+
+    void append(byte b) {
+        ensureCapacity(1);
+        data[size++] = b;
+    }
+
+    void append(byte[] bytes) {
+        append(bytes, 0, bytes.length);
+    }
+
+    void append(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    void appendBytes(ArrowBuf source, long start, int length) {
+        ensureCapacity(length);
+        source.getBytes(start, data, size, length);
+        size += length;
+    }
+
+    /** Appends a string known to be ASCII, such as the output of {@link Double#toString}. */
+    void appendAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            data[size + i] = (byte) value.charAt(i);
+        }
+        size += length;
+    }
+
+    void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            append(LONG_MIN);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            data[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        appendPadded(value, digits);
+    }
+
+    /**
+     * Appends {@code unscaled * 10^-scale} in plain notation. {@code unscaled} must not be
+     * {@link Long#MIN_VALUE} and {@code scale} must be below 19.
+     */
+    void appendDecimal(long unscaled, int scale) {
+        if (scale == 0) {
+            appendLong(unscaled);
+            return;
+        }
+        ensureCapacity(22);
+        if (unscaled < 0) {
+            data[size++] = '-';
+            unscaled = -unscaled;
+        }
+        appendLong(unscaled / POWERS_OF_TEN[scale]);
+        data[size++] = '.';
+        appendPadded(unscaled % POWERS_OF_TEN[scale], scale);
+    }
+
+    /** Appends {@code yyyy-MM-dd}, as {@link LocalDate#toString()} renders years 0 to 9999. */
+    void appendDate(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            appendAscii(date.toString());
+            return;
+        }
+        ensureCapacity(10);
+        appendPadded(year, 4);
+        data[size++] = '-';
+        appendPadded(date.getMonthValue(), 2);
+        data[size++] = '-';
+        appendPadded(date.getDayOfMonth(), 2);
+    }
+
+    /** Appends the lowest {@code width} decimal digits of a non-negative value, zero padded. */
+    void appendPadded(long value, int width) {
+        ensureCapacity(width);
+        for (int i = size + width - 1; i >= size; i--) {
+            data[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += width;
+    }
+}
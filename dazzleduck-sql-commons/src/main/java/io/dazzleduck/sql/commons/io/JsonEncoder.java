@@ -0,0 +1,559 @@
+package io.dazzleduck.sql.commons.io;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseLargeVariableWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeSecVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.UInt1Vector;
+import org.apache.arrow.vector.UInt2Vector;
+import org.apache.arrow.vector.UInt4Vector;
+import org.apache.arrow.vector.UInt8Vector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.complex.LargeListVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Renders Arrow batches as JSON objects (one per row) straight into an {@link OutputStream}.
+ *
+ * <p>A batch is encoded a column at a time. Each column gets a writer specialised for its vector
+ * type when the schema is first seen, nested writers included for lists, maps and structs, and
+ * renders all of its cells into a {@link CellBuffer}; rows are then assembled from pre-encoded
+ * field names and the cell slices. Numbers, dates and VARCHAR bytes are written without
+ * intermediate objects where possible.
+ *
+ * <p>The output matches what Jackson produces for the same values with default settings (no
+ * whitespace, non-finite floats as strings, binary as Base64), with temporal values as ISO-8601
+ * strings at every nesting level, decimals in plain notation and unsigned integers as unsigned.
+ * Maps are written as arrays of {@code {"key": ..., "value": ...}} entries. Types without a
+ * specialised writer are serialized from {@link FieldVector#getObject} by Jackson.
+ *
+ * <p>Not thread safe. Output is buffered; call {@link #flush()} to push it to the stream.
+ */
+public final class JsonEncoder implements Flushable {
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DECIMAL_BYTE_WIDTH = 16;
+    private static final int MAX_LONG_DECIMAL_PRECISION = 18;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private List<FieldVector> boundVectors = List.of();
+    private ValueWriter[] writers = new ValueWriter[0];
+    private CellBuffer[] columns = new CellBuffer[0];
+    private byte[][] fieldPrefixes = new byte[0][];
+    private long rowsWritten;
+
+    public JsonEncoder(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeStartArray() throws IOException {
+        put((byte) '[');
+    }
+
+    public void writeEndArray() throws IOException {
+        put((byte) ']');
+    }
+
+    /**
+     * Writes up to {@code maxRows} rows of {@code root} as JSON objects, separated by commas from
+     * each other and from the rows of earlier batches.
+     *
+     * @return the number of rows written
+     */
+    public int writeRows(VectorSchemaRoot root, int maxRows) throws IOException {
+        bind(root.getFieldVectors());
+        int rowCount = Math.min(root.getRowCount(), maxRows);
+        for (int col = 0; col < writers.length; col++) {
+            writers[col].writeColumn(rowCount, columns[col]);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (rowsWritten++ > 0) {
+                put((byte) ',');
+            }
+            put((byte) '{');
+            for (int col = 0; col < columns.length; col++) {
+                byte[] prefix = fieldPrefixes[col];
+                put(prefix, col == 0 ? 1 : 0, col == 0 ? prefix.length - 1 : prefix.length);
+                CellBuffer column = columns[col];
+                int start = column.cellStart(row);
+                put(column.data, start, column.ends[row] - start);
+            }
+            put((byte) '}');
+        }
+        return rowCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /** (Re)creates the column writers when the batch has different vectors than the last one. */
+    private void bind(List<FieldVector> vectors) {
+        if (sameVectors(vectors)) {
+            return;
+        }
+        writers = new ValueWriter[vectors.size()];
+        columns = new CellBuffer[vectors.size()];
+        fieldPrefixes = new byte[vectors.size()][];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = writerFor(vectors.get(i));
+            columns[i] = new CellBuffer();
+            fieldPrefixes[i] = fieldPrefix(vectors.get(i).getName());
+        }
+        boundVectors = new ArrayList<>(vectors);
+    }
+
+    private boolean sameVectors(List<FieldVector> vectors) {
+        if (vectors.size() != boundVectors.size()) {
+            return false;
+        }
+        for (int i = 0; i < vectors.size(); i++) {
+            if (vectors.get(i) != boundVectors.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** {@code ,"name":} — the leading comma is skipped for the first field of an object. */
+    private static byte[] fieldPrefix(String name) {
+        var cells = new CellBuffer();
+        cells.append((byte) ',');
+        appendString(cells, name.getBytes(StandardCharsets.UTF_8), 0, -1);
+        cells.append((byte) ':');
+        return Arrays.copyOf(cells.data, cells.size);
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = b;
+    }
+
+    private void put(byte[] src, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                out.write(src, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(src, offset, buffer, position, length);
+        position += length;
+    }
+
+    // ---------------------------------------------------------------------------
+    // Value writers
+    // ---------------------------------------------------------------------------
+
+    /** Writes the non-null values of one vector; nulls are handled by {@link #writeValue}. */
+    private abstract static class ValueWriter {
+        final FieldVector vector;
+
+        ValueWriter(FieldVector vector) {
+            this.vector = vector;
+        }
+
+        abstract void write(int index, CellBuffer out);
+
+        final void writeValue(int index, CellBuffer out) {
+            if (vector.isNull(index)) {
+                out.append(NULL);
+            } else {
+                write(index, out);
+            }
+        }
+
+        final void writeColumn(int rowCount, CellBuffer out) {
+            out.reset(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                writeValue(row, out);
+                out.endCell(row);
+            }
+        }
+    }
+
+    private static ValueWriter writerFor(FieldVector vector) {
+        return switch (vector.getMinorType()) {
+            case TINYINT -> new ValueWriter(vector) {
+                final TinyIntVector v = (TinyIntVector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i)); }
+            };
+            case SMALLINT -> new ValueWriter(vector) {
+                final SmallIntVector v = (SmallIntVector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i)); }
+            };
+            case INT -> new ValueWriter(vector) {
+                final IntVector v = (IntVector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i)); }
+            };
+            case BIGINT -> new ValueWriter(vector) {
+                final BigIntVector v = (BigIntVector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i)); }
+            };
+            case UINT1 -> new ValueWriter(vector) {
+                final UInt1Vector v = (UInt1Vector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i) & 0xFF); }
+            };
+            case UINT2 -> new ValueWriter(vector) {
+                final UInt2Vector v = (UInt2Vector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(v.get(i)); }
+            };
+            case UINT4 -> new ValueWriter(vector) {
+                final UInt4Vector v = (UInt4Vector) vector;
+                @Override void write(int i, CellBuffer out) { out.appendLong(Integer.toUnsignedLong(v.get(i))); }
+            };
+            case UINT8 -> new ValueWriter(vector) {
+                final UInt8Vector v = (UInt8Vector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    long value = v.get(i);
+                    if (value >= 0) {
+                        out.appendLong(value);
+                    } else {
+                        out.appendAscii(Long.toUnsignedString(value));
+                    }
+                }
+            };
+            case FLOAT4 -> new ValueWriter(vector) {
+                final Float4Vector v = (Float4Vector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    float value = v.get(i);
+                    if (Float.isFinite(value)) {
+                        out.appendAscii(Float.toString(value));
+                    } else {
+                        appendQuotedAscii(out, Float.toString(value));
+                    }
+                }
+            };
+            case FLOAT8 -> new ValueWriter(vector) {
+                final Float8Vector v = (Float8Vector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    double value = v.get(i);
+                    if (Double.isFinite(value)) {
+                        out.appendAscii(Double.toString(value));
+                    } else {
+                        appendQuotedAscii(out, Double.toString(value));
+                    }
+                }
+            };
+            case BIT -> new ValueWriter(vector) {
+                final BitVector v = (BitVector) vector;
+                @Override void write(int i, CellBuffer out) { out.append(v.get(i) != 0 ? TRUE : FALSE); }
+            };
+            case DECIMAL -> decimalWriter((DecimalVector) vector);
+            case VARCHAR -> new ValueWriter(vector) {
+                final BaseVariableWidthVector v = (BaseVariableWidthVector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    ArrowBuf offsets = v.getOffsetBuffer();
+                    int start = offsets.getInt((long) i * BaseVariableWidthVector.OFFSET_WIDTH);
+                    int end = offsets.getInt((long) (i + 1) * BaseVariableWidthVector.OFFSET_WIDTH);
+                    appendString(out, v.getDataBuffer(), start, end - start);
+                }
+            };
+            case LARGEVARCHAR -> new ValueWriter(vector) {
+                final BaseLargeVariableWidthVector v = (BaseLargeVariableWidthVector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    ArrowBuf offsets = v.getOffsetBuffer();
+                    long start = offsets.getLong((long) i * BaseLargeVariableWidthVector.OFFSET_WIDTH);
+                    long end = offsets.getLong((long) (i + 1) * BaseLargeVariableWidthVector.OFFSET_WIDTH);
+                    appendString(out, v.getDataBuffer(), start, Math.toIntExact(end - start));
+                }
+            };
+            case VARBINARY, LARGEVARBINARY -> new ValueWriter(vector) {
+                @Override void write(int i, CellBuffer out) { appendBase64(out, (byte[]) vector.getObject(i)); }
+            };
+            case FIXEDSIZEBINARY -> new ValueWriter(vector) {
+                final FixedSizeBinaryVector v = (FixedSizeBinaryVector) vector;
+                @Override void write(int i, CellBuffer out) { appendBase64(out, v.get(i)); }
+            };
+            case DATEDAY -> new ValueWriter(vector) {
+                final DateDayVector v = (DateDayVector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    out.append((byte) '"');
+                    out.appendDate(v.get(i));
+                    out.append((byte) '"');
+                }
+            };
+            case DATEMILLI -> new ValueWriter(vector) {
+                final DateMilliVector v = (DateMilliVector) vector;
+                @Override void write(int i, CellBuffer out) {
+                    out.append((byte) '"');
+                    out.appendDate(Math.floorDiv(v.get(i), 86_400_000L));
+                    out.append((byte) '"');
+                }
+            };
+            case TIMESEC -> timeWriter(vector, i -> TimeUnit.SECONDS.toNanos(((TimeSecVector) vector).get(i)));
+            case TIMEMILLI -> timeWriter(vector, i -> TimeUnit.MILLISECONDS.toNanos(((TimeMilliVector) vector).get(i)));
+            case TIMEMICRO -> timeWriter(vector, i -> TimeUnit.MICROSECONDS.toNanos(((TimeMicroVector) vector).get(i)));
+            case TIMENANO -> timeWriter(vector, i -> ((TimeNanoVector) vector).get(i));
+            case TIMESTAMPSEC, TIMESTAMPSECTZ -> timestampWriter((TimeStampVector) vector, 1_000_000_000L);
+            case TIMESTAMPMILLI, TIMESTAMPMILLITZ -> timestampWriter((TimeStampVector) vector, 1_000_000L);
+            case TIMESTAMPMICRO, TIMESTAMPMICROTZ -> timestampWriter((TimeStampVector) vector, 1_000L);
+            case TIMESTAMPNANO, TIMESTAMPNANOTZ -> timestampWriter((TimeStampVector) vector, 1L);
+            case INTERVALDAY, INTERVALYEAR, INTERVALMONTHDAYNANO, DURATION -> new ValueWriter(vector) {
+                @Override void write(int i, CellBuffer out) { appendString(out, vector.getObject(i).toString()); }
+            };
+            case LIST, MAP -> listWriter((ListVector) vector);
+            case LARGELIST -> new ValueWriter(vector) {
+                final LargeListVector v = (LargeListVector) vector;
+                final ValueWriter elements = writerFor((FieldVector) v.getDataVector());
+                @Override void write(int i, CellBuffer out) {
+                    ArrowBuf offsets = v.getOffsetBuffer();
+                    long start = offsets.getLong((long) i * LargeListVector.OFFSET_WIDTH);
+                    long end = offsets.getLong((long) (i + 1) * LargeListVector.OFFSET_WIDTH);
+                    appendArray(out, elements, Math.toIntExact(start), Math.toIntExact(end));
+                }
+            };
+            case FIXED_SIZE_LIST -> new ValueWriter(vector) {
+                final FixedSizeListVector v = (FixedSizeListVector) vector;
+                final ValueWriter elements = writerFor(v.getDataVector());
+                @Override void write(int i, CellBuffer out) {
+                    int size = v.getListSize();
+                    appendArray(out, elements, i * size, (i + 1) * size);
+                }
+            };
+            case STRUCT -> structWriter((StructVector) vector);
+            default -> new ValueWriter(vector) {
+                @Override void write(int i, CellBuffer out) {
+                    try {
+                        out.append(MAPPER.writeValueAsBytes(vector.getObject(i)));
+                    } catch (JsonProcessingException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        };
+    }
+
+    private static ValueWriter decimalWriter(DecimalVector vector) {
+        if (vector.getPrecision() <= MAX_LONG_DECIMAL_PRECISION) {
+            // The unscaled value fits in the low 8 bytes of the little-endian 128 bit integer
+            return new ValueWriter(vector) {
+                @Override void write(int i, CellBuffer out) {
+                    long unscaled = vector.getDataBuffer().getLong((long) i * DECIMAL_BYTE_WIDTH);
+                    out.appendDecimal(unscaled, vector.getScale());
+                }
+            };
+        }
+        return new ValueWriter(vector) {
+            @Override void write(int i, CellBuffer out) { out.appendAscii(vector.getObject(i).toPlainString()); }
+        };
+    }
+
+    private static ValueWriter timeWriter(FieldVector vector, IntToLongFunction nanosOfDay) {
+        return new ValueWriter(vector) {
+            @Override void write(int i, CellBuffer out) {
+                appendQuotedAscii(out, LocalTime.ofNanoOfDay(nanosOfDay.applyAsLong(i)).toString());
+            }
+        };
+    }
+
+    /**
+     * Timestamps with a time zone are instants ({@code ...Z}); those without one are local
+     * date-times, as {@link FieldVector#getObject} returns them.
+     */
+    private static ValueWriter timestampWriter(TimeStampVector vector, long nanosPerUnit) {
+        long unitsPerSecond = 1_000_000_000L / nanosPerUnit;
+        boolean withZone = ((ArrowType.Timestamp) vector.getField().getType()).getTimezone() != null;
+        return new ValueWriter(vector) {
+            @Override void write(int i, CellBuffer out) {
+                long value = vector.get(i);
+                long seconds = Math.floorDiv(value, unitsPerSecond);
+                int nanos = (int) (Math.floorMod(value, unitsPerSecond) * nanosPerUnit);
+                appendQuotedAscii(out, withZone
+                        ? Instant.ofEpochSecond(seconds, nanos).toString()
+                        : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC).toString());
+            }
+        };
+    }
+
+    private static ValueWriter listWriter(ListVector vector) {
+        ValueWriter elements = writerFor(vector.getDataVector());
+        return new ValueWriter(vector) {
+            @Override void write(int i, CellBuffer out) {
+                ArrowBuf offsets = vector.getOffsetBuffer();
+                int start = offsets.getInt((long) i * ListVector.OFFSET_WIDTH);
+                int end = offsets.getInt((long) (i + 1) * ListVector.OFFSET_WIDTH);
+                appendArray(out, elements, start, end);
+            }
+        };
+    }
+
+    private static ValueWriter structWriter(StructVector vector) {
+        List<FieldVector> children = vector.getChildrenFromFields();
+        ValueWriter[] fields = new ValueWriter[children.size()];
+        byte[][] prefixes = new byte[children.size()][];
+        for (int f = 0; f < fields.length; f++) {
+            fields[f] = writerFor(children.get(f));
+            prefixes[f] = fieldPrefix(children.get(f).getName());
+        }
+        return new ValueWriter(vector) {
+            @Override void write(int i, CellBuffer out) {
+                out.append((byte) '{');
+                for (int f = 0; f < fields.length; f++) {
+                    out.append(prefixes[f], f == 0 ? 1 : 0, f == 0 ? prefixes[f].length - 1 : prefixes[f].length);
+                    fields[f].writeValue(i, out);
+                }
+                out.append((byte) '}');
+            }
+        };
+    }
+
+    private static void appendArray(CellBuffer out, ValueWriter elements, int start, int end) {
+        out.append((byte) '[');
+        for (int j = start; j < end; j++) {
+            if (j > start) {
+                out.append((byte) ',');
+            }
+            elements.writeValue(j, out);
+        }
+        out.append((byte) ']');
+    }
+
+    // ---------------------------------------------------------------------------
+    // Strings
+    // ---------------------------------------------------------------------------
+
+    private static void appendQuotedAscii(CellBuffer out, String value) {
+        out.append((byte) '"');
+        out.appendAscii(value);
+        out.append((byte) '"');
+    }
+
+    private static void appendString(CellBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        appendString(out, bytes, 0, bytes.length);
+    }
+
+    /** Appends UTF-8 {@code bytes} as a quoted JSON string; a negative length means all of them. */
+    private static void appendString(CellBuffer out, byte[] bytes, int offset, int length) {
+        int end = length < 0 ? bytes.length : offset + length;
+        out.append((byte) '"');
+        int run = offset;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (needsEscape(b)) {
+                out.append(bytes, run, i - run);
+                appendEscape(out, b);
+                run = i + 1;
+            }
+        }
+        out.append(bytes, run, end - run);
+        out.append((byte) '"');
+    }
+
+    /**
+     * Appends UTF-8 bytes from an Arrow buffer as a quoted JSON string. The bytes are copied in
+     * one go and only re-written when they turn out to contain characters that need escaping.
+     */
+    private static void appendString(CellBuffer out, ArrowBuf source, long start, int length) {
+        out.append((byte) '"');
+        int from = out.size;
+        out.appendBytes(source, start, length);
+        for (int i = from; i < out.size; i++) {
+            if (needsEscape(out.data[i])) {
+                byte[] raw = Arrays.copyOfRange(out.data, from, out.size);
+                out.size = from;
+                appendEscaped(out, raw);
+                break;
+            }
+        }
+        out.append((byte) '"');
+    }
+
+    private static void appendEscaped(CellBuffer out, byte[] raw) {
+        int run = 0;
+        for (int i = 0; i < raw.length; i++) {
+            if (needsEscape(raw[i])) {
+                out.append(raw, run, i - run);
+                appendEscape(out, raw[i]);
+                run = i + 1;
+            }
+        }
+        out.append(raw, run, raw.length - run);
+    }
+
+    /** Quote, backslash and control characters; UTF-8 continuation bytes are negative. */
+    private static boolean needsEscape(byte b) {
+        return (b >= 0 && b < 0x20) || b == '"' || b == '\\';
+    }
+
+    private static void appendEscape(CellBuffer out, byte b) {
+        out.append((byte) '\\');
+        switch (b) {
+            case '"', '\\' -> out.append(b);
+            case '\n' -> out.append((byte) 'n');
+            case '\r' -> out.append((byte) 'r');
+            case '\t' -> out.append((byte) 't');
+            case '\b' -> out.append((byte) 'b');
+            case '\f' -> out.append((byte) 'f');
+            default -> {
+                out.append((byte) 'u');
+                out.append((byte) '0');
+                out.append((byte) '0');
+                out.append(HEX[(b >> 4) & 0xF]);
+                out.append(HEX[b & 0xF]);
+            }
+        }
+    }
+
+    private static void appendBase64(CellBuffer out, byte[] bytes) {
+        out.append((byte) '"');
+        out.append(Base64.getEncoder().encode(bytes));
+        out.append((byte) '"');
+    }
+}
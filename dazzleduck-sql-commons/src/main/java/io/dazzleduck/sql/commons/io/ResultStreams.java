@@ -21,10 +21,8 @@ import org.apache.arrow.vector.ipc.message.IpcOption;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.channels.Channels;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -42,8 +40,9 @@ import java.util.List;
  *   <li><b>Pull</b> helpers ({@link #writeArrow}, {@link #writeTsv}) drive an {@link ArrowReader}
  *       to completion — convenient for JDBC/DuckDB callers.</li>
  *   <li><b>Per-batch</b> primitives ({@link #newArrowStreamWriter}, {@link #writeTsvHeader},
- *       {@link #writeTsvRows}, {@link #formatValue}) — for push-based callers (e.g. Flight
- *       listeners) that receive one {@link VectorSchemaRoot} at a time.</li>
+ *       {@link #writeTsvRows}, {@link #formatValue}, and the faster byte-level {@link TsvEncoder})
+ *       — for push-based callers (e.g. Flight listeners) that receive one {@link VectorSchemaRoot}
+ *       at a time.</li>
  * </ul>
  */
 public final class ResultStreams {
@@ -81,20 +80,22 @@ public final class ResultStreams {
 
     /**
      * Streams every batch of {@code reader} to {@code out} as TSV (header row + tab-separated
-     * rows), flushing per batch.
+     * rows), flushing per batch. Rendering is done by a {@link TsvEncoder}.
      *
      * @return total rows written
      */
     public static long writeTsv(ArrowReader reader, OutputStream out) throws IOException {
         VectorSchemaRoot root = reader.getVectorSchemaRoot();
         long rows = 0;
-        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
-            writeTsvHeader(root, writer);
+        try (out) {
+            TsvEncoder encoder = new TsvEncoder(out);
+            encoder.writeHeader(root);
             while (reader.loadNextBatch()) {
-                writeTsvRows(root, writer);
+                encoder.writeRows(root);
                 rows += root.getRowCount();
-                writer.flush();
+                encoder.flush();
             }
+            encoder.flush();
         }
         return rows;
     }
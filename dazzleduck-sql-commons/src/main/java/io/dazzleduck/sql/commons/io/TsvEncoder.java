@@ -0,0 +1,239 @@
+package io.dazzleduck.sql.commons.io;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.LargeVarCharVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Renders Arrow batches as TSV bytes straight into an {@link OutputStream}.
+ *
+ * <p>A batch is encoded a column at a time: each column is rendered into its own byte buffer by a
+ * loop specialised for its vector type, and rows are then assembled by copying the cell slices.
+ * Integers, floats, booleans and dates are formatted without intermediate objects where possible,
+ * and VARCHAR bytes are copied from the Arrow data buffer without decoding. Every other type goes
+ * through {@link ResultStreams#formatValue}, so the output is the same as that of
+ * {@link ResultStreams#writeTsvHeader} and {@link ResultStreams#writeTsvRows}.
+ *
+ * <p>Not thread safe. Output is buffered; call {@link #flush()} to push it to the stream.
+ */
+public final class TsvEncoder implements Flushable {
+
+    private static final byte TAB = '\t';
+    private static final byte NEWLINE = '\n';
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private Column[] columns = new Column[0];
+
+    public TsvEncoder(OutputStream out) {
+        this.out = out;
+    }
+
+    /** Writes the header row (column names, tab-separated). */
+    public void writeHeader(VectorSchemaRoot root) throws IOException {
+        List<FieldVector> vectors = root.getFieldVectors();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i > 0) {
+                put(TAB);
+            }
+            byte[] name = vectors.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            put(name, 0, name.length);
+        }
+        put(NEWLINE);
+    }
+
+    /** Writes all rows of {@code root} (null cells become empty strings). */
+    public void writeRows(VectorSchemaRoot root) throws IOException {
+        List<FieldVector> vectors = root.getFieldVectors();
+        int rowCount = root.getRowCount();
+        if (columns.length != vectors.size()) {
+            columns = new Column[vectors.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column();
+            }
+        }
+        for (int col = 0; col < columns.length; col++) {
+            columns[col].encode(vectors.get(col), rowCount);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            for (int col = 0; col < columns.length; col++) {
+                if (col > 0) {
+                    put(TAB);
+                }
+                Column column = columns[col];
+                int start = column.cellStart(row);
+                put(column.data, start, column.ends[row] - start);
+            }
+            put(NEWLINE);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = b;
+    }
+
+    private void put(byte[] src, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                out.write(src, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(src, offset, buffer, position, length);
+        position += length;
+    }
+
+    /** Renders the cells of one column with a loop specialised for its vector type. */
+    private static final class Column extends CellBuffer {
+
+        void encode(FieldVector vector, int rowCount) {
+            reset(rowCount);
+            switch (vector.getMinorType()) {
+                case TINYINT -> {
+                    var v = (TinyIntVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendLong(v.get(row));
+                        }
+                        endCell(row);
+                    }
+                }
+                case SMALLINT -> {
+                    var v = (SmallIntVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendLong(v.get(row));
+                        }
+                        endCell(row);
+                    }
+                }
+                case INT -> {
+                    var v = (IntVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendLong(v.get(row));
+                        }
+                        endCell(row);
+                    }
+                }
+                case BIGINT -> {
+                    var v = (BigIntVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendLong(v.get(row));
+                        }
+                        endCell(row);
+                    }
+                }
+                case FLOAT4 -> {
+                    var v = (Float4Vector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendAscii(Float.toString(v.get(row)));
+                        }
+                        endCell(row);
+                    }
+                }
+                case FLOAT8 -> {
+                    var v = (Float8Vector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendAscii(Double.toString(v.get(row)));
+                        }
+                        endCell(row);
+                    }
+                }
+                case BIT -> {
+                    var v = (BitVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            append(v.get(row) != 0 ? TRUE : FALSE);
+                        }
+                        endCell(row);
+                    }
+                }
+                case DATEDAY -> {
+                    var v = (DateDayVector) vector;
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            appendDate(v.get(row));
+                        }
+                        endCell(row);
+                    }
+                }
+                case VARCHAR -> {
+                    var v = (VarCharVector) vector;
+                    ArrowBuf offsets = v.getOffsetBuffer();
+                    ArrowBuf values = v.getDataBuffer();
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            int start = offsets.getInt((long) row * VarCharVector.OFFSET_WIDTH);
+                            int end = offsets.getInt((long) (row + 1) * VarCharVector.OFFSET_WIDTH);
+                            appendBytes(values, start, end - start);
+                        }
+                        endCell(row);
+                    }
+                }
+                case LARGEVARCHAR -> {
+                    var v = (LargeVarCharVector) vector;
+                    ArrowBuf offsets = v.getOffsetBuffer();
+                    ArrowBuf values = v.getDataBuffer();
+                    for (int row = 0; row < rowCount; row++) {
+                        if (!v.isNull(row)) {
+                            long start = offsets.getLong((long) row * LargeVarCharVector.OFFSET_WIDTH);
+                            long end = offsets.getLong((long) (row + 1) * LargeVarCharVector.OFFSET_WIDTH);
+                            appendBytes(values, start, Math.toIntExact(end - start));
+                        }
+                        endCell(row);
+                    }
+                }
+                default -> {
+                    for (int row = 0; row < rowCount; row++) {
+                        String value = ResultStreams.formatValue(vector, row);
+                        if (value != null) {
+                            append(value.getBytes(StandardCharsets.UTF_8));
+                        }
+                        endCell(row);
+                    }
+                }
+            }
+        }
+    }
+}
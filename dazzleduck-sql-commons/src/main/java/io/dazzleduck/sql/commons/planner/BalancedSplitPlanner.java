@@ -0,0 +1,192 @@
+package io.dazzleduck.sql.commons.planner;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Packs the files of a query into splits of near-equal size.
+ *
+ * <p>The number of splits is the smallest that keeps their average under {@code maxSplitSize}. Parquet
+ * files larger than {@code maxSplitSize} are cut on row-group boundaries into pieces of about that
+ * average, each of which is a split on its own. The remaining files are packed largest first, each into
+ * the split with the fewest bytes so far, which leaves splits within one file of each other instead of
+ * closing a split whenever it overflows.
+ *
+ * <p>Row counts are known only for files cut by their row-group metadata; elsewhere {@code rows} is -1
+ * and files are weighed by bytes alone.
+ */
+public final class BalancedSplitPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalancedSplitPlanner.class);
+
+    private static final String ROW_GROUP_QUERY =
+            "SELECT any_value(row_group_num_rows), cast(sum(total_compressed_size) AS BIGINT) " +
+                    "FROM parquet_metadata('%s') GROUP BY row_group_id ORDER BY row_group_id";
+
+    /**
+     * A file, or rows {@code [startRow, endRow)} of it; {@code endRow} is -1 for the whole file.
+     * {@code size} is the bytes of the file the range covers and {@code rows} its rows, or -1 if unknown.
+     */
+    public record FileRange(FileStatus file, long size, long rows, long startRow, long endRow) {
+
+        public static FileRange whole(FileStatus file) {
+            return new FileRange(file, file.size(), -1, 0, -1);
+        }
+
+        public boolean isWholeFile() {
+            return endRow < 0;
+        }
+    }
+
+    /** A row group of a parquet file, with its compressed size. */
+    public record RowGroup(Long rows, Long bytes) { }
+
+    /** Reads the row groups of a parquet file, in file order. */
+    @FunctionalInterface
+    public interface RowGroupReader {
+        List<RowGroup> read(String fileName) throws SQLException;
+    }
+
+    /** Reads row groups with DuckDB's {@code parquet_metadata}. */
+    public static final RowGroupReader PARQUET_METADATA = fileName -> {
+        try (var connection = ConnectionPool.getConnection()) {
+            var result = new ArrayList<RowGroup>();
+            ConnectionPool.collectAll(connection, ROW_GROUP_QUERY.formatted(fileName.replace("'", "''")), RowGroup.class)
+                    .forEach(result::add);
+            return result;
+        }
+    };
+
+    private BalancedSplitPlanner() {
+    }
+
+    /**
+     * @param files        files in listing order, oldest first
+     * @param maxSplitSize bytes a split should stay under on average
+     * @param reader       reads the row groups of files larger than {@code maxSplitSize}, or null to keep them whole
+     * @return the splits, ordered by their oldest file, each ordered by modification time
+     */
+    public static List<List<FileRange>> plan(List<FileStatus> files, long maxSplitSize, RowGroupReader reader) {
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        long total = files.stream().mapToLong(FileStatus::size).sum();
+        long splits = Math.max(1, ceilDiv(total, Math.max(1, maxSplitSize)));
+        double target = (double) total / splits;
+
+        var result = new ArrayList<List<FileRange>>();
+        var rest = new ArrayList<FileRange>();
+        long restSize = 0;
+        for (var file : files) {
+            var ranges = file.size() > maxSplitSize && reader != null
+                    ? cut(file, target, reader)
+                    : List.of(FileRange.whole(file));
+            if (ranges.size() > 1) {
+                ranges.forEach(r -> result.add(List.of(r)));
+            } else {
+                rest.add(ranges.get(0));
+                restSize += file.size();
+            }
+        }
+        if (!rest.isEmpty()) {
+            long bins = Math.max(1, Math.max(ceilDiv(restSize, Math.max(1, maxSplitSize)), Math.round(restSize / target)));
+            result.addAll(pack(rest, (int) Math.min(bins, rest.size())));
+        }
+        result.sort(Comparator.comparing((List<FileRange> split) -> split.get(0).file().lastModified())
+                .thenComparing(split -> split.get(0).file().fileName())
+                .thenComparingLong(split -> split.get(0).startRow()));
+        return result;
+    }
+
+    /**
+     * Places each range, largest first, into the bin with the fewest bytes.
+     */
+    static List<List<FileRange>> pack(List<FileRange> ranges, int bins) {
+        var sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(FileRange::size).reversed()
+                .thenComparing(r -> r.file().fileName()));
+        var queue = new PriorityQueue<Bin>(Comparator.comparingLong(Bin::size).thenComparingInt(Bin::index));
+        for (int i = 0; i < bins; i++) {
+            queue.add(new Bin(i, 0, new ArrayList<>()));
+        }
+        for (var range : sorted) {
+            var bin = queue.poll();
+            bin.ranges().add(range);
+            queue.add(new Bin(bin.index(), bin.size() + range.size(), bin.ranges()));
+        }
+        var result = new ArrayList<List<FileRange>>();
+        for (var bin : queue) {
+            if (!bin.ranges().isEmpty()) {
+                bin.ranges().sort(Comparator.comparing((FileRange r) -> r.file().lastModified())
+                        .thenComparing(r -> r.file().fileName()));
+                result.add(List.copyOf(bin.ranges()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cuts a file into row-group ranges of about {@code target} bytes. A row group goes to the range its
+     * midpoint falls in, so ranges stay within half a row group of the target. Returns the whole file if
+     * its row groups cannot be read or it would not be cut.
+     */
+    static List<FileRange> cut(FileStatus file, double target, RowGroupReader reader) {
+        int pieces = (int) Math.min(Integer.MAX_VALUE, Math.round(file.size() / target));
+        if (pieces < 2) {
+            return List.of(FileRange.whole(file));
+        }
+        List<RowGroup> rowGroups;
+        try {
+            rowGroups = reader.read(file.fileName());
+        } catch (SQLException | RuntimeException e) {
+            logger.debug("Keeping {} whole, its row groups could not be read: {}", file.fileName(), e.getMessage());
+            return List.of(FileRange.whole(file));
+        }
+        if (rowGroups.size() < 2) {
+            return List.of(FileRange.whole(file));
+        }
+        long groupBytes = rowGroups.stream().mapToLong(RowGroup::bytes).sum();
+        long groupRows = rowGroups.stream().mapToLong(RowGroup::rows).sum();
+        // Spread the file's size, footer included, over its row groups
+        double scale = groupBytes > 0 ? (double) file.size() / groupBytes : (double) file.size() / Math.max(1, groupRows);
+        double pieceSize = (double) file.size() / pieces;
+
+        var result = new ArrayList<FileRange>();
+        double position = 0;
+        long startRow = 0;
+        long row = 0;
+        double size = 0;
+        int current = 0;
+        for (var group : rowGroups) {
+            double groupSize = (groupBytes > 0 ? group.bytes() : group.rows()) * scale;
+            int piece = (int) Math.min(pieces - 1, (long) ((position + groupSize / 2) / pieceSize));
+            if (piece != current && row > startRow) {
+                result.add(new FileRange(file, Math.round(size), row - startRow, startRow, row));
+                startRow = row;
+                size = 0;
+            }
+            current = piece;
+            position += groupSize;
+            size += groupSize;
+            row += group.rows();
+        }
+        if (row > startRow) {
+            result.add(new FileRange(file, Math.round(size), row - startRow, startRow, row));
+        }
+        return result.size() < 2 ? List.of(FileRange.whole(file)) : result;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private record Bin(int index, long size, List<FileRange> ranges) { }
+}
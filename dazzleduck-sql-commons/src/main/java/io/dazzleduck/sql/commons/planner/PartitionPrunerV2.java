@@ -25,6 +25,9 @@ public interface PartitionPrunerV2 {
             "read_delta", new DeltaLakeSplitPlanner()
     );
 
+    // Shared so the table and statistics caches of each DuckLake catalog outlive a single query
+    PartitionPrunerV2 ducklakePlanner = new DucklakeSplitPlanner();
+
     static PartitionPrunerV2 getPlannerForTableFunction(String functionName) {
         return tableFunctionPlanners.get(functionName);
     }
@@ -39,7 +42,7 @@ public interface PartitionPrunerV2 {
             }
         }
         if (ducklakeDatabases.contains(table.catalog())) {
-            return new DucklakeSplitPlanner();
+            return ducklakePlanner;
         } else {
             throw new IllegalStateException("Database Not supported" + table.catalog());
         }
@@ -92,7 +95,7 @@ class DeltaLakeSplitPlanner implements PartitionPrunerV2 {
 
 class DucklakeSplitPlanner implements PartitionPrunerV2 {
 
-    private Map<String, DucklakePartitionPruning> cache = new ConcurrentHashMap<>();
+    private final Map<String, DucklakePartitionPruning> cache = new ConcurrentHashMap<>();
     @Override
     public List<FileStatus> pruneFiles( JsonNode tree, long maxSplitSize, Map<String, String> properties) throws SQLException, IOException {
         var catalogSchemaAndTables =
@@ -100,13 +103,7 @@ class DucklakeSplitPlanner implements PartitionPrunerV2 {
         var first = catalogSchemaAndTables.get(0);
         var catalog = first.catalog();
         var metadata = "__ducklake_metadata_" + catalog;
-        var pruner = cache.compute(metadata, (key, oldValue) -> {
-            if (oldValue == null){
-                return new DucklakePartitionPruning(metadata);
-            } else {
-                return oldValue;
-            }
-        });
+        var pruner = cache.computeIfAbsent(metadata, DucklakePartitionPruning::new);
        return pruner.pruneFiles(first.schema(), first.tableOrPath(), tree);
 
     }
@@ -16,8 +16,16 @@ import static io.dazzleduck.sql.commons.ExpressionFactory.createFunction;
 public interface SplitPlanner {
 
 
-    static List<List<FileStatus>> getSplitStatus(JsonNode tree,
-                                                 long maxSplitSize) throws SQLException, IOException {
+    /** Virtual column of DuckDB's parquet reader, used to read a row range of a file. */
+    String FILE_ROW_NUMBER = "file_row_number";
+
+    /**
+     * Plans the splits of a single table query with {@link BalancedSplitPlanner}.
+     *
+     * @return splits of near-equal size; a split holding part of a file holds only that part
+     */
+    static List<List<BalancedSplitPlanner.FileRange>> getSplitStatus(JsonNode tree,
+                                                                      long maxSplitSize) throws SQLException, IOException {
         var catalogSchemaAndTables =
                 Transformations.getAllTablesOrPathsFromSelect(Transformations.getFirstStatementNode(tree), null, null);
 
@@ -37,40 +45,43 @@ public interface SplitPlanner {
         }
         var fileStatuses = splitPlanner.pruneFiles(tree, maxSplitSize, Map.of());
         //fileStatuses.sort(Comparator.comparing(FileStatus::lastModified));
-        return getSplitStatus(maxSplitSize, fileStatuses);
-    }
-
-    private static ArrayList<List<FileStatus>> getSplitStatus(long maxSplitSize, List<FileStatus> fileStatuses) {
-        var result = new ArrayList<List<FileStatus>>();
-        var current = new ArrayList<FileStatus>();
-        long currentSize = 0;
-        for (FileStatus fileStatus : fileStatuses) {
-            current.add(fileStatus);
-            currentSize += fileStatus.size();
-            if(currentSize > maxSplitSize) {
-                result.add(current);
-                current = new ArrayList<>();
-                currentSize = 0;
-            }
-        }
-        if(!current.isEmpty()) {
-            result.add(current);
-        }
-        return result;
+        return BalancedSplitPlanner.plan(fileStatuses, maxSplitSize, BalancedSplitPlanner.PARQUET_METADATA);
     }
 
-    private static void replacePathInFromClause(JsonNode tree, String[] paths) {
-        var formatToFunction = Map.of("read_delta", "read_parquet");
+    /**
+     * @return the table function reference now reading {@code paths}
+     */
+    private static ObjectNode replacePathInFromClause(JsonNode tree, String[] paths) {
         var firstStatement = Transformations.getFirstStatementNode(tree);
         var from = firstStatement.get("from_table");
         var type = from.get("type").asText();
         if(type.equals(ExpressionConstants.BASE_TABLE_TYPE)) {
             replacePathInFromTableClause(tree, paths);
+            return (ObjectNode) from;
         } else {
             replacePathInFromPathClause(tree, paths);
+            return (ObjectNode) Transformations.getTableFunctionParent(firstStatement);
         }
     }
 
+    /**
+     * Replaces the table function reference with a subquery reading only rows {@code [startRow, endRow)}
+     * of it. {@code SELECT *} leaves out the virtual row number, so the columns stay the same.
+     */
+    private static void restrictToRows(ObjectNode tableFunction, long startRow, long endRow) throws SQLException, IOException {
+        var template = Transformations.parseToTree("SELECT * FROM (SELECT * FROM t WHERE true)");
+        var subquery = (ObjectNode) Transformations.getFirstStatementNode(template).get("from_table").deepCopy();
+        var inner = (ObjectNode) subquery.get("subquery").get("node");
+        var rowNumber = ExpressionFactory.reference(new String[]{FILE_ROW_NUMBER});
+        inner.set("from_table", tableFunction.deepCopy());
+        inner.set(ExpressionConstants.FIELD_WHERE_CLAUSE, ExpressionFactory.andFilters(
+                ExpressionFactory.greaterThanOrEqualExpr(rowNumber, ExpressionFactory.constant(startRow)),
+                ExpressionFactory.lessThanOrEqualExpr(rowNumber.deepCopy(), ExpressionFactory.constant(endRow - 1))));
+        subquery.set("alias", tableFunction.get("alias"));
+        tableFunction.removeAll();
+        tableFunction.setAll(subquery);
+    }
+
     private static void replacePathInFromTableClause(JsonNode tree, String[] paths) {
         var firstStatement = Transformations.getFirstStatementNode(tree);
         var tableFunction = (ObjectNode)firstStatement.get("from_table");
@@ -134,10 +145,17 @@ public interface SplitPlanner {
     static List<TreeAndSize> getSplitTreeAndSize(JsonNode tree,
                                                  long maxSplitSize) throws SQLException, IOException {
         var splits = getSplitStatus(tree, maxSplitSize);
-        return splits.stream().map(split -> {
+        var result = new ArrayList<TreeAndSize>();
+        for (var split : splits) {
             var copy = tree.deepCopy();
-            SplitPlanner.replacePathInFromClause(copy, split.stream().map(FileStatus::fileName).toArray(String[]::new));
-            return new TreeAndSize(copy, split.stream().mapToLong(FileStatus::size).sum());
-        }).toList();
+            var tableFunction = SplitPlanner.replacePathInFromClause(copy,
+                    split.stream().map(r -> r.file().fileName()).distinct().toArray(String[]::new));
+            var first = split.get(0);
+            if (!first.isWholeFile()) {
+                restrictToRows(tableFunction, first.startRow(), first.endRow());
+            }
+            result.add(new TreeAndSize(copy, split.stream().mapToLong(BalancedSplitPlanner.FileRange::size).sum()));
+        }
+        return result;
     }
 }
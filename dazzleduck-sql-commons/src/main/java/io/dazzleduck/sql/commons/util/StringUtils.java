@@ -0,0 +1,27 @@
+package io.dazzleduck.sql.commons.util;
+
+public class StringUtils {
+
+    private StringUtils() {
+    }
+
+    /**
+     * Orders strings by code point, as DuckDB orders their UTF-8 bytes. {@link String#compareTo}
+     * orders by UTF-16 unit instead, which puts supplementary characters before those from
+     * {@code U+E000} to {@code U+FFFF}.
+     */
+    public static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+}
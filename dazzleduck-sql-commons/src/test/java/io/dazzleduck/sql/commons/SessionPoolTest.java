@@ -0,0 +1,233 @@
+package io.dazzleduck.sql.commons;
+
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.duckdb.DuckDBConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionPoolTest {
+
+    private static final SessionPoolConfig CONFIG = new SessionPoolConfig(true, 0, 2, 4,
+            Duration.ofMillis(200), Duration.ofMinutes(1));
+
+    private MutableClock clock;
+    private SessionPool pool;
+
+    @BeforeAll
+    static void createSchema() {
+        ConnectionPool.executeBatch(new String[]{
+                "CREATE SCHEMA IF NOT EXISTS pool_test",
+                "CREATE OR REPLACE TABLE pool_test.t (id INT)"});
+    }
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-05-01T00:00:00Z"), ZoneId.of("UTC"));
+        pool = new SessionPool(CONFIG, ConnectionPool::getConnection, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private static String currentSchema(Connection connection) {
+        return ConnectionPool.collectFirst(connection, "SELECT current_schema()", String.class);
+    }
+
+    @Test
+    void connectionIsBoundAndReused() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertEquals("pool_test", currentSchema(connection));
+        }
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertEquals("pool_test", currentSchema(connection));
+        }
+        assertEquals(1, pool.getCreated());
+        assertEquals(1, pool.getReused());
+        assertEquals(1, pool.getIdle());
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    void keysDoNotShareConnections() throws SQLException {
+        pool.acquire("memory", "pool_test").close();
+        try (var connection = pool.acquire("memory", "main")) {
+            assertEquals("main", currentSchema(connection));
+        }
+        assertEquals(2, pool.getCreated());
+    }
+
+    @Test
+    void sessionIsResetOnReturn() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            connection.setAutoCommit(false);
+            assertEquals(0L, ConnectionPool.collectFirst(connection, "SELECT count(*) FROM t", Long.class));
+        }
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertEquals("pool_test", currentSchema(connection));
+            assertTrue(connection.getAutoCommit());
+        }
+        assertEquals(1, pool.getReused());
+    }
+
+    @Test
+    void connectionRunningNonQueryIsNotReused() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            ConnectionPool.execute(connection, "USE memory.main");
+            connection.setAutoCommit(false);
+            ConnectionPool.execute(connection, "INSERT INTO pool_test.t VALUES (1)");
+        }
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertEquals("pool_test", currentSchema(connection));
+            assertEquals(0L, ConnectionPool.collectFirst(connection, "SELECT count(*) FROM t", Long.class));
+        }
+        assertEquals(1, pool.getDiscarded());
+        assertEquals(0, pool.getReused());
+    }
+
+    @Test
+    void connectionWithSessionStateIsNotReused() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            ConnectionPool.execute(connection, "SET VARIABLE pool_secret = 42");
+            ConnectionPool.execute(connection, "CREATE TEMP TABLE pool_temp (id INT)");
+        }
+        assertEquals(0, pool.getIdle());
+        assertEquals(1, pool.getDiscarded());
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertNull(ConnectionPool.collectFirst(connection, "SELECT getvariable('pool_secret')", Integer.class));
+            assertEquals(0L, ConnectionPool.collectFirst(connection,
+                    "SELECT count(*) FROM duckdb_tables() WHERE table_name = 'pool_temp'", Long.class));
+        }
+        assertEquals(2, pool.getCreated());
+        assertEquals(0, pool.getReused());
+    }
+
+    @Test
+    void preparedSessionStatementIsDetected() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test");
+             var statement = connection.prepareStatement("SET threads = 1")) {
+            statement.execute();
+        }
+        assertEquals(1, pool.getDiscarded());
+    }
+
+    @Test
+    void unwrappedConnectionIsNotReused() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test");
+             var statement = connection.createStatement();
+             var prepared = connection.prepareStatement("SELECT 1")) {
+            assertSame(connection, connection.unwrap(Connection.class));
+            assertSame(connection, statement.getConnection());
+            assertSame(connection, prepared.getConnection());
+            assertSame(connection, connection.getMetaData().getConnection());
+        }
+        assertEquals(0, pool.getDiscarded());
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertNotNull(connection.unwrap(DuckDBConnection.class));
+        }
+        assertEquals(1, pool.getDiscarded());
+    }
+
+    @Test
+    void batchedSessionStatementIsDetected() throws SQLException {
+        try (var connection = pool.acquire("memory", "pool_test");
+             var statement = connection.prepareStatement("SELECT 1")) {
+            statement.addBatch("SET threads = 1");
+        } catch (SQLException e) {
+            // The driver may refuse the batch; the statement was seen either way
+        }
+        assertEquals(1, pool.getDiscarded());
+    }
+
+    @Test
+    void sessionNeutralStatements() {
+        assertTrue(SessionPool.isSessionNeutral("SELECT 1"));
+        assertTrue(SessionPool.isSessionNeutral("  -- comment\n(WITH t AS (SELECT 1) SELECT * FROM t)"));
+        assertTrue(SessionPool.isSessionNeutral("SELECT 1; FROM pool_test.t;"));
+        assertFalse(SessionPool.isSessionNeutral("/* hint */ insert into t values (1)"));
+        assertFalse(SessionPool.isSessionNeutral("USE memory.main"));
+        assertFalse(SessionPool.isSessionNeutral("BEGIN; DELETE FROM t; COMMIT"));
+        assertFalse(SessionPool.isSessionNeutral("SELECT 'x'; SET threads = 1"));
+        assertFalse(SessionPool.isSessionNeutral("not sql at all"));
+        assertFalse(SessionPool.isSessionNeutral("SET threads = 1"));
+        assertFalse(SessionPool.isSessionNeutral("SELECT 1; SET VARIABLE x = 1"));
+        assertFalse(SessionPool.isSessionNeutral("CREATE TEMP TABLE t (id INT)"));
+        assertFalse(SessionPool.isSessionNeutral("PREPARE p AS SELECT 1"));
+        assertFalse(SessionPool.isSessionNeutral("ATTACH 'x.db'"));
+    }
+
+    @Test
+    void returnedConnectionCannotBeUsed() throws SQLException {
+        var connection = pool.acquire("memory", "pool_test");
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        connection.close();
+        assertEquals(1, pool.getIdle());
+    }
+
+    @Test
+    void acquireTimesOutWhenExhausted() throws SQLException {
+        var held = new Connection[CONFIG.maxTotal()];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = pool.acquire("memory", "pool_test");
+        }
+        assertThrows(SQLTimeoutException.class, () -> pool.acquire("memory", "pool_test"));
+        assertEquals(1, pool.getTimeouts());
+        held[0].close();
+        pool.acquire("memory", "pool_test").close();
+        for (int i = 1; i < held.length; i++) {
+            held[i].close();
+        }
+        assertEquals(CONFIG.maxIdle(), pool.getIdle());
+        assertEquals(CONFIG.maxTotal() - CONFIG.maxIdle(), pool.getDiscarded());
+    }
+
+    @Test
+    void unknownSchemaFailsWithoutLeakingPermit() {
+        for (int i = 0; i < CONFIG.maxTotal() + 1; i++) {
+            assertThrows(SQLException.class, () -> pool.acquire("memory", "no_such_schema"));
+        }
+        assertEquals(0, pool.getActive());
+        assertEquals(0, pool.getTimeouts());
+    }
+
+    @Test
+    void maintainExpiresIdleAndKeepsMinIdle() throws SQLException {
+        pool.setConfig(new SessionPoolConfig(true, 1, 2, 4, Duration.ofMillis(200), Duration.ofMinutes(1)));
+        var a = pool.acquire("memory", "pool_test");
+        var b = pool.acquire("memory", "pool_test");
+        a.close();
+        b.close();
+        assertEquals(2, pool.getIdle());
+
+        clock.advanceBy(Duration.ofMinutes(2));
+        pool.maintain();
+        assertEquals(1, pool.getIdle());
+
+        pool.acquire("memory", "pool_test").close();
+        assertEquals(2, pool.getCreated());
+    }
+
+    @Test
+    void disabledPoolOpensFreshConnections() throws SQLException {
+        pool.setConfig(new SessionPoolConfig(false, 0, 2, 4, Duration.ofMillis(200), Duration.ofMinutes(1)));
+        try (var connection = pool.acquire("memory", "pool_test")) {
+            assertEquals("pool_test", currentSchema(connection));
+        }
+        assertEquals(0, pool.getIdle());
+        assertEquals(0, pool.getAcquired());
+    }
+}
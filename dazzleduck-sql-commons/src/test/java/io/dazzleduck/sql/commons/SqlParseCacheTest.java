@@ -0,0 +1,100 @@
+package io.dazzleduck.sql.commons;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlParseCacheTest {
+
+    private static Function<String, JsonNode> countingParser(AtomicInteger calls) {
+        return sql -> {
+            calls.incrementAndGet();
+            ObjectNode node = JsonNodeFactory.instance.objectNode();
+            node.put("sql", sql);
+            return node;
+        };
+    }
+
+    @Test
+    void treeHitReturnsIsolatedCopy() {
+        var cache = new SqlParseCache(SqlParseCache.DEFAULT_MAX_BYTES);
+        var calls = new AtomicInteger();
+        var first = (ObjectNode) cache.getTree("SELECT 1", countingParser(calls));
+        first.put("sql", "mutated");
+
+        var second = (ObjectNode) cache.getTree("SELECT 1", countingParser(calls));
+        assertEquals("SELECT 1", second.get("sql").asText());
+        second.put("sql", "mutated again");
+        assertEquals("SELECT 1", cache.getTree("SELECT 1", countingParser(calls)).get("sql").asText());
+
+        assertEquals(1, calls.get());
+        assertEquals(2, cache.getTreeHits());
+        assertEquals(1, cache.getTreeMisses());
+    }
+
+    @Test
+    void sqlDirectionIsCached() {
+        var cache = new SqlParseCache(SqlParseCache.DEFAULT_MAX_BYTES);
+        var calls = new AtomicInteger();
+        Function<String, String> deserializer = json -> {
+            calls.incrementAndGet();
+            return "SELECT 1";
+        };
+        assertEquals("SELECT 1", cache.getSql("{\"a\":1}", deserializer));
+        assertEquals("SELECT 1", cache.getSql("{\"a\":1}", deserializer));
+        cache.getSql("{\"a\":2}", deserializer);
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getSqlHits());
+        assertEquals(2, cache.getSqlMisses());
+        assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void evictsToStayWithinBudget() {
+        long budget = 64 * 1024;
+        var cache = new SqlParseCache(budget);
+        var calls = new AtomicInteger();
+        for (int i = 0; i < 2_000; i++) {
+            cache.getTree("SELECT " + i + " FROM some_table_with_a_long_name", countingParser(calls));
+        }
+        assertTrue(cache.getEstimatedBytes() <= budget / 2, "tree entries use at most half the budget");
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getEntryCount() < 2_000);
+    }
+
+    @Test
+    void zeroBudgetDisablesCaching() {
+        var cache = new SqlParseCache(SqlParseCache.DEFAULT_MAX_BYTES);
+        var calls = new AtomicInteger();
+        cache.getTree("SELECT 1", countingParser(calls));
+        cache.setMaxBytes(0);
+        assertEquals(0, cache.getEntryCount());
+        cache.getTree("SELECT 1", countingParser(calls));
+        cache.getTree("SELECT 1", countingParser(calls));
+        assertEquals(3, calls.get());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    void transformationsRoundTripUsesCache() throws SQLException, IOException {
+        String sql = "SELECT a, count(*) FROM t GROUP BY a";
+        long misses = Transformations.PARSE_CACHE.getTreeMisses();
+        var first = Transformations.parseToTree(sql);
+        var second = Transformations.parseToTree(sql);
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertTrue(Transformations.PARSE_CACHE.getTreeMisses() - misses <= 1);
+
+        long sqlHits = Transformations.PARSE_CACHE.getSqlHits();
+        assertEquals(Transformations.parseToSql(first), Transformations.parseToSql(second));
+        assertEquals(sqlHits + 1, Transformations.PARSE_CACHE.getSqlHits());
+    }
+}
@@ -46,6 +46,46 @@ public class TransformationTests {
         Assertions.assertEquals(1, qs.size());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "select count(*) from generate_series(10)",
+            "select sum(generate_series) + 1 from generate_series(10)",
+            "select generate_series % 2, max(generate_series) from generate_series(10) group by 1",
+            "select distinct generate_series % 2 from generate_series(10)"})
+    public void testIsCacheable(String sql) throws SQLException, JsonProcessingException {
+        Assertions.assertTrue(Transformations.isCacheable(Transformations.parseToTree(sql)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "select * from generate_series(10)",
+            "select generate_series + 1 from generate_series(10)",
+            "select count(*) from generate_series(10); select count(*) from generate_series(11)",
+            "create table not_cacheable as select count(*) c from generate_series(10)"})
+    public void testIsNotCacheable(String sql) throws SQLException, JsonProcessingException {
+        Assertions.assertFalse(Transformations.isCacheable(Transformations.parseToTree(sql)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "select random() from generate_series(10)",
+            "select * from generate_series(10) where generate_series < nextval('seq')",
+            "select count(*) from (select now() as t from generate_series(10))",
+            "with t as (select gen_random_uuid() as id) select * from t",
+            "select current_timestamp"})
+    public void testHasVolatileFunction(String sql) throws SQLException, JsonProcessingException {
+        Assertions.assertTrue(Transformations.hasVolatileFunction(Transformations.parseToTree(sql)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "select * from generate_series(10)",
+            "select generate_series % 2, max(generate_series) from generate_series(10) group by 1",
+            "select upper('random') as now"})
+    public void testHasNoVolatileFunction(String sql) throws SQLException, JsonProcessingException {
+        Assertions.assertFalse(Transformations.hasVolatileFunction(Transformations.parseToTree(sql)));
+    }
+
     @Test
     public void getCast() throws SQLException, JsonProcessingException {
         var schema = "a int, b string, c STRUCT(i  int, d STRUCT( x int)), e Int[], f Map(string, string), g decimal(18,3)";
@@ -0,0 +1,47 @@
+package io.dazzleduck.sql.commons.authorization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dazzleduck.sql.common.Headers;
+import io.dazzleduck.sql.commons.Transformations;
+
+import java.util.Map;
+
+/**
+ * Compares authorizing a repeat caller with the compiled-claim cache disabled and enabled.
+ * The parse cache is disabled for the baseline so each request pays the DuckDB round trip.
+ */
+public class AccessClaimBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int iteration = 2000;
+        var query = Transformations.parseToTree("SELECT * FROM products WHERE price > 10");
+        Map<String, String> claims = Map.of(Headers.HEADER_ACCESS,
+                "[[\"table\", \"products\", \"*\", \"tenant_id = 'abc' AND region IN ('us-east', 'us-west')\"]]");
+        var authorizers = Map.of(
+                "RESTRICTED", RestrictedDatasourceOnlyAuthorizer.INSTANCE,
+                "RESTRICT_READ_ONLY", RestrictedReadOnlyAuthorizer.INSTANCE);
+
+        for (var e : authorizers.entrySet()) {
+            SqlAuthorizer.CLAIM_CACHE.setMaxEntries(0);
+            Transformations.PARSE_CACHE.setMaxBytes(0);
+            run(e.getKey() + " uncached", e.getValue(), query, claims, iteration);
+
+            SqlAuthorizer.CLAIM_CACHE.setMaxEntries(AccessClaimCache.DEFAULT_MAX_ENTRIES);
+            run(e.getKey() + " cached", e.getValue(), query, claims, iteration);
+        }
+    }
+
+    private static void run(String label, SqlAuthorizer authorizer, JsonNode query,
+                            Map<String, String> claims, int iteration) throws UnauthorizedException {
+        // warm up
+        for (int i = 0; i < 100; i++) {
+            authorizer.authorize("user", "memory", "main", query, claims);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iteration; i++) {
+            authorizer.authorize("user", "memory", "main", query, claims);
+        }
+        long end = System.nanoTime();
+        System.out.printf("%-30s %8.1f us/op%n", label, (end - start) / 1000.0 / iteration);
+    }
+}
@@ -0,0 +1,89 @@
+package io.dazzleduck.sql.commons.authorization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessClaimCacheTest {
+
+    private static final String ACCESS = "[[\"table\", \"products\", \"*\", \"tenant_id = 'abc'\"]]";
+
+    private static JsonNode filterNode(String text) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("filter", text);
+        return node;
+    }
+
+    @Test
+    void tableAccessIsCompiledOncePerClaim() throws UnauthorizedException {
+        var cache = new AccessClaimCache(AccessClaimCache.DEFAULT_MAX_ENTRIES);
+        var calls = new AtomicInteger();
+        AccessClaimCache.Compiler<List<TableAccessEntry>> compiler = claim -> {
+            calls.incrementAndGet();
+            return List.of(new TableAccessEntry(TableAccessEntry.TABLE, "products", filterNode(claim)));
+        };
+
+        var first = cache.getTableAccess(ACCESS, compiler);
+        ((ObjectNode) first.get(0).filter()).put("filter", "mutated");
+        var second = cache.getTableAccess(ACCESS, compiler);
+
+        assertEquals(1, calls.get());
+        assertEquals(ACCESS, second.get(0).filter().get("filter").asText());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void failedCompilationIsNotCached() {
+        var cache = new AccessClaimCache(AccessClaimCache.DEFAULT_MAX_ENTRIES);
+        var calls = new AtomicInteger();
+        AccessClaimCache.Compiler<List<TableAccessEntry>> compiler = claim -> {
+            calls.incrementAndGet();
+            throw new UnauthorizedException("bad claim");
+        };
+        assertThrows(UnauthorizedException.class, () -> cache.getTableAccess("[]", compiler));
+        assertThrows(UnauthorizedException.class, () -> cache.getTableAccess("[]", compiler));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void filterHitReturnsCopy() {
+        var cache = new AccessClaimCache(AccessClaimCache.DEFAULT_MAX_ENTRIES);
+        var calls = new AtomicInteger();
+        var first = (ObjectNode) cache.getFilter("a = 1", f -> { calls.incrementAndGet(); return filterNode(f); });
+        first.put("filter", "mutated");
+        var second = cache.getFilter("a = 1", f -> { calls.incrementAndGet(); return filterNode(f); });
+        assertEquals(1, calls.get());
+        assertEquals("a = 1", second.get("filter").asText());
+    }
+
+    @Test
+    void boundedAndDisableable() {
+        var cache = new AccessClaimCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.getFilter("a = " + i, AccessClaimCacheTest::filterNode);
+        }
+        assertEquals(2, cache.getEntryCount());
+        cache.setMaxEntries(0);
+        assertEquals(0, cache.getEntryCount());
+        cache.getFilter("a = 0", AccessClaimCacheTest::filterNode);
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void sharedCacheServesRepeatAuthorization() throws Exception {
+        long misses = SqlAuthorizer.CLAIM_CACHE.getMisses();
+        var a = SqlAuthorizer.parseTableAccess(ACCESS);
+        var b = SqlAuthorizer.parseTableAccess(ACCESS);
+        assertEquals(a, b);
+        assertNotSame(a.get(0).filter(), b.get(0).filter());
+        assertTrue(SqlAuthorizer.CLAIM_CACHE.getMisses() - misses <= 1);
+    }
+}
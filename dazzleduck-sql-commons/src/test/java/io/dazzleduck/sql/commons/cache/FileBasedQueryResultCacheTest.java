@@ -0,0 +1,159 @@
+package io.dazzleduck.sql.commons.cache;
+
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileBasedQueryResultCacheTest {
+
+    private static final byte[] PAYLOAD = "arrow-ipc-bytes".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-05-01T00:00:00Z"), ZoneId.of("UTC"));
+    }
+
+    private CacheHeader header(String sql) {
+        return new CacheHeader(sql, "memory", "main", 60, clock.instant(), null);
+    }
+
+    private FileBasedQueryResultCache diskOnlyCache() {
+        return new FileBasedQueryResultCache(dir, 300, 0, Long.MAX_VALUE, clock);
+    }
+
+    @Test
+    void cacheKeyIgnoresUnrelatedClaimsAndOrder() {
+        var a = CacheKey.compute("SELECT 1", "db", "s",
+                Map.of("x-dd-filter", "a = 1", "x-dd-table", "t", "x-dd-producer-id", "p1"));
+        var b = CacheKey.compute("SELECT 1", "db", "s",
+                Map.of("x-dd-table", "t", "x-dd-filter", "a = 1", "x-dd-producer-id", "p2"));
+        var c = CacheKey.compute("SELECT 1", "db", "s", Map.of("x-dd-filter", "a = 2", "x-dd-table", "t"));
+        assertEquals(64, a.length());
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+    }
+
+    @Test
+    void headerRoundTrip() throws IOException {
+        var header = new CacheHeader("SELECT count(*) FROM t", "db", "main", 120, clock.instant(), 7L);
+        assertEquals(header, CacheHeader.fromJson(header.toJson()));
+        var noSnapshot = header("SELECT 1");
+        assertEquals(noSnapshot, CacheHeader.fromJson(noSnapshot.toJson()));
+    }
+
+    @Test
+    void storeThenLookupFromDisk() throws IOException {
+        var cache = diskOnlyCache();
+        var header = header("SELECT count(*) FROM t");
+        cache.store("h1", header, PAYLOAD);
+
+        assertTrue(Files.exists(dir.resolve("h1.arrow")));
+        long expiry = clock.instant().getEpochSecond() + 60;
+        assertTrue(Files.exists(dir.resolve(expiry + "_h1.marker")));
+        assertArrayEquals(PAYLOAD, cache.lookup("h1", header).orElseThrow());
+        assertTrue(cache.lookup("h2", header).isEmpty());
+    }
+
+    @Test
+    void ttlIsCappedByConfiguredTtl() {
+        var cache = new FileBasedQueryResultCache(dir, 10, 0, Long.MAX_VALUE, clock);
+        cache.store("h1", header("SELECT 1"), PAYLOAD);
+        long expiry = clock.instant().getEpochSecond() + 10;
+        assertTrue(Files.exists(dir.resolve(expiry + "_h1.marker")));
+    }
+
+    @Test
+    void expiredEntryIsMissAndDeleted() {
+        var cache = diskOnlyCache();
+        var header = header("SELECT 1");
+        cache.store("h1", header, PAYLOAD);
+        clock.advanceBy(Duration.ofSeconds(61));
+        assertTrue(cache.lookup("h1", header).isEmpty());
+        assertFalse(Files.exists(dir.resolve("h1.arrow")));
+    }
+
+    @Test
+    void headerMismatchIsMiss() {
+        var cache = diskOnlyCache();
+        cache.store("h1", header("SELECT 1"), PAYLOAD);
+        assertTrue(cache.lookup("h1", header("SELECT 2")).isEmpty());
+        assertFalse(Files.exists(dir.resolve("h1.arrow")));
+    }
+
+    @Test
+    void memoryTierServesAfterDiskFilesAreGone() throws IOException {
+        var cache = new FileBasedQueryResultCache(dir, 300, 1024, Long.MAX_VALUE, clock);
+        var header = header("SELECT 1");
+        cache.store("h1", header, PAYLOAD);
+        assertEquals(PAYLOAD.length, cache.getMemoryBytes());
+        Files.delete(dir.resolve("h1.arrow"));
+        assertArrayEquals(PAYLOAD, cache.lookup("h1", header).orElseThrow());
+
+        cache.clearMemory();
+        assertTrue(cache.lookup("h1", header).isEmpty());
+    }
+
+    @Test
+    void memoryTierEvictsLeastRecentlyUsed() {
+        var cache = new FileBasedQueryResultCache(dir, 300, PAYLOAD.length * 2L, Long.MAX_VALUE, clock);
+        cache.store("h1", header("SELECT 1"), PAYLOAD);
+        cache.store("h2", header("SELECT 2"), PAYLOAD);
+        cache.lookup("h1", header("SELECT 1"));
+        cache.store("h3", header("SELECT 3"), PAYLOAD);
+        assertEquals(PAYLOAD.length * 2L, cache.getMemoryBytes());
+    }
+
+    @Test
+    void oversizedEntryIsNotStored() {
+        var cache = new FileBasedQueryResultCache(dir, 300, 1024, 4, clock);
+        cache.store("h1", header("SELECT 1"), PAYLOAD);
+        assertFalse(Files.exists(dir.resolve("h1.arrow")));
+    }
+
+    @Test
+    void housekeepingRemovesExpiredAndOrphans() throws IOException {
+        var cache = diskOnlyCache();
+        cache.store("live", new CacheHeader("SELECT 1", "memory", "main", 300, clock.instant(), null), PAYLOAD);
+        cache.store("old", header("SELECT 2"), PAYLOAD);
+        Files.write(dir.resolve("orphan.arrow"), PAYLOAD);
+
+        clock.advanceBy(Duration.ofSeconds(120));
+        new CacheHousekeeping(dir, clock).runOnce();
+
+        assertTrue(Files.exists(dir.resolve("live.arrow")));
+        assertFalse(Files.exists(dir.resolve("old.arrow")));
+        assertFalse(Files.exists(dir.resolve("orphan.arrow")));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void clearRemovesAllCacheFiles() throws IOException {
+        var cache = diskOnlyCache();
+        cache.store("h1", header("SELECT 1"), PAYLOAD);
+        Files.write(dir.resolve("h2.tmp.123"), PAYLOAD);
+        CacheHousekeeping.clear(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.dazzleduck.sql.commons.delta;
+
+import io.delta.kernel.defaults.engine.DefaultEngine;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class DeltaSnapshotCacheTest {
+
+    private static final Path SOURCE = Path.of(PartitionPruningTest.basePath);
+    private static final String LAST_COMMIT = "00000000000000000002";
+
+    @TempDir
+    Path workspace;
+
+    /** Copies the example table without its last commit, which {@link #commitLast} adds later. */
+    private Path copyWithoutLastCommit() throws IOException {
+        var target = workspace.resolve("delta_table");
+        try (var paths = Files.walk(SOURCE)) {
+            for (var path : paths.toList()) {
+                var copy = target.resolve(SOURCE.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else if (!path.getFileName().toString().startsWith(LAST_COMMIT)) {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+        return target;
+    }
+
+    private static void commitLast(Path table) throws IOException {
+        for (var suffix : List.of(".crc", ".json")) {
+            Files.copy(SOURCE.resolve("_delta_log/" + LAST_COMMIT + suffix), table.resolve("_delta_log/" + LAST_COMMIT + suffix));
+        }
+    }
+
+    @Test
+    public void testRepeatedScansOfOneVersionAreReused() throws IOException {
+        var cache = new DeltaSnapshotCache();
+        var first = cache.scanFiles(SOURCE.toString(), "", null);
+        var second = cache.scanFiles(SOURCE.toString(), "", null);
+        assertEquals(first, second);
+        assertEquals(1, cache.getSnapshotLoads());
+        assertEquals(1, cache.getKernelScans());
+        assertEquals(1, cache.getScanHits());
+    }
+
+    @Test
+    public void testNewCommitIsPickedUp() throws IOException {
+        var table = copyWithoutLastCommit();
+        var cache = new DeltaSnapshotCache();
+        var before = cache.scanFiles(table.toString(), "", null);
+        commitLast(table);
+        var after = cache.scanFiles(table.toString(), "", null);
+        var fresh = new DeltaSnapshotCache().scanFiles(table.toString(), "", null);
+        assertEquals(fresh, after);
+        assertNotEquals(before, after, "Expected the files of the new commit");
+        assertEquals(2, cache.getSnapshotLoads());
+        assertEquals(2, cache.getKernelScans());
+    }
+
+    @Test
+    public void testTablesAreEvictedPastMaxFiles() throws IOException {
+        var files = new DeltaSnapshotCache().scanFiles(SOURCE.toString(), "", null).size();
+        var cache = new DeltaSnapshotCache(DefaultEngine.create(new Configuration()), files);
+        cache.scanFiles(SOURCE.toString(), "", null);
+        assertEquals(1, cache.getCachedTables());
+        assertEquals(files, cache.getCachedFiles());
+
+        // A second scan of the table takes it past the limit
+        cache.scanFiles(SOURCE.toString(), "filtered", null);
+        assertEquals(0, cache.getCachedTables());
+        assertEquals(0, cache.getCachedFiles());
+        cache.scanFiles(SOURCE.toString(), "", null);
+        assertEquals(2, cache.getSnapshotLoads());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneLoad() throws Exception {
+        var cache = new DeltaSnapshotCache();
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < 16; i++) {
+                tasks.add(() -> cache.scanFiles(SOURCE.toString(), "", null).size());
+            }
+            var sizes = new ArrayList<Integer>();
+            for (Future<Integer> f : executor.invokeAll(tasks)) {
+                sizes.add(f.get());
+            }
+            assertEquals(1, sizes.stream().distinct().count());
+            assertEquals(1, cache.getSnapshotLoads());
+            assertEquals(1, cache.getKernelScans());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
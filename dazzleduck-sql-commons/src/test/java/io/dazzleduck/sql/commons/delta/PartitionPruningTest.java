@@ -21,6 +21,14 @@ public class PartitionPruningTest {
         assertEquals(expectedSize, result.size(), result.stream().map(Object::toString).collect(Collectors.joining(",")));
     }
 
+    @Test
+    public void sameFilterAtAnotherOffsetReusesTheScan() throws SQLException, IOException {
+        assertSize(1, basePath, "p='x'");
+        long hits = SNAPSHOT_CACHE.getScanHits();
+        assertSize(1, basePath, "   p = 'x'");
+        assertEquals(hits + 1, SNAPSHOT_CACHE.getScanHits());
+    }
+
     @Test
     public void pruneFilesPartitionTest() throws SQLException, IOException {
         /*
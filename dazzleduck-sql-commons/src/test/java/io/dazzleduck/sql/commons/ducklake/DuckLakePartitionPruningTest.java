@@ -8,6 +8,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.List;
 
 
 public class DuckLakePartitionPruningTest {
@@ -77,6 +78,39 @@ public class DuckLakePartitionPruningTest {
         Assertions.assertEquals(EXPECTED_FILES_WITH_FILTER, files.size(), "Expected 2 files for complex filter with key = 'k52'");
     }
 
+    @Test
+    public void testNewSnapshotIsPickedUp() throws SQLException, JsonProcessingException {
+        var table = "tt_snapshots";
+        var qualified = "%s.%s".formatted(DATABASE, table);
+        ConnectionPool.execute("CREATE TABLE %s(key string)".formatted(qualified));
+        ConnectionPool.execute("INSERT INTO %s VALUES ('a')".formatted(qualified));
+        ConnectionPool.execute("CALL ducklake_flush_inlined_data('" + DATABASE + "')");
+        var sql = "select * from %s where key = 'b'".formatted(table);
+        var pruning = new DucklakePartitionPruning(METADATA_DATABASE);
+        Assertions.assertEquals(0, pruning.pruneFiles("main", table, sql).size());
+        ConnectionPool.execute("INSERT INTO %s VALUES ('b')".formatted(qualified));
+        ConnectionPool.execute("CALL ducklake_flush_inlined_data('" + DATABASE + "')");
+        Assertions.assertEquals(1, pruning.pruneFiles("main", table, sql).size(), "Expected the file added after the first call");
+        Assertions.assertEquals(2, pruning.pruneFiles("main", table, "select * from %s".formatted(table)).size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTableIsEvicted() throws SQLException, JsonProcessingException {
+        var pruning = new DucklakePartitionPruning(METADATA_DATABASE, ".", 1);
+        for (var table : List.of("tt_evict_a", "tt_evict_b")) {
+            var qualified = "%s.%s".formatted(DATABASE, table);
+            ConnectionPool.execute("CREATE TABLE %s(key string)".formatted(qualified));
+            ConnectionPool.execute("INSERT INTO %s VALUES ('a')".formatted(qualified));
+            ConnectionPool.execute("CALL ducklake_flush_inlined_data('" + DATABASE + "')");
+            var sql = "select * from %s where key = 'a'".formatted(table);
+            Assertions.assertEquals(1, pruning.pruneFiles("main", table, sql).size());
+            Assertions.assertEquals(1, pruning.cachedTables(), "Only one file is indexed at a time");
+        }
+        // An evicted table is loaded again
+        Assertions.assertEquals(1, pruning.pruneFiles("main", "tt_evict_a",
+                "select * from tt_evict_a where key = 'a'").size());
+    }
+
     @Test
     public void testNonExistentTable() {
         var sql = "select * from non_existent_table where key = 'k52'";
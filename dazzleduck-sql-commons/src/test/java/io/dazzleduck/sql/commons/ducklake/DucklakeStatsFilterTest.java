@@ -0,0 +1,112 @@
+package io.dazzleduck.sql.commons.ducklake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.dazzleduck.sql.commons.ExpressionConstants.*;
+import static io.dazzleduck.sql.commons.ExpressionFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DucklakeStatsFilterTest {
+
+    private static final Map<String, DucklakePartitionPruning.ColumnInfo> COLUMNS = Map.of(
+            "key", new DucklakePartitionPruning.ColumnInfo(1L, "key", "varchar", 1L),
+            "partition", new DucklakePartitionPruning.ColumnInfo(2L, "partition", "int32", 1L),
+            "price", new DucklakePartitionPruning.ColumnInfo(3L, "price", "decimal(10,2)", 1L),
+            "ratio", new DucklakePartitionPruning.ColumnInfo(4L, "ratio", "float64", 1L));
+
+    private static JsonNode ref(String name) {
+        return reference(new String[]{name});
+    }
+
+    private static JsonNode lessThan(JsonNode left, JsonNode right) {
+        var node = (ObjectNode) equalExpr(left, right);
+        node.put(FIELD_TYPE, COMPARE_TYPE_LESSTHAN);
+        return node;
+    }
+
+    private static DucklakeStatsIndex.ColumnStats stats(String min, String max) {
+        return new DucklakeStatsIndex.ColumnStats(min, max, 0L, null);
+    }
+
+    private static DucklakeStatsIndex.DataFile file(long id, Map<Long, DucklakeStatsIndex.ColumnStats> stats) {
+        return new DucklakeStatsIndex.DataFile(id, id + ".parquet", true, 10L, stats);
+    }
+
+    private static DucklakeStatsFilter compile(JsonNode where) {
+        var filter = DucklakeStatsFilter.compile(where, COLUMNS);
+        assertNotNull(filter, "expected the filter to be evaluated in Java: " + where);
+        return filter;
+    }
+
+    @Test
+    public void testEqualityOnVarchar() {
+        var filter = compile(equalExpr(ref("key"), constant("k52")));
+        assertTrue(filter.test(file(1, Map.of(1L, stats("k51", "k61")))));
+        assertFalse(filter.test(file(2, Map.of(1L, stats("k00", "k01")))));
+        assertFalse(filter.test(file(3, Map.of(1L, stats("k72", "k82")))));
+    }
+
+    @Test
+    public void testRangeOnIntegersComparesNumerically() {
+        var filter = compile(andFilters(
+                greaterThanOrEqualExpr(ref("partition"), constant(9)),
+                lessThanOrEqualExpr(ref("partition"), constant(10))));
+        assertTrue(filter.test(file(1, Map.of(2L, stats("9", "9")))));
+        assertFalse(filter.test(file(2, Map.of(2L, stats("1", "8")))));
+        assertFalse(filter.test(file(3, Map.of(2L, stats("11", "100")))));
+        // Integer literals arrive as varchar when compared to a string in SQL
+        assertFalse(compile(equalExpr(ref("partition"), constant("2"))).test(file(4, Map.of(2L, stats("10", "10")))));
+    }
+
+    @Test
+    public void testFilesWithoutStatsAreKept() {
+        var filter = compile(equalExpr(ref("key"), constant("k52")));
+        assertTrue(filter.test(file(1, Map.of())));
+        assertTrue(filter.test(file(2, Map.of(1L, stats(null, null)))));
+        assertFalse(compile(lessThan(ref("key"), constant(null))).test(file(3, Map.of())));
+    }
+
+    @Test
+    public void testPredicatesWithoutBoundsAcceptAll() {
+        assertTrue(compile(null).acceptsAll());
+        assertTrue(compile(orFilters(equalExpr(ref("key"), constant("a")), equalExpr(ref("key"), constant("b")))).acceptsAll());
+        assertTrue(compile(equalExpr(ref("key"), ref("partition"))).acceptsAll());
+        assertTrue(compile(equalExpr(ref("missing"), constant("a"))).acceptsAll());
+        // Only the bound on key prunes
+        var filter = compile(andFilters(equalExpr(ref("key"), ref("partition")), lessThan(ref("key"), constant("b"))));
+        assertFalse(filter.test(file(1, Map.of(1L, stats("c", "d")))));
+    }
+
+    @Test
+    public void testDecimalsAndUnsupportedTypes() {
+        var filter = compile(greaterThanOrEqualExpr(ref("price"), constant("10.5")));
+        assertTrue(filter.test(file(1, Map.of(3L, stats("1.00", "10.50")))));
+        assertFalse(filter.test(file(2, Map.of(3L, stats("1.00", "10.49")))));
+        // DuckDB rounds the literal to the column's scale, which is left to it
+        assertNull(DucklakeStatsFilter.compile(equalExpr(ref("price"), constant("10.555")), COLUMNS));
+        assertNull(DucklakeStatsFilter.compile(equalExpr(ref("ratio"), constant("0.5")), COLUMNS));
+        assertNull(DucklakeStatsFilter.compile(equalExpr(ref("partition"), constant("x")), COLUMNS));
+    }
+
+    @Test
+    public void testUnparsableStatisticThrows() {
+        var filter = compile(equalExpr(ref("partition"), constant(1)));
+        assertThrows(IllegalArgumentException.class, () -> filter.test(file(1, Map.of(2L, stats("x", "y")))));
+    }
+
+    @Test
+    public void testIndexAdvancesWithAddedAndRemovedFiles() {
+        var index = new DucklakeStatsIndex();
+        assertEquals(-1, index.snapshotId());
+        index.advance(3, List.of(), List.of(file(2, Map.of()), file(1, Map.of())));
+        index.advance(5, List.of(1L), List.of(file(4, Map.of())));
+        assertEquals(5, index.snapshotId());
+        assertEquals(List.of(2L, 4L), index.files().stream().map(DucklakeStatsIndex.DataFile::id).toList());
+        assertThrows(IllegalArgumentException.class, () -> index.advance(4, List.of(), List.of()));
+    }
+}
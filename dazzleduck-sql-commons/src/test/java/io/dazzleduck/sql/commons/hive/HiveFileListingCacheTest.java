@@ -0,0 +1,143 @@
+package io.dazzleduck.sql.commons.hive;
+
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HiveFileListingCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final MutableClock clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+
+    private HiveFileListingCache cache(long maxFiles) {
+        return new HiveFileListingCache(new HiveListingCacheConfig(true, Duration.ofMinutes(5), maxFiles), clock);
+    }
+
+    private Path table() throws IOException {
+        var table = tempDir.resolve("table");
+        for (var partition : List.of("dt=2024-01-01/p=a", "dt=2024-01-01/p=b", "dt=2024-01-02/p=a")) {
+            var dir = Files.createDirectories(table.resolve(partition));
+            Files.write(dir.resolve("0.parquet"), new byte[10]);
+        }
+        Files.write(table.resolve("dt=2024-01-01/p=a/.0.parquet.crc"), new byte[1]);
+        Files.write(table.resolve("dt=2024-01-01/p=a/_SUCCESS"), new byte[0]);
+        Files.write(table.resolve("dt=2024-01-01/stray.parquet"), new byte[1]);
+        ageDirectories(table);
+        return table;
+    }
+
+    /** Moves directory times into the past, so the first listing is not considered racy. */
+    private static void ageDirectories(Path table) throws IOException {
+        var past = FileTime.from(Instant.now().minus(Duration.ofHours(1)));
+        try (Stream<Path> paths = Files.walk(table)) {
+            for (var path : paths.filter(Files::isDirectory).toList()) {
+                Files.setLastModifiedTime(path, past);
+            }
+        }
+    }
+
+    private static List<String> names(List<HiveFileListingCache.ListedFile> files) {
+        return files.stream().map(f -> f.status().fileName()).toList();
+    }
+
+    @Test
+    public void testListsFilesAtPartitionDepth() throws IOException {
+        var table = table();
+        var base = table.toString();
+        var files = cache(1000).list(base, 2);
+        assertEquals(List.of(base + "/dt=2024-01-01/p=a/0.parquet", base + "/dt=2024-01-01/p=b/0.parquet",
+                base + "/dt=2024-01-02/p=a/0.parquet"), names(files));
+        assertEquals(List.of("2024-01-01", "b"), files.get(1).partitions());
+        assertEquals(10L, files.get(1).status().size());
+        assertEquals("b", HiveFileListingCache.partitionValue("p=b=c"));
+        assertEquals("", HiveFileListingCache.partitionValue("nokey"));
+    }
+
+    @Test
+    public void testAddedFileRelistsOnlyItsPartition() throws IOException {
+        var table = table();
+        var cache = cache(1000);
+        cache.list(table.toString(), 2);
+        long relisted = cache.getRelistedDirectories();
+
+        // Unchanged directories are only checked
+        assertEquals(3, cache.list(table.toString(), 2).size());
+        assertEquals(relisted, cache.getRelistedDirectories());
+
+        Files.write(table.resolve("dt=2024-01-02/p=a/1.parquet"), new byte[5]);
+        var files = cache.list(table.toString(), 2);
+        assertEquals(4, files.size());
+        assertTrue(names(files).contains(table + "/dt=2024-01-02/p=a/1.parquet"));
+        assertEquals(relisted + 1, cache.getRelistedDirectories());
+        assertEquals(1, cache.getFullListings());
+        assertEquals(4, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testRemovedPartitionDisappears() throws IOException {
+        var table = table();
+        var cache = cache(1000);
+        cache.list(table.toString(), 2);
+        Files.delete(table.resolve("dt=2024-01-01/p=b/0.parquet"));
+        Files.delete(table.resolve("dt=2024-01-01/p=b"));
+        var files = cache.list(table.toString(), 2);
+        assertEquals(List.of(table + "/dt=2024-01-01/p=a/0.parquet", table + "/dt=2024-01-02/p=a/0.parquet"), names(files));
+        assertEquals(2, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testTableIsListedAgainAfterTtl() throws IOException {
+        var table = table();
+        var cache = cache(1000);
+        cache.list(table.toString(), 2);
+        clock.advanceBy(Duration.ofMinutes(4));
+        assertEquals(Duration.ofMinutes(4).toMillis(), cache.getStalenessMillis());
+        cache.list(table.toString(), 2);
+        assertEquals(1, cache.getFullListings());
+
+        clock.advanceBy(Duration.ofMinutes(1));
+        cache.list(table.toString(), 2);
+        assertEquals(2, cache.getFullListings());
+        assertEquals(0, cache.getStalenessMillis());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTableIsEvicted() throws IOException {
+        var table = table();
+        var cache = cache(4);
+        cache.list(table.toString(), 2);
+        cache.list(table.resolve("dt=2024-01-01").toString(), 1);
+        assertEquals(1, cache.getCachedTables());
+        assertEquals(2, cache.getCachedFiles());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testOnlyLocalDirectoriesAreCached() throws IOException {
+        var table = table();
+        assertFalse(HiveFileListingCache.isCacheable("s3://bucket/table"));
+        assertFalse(HiveFileListingCache.isCacheable(table + "/*/*"));
+        assertTrue(HiveFileListingCache.isCacheable(table.toString()));
+
+        var cache = cache(1000);
+        assertNull(cache.list("s3://bucket/table", 2));
+        assertNull(cache.list(tempDir.resolve("missing").toString(), 2));
+        cache.setConfig(HiveListingCacheConfig.DISABLED);
+        assertNull(cache.list(table.toString(), 2));
+        assertEquals(0, cache.getLookups());
+    }
+}
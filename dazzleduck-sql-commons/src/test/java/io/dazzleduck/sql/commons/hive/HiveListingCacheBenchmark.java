@@ -0,0 +1,74 @@
+package io.dazzleduck.sql.commons.hive;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Measures planning a query against a local hive table of 100,000 files (100 {@code a} partitions,
+ * each with 10 {@code b} partitions of 100 empty files), with {@link HivePartitionPruning#pruneFiles}
+ * <ul>
+ *   <li>listing through {@code read_blob}, as without the cache,</li>
+ *   <li>through a warm {@link HiveFileListingCache} with nothing changed, and</li>
+ *   <li>through a warm cache after one file was added to one partition.</li>
+ * </ul>
+ */
+public class HiveListingCacheBenchmark {
+
+    private static final int A_PARTITIONS = 100;
+    private static final int B_PARTITIONS = 10;
+    private static final int FILES_PER_PARTITION = 100;
+    private static final int ROUNDS = 5;
+
+    private static final String[][] PARTITION_TYPES = {{"a", "int"}, {"b", "int"}};
+    private static final String FILTER = "a = 7 and b < 5";
+
+    public static void main(String[] args) throws Exception {
+        var table = Files.createTempDirectory("hive-listing-benchmark").resolve("table");
+        createTable(table);
+        var base = table.toString();
+        var cache = HivePartitionPruning.LISTING_CACHE;
+
+        cache.setConfig(HiveListingCacheConfig.DISABLED);
+        report("read_blob", () -> HivePartitionPruning.pruneFiles(base, FILTER, PARTITION_TYPES).size());
+
+        cache.setConfig(new HiveListingCacheConfig(true, Duration.ofHours(1), 10_000_000));
+        long start = System.nanoTime();
+        HivePartitionPruning.pruneFiles(base, FILTER, PARTITION_TYPES);
+        System.out.printf("%-24s %8.1f ms%n", "cache, first listing", (System.nanoTime() - start) / 1e6);
+        report("cache, unchanged", () -> HivePartitionPruning.pruneFiles(base, FILTER, PARTITION_TYPES).size());
+        int[] added = {0};
+        report("cache, one file added", () -> {
+            Files.createFile(table.resolve("a=7/b=3/added-" + added[0]++ + ".parquet"));
+            return HivePartitionPruning.pruneFiles(base, FILTER, PARTITION_TYPES).size();
+        });
+        System.out.printf("relisted directories: %d, listing time: %d ms%n",
+                cache.getRelistedDirectories(), cache.getListingMillis());
+    }
+
+    private static void createTable(Path table) throws Exception {
+        for (int a = 0; a < A_PARTITIONS; a++) {
+            for (int b = 0; b < B_PARTITIONS; b++) {
+                var dir = Files.createDirectories(table.resolve("a=" + a + "/b=" + b));
+                for (int f = 0; f < FILES_PER_PARTITION; f++) {
+                    Files.createFile(dir.resolve(f + ".parquet"));
+                }
+            }
+        }
+    }
+
+    private interface Prune {
+        int run() throws Exception;
+    }
+
+    private static void report(String name, Prune prune) throws Exception {
+        prune.run(); // warm up
+        long start = System.nanoTime();
+        int files = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            files = prune.run();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+        System.out.printf("%-24s %8.1f ms  (%d files)%n", name, millis, files);
+    }
+}
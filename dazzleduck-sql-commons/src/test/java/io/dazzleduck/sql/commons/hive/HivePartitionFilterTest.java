@@ -0,0 +1,151 @@
+package io.dazzleduck.sql.commons.hive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.dazzleduck.sql.commons.FileStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.dazzleduck.sql.commons.ExpressionConstants.*;
+import static io.dazzleduck.sql.commons.ExpressionFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HivePartitionFilterTest {
+
+    private static final String[][] TYPES = {{"dt", "date"}, {"tenant", "varchar"}, {"hour", "int"}};
+
+    private static JsonNode ref(String name) {
+        return reference(new String[]{name});
+    }
+
+    private static JsonNode operator(String type, JsonNode... children) {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put(FIELD_CLASS, OPERATOR_CLASS);
+        node.put(FIELD_TYPE, type);
+        var array = new ArrayNode(JsonNodeFactory.instance);
+        for (var child : children) {
+            array.add(child);
+        }
+        node.set(FIELD_CHILDREN, array);
+        return node;
+    }
+
+    private static JsonNode comparison(String type, JsonNode left, JsonNode right) {
+        var node = (ObjectNode) equalExpr(left, right);
+        node.put(FIELD_TYPE, type);
+        return node;
+    }
+
+    private static JsonNode between(JsonNode input, JsonNode lower, JsonNode upper) {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put(FIELD_CLASS, BETWEEN_CLASS);
+        node.put(FIELD_TYPE, COMPARE_BETWEEN_TYPE);
+        node.set(FIELD_INPUT, input);
+        node.set(FIELD_LOWER, lower);
+        node.set(FIELD_UPPER, upper);
+        return node;
+    }
+
+    private static HivePartitionFilter compile(JsonNode where) {
+        var filter = HivePartitionFilter.compile(where, TYPES);
+        assertNotNull(filter, "expected the filter to be evaluated in Java: " + where);
+        return filter;
+    }
+
+    @Test
+    public void testNoFilterAcceptsAll() {
+        var filter = compile(null);
+        assertTrue(filter.acceptsAll());
+        assertTrue(filter.test(List.of("not-a-date", "t", "x")));
+    }
+
+    @Test
+    public void testDateRangeAndTenant() {
+        var filter = compile(andFilters(new JsonNode[]{
+                greaterThanOrEqualExpr(ref("dt"), constant("2024-01-02")),
+                comparison(COMPARE_TYPE_LESSTHAN, ref("dt"), cast(constant("2024-01-04"), TYPE_DATE)),
+                equalExpr(ref("tenant"), constant("a/b"))}));
+        assertTrue(filter.test(List.of("2024-01-02", "a%2Fb", "1")));
+        assertTrue(filter.test(List.of("2024-01-03", "a%2Fb", "1")));
+        assertFalse(filter.test(List.of("2024-01-04", "a%2Fb", "1")));
+        assertFalse(filter.test(List.of("2024-01-01", "a%2Fb", "1")));
+        assertFalse(filter.test(List.of("2024-01-03", "a", "1")));
+    }
+
+    @Test
+    public void testBetweenInAndNotIn() {
+        var filter = compile(between(ref("hour"), constant(3), constant(5)));
+        assertTrue(filter.test(List.of("2024-01-01", "a", "03")));
+        assertFalse(filter.test(List.of("2024-01-01", "a", "6")));
+
+        // A NULL in the list makes a miss unknown, which does not keep the file
+        filter = compile(inStaticList(ref("hour"), Arrays.asList(1, 2, null)));
+        assertTrue(filter.test(List.of("2024-01-01", "a", "2")));
+        assertFalse(filter.test(List.of("2024-01-01", "a", "3")));
+        filter = compile(operator(COMPARE_NOT_IN_TYPE, ref("hour"), constant(1), constant(2)));
+        assertTrue(filter.test(List.of("2024-01-01", "a", "3")));
+        assertFalse(filter.test(List.of("2024-01-01", "a", "1")));
+        filter = compile(operator(COMPARE_NOT_IN_TYPE, ref("hour"), constant(1), constant(null)));
+        assertFalse(filter.test(List.of("2024-01-01", "a", "3")));
+    }
+
+    @Test
+    public void testNullsFollowThreeValuedLogic() {
+        // A partition level missing from the path reads as NULL
+        var isNull = compile(operator(OPERATOR_TYPE_IS_NULL, ref("hour")));
+        assertTrue(isNull.test(List.of("2024-01-01", "a")));
+        assertFalse(isNull.test(List.of("2024-01-01", "a", "1")));
+
+        var notEqual = compile(operator(OPERATOR_TYPE_NOT, equalExpr(ref("hour"), constant(1))));
+        assertTrue(notEqual.test(List.of("2024-01-01", "a", "2")));
+        assertFalse(notEqual.test(List.of("2024-01-01", "a")));
+
+        var either = compile(orFilters(equalExpr(ref("hour"), constant(1)), equalExpr(ref("tenant"), constant("a"))));
+        assertTrue(either.test(List.of("2024-01-01", "a")));
+        assertFalse(either.test(List.of("2024-01-01", "b")));
+    }
+
+    @Test
+    public void testRemovedPredicatesAreTrue() {
+        var filter = compile(andFilters(trueExpression(), comparison(COMPARE_TYPE_NOTEQUAL, ref("tenant"), constant("a"))));
+        assertTrue(filter.test(List.of("2024-01-01", "b", "1")));
+        assertFalse(filter.test(List.of("2024-01-01", "a", "1")));
+        assertFalse(compile(falseExpression()).test(List.of("2024-01-01", "a", "1")));
+    }
+
+    @Test
+    public void testUnsupportedPredicatesAreLeftToDuckDB() {
+        assertNull(HivePartitionFilter.compile(
+                equalExpr(createFunction("lower", "", "", new ArrayNode(JsonNodeFactory.instance).add(ref("tenant"))),
+                        constant("a")), TYPES));
+        assertNull(HivePartitionFilter.compile(equalExpr(cast(ref("hour"), TYPE_VARCHAR), constant("1")), TYPES));
+        // DuckDB decides how a varchar column compares to a number, and whether a literal casts at all
+        assertNull(HivePartitionFilter.compile(equalExpr(ref("tenant"), constant(1)), TYPES));
+        assertNull(HivePartitionFilter.compile(equalExpr(ref("dt"), constant("2024-13-45")), TYPES));
+        assertNull(HivePartitionFilter.compile(equalExpr(ref("ts"), constant("x")),
+                new String[][]{{"ts", "timestamp"}}));
+    }
+
+    @Test
+    public void testValueThatDoesNotCastIsLeftToDuckDB() {
+        var filter = compile(equalExpr(ref("hour"), constant(1)));
+        assertThrows(IllegalArgumentException.class, () -> filter.test(List.of("2024-01-01", "a", "x")));
+        var tinyint = HivePartitionFilter.compile(equalExpr(ref("b"), constant(1)), new String[][]{{"b", "tinyint"}});
+        assertThrows(IllegalArgumentException.class, () -> tinyint.test(List.of("300")));
+    }
+
+    @Test
+    public void testPruneKeepsMatchingFilesOldestFirst() {
+        var filter = compile(equalExpr(ref("tenant"), constant("a")));
+        var files = List.of(
+                new HiveFileListingCache.ListedFile(new FileStatus("t/3.parquet", 1L, 30L), List.of("2024-01-01", "a", "1")),
+                new HiveFileListingCache.ListedFile(new FileStatus("t/2.parquet", 1L, 20L), List.of("2024-01-01", "b", "1")),
+                new HiveFileListingCache.ListedFile(new FileStatus("t/1.parquet", 1L, 10L), List.of("2024-01-01", "a", "1")));
+        assertEquals(List.of("t/1.parquet", "t/3.parquet"),
+                filter.prune(files).stream().map(FileStatus::fileName).toList());
+    }
+}
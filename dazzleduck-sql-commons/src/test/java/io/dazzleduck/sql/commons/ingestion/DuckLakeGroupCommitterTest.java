@@ -0,0 +1,140 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuckLakeGroupCommitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    String catalog = "group_commit_ducklake";
+    String tableName = "logs";
+
+    private ScheduledExecutorService executor;
+
+    @BeforeEach
+    void setupDuckLake() throws Exception {
+        Files.createDirectories(tempDir.resolve("data"));
+        try (Connection conn = ConnectionPool.getConnection()) {
+            ConnectionPool.executeBatchInTxn(conn, new String[]{
+                    "ATTACH 'ducklake:%s' AS %s (DATA_PATH '%s')".formatted(tempDir.resolve("catalog"), catalog, tempDir.resolve("data")),
+                    "CREATE TABLE %s.main.%s (id BIGINT)".formatted(catalog, tableName)
+            });
+        }
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void detachDuckLake() throws SQLException {
+        executor.shutdownNow();
+        ConnectionPool.execute("DETACH " + catalog);
+    }
+
+    private String parquetFile(long id) throws SQLException {
+        var file = tempDir.resolve("data").resolve("file_" + id + ".parquet");
+        ConnectionPool.execute("COPY (SELECT %d::BIGINT AS id) TO '%s' (FORMAT 'parquet')".formatted(id, file));
+        return file.toString();
+    }
+
+    private long snapshotCount() throws SQLException {
+        return ConnectionPool.collectFirst(
+                "SELECT count(*) FROM __ducklake_metadata_%s.ducklake_snapshot".formatted(catalog), Long.class);
+    }
+
+    private long rowCount() throws SQLException {
+        return ConnectionPool.collectFirst("SELECT count(*) FROM %s.main.%s".formatted(catalog, tableName), Long.class);
+    }
+
+    private DuckLakeGroupCommitter committer(Duration maxDelay, int maxFiles) {
+        return new DuckLakeGroupCommitter(catalog, "main", tableName, new DuckLakeCommitConfig(maxDelay, maxFiles), executor);
+    }
+
+    @Test
+    void testConsecutiveWritesShareOneSnapshot() throws Exception {
+        var committer = committer(Duration.ofSeconds(2), 1000);
+        long snapshotsBefore = snapshotCount();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 10; i++) {
+            var future = committer.submit(List.of(parquetFile(i)));
+            futures.add(future.thenRun(() -> {
+                try {
+                    assertEquals(10, rowCount(), "acknowledged once committed");
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, SECONDS);
+
+        assertEquals(snapshotsBefore + 1, snapshotCount());
+        var stats = committer.getStats();
+        assertEquals(1, stats.snapshots());
+        assertEquals(10, stats.files());
+        assertEquals(10, stats.writes());
+        assertEquals(1, stats.snapshotsLastMinute());
+        assertEquals(catalog + ".main." + tableName, stats.table());
+    }
+
+    @Test
+    void testMaxFilesCommitsWithoutWaitingForDelay() throws Exception {
+        var committer = committer(Duration.ofHours(1), 3);
+        long snapshotsBefore = snapshotCount();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(committer.submit(List.of(parquetFile(i))));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, SECONDS);
+        assertEquals(snapshotsBefore + 2, snapshotCount());
+        assertEquals(6, rowCount());
+        assertEquals(2, committer.getStats().snapshots());
+    }
+
+    @Test
+    void testFailedCommitFailsEveryWriteOfTheGroup() throws Exception {
+        var committer = committer(Duration.ofMillis(200), 1000);
+        var good = committer.submit(List.of(parquetFile(1)));
+        var missing = committer.submit(List.of(tempDir.resolve("missing.parquet").toString()));
+        var error = assertThrows(ExecutionException.class, () -> good.get(10, SECONDS));
+        assertInstanceOf(RuntimeException.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> missing.get(10, SECONDS));
+        assertEquals(0, rowCount());
+        assertEquals(0, committer.getStats().snapshots());
+
+        // Later writes are committed again
+        committer.submit(List.of(parquetFile(2))).get(10, SECONDS);
+        assertEquals(1, rowCount());
+    }
+
+    @Test
+    void testClosedCommitterRejectsWrites() throws Exception {
+        var committer = committer(Duration.ofMillis(200), 1000);
+        var pending = committer.submit(List.of(parquetFile(1)));
+        committer.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        pending.get(0, SECONDS);
+        assertEquals(1, rowCount());
+        var rejected = committer.submit(List.of(parquetFile(2)));
+        assertThrows(ExecutionException.class, () -> rejected.get(1, SECONDS));
+    }
+}
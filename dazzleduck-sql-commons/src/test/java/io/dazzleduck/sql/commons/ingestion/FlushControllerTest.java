@@ -0,0 +1,118 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.jmock.lib.concurrent.DeterministicScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlushControllerTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long MIN_BUCKET_SIZE = MB;
+    private static final long MAX_BUCKET_SIZE = 1024 * MB;
+    private static final Duration MAX_DELAY = Duration.ofSeconds(2);
+    private static final AdaptiveFlushConfig ADAPTIVE = new AdaptiveFlushConfig(true, 128 * MB,
+            Duration.ofSeconds(10), Duration.ofMillis(100), Duration.ofSeconds(30));
+
+    private final Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+    private FlushController controller(AdaptiveFlushConfig config) {
+        return new FlushController(config, MIN_BUCKET_SIZE, MAX_BUCKET_SIZE, 4096 * MB, MAX_DELAY, start);
+    }
+
+    /** Accepts {@code bytesPerSample} every 100 ms, ten times. */
+    private void receive(FlushController controller, long bytesPerSample) {
+        for (int i = 1; i <= 10; i++) {
+            controller.onAccepted(bytesPerSample);
+            controller.update(start.plusMillis(100L * i));
+        }
+    }
+
+    @Test
+    public void testDisabledKeepsStaticThresholds() {
+        var controller = controller(AdaptiveFlushConfig.DISABLED);
+        receive(controller, 64 * MB);
+        controller.onWritten(64 * MB, Duration.ofSeconds(1));
+        assertEquals(MIN_BUCKET_SIZE, controller.flushSize());
+        assertEquals(MAX_DELAY, controller.flushDelay());
+        assertFalse(controller.stats().adaptive());
+    }
+
+    @Test
+    public void testQuietQueueWaitsOutLatencyBudget() {
+        var controller = controller(ADAPTIVE);
+        receive(controller, 100); // 1 KB/s
+        assertEquals(MIN_BUCKET_SIZE, controller.flushSize());
+        assertEquals(Duration.ofSeconds(10), controller.flushDelay());
+        var stats = controller.stats();
+        assertTrue(stats.adaptive());
+        assertEquals(1000, stats.arrivalRate());
+        assertEquals(10_000, stats.flushDelay());
+    }
+
+    @Test
+    public void testWriteTimeShortensDelay() {
+        var controller = controller(ADAPTIVE);
+        controller.onWritten(MB, Duration.ofSeconds(4));
+        receive(controller, 100);
+        assertEquals(Duration.ofSeconds(6), controller.flushDelay());
+        assertEquals(4000, controller.stats().writeTime());
+    }
+
+    @Test
+    public void testBusyQueueWritesTargetSizeFiles() {
+        var controller = controller(ADAPTIVE);
+        controller.onWritten(128 * MB, Duration.ofMillis(100)); // writes faster than it receives
+        receive(controller, 64 * MB); // 640 MB/s
+        assertEquals(128 * MB, controller.flushSize());
+        assertEquals(200, controller.flushDelay().toMillis(), 1);
+    }
+
+    @Test
+    public void testQueueFallingBehindWritesLargestBuckets() {
+        var controller = controller(ADAPTIVE);
+        controller.onWritten(128 * MB, Duration.ofSeconds(1)); // 128 MB/s
+        receive(controller, 64 * MB); // 640 MB/s
+        assertEquals(MAX_BUCKET_SIZE, controller.flushSize());
+        assertEquals(1600, controller.flushDelay().toMillis(), 1);
+    }
+
+    @Test
+    public void testSizeIsBoundByHalfOfPendingWrite() {
+        var controller = new FlushController(ADAPTIVE, MIN_BUCKET_SIZE, MAX_BUCKET_SIZE, 256 * MB, MAX_DELAY, start);
+        controller.onWritten(128 * MB, Duration.ofSeconds(1));
+        receive(controller, 64 * MB);
+        assertEquals(128 * MB, controller.flushSize());
+    }
+
+    @Test
+    public void testQueueReportsFlushDecisions() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(start, ZoneId.systemDefault());
+        try (var queue = new BulkIngestQueue<String, MockWriteResult>("adaptive", MIN_BUCKET_SIZE, MAX_BUCKET_SIZE,
+                Integer.MAX_VALUE, 4096 * MB, MAX_DELAY, service, clock,
+                IngestionQueueOptions.DEFAULT.withAdaptiveFlush(ADAPTIVE)) {
+            @Override
+            public void write(WriteTask<String, MockWriteResult> writeTask) {
+                writeTask.bucket().futures().forEach(f -> f.complete(new MockWriteResult(writeTask.taskId(), writeTask.size())));
+            }
+        }) {
+            for (int i = 0; i < 5; i++) {
+                queue.add(new Batch<>(null, null, "", null, 0, 100, "parquet", clock.instant()));
+                clock.advanceBy(Duration.ofMillis(500));
+                service.tick(500, TimeUnit.MILLISECONDS);
+            }
+            var flush = queue.getStats().flush();
+            assertTrue(flush.adaptive());
+            assertEquals(MIN_BUCKET_SIZE, flush.flushSize());
+            assertEquals(10_000, flush.flushDelay(), "a quiet queue waits for its latency budget, not max_delay");
+            assertTrue(flush.arrivalRate() > 0);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jmock.lib.concurrent.DeterministicScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryArrowBatchesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    public void setup() {
+        allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        allocator.close();
+    }
+
+    /** An Arrow IPC stream of {@code batches} batches of {@code rows} ids each, numbered from {@code first}. */
+    private byte[] stream(String column, long first, int batches, int rows) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var root = VectorSchemaRoot.of(new BigIntVector(column, allocator));
+             var writer = new ArrowStreamWriter(root, null, Channels.newChannel(out))) {
+            var vector = (BigIntVector) root.getVector(0);
+            long next = first;
+            for (int b = 0; b < batches; b++) {
+                vector.allocateNew(rows);
+                for (int i = 0; i < rows; i++) {
+                    vector.set(i, next++);
+                }
+                root.setRowCount(rows);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+        return out.toByteArray();
+    }
+
+    private InMemoryArrowBatches.Received receive(byte[] stream, InMemoryArrowBatches.Budget budget) throws Exception {
+        try (var reader = new ArrowStreamReader(new ByteArrayInputStream(stream), allocator)) {
+            return InMemoryArrowBatches.receive(reader, budget, tempDir);
+        }
+    }
+
+    private static Batch<String> batch(InMemoryArrowBatches.Received received, long batchId) {
+        return new Batch<>(null, null, received.record(), "producer1", batchId, received.size(), "parquet", Instant.now());
+    }
+
+    @Test
+    public void testStreamsWithinBudgetStayInMemory() throws Exception {
+        try (var budget = new InMemoryArrowBatches.Budget(allocator, 1024 * 1024)) {
+            var received = receive(stream("id", 0, 3, 100), budget);
+            assertTrue(received.inMemory());
+            assertEquals(received.size(), budget.getUsed());
+            assertTrue(received.size() >= 3 * 100 * Long.BYTES);
+            try (var files = Files.list(tempDir)) {
+                assertEquals(0, files.count());
+            }
+            InMemoryArrowBatches.release(received.record());
+            assertEquals(0, budget.getUsed());
+            InMemoryArrowBatches.release(received.record()); // released already: ignored
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    public void testStreamCrossingBudgetIsSpilled() throws Exception {
+        try (var budget = new InMemoryArrowBatches.Budget(allocator, 1000)) {
+            var received = receive(stream("id", 0, 4, 100), budget);
+            assertFalse(received.inMemory());
+            assertEquals(0, budget.getUsed());
+            var file = Path.of(received.record());
+            assertEquals(Files.size(file), received.size());
+            assertEquals(400L, ConnectionPool.collectFirst(
+                    "select count(distinct id) from read_arrow('%s')".formatted(file), Long.class));
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    public void testQueueWritesInMemoryAndFileBatchesTogether() throws Exception {
+        var output = Files.createDirectories(tempDir.resolve("output"));
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var handler = new NOOPIngestionTaskFactoryProvider(output.toString()).getIngestionHandler();
+        try (var budget = new InMemoryArrowBatches.Budget(allocator, 1024 * 1024);
+             var full = new InMemoryArrowBatches.Budget(allocator, 0)) {
+            try (var queue = new ParquetIngestionQueue("app", "arrow", output.toString(), "queue",
+                    Long.MAX_VALUE, Long.MAX_VALUE, 3, Long.MAX_VALUE, Duration.ofSeconds(5),
+                    handler, service, clock)) {
+                var first = receive(stream("id", 0, 2, 50), budget);
+                var second = receive(stream("other", 1000, 1, 10), budget);
+                var spilled = receive(stream("id", 100, 1, 25), full);
+                assertTrue(first.inMemory());
+                assertTrue(second.inMemory());
+                assertFalse(spilled.inMemory());
+
+                queue.add(batch(first, 0));
+                queue.add(batch(second, 1));
+                var result = queue.add(batch(spilled, 2));
+                service.tick(1, TimeUnit.MILLISECONDS);
+                var written = result.get(5, SECONDS);
+
+                assertEquals(135, written.rowCount());
+                var files = String.join("','", written.filesCreated());
+                assertEquals(125L, ConnectionPool.collectFirst(
+                        "select count(distinct id) from read_parquet(['%s'], union_by_name = true)".formatted(files), Long.class));
+                assertEquals(10L, ConnectionPool.collectFirst(
+                        "select count(other) from read_parquet(['%s'], union_by_name = true)".formatted(files), Long.class));
+            }
+            assertEquals(0, budget.getUsed(), "written batches are released");
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+}
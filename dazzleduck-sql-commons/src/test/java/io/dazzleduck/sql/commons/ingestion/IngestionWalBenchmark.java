@@ -0,0 +1,92 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures what the write-ahead log adds to accepting a batch: concurrent producers each write a
+ * batch file and log it, as {@code ParquetIngestionQueue.add} does, with
+ * <ul>
+ *   <li>no log,</li>
+ *   <li>{@link IngestionWal.SyncPolicy#NONE},</li>
+ *   <li>{@link IngestionWal.SyncPolicy#GROUP}, and</li>
+ *   <li>one fsync per batch (append and sync under a global lock, so no fsync is shared).</li>
+ * </ul>
+ * Every 64 batches are committed, as a queue writing buckets of 64 would.
+ */
+public class IngestionWalBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int BATCHES_PER_THREAD = 500;
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    private enum Mode { NO_WAL, NONE, GROUP, FSYNC_PER_BATCH }
+
+    public static void main(String[] args) throws Exception {
+        var root = Files.createTempDirectory("wal-benchmark");
+        for (var mode : Mode.values()) {
+            run(root, mode); // warm up
+            long start = System.nanoTime();
+            int batches = run(root, mode);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-16s %10.0f batches/s%n", mode, batches / seconds);
+        }
+    }
+
+    private static int run(Path root, Mode mode) throws Exception {
+        var dir = Files.createTempDirectory(root, mode.name());
+        var input = Files.createDirectories(dir.resolve("input"));
+        var sync = mode == Mode.NONE ? IngestionWal.SyncPolicy.NONE : IngestionWal.SyncPolicy.GROUP;
+        var config = new IngestionWalConfig(true, dir.resolve("wal"), IngestionWalConfig.DEFAULT_SEGMENT_SIZE, sync);
+        var payload = new byte[BATCH_BYTES];
+        var globalLock = new Object();
+        var committer = new Object();
+        var appended = new int[1];
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try (var wal = mode == Mode.NO_WAL ? null : IngestionWal.open(config, "bench")) {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < BATCHES_PER_THREAD; i++) {
+                        var file = input.resolve(thread + "-" + i + ".arrow");
+                        Files.write(file, payload);
+                        if (wal == null) {
+                            continue;
+                        }
+                        var batch = new Batch<>(null, null, file.toString(), "p" + thread, i, BATCH_BYTES,
+                                "parquet", Instant.now());
+                        if (mode == Mode.FSYNC_PER_BATCH) {
+                            synchronized (globalLock) {
+                                wal.forceFile(file);
+                                wal.append(batch);
+                                wal.sync();
+                            }
+                        } else {
+                            wal.forceFile(file);
+                            wal.append(batch);
+                            wal.sync();
+                        }
+                        synchronized (committer) {
+                            if (++appended[0] % 64 == 0) {
+                                wal.commit(64, Map.of("p" + thread, (long) i));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return THREADS * BATCHES_PER_THREAD;
+    }
+}
@@ -0,0 +1,202 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestionWalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private IngestionWalConfig config(long segmentSize, IngestionWal.SyncPolicy sync) {
+        return new IngestionWalConfig(true, tempDir.resolve("wal"), segmentSize, sync);
+    }
+
+    private IngestionWalConfig config() {
+        return config(IngestionWalConfig.DEFAULT_SEGMENT_SIZE, IngestionWal.SyncPolicy.GROUP);
+    }
+
+    private Batch<String> batch(String name, String producerId, long producerBatchId) throws IOException {
+        var file = tempDir.resolve(name);
+        Files.writeString(file, name);
+        return new Batch<>(new String[]{"a"}, null, file.toString(), producerId, producerBatchId, 10,
+                "parquet", Instant.ofEpochSecond(1_700_000_000L, 123));
+    }
+
+    private static long segmentCount(Path queueDir) throws IOException {
+        try (var files = Files.list(queueDir)) {
+            return files.filter(p -> p.toString().endsWith(".wal")).count();
+        }
+    }
+
+    @Test
+    public void testAppendMovesFileAndRecoversUncommittedBatches() throws Exception {
+        var config = config();
+        Batch<String> first;
+        Batch<String> second;
+        try (var wal = IngestionWal.open(config, "q/1")) {
+            assertTrue(wal.recovered().batches().isEmpty());
+            var original = batch("b0.arrow", "p1", 0);
+            first = wal.append(original);
+            second = wal.append(batch("b1.arrow", "p1", 1));
+            wal.sync();
+            assertFalse(Files.exists(Path.of(original.record())));
+            assertEquals("b0.arrow", Files.readString(Path.of(first.record())));
+            assertTrue(first.record().startsWith(IngestionWal.queueDirectory(config.directory(), "q/1").toString()));
+        }
+        assertEquals(List.of("q/1"), IngestionWal.queueIds(config.directory()));
+
+        try (var wal = IngestionWal.open(config, "q/1")) {
+            var recovered = wal.recovered();
+            assertEquals(2, recovered.batches().size());
+            var replayed = recovered.batches().get(0);
+            assertEquals(first.record(), replayed.record());
+            assertEquals("p1", replayed.producerId());
+            assertEquals(0, replayed.producerBatchId());
+            assertEquals(10, replayed.totalSize());
+            assertEquals("parquet", replayed.format());
+            assertArrayEquals(new String[]{"a"}, replayed.sortOrder());
+            assertNull(replayed.partitionBy());
+            assertEquals(first.receivedTime(), replayed.receivedTime());
+            assertEquals(second.record(), recovered.batches().get(1).record());
+
+            // The first batch is written: only the second one is left to replay
+            wal.commit(1, Map.of("p1", 0L));
+        }
+        try (var wal = IngestionWal.open(config, "q/1")) {
+            var recovered = wal.recovered();
+            assertEquals(List.of(second.record()), recovered.batches().stream().map(Batch::record).toList());
+            assertEquals(Map.of("p1", 0L), recovered.producerBatchIds());
+            assertFalse(Files.exists(Path.of(first.record())), "files of committed batches are deleted");
+            wal.commit(1, Map.of("p1", 1L));
+        }
+        try (var wal = IngestionWal.open(config, "q/1")) {
+            assertTrue(wal.recovered().batches().isEmpty());
+            assertEquals(Map.of("p1", 1L), wal.recovered().producerBatchIds());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws Exception {
+        var config = config();
+        var queueDir = IngestionWal.queueDirectory(config.directory(), "q");
+        Batch<String> logged;
+        try (var wal = IngestionWal.open(config, "q")) {
+            logged = wal.append(batch("b0.arrow", null, 0));
+            wal.append(batch("b1.arrow", null, 0));
+        }
+        // Cut the last record in half, as a crash in the middle of a write would
+        Path segment;
+        try (var files = Files.list(queueDir)) {
+            segment = files.filter(p -> p.toString().endsWith(".wal")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        try (var wal = IngestionWal.open(config, "q")) {
+            assertEquals(List.of(logged.record()), wal.recovered().batches().stream().map(Batch::record).toList());
+            // Appending after the truncated record works and is recovered again
+            wal.append(batch("b2.arrow", null, 0));
+        }
+        try (var wal = IngestionWal.open(config, "q")) {
+            assertEquals(2, wal.recovered().batches().size());
+        }
+    }
+
+    @Test
+    public void testCommittedSegmentsAreDeleted() throws Exception {
+        var config = config(256, IngestionWal.SyncPolicy.NONE);
+        var queueDir = IngestionWal.queueDirectory(config.directory(), "q");
+        try (var wal = IngestionWal.open(config, "q")) {
+            for (int i = 0; i < 20; i++) {
+                wal.append(batch("b" + i + ".arrow", "p" + (i % 3), i));
+            }
+            assertTrue(segmentCount(queueDir) > 2, "small segments roll");
+            wal.commit(20, Map.of("p0", 18L, "p1", 19L, "p2", 17L));
+            assertEquals(1, segmentCount(queueDir));
+        }
+        try (var wal = IngestionWal.open(config, "q")) {
+            assertTrue(wal.recovered().batches().isEmpty());
+            assertEquals(Map.of("p0", 18L, "p1", 19L, "p2", 17L), wal.recovered().producerBatchIds());
+        }
+    }
+
+    @Test
+    public void testMissingBatchFilesAreSkipped() throws Exception {
+        var config = config();
+        Batch<String> lost;
+        Batch<String> kept;
+        try (var wal = IngestionWal.open(config, "q")) {
+            lost = wal.append(batch("b0.arrow", null, 0));
+            kept = wal.append(batch("b1.arrow", null, 0));
+        }
+        Files.delete(Path.of(lost.record()));
+        Files.writeString(IngestionWal.queueDirectory(config.directory(), "q").resolve("data").resolve("orphan"), "x");
+        try (var wal = IngestionWal.open(config, "q")) {
+            assertEquals(List.of(kept.record()), wal.recovered().batches().stream().map(Batch::record).toList());
+        }
+        try (var files = Files.list(IngestionWal.queueDirectory(config.directory(), "q").resolve("data"))) {
+            assertEquals(List.of(Path.of(kept.record())), files.toList());
+        }
+    }
+
+    @Test
+    public void testLogIsExclusive() throws Exception {
+        var config = config();
+        try (var wal = IngestionWal.open(config, "q")) {
+            assertThrows(IOException.class, () -> IngestionWal.open(config, "q"));
+        }
+        IngestionWal.open(config, "q").close();
+    }
+
+    @Test
+    public void testConcurrentAppendsAreRecoveredInOrder() throws Exception {
+        var config = config();
+        int threads = 8;
+        int perThread = 50;
+        var executor = Executors.newFixedThreadPool(threads);
+        try (var wal = IngestionWal.open(config, "q")) {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        var b = batch("t" + thread + "-" + i + ".arrow", "p" + thread, i);
+                        wal.append(b);
+                        wal.sync();
+                    }
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (var wal = IngestionWal.open(config, "q")) {
+            var batches = wal.recovered().batches();
+            assertEquals(threads * perThread, batches.size());
+            for (int t = 0; t < threads; t++) {
+                var producer = "p" + t;
+                var ids = batches.stream().filter(b -> producer.equals(b.producerId())).map(Batch::producerBatchId).toList();
+                assertEquals(LongStream.range(0, perThread).boxed().toList(), ids);
+            }
+        }
+    }
+}
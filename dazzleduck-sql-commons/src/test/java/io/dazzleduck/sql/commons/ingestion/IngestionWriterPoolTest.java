@@ -0,0 +1,158 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestionWriterPoolTest {
+
+    private final List<AutoCloseable> toClose = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        Collections.reverse(toClose);
+        for (var c : toClose) {
+            c.close();
+        }
+    }
+
+    /** Writes a bucket by recording its batches, taking {@code writeTime} per bucket. */
+    private static class RecordingQueue extends BulkIngestQueue<String, MockWriteResult> {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        final Set<String> writerThreads;
+        final Duration writeTime;
+
+        RecordingQueue(String id, IngestionWriterPool pool, Set<String> writerThreads, Duration writeTime) {
+            // Every batch fills a bucket and no two buckets are combined
+            super(id, 1, 1, 1, Long.MAX_VALUE, Duration.ofHours(1), pool.timer(), Clock.systemUTC(),
+                    IngestionQueueOptions.DEFAULT.withWriterPool(pool));
+            this.writerThreads = writerThreads;
+            this.writeTime = writeTime;
+        }
+
+        @Override
+        public void write(WriteTask<String, MockWriteResult> writeTask) {
+            writerThreads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(writeTime.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeTask.bucket().batches().forEach(b -> written.add(b.record()));
+            writeTask.bucket().futures().forEach(f -> f.complete(new MockWriteResult(writeTask.taskId(), writeTask.size())));
+        }
+    }
+
+    private IngestionWriterPool pool(int threads) {
+        var pool = new IngestionWriterPool(threads);
+        toClose.add(pool);
+        return pool;
+    }
+
+    private RecordingQueue queue(String id, IngestionWriterPool pool, Set<String> writerThreads, Duration writeTime) {
+        var queue = new RecordingQueue(id, pool, writerThreads, writeTime);
+        toClose.add(queue);
+        return queue;
+    }
+
+    private static Batch<String> batch(String record) {
+        return new Batch<>(null, null, record, null, 0, 1, "parquet", Instant.now());
+    }
+
+    private static long threadsNamed(String prefix) {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith(prefix)).count();
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testThousandQueuesShareBoundedThreads() throws Exception {
+        int queues = 1000;
+        int batchesPerQueue = 5;
+        var pool = pool(4);
+        var writerThreads = ConcurrentHashMap.<String>newKeySet();
+        long threadsBefore = Thread.activeCount();
+        var all = new ArrayList<RecordingQueue>();
+        for (int q = 0; q < queues; q++) {
+            all.add(queue("q" + q, pool, writerThreads, Duration.ZERO));
+        }
+        assertTrue(Thread.activeCount() - threadsBefore <= 5, "queues start no threads of their own");
+        assertEquals(0, threadsNamed("BulkIngestQueue-"));
+
+        var latencies = new ConcurrentHashMap<CompletableFuture<MockWriteResult>, Long>();
+        var futures = new ArrayList<CompletableFuture<MockWriteResult>>();
+        for (int i = 0; i < batchesPerQueue; i++) {
+            for (var queue : all) {
+                long start = System.nanoTime();
+                var future = queue.add(batch(queue.identifier() + "-" + i));
+                future.thenRun(() -> latencies.put(future, System.nanoTime() - start));
+                futures.add(future);
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertTrue(writerThreads.size() <= 4, "written on " + writerThreads);
+        for (var queue : all) {
+            var expected = new ArrayList<String>();
+            for (int i = 0; i < batchesPerQueue; i++) {
+                expected.add(queue.identifier() + "-" + i);
+            }
+            assertEquals(expected, queue.written, "buckets of a queue are written in order");
+        }
+        var sorted = latencies.values().stream().sorted().toList();
+        long p99 = sorted.get((int) (sorted.size() * 0.99) - 1);
+        assertTrue(p99 < TimeUnit.SECONDS.toNanos(10), "p99 latency " + TimeUnit.NANOSECONDS.toMillis(p99) + " ms");
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testBusyQueueDoesNotStarveOthers() throws Exception {
+        var pool = pool(1);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var busy = queue("busy", pool, threads, Duration.ofMillis(5));
+        var quiet = queue("quiet", pool, threads, Duration.ofMillis(5));
+        var busyFutures = new ArrayList<CompletableFuture<MockWriteResult>>();
+        for (int i = 0; i < 200; i++) {
+            busyFutures.add(busy.add(batch("b" + i)));
+        }
+        quiet.add(batch("q0")).get(5, TimeUnit.SECONDS);
+        // The quiet queue took its turn after at most a few buckets of the busy one
+        assertTrue(busy.written.size() < 20, "busy queue wrote " + busy.written.size() + " buckets first");
+        CompletableFuture.allOf(busyFutures.toArray(CompletableFuture[]::new)).get(20, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testCloseWaitsForRunningWrite() throws Exception {
+        var pool = pool(2);
+        var started = new CountDownLatch(1);
+        var queue = new RecordingQueue("q", pool, ConcurrentHashMap.newKeySet(), Duration.ofMillis(300)) {
+            @Override
+            public void write(WriteTask<String, MockWriteResult> writeTask) {
+                started.countDown();
+                super.write(writeTask);
+            }
+        };
+        var first = queue.add(batch("a"));
+        started.await();
+        var second = queue.add(batch("b"));
+        queue.close();
+        assertTrue(first.isDone(), "close returns after the running write");
+        assertEquals(List.of("a"), queue.written);
+        var error = assertThrows(Exception.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+    }
+}
@@ -14,9 +14,13 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -168,6 +172,66 @@ public class ParquetIngestionQueueTest {
         }
     }
 
+    @Test
+    public void testParallelWritersSplitPartitions() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+
+        var postTaskExecuted = new AtomicBoolean();
+        var postTaskFactory = createPostTaskFactory(postTaskExecuted, false);
+
+        try (var queue = new ParquetIngestionQueue(
+                TEST_APP_ID,
+                INPUT_FORMAT,
+                targetPath.toString(),
+                "test-queue",
+                DEFAULT_MIN_BATCH_SIZE,
+                Long.MAX_VALUE,  // maxBucketSize
+                Integer.MAX_VALUE,
+                Long.MAX_VALUE,
+                DEFAULT_MAX_DELAY,
+                postTaskFactory,
+                service,
+                clock,
+                IngestionQueueOptions.DEFAULT.withWriters(3))) {
+
+            var batch = new Batch<>(
+                    null,  // sortOrder
+                    new String[]{"category"},  // partitionBy
+                    sourceFile1.toString(),
+                    "producer1",
+                    0L,
+                    DEFAULT_MIN_BATCH_SIZE + 1,
+                    "parquet",
+                    Instant.now()
+            );
+
+            var future = queue.add(batch);
+
+            service.tick(1, TimeUnit.MILLISECONDS);
+            var result = future.get(5, SECONDS);
+            assertEquals(100, result.rowCount());
+            assertTrue(postTaskExecuted.get());
+            var files = String.join("','", result.filesCreated());
+            assertEquals(100L, ConnectionPool.collectFirst(
+                    "select count(distinct id) from read_parquet(['%s'])".formatted(files), Long.class));
+
+            // Each partition is written by exactly one writer
+            var partitionDirs = result.filesCreated().stream().map(f -> Path.of(f).getParent()).distinct().count();
+            assertEquals(3, partitionDirs);
+
+            var writers = queue.getStats().writers();
+            assertEquals(3, writers.size());
+            assertEquals(100, writers.stream().mapToLong(WriterStats::totalRows).sum());
+            writers.forEach(w -> assertEquals(1, w.totalWrites()));
+            assertEquals(writers, queue.getWriterStats());
+
+            // The bucket is staged once for all writers and dropped once they are done
+            assertEquals(0L, ConnectionPool.collectFirst(
+                    "select count(*) from duckdb_tables() where table_name like '__dd_bucket%'", Long.class));
+        }
+    }
+
     @Test
     public void testMultipleBatches() throws Exception {
         var service = new DeterministicScheduler();
@@ -525,6 +589,248 @@ public class ParquetIngestionQueueTest {
 
     // Helper methods
 
+    @Test
+    public void testWriteAheadLogReplaysBatchesAfterRestart() throws Exception {
+        var walConfig = new IngestionWalConfig(true, tempDir.resolve("wal"), IngestionWalConfig.DEFAULT_SEGMENT_SIZE,
+                IngestionWal.SyncPolicy.GROUP);
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var postTaskFactory = createPostTaskFactory(new AtomicBoolean(), false);
+
+        // Nothing is ever flushed: the batches are only in the log when the queue closes
+        var first = new ParquetIngestionQueue(TEST_APP_ID, INPUT_FORMAT, targetPath.toString(), "test-queue",
+                Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, DEFAULT_MAX_DELAY,
+                postTaskFactory, new DeterministicScheduler(), clock,
+                IngestionQueueOptions.DEFAULT.withWal(IngestionWal.open(walConfig, "test-queue")));
+        var pending1 = first.add(createBatch(sourceFile1.toString(), "producer1", 0, DEFAULT_SMALL_BATCH_SIZE));
+        var pending2 = first.add(createBatch(sourceFile2.toString(), "producer1", 1, DEFAULT_SMALL_BATCH_SIZE));
+        first.close();
+        assertTrue(pending1.isCompletedExceptionally());
+        assertTrue(pending2.isCompletedExceptionally());
+
+        try (var second = new ParquetIngestionQueue(TEST_APP_ID, INPUT_FORMAT, targetPath.toString(), "test-queue",
+                1, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, DEFAULT_MAX_DELAY,
+                postTaskFactory, new DeterministicScheduler(), clock,
+                IngestionQueueOptions.DEFAULT.withWal(IngestionWal.open(walConfig, "test-queue")))) {
+            long deadline = System.nanoTime() + SECONDS.toNanos(10);
+            while (second.getTotalWriteBatches() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, second.getTotalWriteBatches());
+            assertEquals(150L, ConnectionPool.collectFirst(
+                    "SELECT count(*) FROM read_parquet('%s/*.parquet')".formatted(targetPath), Long.class));
+
+            // The replayed batches restored the producer's sequence
+            var retry = second.add(createBatch(createTestParquetFile("retry.parquet", 10).toString(),
+                    "producer1", 1, DEFAULT_SMALL_BATCH_SIZE));
+            var error = assertThrows(ExecutionException.class, () -> retry.get(2, SECONDS));
+            assertInstanceOf(OutOfSequenceBatch.class, error.getCause());
+        }
+        try (var wal = IngestionWal.open(walConfig, "test-queue")) {
+            assertTrue(wal.recovered().batches().isEmpty());
+            assertEquals(1L, wal.recovered().producerBatchIds().get("producer1"));
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsCommittedAfterEarlierPendingWrite() throws Exception {
+        var walConfig = new IngestionWalConfig(true, tempDir.resolve("wal"), IngestionWalConfig.DEFAULT_SEGMENT_SIZE,
+                IngestionWal.SyncPolicy.GROUP);
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        // The post-ingestion task of the first bucket stays pending, e.g. in a group commit
+        var held = new CompletableFuture<Void>();
+        var postTasks = new AtomicInteger();
+        var postTaskFactory = new IngestionHandler() {
+            @Override
+            public PostIngestionTask createPostIngestionTask(IngestionResult ingestionResult) {
+                return new PostIngestionTask() {
+                    @Override
+                    public void execute() {
+                    }
+
+                    @Override
+                    public CompletableFuture<Void> executeAsync() {
+                        return postTasks.getAndIncrement() == 0 ? held : CompletableFuture.completedFuture(null);
+                    }
+                };
+            }
+
+            @Override
+            public String getTargetPath(String queueId) {
+                return targetPath.toString();
+            }
+
+            @Override
+            public String[] getPartitionBy(String queueId) {
+                return new String[0];
+            }
+        };
+        var corrupt = tempDir.resolve("corrupt.parquet");
+        Files.writeString(corrupt, "not a parquet file");
+
+        var wal = IngestionWal.open(walConfig, "test-queue");
+        var queue = new ParquetIngestionQueue(TEST_APP_ID, INPUT_FORMAT, targetPath.toString(), "test-queue",
+                1, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, DEFAULT_MAX_DELAY,
+                postTaskFactory, new DeterministicScheduler(), clock, IngestionQueueOptions.DEFAULT.withWal(wal));
+        try {
+            var written = queue.add(createBatch(sourceFile1.toString(), "producer1", 0, DEFAULT_SMALL_BATCH_SIZE));
+            awaitCondition(() -> postTasks.get() == 1);
+            var failed = queue.add(createBatch(corrupt.toString(), "producer1", 1, DEFAULT_SMALL_BATCH_SIZE));
+            awaitCondition(() -> queue.getTotalWriteBatches() == 2);
+
+            // The failed bucket waits for the one before it
+            assertFalse(written.isDone());
+            assertFalse(failed.isDone());
+
+            // The process dies here: the first bucket was never acknowledged, so it is replayed
+            wal.close();
+            try (var reopened = IngestionWal.open(walConfig, "test-queue")) {
+                assertEquals(List.of(0L, 1L), reopened.recovered().batches().stream()
+                        .map(Batch::producerBatchId).toList());
+            }
+
+            held.complete(null);
+            assertEquals(100, written.get(5, SECONDS).rowCount());
+            assertThrows(ExecutionException.class, () -> failed.get(5, SECONDS));
+        } finally {
+            queue.close();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testBatchIsAcknowledgedWhenItsIdsCannotBePersisted() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var store = ProducerSequenceStore.open(
+                new ProducerDedupConfig(16, 10, true, tempDir.resolve("sequences")), "test-queue");
+        try (var queue = new ParquetIngestionQueue(TEST_APP_ID, INPUT_FORMAT, targetPath.toString(), "test-queue",
+                DEFAULT_MIN_BATCH_SIZE, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, DEFAULT_MAX_DELAY,
+                createPostTaskFactory(new AtomicBoolean(), false), service, clock,
+                IngestionQueueOptions.DEFAULT.withSequenceStore(store))) {
+            // A closed store fails every commit
+            store.close();
+            var future = queue.add(createBatch(sourceFile1.toString(), "producer1", 0, DEFAULT_MIN_BATCH_SIZE + 1));
+            service.tick(1, TimeUnit.MILLISECONDS);
+
+            // The batch is written, so it is acknowledged; the failure is counted
+            assertEquals(100, future.get(5, SECONDS).rowCount());
+            assertEquals(1, queue.getSequenceCommitFailures());
+        }
+    }
+
+    @Test
+    public void testWrittenFileSizesAreReported() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var source = createTestParquetFile("large.parquet", 10_000);
+        // min_file_size turns on reading the sizes back; no max_deferral, so nothing is held back
+        try (var queue = parquetWriteQueue(service, clock, DEFAULT_MAX_DELAY,
+                new ParquetWriteConfig(0, 2048, 0, 1, Duration.ZERO))) {
+            var future = queue.add(createBatch(source.toString(), "producer1", 0, DEFAULT_MIN_BATCH_SIZE + 1));
+            service.tick(1, TimeUnit.MILLISECONDS);
+            var result = future.get(5, SECONDS);
+
+            String outputFile = result.filesCreated().get(0);
+            assertTrue(ConnectionPool.collectFirst(
+                    "SELECT count(DISTINCT row_group_id) FROM parquet_metadata('%s')".formatted(outputFile), Long.class) > 1,
+                    "row_group_size splits the file into several row groups");
+
+            var sizes = queue.getFileSizeStats();
+            assertEquals(1, sizes.files());
+            assertEquals(Files.size(Path.of(outputFile)), sizes.bytes());
+            assertEquals(sizes.bytes(), sizes.smallest());
+            assertEquals(sizes.bytes(), sizes.largest());
+            assertEquals(1L, sizes.histogram().get(0));
+            assertEquals(sizes, queue.getStats().files());
+        }
+    }
+
+    @Test
+    public void testFileSizesAreNotReadByDefault() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        try (var queue = parquetWriteQueue(service, clock, DEFAULT_MAX_DELAY, ParquetWriteConfig.DEFAULT)) {
+            var future = queue.add(createBatch(sourceFile1.toString(), "producer1", 0, DEFAULT_MIN_BATCH_SIZE + 1));
+            service.tick(1, TimeUnit.MILLISECONDS);
+            future.get(5, SECONDS);
+
+            var sizes = queue.getFileSizeStats();
+            assertEquals(1, sizes.files());
+            assertEquals(0, sizes.bytes());
+            assertEquals(0, sizes.largest());
+        }
+    }
+
+    @Test
+    public void testMaxOpenPartitionsSplitsWriteIntoPasses() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        try (var queue = parquetWriteQueue(service, clock, DEFAULT_MAX_DELAY,
+                new ParquetWriteConfig(0, 0, 1, 0, Duration.ZERO))) {
+            // The first write shows the queue spans three partitions
+            var first = queue.add(partitionedBatch(sourceFile1, 0));
+            service.tick(1, TimeUnit.MILLISECONDS);
+            assertEquals(3, first.get(5, SECONDS).filesCreated().size());
+            assertEquals(1, queue.getWriterStats().get(0).totalWrites());
+
+            // So the next one writes one partition per COPY
+            var second = queue.add(partitionedBatch(sourceFile2, 1));
+            service.tick(1, TimeUnit.MILLISECONDS);
+            var result = second.get(5, SECONDS);
+            assertEquals(50, result.rowCount());
+            assertEquals(4, queue.getWriterStats().get(0).totalWrites());
+            var partitionDirs = result.filesCreated().stream().map(f -> Path.of(f).getParent()).toList();
+            assertEquals(3, partitionDirs.size());
+            assertEquals(3, partitionDirs.stream().distinct().count(), "every partition is written by one COPY");
+            assertEquals(150L, ConnectionPool.collectFirst(
+                    "SELECT count(*) FROM read_parquet('%s/**/*.parquet')".formatted(targetPath), Long.class));
+            assertEquals(6, queue.getFileSizeStats().files());
+        }
+    }
+
+    @Test
+    public void testBucketOfSmallFilesIsDeferred() throws Exception {
+        var service = new DeterministicScheduler();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var maxDelay = Duration.ofSeconds(1);
+        try (var queue = parquetWriteQueue(service, clock, maxDelay,
+                new ParquetWriteConfig(0, 0, 0, 1024 * 1024, Duration.ofSeconds(10)))) {
+            var future = queue.add(new Batch<>(null, null, sourceFile1.toString(), "producer1", 0L,
+                    DEFAULT_SMALL_BATCH_SIZE, "parquet", clock.instant()));
+            for (int i = 0; i < 9; i++) {
+                clock.advanceBy(maxDelay);
+                service.tick(maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            assertFalse(future.isDone(), "held back while its file is expected below min_file_size");
+            assertEquals(0, queue.getTotalWriteBatches());
+
+            clock.advanceBy(maxDelay);
+            service.tick(maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            assertEquals(100, future.get(5, SECONDS).rowCount());
+            assertEquals(1, queue.getFileSizeStats().smallFiles());
+        }
+    }
+
+    private ParquetIngestionQueue parquetWriteQueue(DeterministicScheduler service, MutableClock clock,
+                                                    Duration maxDelay, ParquetWriteConfig parquetWrite) {
+        return new ParquetIngestionQueue(TEST_APP_ID, INPUT_FORMAT, targetPath.toString(), "test-queue",
+                DEFAULT_MIN_BATCH_SIZE, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, maxDelay,
+                createPostTaskFactory(new AtomicBoolean(), false), service, clock,
+                IngestionQueueOptions.DEFAULT.withParquetWrite(parquetWrite));
+    }
+
+    private Batch<String> partitionedBatch(Path file, long batchId) {
+        return new Batch<>(null, new String[]{"category"}, file.toString(), "producer1", batchId,
+                DEFAULT_MIN_BATCH_SIZE + 1, "parquet", Instant.now());
+    }
+
     private Path createTestParquetFile(String filename, int rowCount) throws Exception {
         Path file = tempDir.resolve(filename);
 
@@ -0,0 +1,161 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import io.dazzleduck.sql.commons.util.MutableClock;
+import org.jmock.lib.concurrent.DeterministicScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.dazzleduck.sql.commons.ingestion.ProducerSequences.Seen.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProducerSequenceStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ProducerDedupConfig config() {
+        return new ProducerDedupConfig(64, 100, true, tempDir.resolve("sequences"));
+    }
+
+    private static Batch<String> batch(String producerId, long producerBatchId) {
+        return new Batch<>(null, null, "", producerId, producerBatchId, 100, "parquet", Instant.EPOCH);
+    }
+
+    private static List<Path> segments(Path queueDir) throws IOException {
+        try (var files = Files.list(queueDir)) {
+            return files.filter(p -> p.toString().endsWith(".seq")).sorted().toList();
+        }
+    }
+
+    @Test
+    public void testCommittedIdsSurviveReopen() throws Exception {
+        var config = config();
+        try (var store = ProducerSequenceStore.open(config, "q/1")) {
+            store.commit(List.of(batch("p1", 3), batch("p1", 1), batch(null, 0)));
+            store.commit(List.of(batch("p2", 7)));
+        }
+        try (var store = ProducerSequenceStore.open(config, "q/1")) {
+            var sequences = store.sequences();
+            assertEquals(DUPLICATE, sequences.check("p1", 1));
+            assertEquals(NEW, sequences.check("p1", 2));
+            assertEquals(DUPLICATE, sequences.check("p1", 3));
+            assertEquals(DUPLICATE, sequences.check("p2", 7));
+            // Reopening starts a segment with a snapshot and deletes the older ones
+            assertEquals(1, segments(ProducerSequenceStore.queueDirectory(config.directory(), "q/1")).size());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws Exception {
+        var config = config();
+        try (var store = ProducerSequenceStore.open(config, "q")) {
+            store.commit(List.of(batch("p1", 1)));
+        }
+        var segment = segments(ProducerSequenceStore.queueDirectory(config.directory(), "q")).get(0);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        try (var store = ProducerSequenceStore.open(config, "q")) {
+            assertEquals(DUPLICATE, store.sequences().check("p1", 1));
+        }
+    }
+
+    @Test
+    public void testStoreIsOpenedByOneQueueOnly() throws Exception {
+        var config = config();
+        try (var ignored = ProducerSequenceStore.open(config, "q")) {
+            assertThrows(IOException.class, () -> ProducerSequenceStore.open(config, "q"));
+        }
+    }
+
+    @Test
+    public void testRetryAfterRestartIsAcknowledgedAsDuplicate() throws Exception {
+        var config = config();
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        try (var queue = queue(config, clock)) {
+            var written = queue.add(batch("p1", 5));
+            written.get(5, TimeUnit.SECONDS);
+            // Out of order within the window is fine
+            queue.add(batch("p1", 3)).get(5, TimeUnit.SECONDS);
+            assertEquals(2, queue.getDedupMisses());
+        }
+        try (var queue = queue(config, clock)) {
+            var retry = queue.add(batch("p1", 5));
+            var error = assertThrows(ExecutionException.class, () -> retry.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DuplicateBatch.class, error.getCause());
+            assertEquals(1, queue.getDedupHits());
+            queue.add(batch("p1", 4)).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testRetryOfBatchBeingWrittenIsRetryable() throws Exception {
+        var clock = new MutableClock(Instant.now(), ZoneId.systemDefault());
+        var pending = new CompletableFuture<Void>();
+        var failed = new CountDownLatch(1);
+        try (var queue = new BulkIngestQueue<String, MockWriteResult>("pending", 1, Long.MAX_VALUE,
+                Integer.MAX_VALUE, Long.MAX_VALUE, Duration.ofSeconds(1), new DeterministicScheduler(), clock,
+                IngestionQueueOptions.DEFAULT.withProducerDedup(new ProducerDedupConfig(16, 10, false, null))) {
+            @Override
+            public void write(WriteTask<String, MockWriteResult> writeTask) {
+                pending.join();
+                writeTask.bucket().futures().forEach(f -> f.completeExceptionally(new IOException("write failed")));
+                failed.countDown();
+            }
+        }) {
+            var first = queue.add(batch("p1", 1));
+            var retry = queue.add(batch("p1", 1));
+            assertTrue(retry.isDone());
+            var error = assertThrows(ExecutionException.class, retry::get);
+            assertInstanceOf(BatchInProgressException.class, error.getCause());
+            assertEquals(1, queue.getDedupHits());
+
+            // The failed batch may be sent again, and is written again
+            pending.complete(null);
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+            assertThrows(ExecutionException.class, first::get);
+            var resent = queue.add(batch("p1", 1));
+            error = assertThrows(ExecutionException.class, () -> resent.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, error.getCause());
+        }
+    }
+
+    /** A queue that writes each batch right away and commits its ids to the store. */
+    private static BulkIngestQueue<String, MockWriteResult> queue(ProducerDedupConfig config, MutableClock clock)
+            throws IOException {
+        var store = ProducerSequenceStore.open(config, "queue");
+        return new BulkIngestQueue<>("queue", 1, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE,
+                Duration.ofSeconds(1), new DeterministicScheduler(), clock,
+                IngestionQueueOptions.DEFAULT.withProducerDedup(config).withSequenceStore(store)) {
+            @Override
+            public void write(WriteTask<String, MockWriteResult> writeTask) {
+                try {
+                    commitSequences(writeTask.bucket());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                writeTask.bucket().futures().forEach(f -> f.complete(new MockWriteResult(writeTask.taskId(), writeTask.size())));
+            }
+
+            @Override
+            public void close() throws Exception {
+                try {
+                    super.close();
+                } finally {
+                    store.close();
+                }
+            }
+        };
+    }
+}
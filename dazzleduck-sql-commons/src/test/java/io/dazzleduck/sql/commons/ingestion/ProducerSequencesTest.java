@@ -0,0 +1,100 @@
+package io.dazzleduck.sql.commons.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static io.dazzleduck.sql.commons.ingestion.ProducerSequences.Seen.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProducerSequencesTest {
+
+    @Test
+    public void testWindowOfOneRequiresIncreasingIds() {
+        var sequences = new ProducerSequences(1, 10);
+        assertEquals(NEW, sequences.check("p1", 5));
+        sequences.mark("p1", 5);
+        assertEquals(DUPLICATE, sequences.check("p1", 5));
+        assertEquals(TOO_OLD, sequences.check("p1", 4));
+        assertEquals(NEW, sequences.check("p1", 6));
+        assertEquals(NEW, sequences.check("p2", 5));
+        assertEquals(5, sequences.highest("p1"));
+        assertEquals(-1, sequences.highest("p2"));
+    }
+
+    @Test
+    public void testIdsMayArriveOutOfOrderWithinWindow() {
+        var sequences = new ProducerSequences(64, 10);
+        sequences.mark("p1", 10);
+        sequences.mark("p1", 8);
+        assertEquals(DUPLICATE, sequences.check("p1", 8));
+        assertEquals(NEW, sequences.check("p1", 9));
+        assertEquals(DUPLICATE, sequences.check("p1", 10));
+
+        sequences.mark("p1", 100);
+        assertEquals(TOO_OLD, sequences.check("p1", 36));
+        assertEquals(NEW, sequences.check("p1", 37));
+        assertEquals(DUPLICATE, sequences.check("p1", 100));
+
+        // Advancing past the ring clears the slots the old ids used
+        sequences.mark("p1", 164);
+        assertEquals(NEW, sequences.check("p1", 136));
+    }
+
+    @Test
+    public void testUnmarkAllowsRetryOfFailedBatch() {
+        var sequences = new ProducerSequences(16, 10);
+        sequences.mark("p1", 1);
+        sequences.mark("p1", 2);
+        sequences.unmark("p1", 1);
+        assertEquals(NEW, sequences.check("p1", 1));
+        assertEquals(DUPLICATE, sequences.check("p1", 2));
+    }
+
+    @Test
+    public void testMarkThroughMarksEveryIdUpToHighest() {
+        var sequences = new ProducerSequences(8, 10);
+        sequences.markThrough("p1", 20);
+        for (long id = 13; id <= 20; id++) {
+            assertEquals(DUPLICATE, sequences.check("p1", id));
+        }
+        assertEquals(TOO_OLD, sequences.check("p1", 12));
+        assertEquals(NEW, sequences.check("p1", 21));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedProducerIsDropped() {
+        var sequences = new ProducerSequences(4, 2);
+        sequences.mark("p1", 1);
+        sequences.mark("p2", 1);
+        sequences.check("p1", 1);
+        sequences.mark("p3", 1);
+        assertEquals(2, sequences.size());
+        assertEquals(DUPLICATE, sequences.check("p1", 1));
+        assertEquals(NEW, sequences.check("p2", 1));
+    }
+
+    @Test
+    public void testReadRestoresIdsIntoDifferentWindow() throws Exception {
+        var written = new ProducerSequences(128, 10);
+        written.mark("p1", 200);
+        written.mark("p1", 150);
+        written.mark("p1", 90);
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            written.write(out);
+        }
+
+        var read = new ProducerSequences(64, 10);
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.read(in);
+        }
+        assertEquals(200, read.highest("p1"));
+        assertEquals(DUPLICATE, read.check("p1", 150));
+        assertEquals(NEW, read.check("p1", 151));
+        assertEquals(TOO_OLD, read.check("p1", 90));
+    }
+}
@@ -0,0 +1,124 @@
+package io.dazzleduck.sql.commons.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.benchmark.BenchmarkUtil;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.duckdb.DuckDBConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * Compares the per-cell Jackson writer that {@code JsonOutputStreamListener} used before
+ * {@link JsonEncoder} against the column-at-a-time encoder, on TPC-DS {@code store_sales} and
+ * {@code customer} (numeric, decimal, date and string heavy respectively).
+ */
+public class JsonEncoderBenchmark {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        final int iteration = 3;
+        String benchmark = "tpcds";
+        String genFun = "dsdgen";
+        String scaleFactor = "0.1";
+        String outputPath = String.format("/tmp/%s_sf%s", benchmark, scaleFactor);
+
+        var path = Paths.get(outputPath);
+        if (!Files.exists(path)) {
+            System.out.println("Creating dir: " + path);
+            Files.createDirectories(path);
+            BenchmarkUtil.createBenchmarkData(benchmark, genFun, scaleFactor, outputPath);
+        }
+
+        for (String table : new String[]{"store_sales", "customer"}) {
+            String sql = String.format("select * from read_parquet('%s/%s.parquet')", outputPath, table);
+            bench(table + " jackson", iteration, sql, false);
+            bench(table + " encoder", iteration, sql, true);
+        }
+    }
+
+    private static void bench(String name, int iteration, String sql, boolean encoder) throws Exception {
+        // warm up
+        long rows = run(sql, encoder);
+        long start = System.nanoTime();
+        for (int i = 0; i < iteration; i++) {
+            run(sql, encoder);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / iteration;
+        System.out.printf("%-20s %12.0f rows/s%n", name, rows / seconds);
+    }
+
+    private static long run(String sql, boolean encoder) throws Exception {
+        long rows = 0;
+        try (DuckDBConnection conn = ConnectionPool.getConnection();
+             BufferAllocator allocator = new RootAllocator();
+             ArrowReader reader = ConnectionPool.getReader(conn, allocator, sql, 64 * 1024)) {
+            var root = reader.getVectorSchemaRoot();
+            var out = OutputStream.nullOutputStream();
+            if (encoder) {
+                var json = new JsonEncoder(out);
+                json.writeStartArray();
+                while (reader.loadNextBatch()) {
+                    rows += json.writeRows(root, Integer.MAX_VALUE);
+                }
+                json.writeEndArray();
+                json.flush();
+            } else {
+                try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+                    generator.writeStartArray();
+                    while (reader.loadNextBatch()) {
+                        rows += writeRowsPerCell(root, generator);
+                    }
+                    generator.writeEndArray();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** The previous listener's row loop, reduced to the types present in the benchmark tables. */
+    private static int writeRowsPerCell(VectorSchemaRoot root, JsonGenerator generator) throws IOException {
+        int rowCount = root.getRowCount();
+        for (int row = 0; row < rowCount; row++) {
+            generator.writeStartObject();
+            for (FieldVector vector : root.getFieldVectors()) {
+                String name = vector.getName();
+                if (vector.isNull(row)) {
+                    generator.writeNullField(name);
+                    continue;
+                }
+                switch (vector.getMinorType()) {
+                    case INT -> generator.writeNumberField(name, ((IntVector) vector).get(row));
+                    case BIGINT -> generator.writeNumberField(name, ((BigIntVector) vector).get(row));
+                    case FLOAT8 -> generator.writeNumberField(name, ((Float8Vector) vector).get(row));
+                    case VARCHAR -> generator.writeStringField(name, ((VarCharVector) vector).getObject(row).toString());
+                    case DATEDAY -> generator.writeStringField(name,
+                            LocalDate.ofEpochDay(((DateDayVector) vector).get(row)).toString());
+                    default -> {
+                        generator.writeFieldName(name);
+                        MAPPER.writeValue(generator, vector.getObject(row));
+                    }
+                }
+            }
+            generator.writeEndObject();
+        }
+        return rowCount;
+    }
+}
@@ -0,0 +1,101 @@
+package io.dazzleduck.sql.commons.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dazzleduck.sql.commons.ConnectionPool;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.duckdb.DuckDBConnection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonEncoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static String render(String sql, int batchSize, int maxRows) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (DuckDBConnection conn = ConnectionPool.getConnection();
+             BufferAllocator allocator = new RootAllocator();
+             ArrowReader reader = ConnectionPool.getReader(conn, allocator, sql, batchSize)) {
+            var root = reader.getVectorSchemaRoot();
+            var json = new JsonEncoder(out);
+            json.writeStartArray();
+            int remaining = maxRows;
+            while (remaining > 0 && reader.loadNextBatch()) {
+                remaining -= json.writeRows(root, remaining);
+            }
+            json.writeEndArray();
+            json.flush();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String render(String sql) throws Exception {
+        return render(sql, 1024, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void scalars() throws Exception {
+        var sql = """
+                SELECT 1::TINYINT AS a, -2::SMALLINT AS b, 3 AS c, -9223372036854775808::BIGINT AS d,
+                       1.5::FLOAT AS e, 'nan'::DOUBLE AS f, true AS g, DATE '2024-02-29' AS h,
+                       'q"\\' || chr(10) || chr(1) || 'é' AS i, NULL::INTEGER AS j,
+                       255::UTINYINT AS k, 18446744073709551615::UBIGINT AS l""";
+        assertEquals("[{\"a\":1,\"b\":-2,\"c\":3,\"d\":-9223372036854775808,\"e\":1.5,\"f\":\"NaN\",\"g\":true,"
+                        + "\"h\":\"2024-02-29\",\"i\":\"q\\\"\\\\\\n\\u0001é\",\"j\":null,\"k\":255,"
+                        + "\"l\":18446744073709551615}]",
+                render(sql));
+    }
+
+    @Test
+    void decimalsAreWrittenInPlainNotation() throws Exception {
+        var sql = "SELECT 12.34::DECIMAL(10, 2) AS a, -0.05::DECIMAL(18, 2) AS b, 7::DECIMAL(4, 0) AS c, "
+                + "1234567890123456789012.345::DECIMAL(38, 3) AS d";
+        assertEquals("[{\"a\":12.34,\"b\":-0.05,\"c\":7,\"d\":1234567890123456789012.345}]", render(sql));
+    }
+
+    @Test
+    void temporalValuesAreIsoStrings() throws Exception {
+        var sql = "SELECT TIMESTAMP '2024-01-02 03:04:05.5' AS ts, TIMESTAMPTZ '2024-01-02 03:04:05+00' AS tz, "
+                + "TIME '12:34:56' AS t, [DATE '1999-12-31'] AS d";
+        assertEquals("[{\"ts\":\"2024-01-02T03:04:05.500\",\"tz\":\"2024-01-02T03:04:05Z\",\"t\":\"12:34:56\","
+                + "\"d\":[\"1999-12-31\"]}]", render(sql));
+    }
+
+    @Test
+    void nestedTypes() throws Exception {
+        var sql = "SELECT [1, NULL, 3] AS l, {'x': 1, 'y': 'z'} AS s, MAP {'k': 1} AS m, "
+                + "[{'a': [1]}, NULL] AS n, NULL::INTEGER[] AS e";
+        assertEquals("[{\"l\":[1,null,3],\"s\":{\"x\":1,\"y\":\"z\"},\"m\":[{\"key\":\"k\",\"value\":1}],"
+                + "\"n\":[{\"a\":[1]},null],\"e\":null}]", render(sql));
+    }
+
+    @Test
+    void rowsAcrossBatches() throws Exception {
+        var sql = "SELECT i, 'v' || i AS v FROM range(25) r(i) ORDER BY i";
+        var rows = MAPPER.readTree(render(sql, 7, Integer.MAX_VALUE));
+        assertEquals(25, rows.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, rows.get(i).get("i").asInt());
+            assertEquals("v" + i, rows.get(i).get("v").asText());
+        }
+        assertEquals(10, MAPPER.readTree(render(sql, 7, 10)).size());
+    }
+
+    @Test
+    void cellsLargerThanTheOutputBuffer() throws Exception {
+        var rows = MAPPER.readTree(render("SELECT repeat('x\"', 100000) AS big FROM range(2)"));
+        assertEquals(2, rows.size());
+        assertEquals("x\"".repeat(100000), rows.get(1).get("big").asText());
+    }
+
+    @Test
+    void emptyResult() throws Exception {
+        assertEquals("[]", render("SELECT 1 AS a WHERE false"));
+    }
+}
@@ -0,0 +1,74 @@
+package io.dazzleduck.sql.commons.io;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.duckdb.DuckDBConnection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TsvEncoderTest {
+
+    /** Covers every fast path plus the formatValue fallback, with nulls in each column. */
+    private static final String SQL = """
+            SELECT i::TINYINT AS t, (i * -300)::SMALLINT AS s, (i * 70000)::INTEGER AS n,
+                   CASE WHEN i = 3 THEN -9223372036854775808 ELSE i * -12345678901 END::BIGINT AS b,
+                   (i / 3)::FLOAT AS f, (i / 7)::DOUBLE AS d, i % 2 = 0 AS bool,
+                   DATE '0999-12-31' + i * 400 AS dt, 'row ' || i || ' é ✓' AS v,
+                   (i * 1.25)::DECIMAL(10, 2) AS dec, TIMESTAMP '2024-01-01 00:00:00' + i * INTERVAL 1 HOUR AS ts,
+                   [i, i + 1] AS l
+            FROM range(20) r(i)
+            UNION ALL
+            SELECT NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL
+            ORDER BY t NULLS FIRST""";
+
+    private static String render(String sql, int batchSize, boolean encoder) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (DuckDBConnection conn = ConnectionPool.getConnection();
+             BufferAllocator allocator = new RootAllocator();
+             ArrowReader reader = ConnectionPool.getReader(conn, allocator, sql, batchSize)) {
+            var root = reader.getVectorSchemaRoot();
+            if (encoder) {
+                var tsv = new TsvEncoder(out);
+                tsv.writeHeader(root);
+                while (reader.loadNextBatch()) {
+                    tsv.writeRows(root);
+                }
+                tsv.flush();
+            } else {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                ResultStreams.writeTsvHeader(root, writer);
+                while (reader.loadNextBatch()) {
+                    ResultStreams.writeTsvRows(root, writer);
+                }
+                writer.flush();
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void matchesPerCellFormatting() throws Exception {
+        var expected = render(SQL, 7, false);
+        assertEquals(expected, render(SQL, 7, true));
+        assertEquals(22, expected.split("\n").length);
+    }
+
+    @Test
+    void cellsLargerThanTheOutputBuffer() throws Exception {
+        var sql = "SELECT repeat('x', 100000 + i) AS big, i FROM range(3) r(i) ORDER BY i";
+        assertEquals(render(sql, 2, false), render(sql, 2, true));
+    }
+
+    @Test
+    void emptyResultWritesOnlyTheHeader() throws Exception {
+        assertEquals("a\tb\n", render("SELECT 1 AS a, 'x' AS b WHERE false", 10, true));
+    }
+}
@@ -0,0 +1,183 @@
+package io.dazzleduck.sql.commons.planner;
+
+import io.dazzleduck.sql.commons.FileStatus;
+import io.dazzleduck.sql.commons.planner.BalancedSplitPlanner.FileRange;
+import io.dazzleduck.sql.commons.planner.BalancedSplitPlanner.RowGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Split balance on skewed file size distributions, measured as the coefficient of variation of split
+ * sizes and the ratio of the largest split to the mean, against closing a split once it overflows.
+ */
+public class BalancedSplitPlannerTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long MAX_SPLIT_SIZE = 256 * MB;
+
+    private static List<FileStatus> files(int count, LongSupplier size) {
+        var result = new ArrayList<FileStatus>();
+        for (int i = 0; i < count; i++) {
+            result.add(new FileStatus("f" + i + ".parquet", Math.max(1, size.getAsLong()), (long) i));
+        }
+        return result;
+    }
+
+    /** Row groups of {@code rowGroupSize} bytes and 1000 rows each, the last one partial. */
+    private static BalancedSplitPlanner.RowGroupReader rowGroups(List<FileStatus> files, long rowGroupSize) {
+        Map<String, Long> sizes = new HashMap<>();
+        files.forEach(f -> sizes.put(f.fileName(), f.size()));
+        return fileName -> {
+            var groups = new ArrayList<RowGroup>();
+            for (long remaining = sizes.get(fileName); remaining > 0; remaining -= rowGroupSize) {
+                long bytes = Math.min(remaining, rowGroupSize);
+                groups.add(new RowGroup(Math.max(1, 1000 * bytes / rowGroupSize), bytes));
+            }
+            return groups;
+        };
+    }
+
+    /** The planner this replaces: a split is closed once it exceeds the maximum. */
+    private static List<Long> greedySizes(List<FileStatus> files) {
+        var result = new ArrayList<Long>();
+        long current = 0;
+        for (var file : files) {
+            current += file.size();
+            if (current > MAX_SPLIT_SIZE) {
+                result.add(current);
+                current = 0;
+            }
+        }
+        if (current > 0) {
+            result.add(current);
+        }
+        return result;
+    }
+
+    private static List<Long> sizes(List<List<FileRange>> splits) {
+        return splits.stream().map(s -> s.stream().mapToLong(FileRange::size).sum()).toList();
+    }
+
+    private static double coefficientOfVariation(List<Long> sizes) {
+        double mean = sizes.stream().mapToLong(Long::longValue).average().orElse(0);
+        double variance = sizes.stream().mapToDouble(s -> (s - mean) * (s - mean)).average().orElse(0);
+        return mean == 0 ? 0 : Math.sqrt(variance) / mean;
+    }
+
+    private static double maxOverMean(List<Long> sizes) {
+        double mean = sizes.stream().mapToLong(Long::longValue).average().orElse(0);
+        return Collections.max(sizes) / mean;
+    }
+
+    private static void assertCovers(List<FileStatus> files, List<List<FileRange>> splits) {
+        long total = files.stream().mapToLong(FileStatus::size).sum();
+        assertEquals(total, sizes(splits).stream().mapToLong(Long::longValue).sum(), 1.0 * splits.size());
+        for (var file : files) {
+            var ranges = splits.stream().flatMap(List::stream).filter(r -> r.file().equals(file))
+                    .sorted((a, b) -> Long.compare(a.startRow(), b.startRow())).toList();
+            assertFalse(ranges.isEmpty(), "missing " + file);
+            if (ranges.size() > 1) {
+                long row = 0;
+                for (var range : ranges) {
+                    assertEquals(row, range.startRow(), "ranges of " + file.fileName() + " must be contiguous");
+                    row = range.endRow();
+                }
+            } else {
+                assertTrue(ranges.get(0).isWholeFile());
+            }
+        }
+    }
+
+    /** Both plans' split count, coefficient of variation and max/mean, for assertion messages. */
+    private static String summary(List<Long> greedy, List<Long> balanced) {
+        return "greedy: %d splits cv %.3f max/mean %.2f, balanced: %d splits cv %.3f max/mean %.2f".formatted(
+                greedy.size(), coefficientOfVariation(greedy), maxOverMean(greedy),
+                balanced.size(), coefficientOfVariation(balanced), maxOverMean(balanced));
+    }
+
+    @Test
+    public void testLogNormalSizes() {
+        var random = new Random(7);
+        var files = files(2000, () -> (long) (Math.exp(random.nextGaussian() * 1.5) * 4 * MB));
+        var splits = BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, rowGroups(files, 64 * MB));
+        assertCovers(files, splits);
+        var balanced = sizes(splits);
+        var greedy = greedySizes(files);
+        assertTrue(coefficientOfVariation(balanced) < 0.1, summary(greedy, balanced));
+        assertTrue(coefficientOfVariation(balanced) < coefficientOfVariation(greedy), summary(greedy, balanced));
+    }
+
+    @Test
+    public void testParetoSizesWithGiantFiles() {
+        var random = new Random(11);
+        var files = files(500, () -> (long) (MB / Math.pow(1 - random.nextDouble(), 1 / 1.1)));
+        var splits = BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, rowGroups(files, 32 * MB));
+        assertCovers(files, splits);
+        var balanced = sizes(splits);
+        var greedy = greedySizes(files);
+        assertTrue(maxOverMean(balanced) < 1.5, summary(greedy, balanced));
+        assertTrue(maxOverMean(balanced) < maxOverMean(greedy), summary(greedy, balanced));
+    }
+
+    @Test
+    public void testOneGiantFileAmongSmallOnes() {
+        var files = new ArrayList<>(files(100, () -> 2 * MB));
+        files.add(new FileStatus("giant.parquet", 10 * 1024 * MB, 1000L));
+        var splits = BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, rowGroups(files, 128 * MB));
+        assertCovers(files, splits);
+        var balanced = sizes(splits);
+        var greedy = greedySizes(files);
+        // The giant file is read by many splits instead of being one straggler
+        assertTrue(splits.stream().filter(s -> s.get(0).file().fileName().equals("giant.parquet")).count() > 10,
+                summary(greedy, balanced));
+        assertTrue(Collections.max(balanced) <= MAX_SPLIT_SIZE + 128 * MB, summary(greedy, balanced));
+        assertTrue(splits.stream().filter(s -> !s.get(0).isWholeFile()).allMatch(s -> s.size() == 1),
+                "a split reading part of a file reads nothing else");
+    }
+
+    @Test
+    public void testLastSplitIsNotTiny() {
+        // 7 files of 100 MB: closing on overflow gives 3, 3 and 1 files; packing gives 3, 2 and 2
+        var files = files(7, () -> 100 * MB);
+        var balanced = sizes(BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, null));
+        assertEquals(3, balanced.size());
+        assertTrue(Collections.min(balanced) >= 200 * MB);
+    }
+
+    @Test
+    public void testGiantFilesStayWholeWithoutRowGroups() {
+        var files = files(4, () -> 1024 * MB);
+        var splits = BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, fileName -> {
+            throw new java.sql.SQLException("not parquet");
+        });
+        assertEquals(4, splits.size());
+        assertTrue(splits.stream().allMatch(s -> s.size() == 1 && s.get(0).isWholeFile()));
+        var single = BalancedSplitPlanner.plan(files.subList(0, 1), MAX_SPLIT_SIZE,
+                fileName -> List.of(new RowGroup(10L, 1024 * MB)));
+        assertEquals(1, single.size());
+    }
+
+    @Test
+    public void testSplitsAreOrderedByAge() {
+        var files = files(50, () -> 30 * MB);
+        var splits = BalancedSplitPlanner.plan(files, MAX_SPLIT_SIZE, null);
+        assertTrue(BalancedSplitPlanner.plan(List.of(), MAX_SPLIT_SIZE, null).isEmpty());
+        for (int i = 1; i < splits.size(); i++) {
+            assertTrue(splits.get(i - 1).get(0).file().lastModified() <= splits.get(i).get(0).file().lastModified());
+        }
+        for (var split : splits) {
+            for (int i = 1; i < split.size(); i++) {
+                assertTrue(split.get(i - 1).file().lastModified() <= split.get(i).file().lastModified());
+            }
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package io.dazzleduck.sql.commons.planner;
 
+import io.dazzleduck.sql.commons.ConnectionPool;
 import io.dazzleduck.sql.commons.Transformations;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 import static io.dazzleduck.sql.commons.util.TestConstants.SUPPORTED_DELTA_PATH_QUERY;
 import static io.dazzleduck.sql.commons.util.TestConstants.SUPPORTED_HIVE_PATH_QUERY;
 
 public class SplitPlannerTest {
+
+    public record Totals(Long c, Long s) {
+    }
+
     @Test
     public void testSplitHive() throws SQLException, IOException {
         var splits = SplitPlanner.getSplitTreeAndSize(Transformations.parseToTree(SUPPORTED_HIVE_PATH_QUERY), 1024 * 1024 * 1024);
@@ -25,4 +33,27 @@ public class SplitPlannerTest {
         Assertions.assertEquals(1, splits.size());
         Assertions.assertEquals(5378, splits.get(0).size());
     }
+
+    @Test
+    public void testSplitLargeFileOnRowGroups(@TempDir Path dir) throws SQLException, IOException {
+        var file = dir.resolve("large.parquet");
+        ConnectionPool.execute(("COPY (SELECT range AS id, md5(range::VARCHAR) AS v FROM range(100000)) " +
+                "TO '%s' (FORMAT parquet, ROW_GROUP_SIZE 10000)").formatted(file));
+        long size = Files.size(file);
+        var sql = "SELECT count(*) AS c, cast(sum(id) AS BIGINT) AS s FROM read_parquet('%s')".formatted(dir);
+        var splits = SplitPlanner.getSplitTreeAndSize(Transformations.parseToTree(sql), size / 4);
+        Assertions.assertTrue(splits.size() > 1, "Expected the file to be read by several splits");
+        long count = 0;
+        long sum = 0;
+        try (var connection = ConnectionPool.getConnection()) {
+            for (var split : splits) {
+                for (var totals : ConnectionPool.collectAll(connection, Transformations.parseToSql(split.tree()), Totals.class)) {
+                    count += totals.c();
+                    sum += totals.s();
+                }
+            }
+        }
+        Assertions.assertEquals(100000, count);
+        Assertions.assertEquals(4999950000L, sum);
+    }
 }
@@ -120,6 +120,83 @@ public interface FlightRecorder {
      */
     void recordQueueDeleted(String queueId);
 
+    // ---------------------------------------------------------------------------
+    // Query Result Cache Metrics
+    // ---------------------------------------------------------------------------
+
+    /**
+     * Records a statement served from the query result cache.
+     *
+     * @param bytes size of the cached Arrow IPC stream
+     */
+    void recordCacheHit(long bytes);
+
+    /**
+     * Records a cacheable statement that was not found in the query result cache.
+     */
+    void recordCacheMiss();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    // ---------------------------------------------------------------------------
+    // Streaming Backpressure Metrics
+    // ---------------------------------------------------------------------------
+
+    /**
+     * Records a result stream pausing until a slow client drained the transport.
+     *
+     * @param waitNanos time spent waiting
+     */
+    void recordBackpressureWait(long waitNanos);
+
+    /**
+     * Records the peak direct memory held by one result stream when it ends.
+     *
+     * @param bytes peak allocation of the stream's allocator
+     */
+    void recordStreamPeakMemory(long bytes);
+
+    long getBackpressureWaits();
+
+    /**
+     * @return the largest per-stream peak allocation seen so far
+     */
+    long getMaxStreamPeakMemory();
+
+    // ---------------------------------------------------------------------------
+    // Query Admission Metrics
+    // ---------------------------------------------------------------------------
+
+    /**
+     * Records a statement starting to execute after passing admission control.
+     *
+     * @param queueWaitNanos time spent queued behind the tenant's concurrency limit (0 if none)
+     */
+    void recordQueryAdmitted(long queueWaitNanos);
+
+    /**
+     * Records a statement turned away because its tenant's wait queue was full.
+     */
+    void recordQueryRejected();
+
+    long getAdmittedQueries();
+
+    long getRejectedQueries();
+
+    // ---------------------------------------------------------------------------
+    // Query Coalescing Metrics
+    // ---------------------------------------------------------------------------
+
+    /**
+     * Records a statement served by joining an identical statement that was already executing,
+     * i.e. one DuckDB execution saved.
+     */
+    void recordQueryCoalesced();
+
+    long getCoalescedQueries();
+
     long getIngestRequests();
 
     long getIngestErrors();
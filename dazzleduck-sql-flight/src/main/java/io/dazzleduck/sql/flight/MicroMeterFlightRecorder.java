@@ -1,5 +1,13 @@
 package io.dazzleduck.sql.flight;
 
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.SessionPool;
+import io.dazzleduck.sql.commons.SqlParseCache;
+import io.dazzleduck.sql.commons.Transformations;
+import io.dazzleduck.sql.commons.delta.DeltaSnapshotCache;
+import io.dazzleduck.sql.commons.delta.PartitionPruning;
+import io.dazzleduck.sql.commons.hive.HiveFileListingCache;
+import io.dazzleduck.sql.commons.hive.HivePartitionPruning;
 import io.dazzleduck.sql.flight.model.StatementAudit;
 import io.dazzleduck.sql.flight.server.DuckDBFlightSqlProducer.CacheKey;
 import io.dazzleduck.sql.flight.server.StatementContext;
@@ -14,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.LongSupplier;
 
@@ -65,6 +74,26 @@ public class MicroMeterFlightRecorder implements FlightRecorder {
     private final LongAdder queueRefreshedCount = new LongAdder();
     private final LongAdder queueDeletedCount = new LongAdder();
 
+    // Query result cache metrics
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder cacheMissCount = new LongAdder();
+    private final LongAdder cacheBytesOut = new LongAdder();
+
+    // Streaming backpressure metrics
+    private final LongAdder backpressureWaitCount = new LongAdder();
+    private final LongAdder backpressureWaitMs = new LongAdder();
+    private final LongAccumulator maxStreamPeakMemory = new LongAccumulator(Long::max, 0);
+    private final DistributionSummary streamPeakMemory;
+
+    // Query admission metrics
+    private final LongAdder admittedQueryCount = new LongAdder();
+    private final LongAdder queuedQueryCount = new LongAdder();
+    private final LongAdder rejectedQueryCount = new LongAdder();
+    private final Timer admissionWait;
+
+    // Query coalescing metrics
+    private final LongAdder coalescedQueryCount = new LongAdder();
+
     /**
      * Per-queue write-queue meters, tracked so {@link #unregisterWriteQueue} can remove them when a
      * (dynamic) queue is deleted. Without this, each deleted queue leaks its meters and — because
@@ -123,6 +152,31 @@ public class MicroMeterFlightRecorder implements FlightRecorder {
         registerAdder("queue_created", queueCreatedCount);
         registerAdder("queue_refreshed", queueRefreshedCount);
         registerAdder("queue_deleted", queueDeletedCount);
+        registerAdder("cache_hit", cacheHitCount);
+        registerAdder("cache_miss", cacheMissCount);
+        registerAdder("cache_bytes_out", cacheBytesOut);
+        registerAdder("backpressure_wait", backpressureWaitCount);
+        registerAdder("backpressure_wait_ms", backpressureWaitMs);
+        Gauge.builder("dazzleduck.flight.stream_peak_memory_max", maxStreamPeakMemory, LongAccumulator::get)
+                .description("Largest direct memory held by a single result stream")
+                .baseUnit("bytes")
+                .register(registry);
+        this.streamPeakMemory = DistributionSummary.builder("dazzleduck.flight.stream_peak_memory")
+                .description("Peak direct memory held by each result stream")
+                .baseUnit("bytes")
+                .register(registry);
+        registerAdder("admission_admitted", admittedQueryCount);
+        registerAdder("admission_queued", queuedQueryCount);
+        registerAdder("admission_rejected", rejectedQueryCount);
+        this.admissionWait = Timer.builder("dazzleduck.flight.admission_wait")
+                .description("Time statements spent queued behind their tenant's concurrency limit")
+                .register(registry);
+        registerAdder("coalesced_queries", coalescedQueryCount);
+
+        registerParseCache(Transformations.PARSE_CACHE);
+        registerSessionPool(ConnectionPool.getSessionPool());
+        registerHiveListingCache(HivePartitionPruning.LISTING_CACHE);
+        registerDeltaSnapshotCache(PartitionPruning.SNAPSHOT_CACHE);
 
         logger.info("MicroMeterFlightRecorder initialized for producer '{}'", producerId);
     }
@@ -172,6 +226,118 @@ public class MicroMeterFlightRecorder implements FlightRecorder {
                 .register(registry);
     }
 
+    /**
+     * Exposes the process-wide SQL parse cache. The cache keeps its own counters, so these meters
+     * read it directly instead of mirroring it in LongAdders.
+     */
+    private void registerParseCache(SqlParseCache cache) {
+        FunctionCounter.builder("dazzleduck.flight.parse_cache_tree_hit.count", cache, SqlParseCache::getTreeHits)
+                .description("SQL to tree parse cache hits")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.parse_cache_tree_miss.count", cache, SqlParseCache::getTreeMisses)
+                .description("SQL to tree parse cache misses")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.parse_cache_sql_hit.count", cache, SqlParseCache::getSqlHits)
+                .description("Tree to SQL parse cache hits")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.parse_cache_sql_miss.count", cache, SqlParseCache::getSqlMisses)
+                .description("Tree to SQL parse cache misses")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.parse_cache_eviction.count", cache, SqlParseCache::getEvictions)
+                .description("Parse cache entries evicted to stay within budget")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.parse_cache_hit_rate", cache, SqlParseCache::getHitRate)
+                .description("Parse cache hit rate across both directions")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.parse_cache_bytes", cache, c -> (double) c.getEstimatedBytes())
+                .description("Estimated bytes held by the parse cache")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.parse_cache_entries", cache, c -> (double) c.getEntryCount())
+                .description("Entries held by the parse cache")
+                .register(registry);
+    }
+
+    /**
+     * Exposes the process-wide pool of database/schema-bound connections.
+     */
+    private void registerSessionPool(SessionPool pool) {
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_acquired.count", pool, SessionPool::getAcquired)
+                .description("Connections handed out by the pool")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_created.count", pool, SessionPool::getCreated)
+                .description("Connections opened by the pool")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_reused.count", pool, SessionPool::getReused)
+                .description("Acquisitions served by an idle connection")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_discarded.count", pool, SessionPool::getDiscarded)
+                .description("Connections closed by the pool")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_timeout.count", pool, SessionPool::getTimeouts)
+                .description("Acquisitions that timed out waiting for a connection")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.connection_pool_wait_ms.count", pool, p -> p.getAcquireWaitNanos() / 1_000_000.0)
+                .description("Total time spent waiting to acquire a connection")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.connection_pool_active", pool, p -> (double) p.getActive())
+                .description("Connections currently checked out")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.connection_pool_idle", pool, p -> (double) p.getIdle())
+                .description("Idle connections held by the pool")
+                .register(registry);
+    }
+
+    /**
+     * Exposes the process-wide cache of hive table file listings.
+     */
+    private void registerHiveListingCache(HiveFileListingCache cache) {
+        FunctionCounter.builder("dazzleduck.flight.hive_listing_lookup.count", cache, HiveFileListingCache::getLookups)
+                .description("Hive table listings served by the listing cache")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.hive_listing_full.count", cache, HiveFileListingCache::getFullListings)
+                .description("Hive tables listed from scratch, because not cached or past their TTL")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.hive_listing_relisted_dirs.count", cache, HiveFileListingCache::getRelistedDirectories)
+                .description("Partition directories listed by the listing cache")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.hive_listing_ms.count", cache, HiveFileListingCache::getListingMillis)
+                .description("Total time spent checking and listing hive table directories")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.hive_listing_eviction.count", cache, HiveFileListingCache::getEvictions)
+                .description("Hive table listings evicted to stay within max_files")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.hive_listing_tables", cache, c -> (double) c.getCachedTables())
+                .description("Hive table listings held by the listing cache")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.hive_listing_files", cache, c -> (double) c.getCachedFiles())
+                .description("Files held by the listing cache")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.hive_listing_staleness_ms", cache, c -> (double) c.getStalenessMillis())
+                .description("Age of the oldest full hive table listing held")
+                .register(registry);
+    }
+
+    /**
+     * Exposes the process-wide cache of Delta table snapshots and scan files.
+     */
+    private void registerDeltaSnapshotCache(DeltaSnapshotCache cache) {
+        FunctionCounter.builder("dazzleduck.flight.delta_snapshot_lookup.count", cache, DeltaSnapshotCache::getLookups)
+                .description("Delta table lookups served by the snapshot cache")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.delta_snapshot_load.count", cache, DeltaSnapshotCache::getSnapshotLoads)
+                .description("Delta snapshots loaded, for new tables or new commits")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.delta_scan_hit.count", cache, DeltaSnapshotCache::getScanHits)
+                .description("Delta scans reused from the same snapshot version and filter")
+                .register(registry);
+        FunctionCounter.builder("dazzleduck.flight.delta_scan.count", cache, DeltaSnapshotCache::getKernelScans)
+                .description("Delta scans run against the kernel")
+                .register(registry);
+        Gauge.builder("dazzleduck.flight.delta_snapshot_tables", cache, c -> (double) c.getCachedTables())
+                .description("Delta tables held by the snapshot cache")
+                .register(registry);
+    }
+
     // ---------------------------------------------------------------------------
     // Recording Methods - Statement Lifecycle with Audit Trail
     // ---------------------------------------------------------------------------
@@ -421,6 +587,83 @@ public class MicroMeterFlightRecorder implements FlightRecorder {
         logger.debug("Queue deleted: '{}'", queueId);
     }
 
+    @Override
+    public void recordCacheHit(long bytes) {
+        cacheHitCount.increment();
+        cacheBytesOut.add(bytes);
+    }
+
+    @Override
+    public void recordCacheMiss() {
+        cacheMissCount.increment();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHitCount.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMissCount.sum();
+    }
+
+    @Override
+    public void recordBackpressureWait(long waitNanos) {
+        backpressureWaitCount.increment();
+        backpressureWaitMs.add(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    @Override
+    public void recordStreamPeakMemory(long bytes) {
+        maxStreamPeakMemory.accumulate(bytes);
+        streamPeakMemory.record(bytes);
+    }
+
+    @Override
+    public long getBackpressureWaits() {
+        return backpressureWaitCount.sum();
+    }
+
+    @Override
+    public long getMaxStreamPeakMemory() {
+        return maxStreamPeakMemory.get();
+    }
+
+    @Override
+    public void recordQueryAdmitted(long queueWaitNanos) {
+        admittedQueryCount.increment();
+        if (queueWaitNanos > 0) {
+            queuedQueryCount.increment();
+        }
+        admissionWait.record(queueWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordQueryRejected() {
+        rejectedQueryCount.increment();
+    }
+
+    @Override
+    public long getAdmittedQueries() {
+        return admittedQueryCount.sum();
+    }
+
+    @Override
+    public long getRejectedQueries() {
+        return rejectedQueryCount.sum();
+    }
+
+    @Override
+    public void recordQueryCoalesced() {
+        coalescedQueryCount.increment();
+    }
+
+    @Override
+    public long getCoalescedQueries() {
+        return coalescedQueryCount.sum();
+    }
+
     // ---------------------------------------------------------------------------
     // Additional Monitoring Accessors
     //
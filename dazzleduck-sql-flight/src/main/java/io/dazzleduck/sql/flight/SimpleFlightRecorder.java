@@ -4,6 +4,7 @@ import io.dazzleduck.sql.flight.server.DuckDBFlightSqlProducer.CacheKey;
 import io.dazzleduck.sql.flight.server.StatementContext;
 
 import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.LongSupplier;
 
@@ -45,6 +46,21 @@ public class SimpleFlightRecorder implements FlightRecorder {
     private final LongAdder queueRefreshedCount = new LongAdder();
     private final LongAdder queueDeletedCount = new LongAdder();
 
+    // Query result cache counters
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder cacheMissCount = new LongAdder();
+
+    // Streaming backpressure
+    private final LongAdder backpressureWaitCount = new LongAdder();
+    private final LongAccumulator maxStreamPeakMemory = new LongAccumulator(Long::max, 0);
+
+    // Query admission
+    private final LongAdder admittedQueryCount = new LongAdder();
+    private final LongAdder rejectedQueryCount = new LongAdder();
+
+    // Query coalescing
+    private final LongAdder coalescedQueryCount = new LongAdder();
+
     @Override
     public void recordStatementCancel(CacheKey key, StatementContext<?> ctx) {
         statementCancelCount.increment();
@@ -205,4 +221,74 @@ public class SimpleFlightRecorder implements FlightRecorder {
     public void recordQueueDeleted(String queueId) {
         queueDeletedCount.increment();
     }
+
+    @Override
+    public void recordCacheHit(long bytes) {
+        cacheHitCount.increment();
+    }
+
+    @Override
+    public void recordCacheMiss() {
+        cacheMissCount.increment();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHitCount.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMissCount.sum();
+    }
+
+    @Override
+    public void recordBackpressureWait(long waitNanos) {
+        backpressureWaitCount.increment();
+    }
+
+    @Override
+    public void recordStreamPeakMemory(long bytes) {
+        maxStreamPeakMemory.accumulate(bytes);
+    }
+
+    @Override
+    public long getBackpressureWaits() {
+        return backpressureWaitCount.sum();
+    }
+
+    @Override
+    public long getMaxStreamPeakMemory() {
+        return maxStreamPeakMemory.get();
+    }
+
+    @Override
+    public void recordQueryAdmitted(long queueWaitNanos) {
+        admittedQueryCount.increment();
+    }
+
+    @Override
+    public void recordQueryRejected() {
+        rejectedQueryCount.increment();
+    }
+
+    @Override
+    public long getAdmittedQueries() {
+        return admittedQueryCount.sum();
+    }
+
+    @Override
+    public long getRejectedQueries() {
+        return rejectedQueryCount.sum();
+    }
+
+    @Override
+    public void recordQueryCoalesced() {
+        coalescedQueryCount.increment();
+    }
+
+    @Override
+    public long getCoalescedQueries() {
+        return coalescedQueryCount.sum();
+    }
 }
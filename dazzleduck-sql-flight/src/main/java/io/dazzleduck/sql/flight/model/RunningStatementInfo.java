@@ -3,7 +3,12 @@ package io.dazzleduck.sql.flight.model;
 import java.time.Instant;
 
 public record RunningStatementInfo(String user, String statementId, Instant startInstant, String query, String action,
-                                   Instant endInstant) {
+                                   Instant endInstant, long allocatedBytes, long peakAllocatedBytes) {
+
+    public RunningStatementInfo(String user, String statementId, Instant startInstant, String query, String action,
+                                Instant endInstant) {
+        this(user, statementId, startInstant, query, action, endInstant, 0, 0);
+    }
 
     /**
      * Convenience constructor:
@@ -12,7 +17,13 @@ public record RunningStatementInfo(String user, String statementId, Instant star
      * else            → "COMPLETED"
      */
     public RunningStatementInfo(String user, String statementId, Instant startInstant, String query, boolean running, Object endInstant) {
+        this(user, statementId, startInstant, query, running, endInstant, 0, 0);
+    }
+
+    public RunningStatementInfo(String user, String statementId, Instant startInstant, String query, boolean running, Object endInstant,
+                                long allocatedBytes, long peakAllocatedBytes) {
 
-        this(user, statementId, startInstant, query, running ? "RUNNING" : (startInstant == null ? "OPEN" : "COMPLETED"), (endInstant instanceof Instant ei) ? ei : null);
+        this(user, statementId, startInstant, query, running ? "RUNNING" : (startInstant == null ? "OPEN" : "COMPLETED"), (endInstant instanceof Instant ei) ? ei : null,
+                allocatedBytes, peakAllocatedBytes);
     }
 }
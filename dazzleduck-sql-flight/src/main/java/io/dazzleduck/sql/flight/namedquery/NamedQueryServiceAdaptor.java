@@ -86,10 +86,9 @@ public interface NamedQueryServiceAdaptor {
     default CompletableFuture<Void> streamTsvNamedQuery(String name, Map<String, String> parameters,
                                                          FlightProducer.CallContext context,
                                                          Supplier<OutputStream> outputStreamSupplier) {
-        return TsvOutputStreamListener.pipeArrowToTsv(
-                pipe -> getStreamNamedQueryDirect(name, parameters, context, pipe,
-                        CompressionUtil.CodecType.NO_COMPRESSION),
-                outputStreamSupplier);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        getStreamNamedQuery(name, parameters, context, new TsvOutputStreamListener(outputStreamSupplier, future));
+        return future;
     }
 
     /** Signals that a named query template could not be found in the DB. */
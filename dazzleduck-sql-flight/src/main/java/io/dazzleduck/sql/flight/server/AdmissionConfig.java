@@ -0,0 +1,58 @@
+package io.dazzleduck.sql.flight.server;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control of statement execution ({@code dazzleduck_server.admission}).
+ *
+ * Statements are grouped by tenant: the value of the verified claim {@code tenantClaim}, or the
+ * peer identity when that is empty or the claim is absent. A tenant runs at most
+ * {@code maxConcurrentPerTenant} statements at once ({@code 0} = bounded only by the worker
+ * threads) and queues at most {@code maxQueuedPerTenant} more; beyond that statements are
+ * rejected. Free workers are handed to waiting tenants in weighted round-robin order.
+ *
+ * Disabled by default, which keeps the unbounded worker queue and never rejects statements.
+ */
+public record AdmissionConfig(
+        boolean enabled,
+        int maxConcurrentPerTenant,
+        int maxQueuedPerTenant,
+        String tenantClaim,
+        Map<String, Integer> weights
+) {
+
+    public static final AdmissionConfig DEFAULT = new AdmissionConfig(false, 0, 256, "", Map.of());
+
+    public AdmissionConfig {
+        weights = Map.copyOf(weights);
+    }
+
+    public int weightOf(String tenant) {
+        return Math.max(1, weights.getOrDefault(tenant, 1));
+    }
+
+    public static AdmissionConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.ADMISSION_KEY)) {
+            return DEFAULT;
+        }
+        var admission = config.getConfig(ConfigConstants.ADMISSION_KEY);
+        Map<String, Integer> weights = new HashMap<>();
+        if (admission.hasPath(ConfigConstants.ADMISSION_WEIGHTS_KEY)) {
+            var weightsConfig = admission.getObject(ConfigConstants.ADMISSION_WEIGHTS_KEY);
+            for (var tenant : weightsConfig.keySet()) {
+                weights.put(tenant, ((Number) weightsConfig.get(tenant).unwrapped()).intValue());
+            }
+        }
+        return new AdmissionConfig(
+                admission.getBoolean(ConfigConstants.ENABLED_KEY),
+                admission.getInt(ConfigConstants.ADMISSION_MAX_CONCURRENT_PER_TENANT_KEY),
+                admission.getInt(ConfigConstants.ADMISSION_MAX_QUEUED_PER_TENANT_KEY),
+                admission.getString(ConfigConstants.ADMISSION_TENANT_CLAIM_KEY),
+                weights
+        );
+    }
+}
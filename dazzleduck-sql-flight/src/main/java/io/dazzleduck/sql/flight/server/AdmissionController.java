@@ -0,0 +1,167 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.flight.FlightRecorder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Per-tenant admission control in front of the statement worker pool.
+ *
+ * <p>At most {@code workers} admitted statements are handed to the pool at once, so the pool's own
+ * FIFO queue never builds up and the order in which statements start is decided here. A tenant
+ * runs at most {@link AdmissionConfig#maxConcurrentPerTenant()} statements; further statements
+ * wait in a per-tenant queue of {@link AdmissionConfig#maxQueuedPerTenant()} entries and are
+ * rejected with {@link RejectedExecutionException} once it is full. When a worker frees up it
+ * goes to the tenants with waiting statements in weighted round-robin order: a tenant starts up
+ * to its weight in statements before the turn passes to the next one.
+ */
+final class AdmissionController {
+
+    private static final class Tenant {
+        final String name;
+        final Deque<Queued> queue = new ArrayDeque<>();
+        int running;
+        int credits;
+        boolean scheduled;
+
+        Tenant(String name) {
+            this.name = name;
+        }
+    }
+
+    private record Queued(Runnable task, long enqueuedNanos) {}
+
+    private final Executor executor;
+    private final int workers;
+    private final FlightRecorder recorder;
+    private final AdmissionConfig config;
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private final Deque<Tenant> ready = new ArrayDeque<>();
+    private int running;
+
+    AdmissionController(AdmissionConfig config, Executor executor, int workers, FlightRecorder recorder) {
+        this.config = config;
+        this.executor = executor;
+        this.workers = workers;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Returns an executor that runs tasks on behalf of {@code tenant}.
+     */
+    Executor forTenant(String tenant) {
+        if (!config.enabled()) {
+            return executor;
+        }
+        return task -> submit(tenant, task);
+    }
+
+    /**
+     * Starts {@code task} now if the tenant and the pool have room, queues it otherwise.
+     *
+     * @throws RejectedExecutionException if the tenant's wait queue is full
+     */
+    void submit(String tenantName, Runnable task) {
+        synchronized (this) {
+            var tenant = tenants.computeIfAbsent(tenantName, Tenant::new);
+            if (tenant.queue.isEmpty() && tenant.running < tenantLimit() && running < workers) {
+                start(tenant, task, 0);
+                return;
+            }
+            if (tenant.queue.size() >= config.maxQueuedPerTenant()) {
+                recorder.recordQueryRejected();
+                removeIfIdle(tenant);
+                throw new RejectedExecutionException(
+                        "Too many queued queries for tenant '%s' (%d running, %d queued). Retry later."
+                                .formatted(tenantName, tenant.running, tenant.queue.size()));
+            }
+            tenant.queue.addLast(new Queued(task, System.nanoTime()));
+            if (!tenant.scheduled) {
+                tenant.scheduled = true;
+                tenant.credits = config.weightOf(tenant.name);
+                ready.addLast(tenant);
+            }
+        }
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+
+    synchronized int getQueued() {
+        return tenants.values().stream().mapToInt(t -> t.queue.size()).sum();
+    }
+
+    private int tenantLimit() {
+        return config.maxConcurrentPerTenant() <= 0 ? workers : config.maxConcurrentPerTenant();
+    }
+
+    /**
+     * Hands free workers to queued statements. Called with the lock held.
+     */
+    private void dispatch() {
+        int skipped = 0;
+        while (running < workers && !ready.isEmpty() && skipped < ready.size()) {
+            var tenant = ready.peekFirst();
+            if (tenant.running >= tenantLimit()) {
+                // At its own limit; it is picked up again when one of its statements finishes
+                ready.addLast(ready.pollFirst());
+                skipped++;
+                continue;
+            }
+            skipped = 0;
+            var queued = tenant.queue.pollFirst();
+            try {
+                start(tenant, queued.task(), System.nanoTime() - queued.enqueuedNanos());
+            } catch (RejectedExecutionException e) {
+                // The pool is shutting down; statements still queued are dropped with it
+                return;
+            }
+            if (tenant.queue.isEmpty()) {
+                ready.pollFirst();
+                tenant.scheduled = false;
+            } else if (--tenant.credits <= 0) {
+                tenant.credits = config.weightOf(tenant.name);
+                ready.addLast(ready.pollFirst());
+            }
+        }
+    }
+
+    private void start(Tenant tenant, Runnable task, long waitNanos) {
+        tenant.running++;
+        running++;
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished(tenant);
+                }
+            });
+        } catch (RuntimeException e) {
+            tenant.running--;
+            running--;
+            removeIfIdle(tenant);
+            throw e;
+        }
+        recorder.recordQueryAdmitted(waitNanos);
+    }
+
+    private synchronized void finished(Tenant tenant) {
+        tenant.running--;
+        running--;
+        removeIfIdle(tenant);
+        dispatch();
+    }
+
+    private void removeIfIdle(Tenant tenant) {
+        if (tenant.running == 0 && tenant.queue.isEmpty()) {
+            tenants.remove(tenant.name);
+        }
+    }
+}
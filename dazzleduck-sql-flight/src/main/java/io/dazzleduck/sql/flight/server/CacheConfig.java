@@ -0,0 +1,41 @@
+package io.dazzleduck.sql.flight.server;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the query result cache ({@code dazzleduck_server.cache}).
+ *
+ * When disabled, {@link io.dazzleduck.sql.commons.cache.QueryResultCache#NOOP} is used and no
+ * directory is created.
+ */
+public record CacheConfig(
+        boolean enabled,
+        Duration ttl,
+        Path directory,
+        Duration housekeepingInterval,
+        long memorySize,
+        long maxEntrySize
+) {
+
+    public static final CacheConfig DISABLED = new CacheConfig(false, Duration.ofSeconds(300), null,
+            Duration.ofSeconds(60), 64L * 1024 * 1024, 64L * 1024 * 1024);
+
+    public static CacheConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.CACHE_KEY)) {
+            return DISABLED;
+        }
+        var cache = config.getConfig(ConfigConstants.CACHE_KEY);
+        return new CacheConfig(
+                cache.getBoolean(ConfigConstants.ENABLED_KEY),
+                cache.getDuration(ConfigConstants.CACHE_TTL_KEY),
+                Path.of(cache.getString(ConfigConstants.CACHE_DIRECTORY_KEY)),
+                cache.getDuration(ConfigConstants.CACHE_HOUSEKEEPING_INTERVAL_KEY),
+                cache.getBytes(ConfigConstants.CACHE_MEMORY_SIZE_KEY),
+                cache.getBytes(ConfigConstants.CACHE_MAX_ENTRY_SIZE_KEY)
+        );
+    }
+}
@@ -0,0 +1,130 @@
+package io.dazzleduck.sql.flight.server;
+
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A ServerStreamListener that forwards every call to a delegate while also encoding the
+ * batches into an uncompressed Arrow IPC stream. When the stream completes without error the
+ * captured bytes are handed to {@code onComplete} before the delegate is completed, so the
+ * result is in the cache by the time the client sees the end of the stream.
+ *
+ * <p>Capture is abandoned (the stream itself is unaffected) once it grows past {@code maxBytes}.
+ */
+class CachingStreamListener implements FlightProducer.ServerStreamListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStreamListener.class);
+
+    private final FlightProducer.ServerStreamListener delegate;
+    private final Consumer<byte[]> onComplete;
+    private final long maxBytes;
+    private ByteArrayOutputStream buffer;
+    private ArrowStreamWriter writer;
+    private boolean capturing = true;
+
+    CachingStreamListener(FlightProducer.ServerStreamListener delegate, long maxBytes, Consumer<byte[]> onComplete) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return delegate.isCancelled();
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable handler) {
+        delegate.setOnCancelHandler(handler);
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate.isReady();
+    }
+
+    @Override
+    public void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+        try {
+            buffer = new ByteArrayOutputStream();
+            writer = new ArrowStreamWriter(root, dictionaries, buffer);
+            writer.start();
+        } catch (IOException | RuntimeException e) {
+            abandon(e);
+        }
+        delegate.start(root, dictionaries, option);
+    }
+
+    @Override
+    public void putNext() {
+        capture();
+        delegate.putNext();
+    }
+
+    @Override
+    public void putNext(ArrowBuf metadata) {
+        capture();
+        delegate.putNext(metadata);
+    }
+
+    @Override
+    public void putMetadata(ArrowBuf metadata) {
+        delegate.putMetadata(metadata);
+    }
+
+    @Override
+    public void error(Throwable ex) {
+        release();
+        delegate.error(ex);
+    }
+
+    @Override
+    public void completed() {
+        if (capturing && writer != null) {
+            try {
+                writer.end();
+                onComplete.accept(buffer.toByteArray());
+            } catch (IOException | RuntimeException e) {
+                logger.atWarn().setCause(e).log("Failed to store query result in cache");
+            }
+        }
+        release();
+        delegate.completed();
+    }
+
+    private void capture() {
+        if (!capturing || writer == null) {
+            return;
+        }
+        try {
+            writer.writeBatch();
+            if (buffer.size() > maxBytes) {
+                logger.debug("Result exceeds {} bytes, not caching", maxBytes);
+                release();
+            }
+        } catch (IOException | RuntimeException e) {
+            abandon(e);
+        }
+    }
+
+    private void abandon(Exception e) {
+        logger.atDebug().setCause(e).log("Abandoning result capture");
+        release();
+    }
+
+    private void release() {
+        capturing = false;
+        buffer = null;
+        writer = null;
+    }
+}
@@ -76,7 +76,8 @@ public class DirectOutputStreamListener implements FlightProducer.ServerStreamLi
 
     @Override
     public synchronized boolean isCancelled() {
-        return future.isCancelled();
+        // A failed write completes the future; stop producing batches nobody will receive
+        return future.isDone();
     }
 
     @Override
@@ -109,6 +110,30 @@ public class DirectOutputStreamListener implements FlightProducer.ServerStreamLi
         }
     }
 
+    /**
+     * Writes an already encoded, uncompressed Arrow IPC stream to the output as-is and completes,
+     * skipping the decode/re-encode of {@link #start}/{@link #putNext}. Used to serve cached results.
+     *
+     * @return false if nothing was written because the requested codec needs re-encoding or
+     *         streaming has already started
+     */
+    public synchronized boolean writeIpcStream(byte[] arrowIpc) {
+        if (compressionCodec != CodecType.NO_COMPRESSION || writer != null || completed) {
+            return false;
+        }
+        try {
+            this.outputStream = outputStreamSupplier.get();
+            outputStream.write(arrowIpc);
+            outputStream.flush();
+        } catch (IOException e) {
+            logger.error("Error in writeIpcStream()", e);
+            future.completeExceptionally(e);
+            return true;
+        }
+        completed();
+        return true;
+    }
+
     @Override
     public synchronized void putNext() {
         batchCount++;
@@ -2,6 +2,7 @@ package io.dazzleduck.sql.flight.server;
 
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
@@ -10,9 +11,12 @@ import com.google.protobuf.*;
 import io.dazzleduck.sql.common.Headers;
 import io.dazzleduck.sql.common.ConfigConstants;
 import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.Transformations;
 import io.dazzleduck.sql.commons.authorization.AccessMode;
 import io.dazzleduck.sql.commons.authorization.SqlAuthorizer;
 import io.dazzleduck.sql.commons.authorization.UnauthorizedException;
+import io.dazzleduck.sql.commons.cache.CacheHeader;
+import io.dazzleduck.sql.commons.cache.QueryResultCache;
 import io.dazzleduck.sql.commons.ingestion.*;
 import io.dazzleduck.sql.flight.FlightRecorder;
 import io.dazzleduck.sql.flight.MicroMeterFlightRecorder;
@@ -36,15 +40,16 @@ import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.apache.arrow.vector.ipc.WriteChannel;
 import org.apache.arrow.vector.ipc.message.MessageSerializer;
 import org.apache.arrow.vector.types.pojo.Schema;
-import org.duckdb.DuckDBConnection;
 import org.duckdb.DuckDBResultSetMetaData;
 import org.duckdb.StatementReturnType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.file.Files;
@@ -56,6 +61,8 @@ import java.time.Instant;
 import java.time.temporal.TemporalAmount;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
 
 import static com.google.protobuf.Any.pack;
 import static com.google.protobuf.ByteString.copyFrom;
@@ -145,7 +152,9 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                                 ctx.startTime(),                           // startInstant
                                 ctx.getQuery(),                                // query
                                 ctx.running(),                                 // action
-                                ctx.endTime()                                       // endInstant
+                                ctx.endTime(),                                      // endInstant
+                                ctx.allocatedMemory(),                         // allocatedBytes
+                                ctx.peakAllocatedMemory()                      // peakAllocatedBytes
                         )
                 );
         });
@@ -165,13 +174,30 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                             ctx.startTime(),
                             ctx.getQuery(),
                             ctx.running(),
-                            ctx.endTime()
+                            ctx.endTime(),
+                            ctx.allocatedMemory(),
+                            ctx.peakAllocatedMemory()
                     )
             );
         });
         return result;
     }
 
+    @Override
+    public long getAllocatedMemory() {
+        return allocator.getAllocatedMemory();
+    }
+
+    @Override
+    public long getPeakAllocatedMemory() {
+        return allocator.getPeakMemoryAllocation();
+    }
+
+    @Override
+    public MemoryBudgetConfig getMemoryBudget() {
+        return memoryBudget.getConfig();
+    }
+
     @Override
     public List<RunningStatementInfo> getRunningBulkIngestDetails() {
         return List.of();
@@ -234,7 +260,8 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
     private final Instant startTime;
     private final AccessMode accessMode;
     private final Set<Integer> supportedSqlInfo;
-    protected final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+    protected final ExecutorService executorService = Executors.newFixedThreadPool(WORKER_THREADS);
     private final static Logger logger = LoggerFactory.getLogger(DuckDBFlightSqlProducer.class);
     private Set<Location> dataProcessorLocations = new LinkedHashSet<>();
     private final Location serverLocation;
@@ -251,6 +278,19 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
     private final IngestionConfig bulkIngestionConfig;
     private final CursorConfig cursorConfig;
+    private final QueryResultCache queryResultCache;
+    protected final StreamingConfig streamingConfig;
+    private final AdmissionConfig admissionConfig;
+    private final AdmissionController admissionController;
+    private final MemoryBudget memoryBudget;
+    private final QueryCoalescer queryCoalescer;
+
+    /**
+     * TTL used when a RESTRICT_READ_ONLY client sends an empty {@value Headers#HEADER_CACHE_TTL} header.
+     */
+    public static final long DEFAULT_CLIENT_CACHE_TTL_SECONDS = 3600;
+
+    private record CacheRequest(String hash, CacheHeader header) {}
 
     /**
      * Wrapper for ingestion queue with lifecycle tracking metadata.
@@ -264,6 +304,12 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
     private final IngestionHandler ingestionHandler;
 
+    /** Memory ceiling of ingested streams held in memory; null when they go to temp files. */
+    private final InMemoryArrowBatches.Budget inMemoryBudget;
+
+    /** Writer threads and flush timer shared by the ingestion queues. */
+    private final IngestionWriterPool writerPool;
+
     private final Path tempDir;
 
     private final ScheduledExecutorService scheduledExecutorService;
@@ -356,6 +402,28 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                                    IngestionConfig bulkIngestionConfig,
                                    List<Location> dataProcessorLocations,
                                    CursorConfig cursorConfig) {
+        this(serverLocation, producerId, secretKey, allocator, warehousePath, accessMode, tempDir, ingestionHandler,
+                scheduledExecutorService, defaultQueryTimeout, maxQueryTimeout, clock, recorder,
+                bulkIngestionConfig, dataProcessorLocations, cursorConfig, ProducerOptions.DEFAULT);
+    }
+
+    public DuckDBFlightSqlProducer(Location serverLocation,
+                                   String producerId,
+                                   String secretKey,
+                                   BufferAllocator allocator,
+                                   String warehousePath,
+                                   AccessMode accessMode,
+                                   Path tempDir,
+                                   IngestionHandler ingestionHandler,
+                                   ScheduledExecutorService scheduledExecutorService,
+                                   Duration defaultQueryTimeout,
+                                   Duration maxQueryTimeout,
+                                   Clock clock,
+                                   FlightRecorder recorder,
+                                   IngestionConfig bulkIngestionConfig,
+                                   List<Location> dataProcessorLocations,
+                                   CursorConfig cursorConfig,
+                                   ProducerOptions options) {
         this.startTime = clock.instant();
         this.serverLocation = serverLocation;
         this.dataProcessorLocations.addAll(dataProcessorLocations);
@@ -380,7 +448,17 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
         this.ingestionHandler = ingestionHandler;
         this.bulkIngestionConfig = bulkIngestionConfig;
+        this.inMemoryBudget = bulkIngestionConfig.inMemoryMaxBytes() > 0 && !bulkIngestionConfig.wal().enabled()
+                ? new InMemoryArrowBatches.Budget(allocator, bulkIngestionConfig.inMemoryMaxBytes())
+                : null;
+        this.writerPool = new IngestionWriterPool(bulkIngestionConfig.writerThreads());
         this.cursorConfig = cursorConfig;
+        this.queryResultCache = options.queryResultCache();
+        this.streamingConfig = options.streamingConfig();
+        this.admissionConfig = options.admissionConfig();
+        this.admissionController = new AdmissionController(admissionConfig, executorService, WORKER_THREADS, recorder);
+        this.memoryBudget = new MemoryBudget(allocator, options.memoryBudgetConfig());
+        this.queryCoalescer = new QueryCoalescer(recorder);
         preparedStatementLoadingCache =
                 CacheBuilder.newBuilder()
                         .maximumSize(4000)
@@ -460,6 +538,33 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        recoverIngestionQueues();
+    }
+
+    /**
+     * Creates the queues that have a write-ahead log, so the batches they had accepted before a
+     * restart are written without waiting for the next batch to arrive.
+     */
+    private void recoverIngestionQueues() {
+        var wal = bulkIngestionConfig.wal();
+        if (!wal.enabled()) {
+            return;
+        }
+        List<String> queueIds;
+        try {
+            queueIds = IngestionWal.queueIds(wal.directory());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list ingestion write-ahead logs in " + wal.directory(), e);
+        }
+        for (var queueId : queueIds) {
+            try {
+                if (getOrCreateIngestionQueue(queueId) == null) {
+                    logger.warn("Ingestion queue '{}' has a write-ahead log but no target path, not replaying it", queueId);
+                }
+            } catch (RuntimeException e) {
+                logger.atError().setCause(e).log("Failed to recover ingestion queue '{}'", queueId);
+            }
+        }
     }
 
     @Override
@@ -649,9 +754,11 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
             ErrorHandling.handleThrowable(listener, e);
             return;
         }
-        ResultSetStreamUtil.streamResultSet(executorService, statementContext, key, OptionalResultSetSupplier.of(statementContext.getStatement()),
-            allocator, getBatchSize(context),
-            listener, () -> {}, recorder);
+        ResultSetStreamUtil.streamResultSet(admissionController.forTenant(getTenant(context)), executorService,
+            statementContext, key,
+            OptionalResultSetSupplier.of(statementContext.getStatement()),
+            () -> memoryBudget.newStatementAllocator(context.peerIdentity()), getBatchSize(context),
+            listener, () -> {}, recorder, streamingConfig);
     }
 
 
@@ -664,6 +771,42 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         getStreamStatement(statementHandle, context, listener);
     }
 
+    @Override
+    public void getStreamStatement(FlightSql.TicketStatementQuery ticketStatementQuery,
+                                   CallContext context,
+                                   ServerStreamListener listener,
+                                   Duration queryTimeout) {
+        StatementHandle statementHandle = StatementHandle.deserialize(ticketStatementQuery.getStatementHandle());
+        getStreamStatement(statementHandle, new BackgroundCallContext(context, queryTimeout), listener);
+    }
+
+    /**
+     * Context of a statement that runs in the background, carrying the timeout that replaces the
+     * interactive default and maximum (see {@link #getEffectiveQueryTimeoutSeconds}).
+     */
+    private record BackgroundCallContext(CallContext delegate, Duration queryTimeout) implements CallContext {
+
+        @Override
+        public String peerIdentity() {
+            return delegate.peerIdentity();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+        @Override
+        public <T extends FlightServerMiddleware> T getMiddleware(FlightServerMiddleware.Key<T> key) {
+            return delegate.getMiddleware(key);
+        }
+
+        @Override
+        public Map<FlightServerMiddleware.Key<?>, FlightServerMiddleware> getMiddleware() {
+            return delegate.getMiddleware();
+        }
+    }
+
     /**
      * Template method for streaming statement results. Uses {@link #transformQuery} and
      * {@link #createResultSetSupplier} as extension points for subclasses.
@@ -675,8 +818,8 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
     protected void getStreamStatement(
             StatementHandle statementHandle,
             final CallContext context,
-            final ServerStreamListener listener) {
-        DuckDBConnection connection = null;
+            ServerStreamListener listener) {
+        Connection connection = null;
         try {
             connection = getConnection(context, getAccessMode());
             String query = statementHandle.query();
@@ -688,21 +831,61 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
             if (statementHandle.queryChecksum() == null) {
                 query = transformQuery(context, connection, query);
             }
+            var cacheRequest = resolveCacheRequest(context, connection, query);
+            if (cacheRequest != null) {
+                var cached = queryResultCache.lookup(cacheRequest.hash(), cacheRequest.header());
+                if (cached.isPresent()) {
+                    recorder.recordCacheHit(cached.get().length);
+                    enforceCursorLimits(context.peerIdentity());
+                    // Registered like an executed statement, so that the hit can be cancelled
+                    var statementContext = new StatementContext<>(connection, connection.createStatement(), query);
+                    var key = new CacheKey(context.peerIdentity(), statementHandle.queryId());
+                    statementLoadingCache.put(key, statementContext);
+                    connection = null; // ownership transferred to StatementContext — do not close here
+                    streamCachedResult(cached.get(), admissionController.forTenant(getTenant(context)),
+                            statementContext, key, listener);
+                    return;
+                }
+                recorder.recordCacheMiss();
+                listener = new CachingStreamListener(listener, queryResultCache.maxEntryBytes(),
+                        bytes -> queryResultCache.store(cacheRequest.hash(), cacheRequest.header(), bytes));
+            }
             enforceCursorLimits(context.peerIdentity());
+            var key = new CacheKey(context.peerIdentity(), statementHandle.queryId());
+            var coalesceKey = resolveCoalesceKey(context, connection, query);
+            if (coalesceKey != null) {
+                listener = queryCoalescer.join(coalesceKey, key, listener);
+                if (listener == null) {
+                    return; // served by the identical statement that is already executing
+                }
+            }
             Statement statement = connection.createStatement();
             statement.setQueryTimeout(getEffectiveQueryTimeoutSeconds(context));
             var statementContext = new StatementContext<>(connection, statement, query);
-            var key = new CacheKey(context.peerIdentity(), statementHandle.queryId());
             statementLoadingCache.put(key, statementContext);
             connection = null; // ownership transferred to StatementContext — do not close here
-            ResultSetStreamUtil.streamResultSet(executorService,
+            if (coalesceKey != null) {
+                // Runs once every participant of the shared execution is cancelled or gone
+                listener.setOnCancelHandler(() -> {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException e) {
+                        logger.atWarn().setCause(e).log("Failed to cancel abandoned statement");
+                    } finally {
+                        statementLoadingCache.invalidate(key);
+                    }
+                });
+            }
+            ResultSetStreamUtil.streamResultSet(
+                    admissionController.forTenant(getTenant(context)),
+                    executorService,
                     statementContext,
                     key,
                     createResultSetSupplier(statement, query),
-                    allocator,
+                    () -> memoryBudget.newStatementAllocator(context.peerIdentity()),
                     getBatchSize(context),
                     listener,
-                    () -> statementLoadingCache.invalidate(key), recorder);
+                    () -> statementLoadingCache.invalidate(key), recorder, streamingConfig);
         } catch (Throwable e) {
             ErrorHandling.handleThrowable(listener, e);
         } finally {
@@ -716,6 +899,148 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         }
     }
 
+    /**
+     * Decides whether the result of {@code query} goes through the query result cache.
+     *
+     * <p>Only aggregation, GROUP BY and DISTINCT queries are cached (see
+     * {@link Transformations#isCacheable}). The key covers the canonical SQL (an AST round trip, so
+     * formatting differences share an entry), the database/schema and the verified claims that
+     * restrict what the caller can see.
+     *
+     * @return null when the query must not be cached
+     */
+    private CacheRequest resolveCacheRequest(CallContext context, Connection connection, String query) {
+        if (!queryResultCache.isEnabled()) {
+            return null;
+        }
+        long ttl = getCacheTtlSeconds(context);
+        if (ttl <= 0) {
+            return null;
+        }
+        try {
+            JsonNode tree = Transformations.parseToTree(connection, query);
+            if (!Transformations.isCacheable(tree)) {
+                return null;
+            }
+            String canonicalSql = Transformations.parseToSql(connection, tree);
+            var databaseSchema = getDatabaseSchema(context, getAccessMode());
+            String hash = io.dazzleduck.sql.commons.cache.CacheKey.compute(canonicalSql,
+                    databaseSchema.database(), databaseSchema.schema(), getVerifiedClaims(context));
+            return new CacheRequest(hash, new CacheHeader(canonicalSql, databaseSchema.database(),
+                    databaseSchema.schema(), ttl, clock.instant(), null));
+        } catch (Exception e) {
+            // Anything json_serialize_sql cannot handle is simply executed uncached
+            logger.atDebug().setCause(e).log("Query not eligible for result cache");
+            return null;
+        }
+    }
+
+    /**
+     * Key under which identical concurrent statements share one execution (see
+     * {@link QueryCoalescer}): the canonical SQL, database/schema and restricting claims, as for
+     * the result cache, plus the batch size and query timeout so that every participant gets the
+     * batches and the time limit it asked for.
+     *
+     * @return null when {@code query} runs on its own: coalescing is disabled, or it is not a
+     * single SELECT, which is the only kind of statement that is safe to run once for many callers,
+     * or it calls a volatile function such as {@code nextval()} or {@code random()} whose result
+     * each caller must get on its own
+     */
+    private String resolveCoalesceKey(CallContext context, Connection connection, String query) {
+        if (!streamingConfig.coalesce()) {
+            return null;
+        }
+        try {
+            JsonNode tree = Transformations.parseToTree(connection, query);
+            if (!Transformations.isSingleSelect(tree) || Transformations.hasVolatileFunction(tree)) {
+                return null;
+            }
+            String canonicalSql = Transformations.parseToSql(connection, tree);
+            var databaseSchema = getDatabaseSchema(context, getAccessMode());
+            return io.dazzleduck.sql.commons.cache.CacheKey.compute(canonicalSql,
+                    databaseSchema.database(), databaseSchema.schema(), getVerifiedClaims(context))
+                    + "|" + getBatchSize(context) + "|" + getEffectiveQueryTimeoutSeconds(context);
+        } catch (Exception e) {
+            logger.atDebug().setCause(e).log("Query not eligible for coalescing");
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the cache TTL in seconds for the current request.
+     *
+     * <p>In RESTRICT_READ_ONLY mode caching is opt-in: the client sends
+     * {@value Headers#HEADER_CACHE_TTL} (an empty value means {@link #DEFAULT_CLIENT_CACHE_TTL_SECONDS}),
+     * capped by the configured TTL. In every other mode the configured TTL applies.
+     *
+     * @return 0 when the result must not be cached
+     */
+    protected long getCacheTtlSeconds(CallContext context) {
+        long configured = queryResultCache.ttlSeconds();
+        if (getAccessMode() != AccessMode.RESTRICT_READ_ONLY) {
+            return configured;
+        }
+        String requested = context.getMiddleware(FlightConstants.HEADER_KEY).headers().get(Headers.HEADER_CACHE_TTL);
+        if (requested == null) {
+            return 0;
+        }
+        long seconds;
+        try {
+            seconds = requested.isBlank() ? DEFAULT_CLIENT_CACHE_TTL_SECONDS : Long.parseLong(requested.trim());
+        } catch (NumberFormatException e) {
+            throw CallStatus.INVALID_ARGUMENT
+                    .withDescription("Invalid '" + Headers.HEADER_CACHE_TTL + "' header: " + requested)
+                    .toRuntimeException();
+        }
+        if (seconds < 0) {
+            throw CallStatus.INVALID_ARGUMENT
+                    .withDescription("Cache TTL must be non-negative, got: " + seconds)
+                    .toRuntimeException();
+        }
+        return Math.min(seconds, configured);
+    }
+
+    /**
+     * Streams a cached Arrow IPC result on {@code executor}, so a hit passes the same admission
+     * control as an executed statement. HTTP listeners asking for uncompressed output receive the
+     * stored bytes verbatim; everything else is decoded batch by batch into the listener, through a
+     * statement allocator of the caller's memory budget.
+     *
+     * <p>{@code statementContext} is registered under {@code key} until the stream ends. Cancelling
+     * it closes its statement, which stops the stream before its next batch.
+     */
+    private void streamCachedResult(byte[] arrowIpc, Executor executor, StatementContext<Statement> statementContext,
+                                    CacheKey key, ServerStreamListener listener) {
+        ResultSetStreamUtil.execute(executor, listener, () -> statementLoadingCache.invalidate(key), () -> {
+            try {
+                if (listener instanceof DirectOutputStreamListener direct && direct.writeIpcStream(arrowIpc)) {
+                    return;
+                }
+                statementContext.start();
+                var statementAllocator = memoryBudget.newStatementAllocator(key.peerIdentity());
+                statementContext.attachAllocator(statementAllocator);
+                try (var reader = new ArrowStreamReader(new ByteArrayInputStream(arrowIpc), statementAllocator)) {
+                    listener.start(reader.getVectorSchemaRoot());
+                    while (reader.loadNextBatch()) {
+                        if (statementContext.getStatement().isClosed()) {
+                            throw CallStatus.CANCELLED.withDescription("Statement was cancelled").toRuntimeException();
+                        }
+                        listener.putNext();
+                    }
+                    listener.completed();
+                } finally {
+                    statementContext.detachAllocator();
+                    statementContext.end();
+                    statementAllocator.close();
+                }
+            } catch (Throwable t) {
+                ErrorHandling.handleThrowable(listener, t);
+            } finally {
+                statementLoadingCache.invalidate(key);
+            }
+        });
+    }
+
     /**
      * Extension point for subclasses to transform or authorize a query before execution.
      * Called only when the statement handle has no pre-computed checksum (i.e., the query
@@ -770,13 +1095,20 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
      * </ol>
      *
      * <p>If {@code maxQueryTimeout} is non-zero and the resolved timeout exceeds it, an
-     * {@code INVALID_ARGUMENT} Flight error is thrown immediately.
+     * {@code INVALID_ARGUMENT} Flight error is thrown immediately. A statement that runs in the
+     * background uses its own timeout as both the default and the maximum.
      *
      * @param context the per-call context carrying request headers
      * @return effective timeout in seconds; 0 means no timeout
      * @throws FlightRuntimeException if the requested timeout exceeds the server maximum
      */
     protected int getEffectiveQueryTimeoutSeconds(CallContext context) {
+        var defaultTimeout = defaultQueryTimeout;
+        var maxTimeout = maxQueryTimeout;
+        if (context instanceof BackgroundCallContext background) {
+            defaultTimeout = background.queryTimeout();
+            maxTimeout = background.queryTimeout();
+        }
         int requestedSeconds = ContextUtils.getValue(context, Headers.HEADER_QUERY_TIMEOUT, 0, Integer.class);
         if (requestedSeconds < 0) {
             throw CallStatus.INVALID_ARGUMENT
@@ -785,16 +1117,16 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         }
         if (requestedSeconds > 0) {
             // Client explicitly requested a timeout — enforce the server maximum cap.
-            if (!maxQueryTimeout.isZero() && requestedSeconds > maxQueryTimeout.toSeconds()) {
+            if (!maxTimeout.isZero() && requestedSeconds > maxTimeout.toSeconds()) {
                 throw CallStatus.INVALID_ARGUMENT
                         .withDescription("Requested query timeout " + requestedSeconds
-                                + "s exceeds server maximum of " + maxQueryTimeout.toSeconds() + "s")
+                                + "s exceeds server maximum of " + maxTimeout.toSeconds() + "s")
                         .toRuntimeException();
             }
             return requestedSeconds;
         }
         // No client-supplied timeout — use the server default (not subject to the max cap).
-        return (int) defaultQueryTimeout.toSeconds();
+        return (int) defaultTimeout.toSeconds();
     }
 
 
@@ -900,7 +1232,7 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
     protected ParquetIngestionQueue getOrCreateIngestionQueue(String queueId) {
         return ingestionHandler.getOrCreateQueue(
                 queueId,
-                (id, path) -> createQueue(producerId, id, path, ingestionHandler, bulkIngestionConfig, recorder),
+                (id, path) -> createQueue(producerId, id, path, ingestionHandler, bulkIngestionConfig, recorder, writerPool),
                 new IngestionHandler.QueueEventListener() {
                     @Override public void onCreated(String id)   { recorder.recordQueueCreated(id);   }
                     @Override public void onRefreshed(String id) { recorder.recordQueueRefreshed(id); }
@@ -912,7 +1244,31 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
     }
 
     public static ParquetIngestionQueue createQueue(String producerId, String localQueueId, String path, IngestionHandler ingestionHandler,
-                                                    IngestionConfig bulkIngestionConfig, FlightRecorder flightRecorder) {
+                                                    IngestionConfig bulkIngestionConfig, FlightRecorder flightRecorder,
+                                                    IngestionWriterPool writerPool) {
+        IngestionWal wal = null;
+        if (bulkIngestionConfig.wal().enabled()) {
+            try {
+                wal = IngestionWal.open(bulkIngestionConfig.wal(), localQueueId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the write-ahead log of ingestion queue " + localQueueId, e);
+            }
+        }
+        ProducerSequenceStore sequenceStore = null;
+        if (bulkIngestionConfig.producerDedup().persistent()) {
+            try {
+                sequenceStore = ProducerSequenceStore.open(bulkIngestionConfig.producerDedup(), localQueueId);
+            } catch (IOException e) {
+                if (wal != null) {
+                    try {
+                        wal.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw new UncheckedIOException("Failed to open the producer sequence store of ingestion queue " + localQueueId, e);
+            }
+        }
         var queue = new ParquetIngestionQueue(producerId, TEMP_WRITE_FORMAT, path, localQueueId,
                 bulkIngestionConfig.minBucketSize(),
                 bulkIngestionConfig.maxBucketSize(),
@@ -920,20 +1276,53 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                 bulkIngestionConfig.maxPendingWrite(),
                 bulkIngestionConfig.maxDelay(),
                 ingestionHandler,
-                Executors.newSingleThreadScheduledExecutor(),
-                Clock.systemDefaultZone());
-        flightRecorder.registerWriteQueue(localQueueId,
-                Map.of("write_batches", queue::getTotalWriteBatches,
-                        "write_buckets", queue::getTotalWriteBuckets,
-                        "bytes_written", queue::getTotalWriteBytes),
-                Map.of("pending_batches", queue::getPendingBatches,
-                        "pending_buckets", queue::getPendingBuckets),
-                Map.of("write_latency", new FlightRecorder.WriteTimerSuppliers(
+                writerPool.timer(),
+                Clock.systemDefaultZone(),
+                new IngestionQueueOptions(writerPool,
+                        bulkIngestionConfig.adaptiveFlush(),
+                        bulkIngestionConfig.producerDedup(),
+                        sequenceStore,
+                        wal,
+                        bulkIngestionConfig.writersPerQueue(),
+                        bulkIngestionConfig.parquetWrite()));
+        var counters = new HashMap<String, LongSupplier>(Map.of(
+                "write_batches", queue::getTotalWriteBatches,
+                "write_buckets", queue::getTotalWriteBuckets,
+                "bytes_written", queue::getTotalWriteBytes,
+                "files_written", () -> queue.getFileSizeStats().files(),
+                "file_bytes_written", () -> queue.getFileSizeStats().bytes(),
+                "small_files_written", () -> queue.getFileSizeStats().smallFiles(),
+                "dedup_hits", queue::getDedupHits,
+                "dedup_misses", queue::getDedupMisses,
+                "dedup_out_of_window", queue::getOutOfWindowBatches,
+                "sequence_commit_failures", queue::getSequenceCommitFailures));
+        var gauges = new HashMap<String, LongSupplier>(Map.of(
+                "pending_batches", queue::getPendingBatches,
+                "pending_buckets", queue::getPendingBuckets,
+                "largest_file_bytes", () -> queue.getFileSizeStats().largest()));
+        var timers = new HashMap<String, FlightRecorder.WriteTimerSuppliers>(Map.of(
+                "write_latency", new FlightRecorder.WriteTimerSuppliers(
                         queue::getTotalWriteBuckets,
                         queue::getTimeSpentWriting)));
+        if (ingestionHandler.getCommitStats(localQueueId) != null) {
+            // Snapshots of the catalog table the queue's writes are committed to
+            counters.put("catalog_snapshots", () -> commitStat(ingestionHandler, localQueueId, DuckLakeCommitStats::snapshots));
+            gauges.put("catalog_snapshots_per_minute", () -> commitStat(ingestionHandler, localQueueId, DuckLakeCommitStats::snapshotsLastMinute));
+            gauges.put("catalog_last_commit_ms", () -> commitStat(ingestionHandler, localQueueId, DuckLakeCommitStats::lastCommitTime));
+            timers.put("catalog_commit_latency", new FlightRecorder.WriteTimerSuppliers(
+                    () -> commitStat(ingestionHandler, localQueueId, DuckLakeCommitStats::snapshots),
+                    () -> commitStat(ingestionHandler, localQueueId, DuckLakeCommitStats::totalCommitTime)));
+        }
+        flightRecorder.registerWriteQueue(localQueueId, counters, gauges, timers);
         return queue;
     }
 
+    private static long commitStat(IngestionHandler ingestionHandler, String queueId,
+                                   ToLongFunction<DuckLakeCommitStats> stat) {
+        var stats = ingestionHandler.getCommitStats(queueId);
+        return stats == null ? 0 : stat.applyAsLong(stats);
+    }
+
     @Override
     public Runnable acceptPutStatementBulkIngest(
             FlightSql.CommandStatementIngest command,
@@ -969,27 +1358,50 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
             IngestionParameters ingestionParameters,
             StreamListener<PutResult> ackStream) {
         return () -> {
-            Path tempFile = null;
+            String record = null;
             try (reader) {
-                tempFile = BulkIngestQueue.writeAndValidateTempArrowFile(tempDir, reader);
-                long fileSize = Files.size(tempFile);
-                recorder.recordIngestReceived(fileSize);
-                var batch = ingestionParameters.constructBatch(fileSize, tempFile.toAbsolutePath().toString());
+                long size;
+                if (inMemoryBudget != null) {
+                    var received = InMemoryArrowBatches.receive(reader, inMemoryBudget, tempDir);
+                    record = received.record();
+                    size = received.size();
+                } else {
+                    var tempFile = BulkIngestQueue.writeAndValidateTempArrowFile(tempDir, reader);
+                    record = tempFile.toAbsolutePath().toString();
+                    size = Files.size(tempFile);
+                }
+                recorder.recordIngestReceived(size);
+                var batch = ingestionParameters.constructBatch(size, record);
                 var result = ingestionQueue.add(batch);
-                result.get(10L, TimeUnit.MINUTES);
-                tempFile = null; // queue owns cleanup from this point
+                try {
+                    result.get(10L, TimeUnit.MINUTES);
+                    record = null; // queue owns cleanup from this point
+                } catch (ExecutionException e) {
+                    // A retry of a batch written before is acknowledged; its copy of the data is dropped
+                    if (!(e.getCause() instanceof DuplicateBatch)) {
+                        throw e;
+                    }
+                    releaseRecord(record);
+                    record = null;
+                }
                 ackStream.onNext(PutResult.empty());
                 ackStream.onCompleted();
             } catch (Throwable throwable) {
-                if (tempFile != null) {
-                    try { Files.deleteIfExists(tempFile); } catch (IOException ignored) {}
-                }
+                releaseRecord(record);
                 recorder.recordIngestError();
                 ErrorHandling.handleThrowable(ackStream, throwable);
             }
         };
     }
 
+    private static void releaseRecord(String record) {
+        if (InMemoryArrowBatches.isInMemory(record)) {
+            InMemoryArrowBatches.release(record);
+        } else if (record != null) {
+            try { Files.deleteIfExists(Path.of(record)); } catch (IOException ignored) {}
+        }
+    }
+
     @Override
     public void cancelFlightInfo(
             CancelFlightInfoRequest request, CallContext context, StreamListener<CancelStatus> listener) {
@@ -1015,6 +1427,9 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
     @Override
     public boolean tryCancel(Long queryId, CallContext context) throws SQLException {
         var key = new CacheKey(context.peerIdentity(), queryId);
+        if (queryCoalescer.cancel(key)) {
+            return true;
+        }
         StatementContext<?> statementContext = getStatementContext(key);
 
         if (statementContext == null) {
@@ -1077,7 +1492,7 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
     @Override
     public void getStreamCatalogs(final CallContext context, final ServerStreamListener listener) {
-        ResultSetStreamUtil.streamResultSet(executorService, DuckDBDatabaseMetadataUtil::getCatalogs, context, accessMode, allocator, listener, recorder);
+        ResultSetStreamUtil.streamResultSet(executorService, DuckDBDatabaseMetadataUtil::getCatalogs, context, accessMode, allocator, listener, recorder, streamingConfig);
     }
 
     @Override
@@ -1093,7 +1508,7 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                 command.hasDbSchemaFilterPattern() ? command.getDbSchemaFilterPattern() : null;
         ResultSetStreamUtil.streamResultSet(executorService, connection ->
                         DuckDBDatabaseMetadataUtil.getSchemas(connection, catalog, schemaFilterPattern),
-                context, accessMode, allocator, listener, recorder);
+                context, accessMode, allocator, listener, recorder, streamingConfig);
     }
 
     @Override
@@ -1124,7 +1539,7 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                 protocolSize == 0 ? null : protocolStringList.toArray(new String[protocolSize]);
         ResultSetStreamUtil.streamResultSet(executorService, connection ->
             DuckDBDatabaseMetadataUtil.getTables(connection, catalog, schemaFilterPattern, tableFilterPattern, tableTypes),
-                context, accessMode, allocator, listener, recorder);
+                context, accessMode, allocator, listener, recorder, streamingConfig);
     }
 
     @Override
@@ -1136,7 +1551,7 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
     @Override
     public void getStreamTableTypes(CallContext context, ServerStreamListener listener) {
-        ResultSetStreamUtil.streamResultSet(executorService, DuckDBDatabaseMetadataUtil::getTableTypes, context, accessMode, allocator, listener, recorder);
+        ResultSetStreamUtil.streamResultSet(executorService, DuckDBDatabaseMetadataUtil::getTableTypes, context, accessMode, allocator, listener, recorder, streamingConfig);
     }
 
     @Override
@@ -1220,6 +1635,14 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
 
         ingestionHandler.closeQueues();
 
+        try {
+            writerPool.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (inMemoryBudget != null) {
+            inMemoryBudget.close();
+        }
         allocator.close();
 
         try (var stream = Files.walk(tempDir)) {
@@ -1278,6 +1701,12 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
                        StreamListener<CancelStatus> listener,
                        String peerIdentity) {
         var key = new CacheKey(peerIdentity, queryId);
+        if (queryCoalescer.cancel(key)) {
+            // Only this caller's share of a coalesced execution is cancelled
+            listener.onNext(CancelStatus.CANCELLED);
+            listener.onCompleted();
+            return;
+        }
         StatementContext<?> context = getStatementContext(key);
 
         if (context == null) {
@@ -1389,14 +1818,18 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         return new FlightInfo(schema, descriptor, endpoints, -1, -1);
     }
 
-    protected static DuckDBConnection getConnection(final CallContext context, AccessMode accessMode) throws NoSuchCatalogSchemaError {
+    /**
+     * Returns a pooled connection bound to the caller's database and schema. Closing it returns it
+     * to the pool.
+     */
+    protected static Connection getConnection(final CallContext context, AccessMode accessMode) throws NoSuchCatalogSchemaError {
         var databaseSchema = getDatabaseSchema(context, accessMode);
-        String dbSchema = format("%s.%s", databaseSchema.database, databaseSchema.schema);
-        String[] sqls = {format("USE %s", dbSchema)};
         try {
-            return ConnectionPool.getConnection(sqls);
+            return ConnectionPool.getConnection(databaseSchema.database, databaseSchema.schema);
+        } catch (SQLTimeoutException e) {
+            throw CallStatus.RESOURCE_EXHAUSTED.withCause(e).withDescription(e.getMessage()).toRuntimeException();
         } catch (Exception e ){
-            throw new NoSuchCatalogSchemaError(dbSchema);
+            throw new NoSuchCatalogSchemaError(format("%s.%s", databaseSchema.database, databaseSchema.schema));
         }
     }
 
@@ -1430,6 +1863,21 @@ public class DuckDBFlightSqlProducer implements FlightSqlHttpProducer, SqlProduc
         return middleware.getAuthResultWithClaims().verifiedClaims();
     }
 
+    /**
+     * Resolves the tenant a statement is admitted under: the value of the configured tenant claim,
+     * or the peer identity when no claim is configured or the caller's token does not carry it.
+     */
+    protected String getTenant(CallContext context) {
+        String claim = admissionConfig.tenantClaim();
+        if (claim != null && !claim.isEmpty()) {
+            String tenant = getVerifiedClaims(context).get(claim);
+            if (tenant != null) {
+                return tenant;
+            }
+        }
+        return context.peerIdentity();
+    }
+
     protected static int getBatchSize(final CallContext context) {
         return ContextUtils.getValue(context, Headers.HEADER_FETCH_SIZE, Headers.DEFAULT_ARROW_FETCH_SIZE, Integer.class);
     }
@@ -6,6 +6,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import io.dazzleduck.sql.commons.authorization.UnauthorizedException;
 import io.dazzleduck.sql.commons.ingestion.PendingWriteExceededException;
 import org.apache.arrow.flight.*;
+import org.apache.arrow.memory.OutOfMemoryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,20 @@ public class ErrorHandling {
         return t;
     }
 
+    /**
+     * Checks if the throwable or any of its causes is an allocator limit being hit.
+     */
+    private static OutOfMemoryException findOutOfMemoryException(Throwable t) {
+        Throwable current = t;
+        while (current != null) {
+            if (current instanceof OutOfMemoryException e) {
+                return e;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
     /**
      * Checks if the throwable or any of its causes is a PendingWriteExceededException.
      */
@@ -82,11 +97,18 @@ public class ErrorHandling {
         t = unwrapExecutionException(t);
         // Check for PendingWriteExceededException in cause chain
         var pendingWriteEx = findPendingWriteException(t);
+        var outOfMemory = findOutOfMemoryException(t);
         if (pendingWriteEx != null) {
             listener.error(CallStatus.RESOURCE_EXHAUSTED
                     .withDescription(pendingWriteEx.getMessage())
                     .toRuntimeException());
             return;
+        } else if (outOfMemory != null) {
+            listener.error(CallStatus.RESOURCE_EXHAUSTED
+                    .withDescription("Query exceeded its memory budget: " + outOfMemory.getMessage())
+                    .withCause(outOfMemory)
+                    .toRuntimeException());
+            return;
         } else if (t instanceof UnauthorizedException e) {
             handleUnauthorized(listener, e);
             return;
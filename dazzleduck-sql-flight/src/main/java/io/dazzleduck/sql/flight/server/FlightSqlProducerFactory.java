@@ -3,7 +3,16 @@ package io.dazzleduck.sql.flight.server;
 import com.typesafe.config.Config;
 import io.dazzleduck.sql.commons.config.ConfigBasedProvider;
 import io.dazzleduck.sql.common.ConfigConstants;
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.SessionPoolConfig;
+import io.dazzleduck.sql.commons.SqlParseCache;
+import io.dazzleduck.sql.commons.Transformations;
 import io.dazzleduck.sql.commons.authorization.AccessMode;
+import io.dazzleduck.sql.commons.cache.CacheHousekeeping;
+import io.dazzleduck.sql.commons.cache.FileBasedQueryResultCache;
+import io.dazzleduck.sql.commons.cache.QueryResultCache;
+import io.dazzleduck.sql.commons.hive.HiveListingCacheConfig;
+import io.dazzleduck.sql.commons.hive.HivePartitionPruning;
 import io.dazzleduck.sql.commons.ingestion.IngestionHandler;
 import io.dazzleduck.sql.commons.ingestion.IngestionTaskFactoryProvider;
 import io.dazzleduck.sql.flight.FlightRecorder;
@@ -15,12 +24,14 @@ import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory class for creating DuckDBFlightSqlProducer instances from configuration.
@@ -41,6 +52,9 @@ import java.util.concurrent.ScheduledExecutorService;
  *   <li><b>query_timeout_ms</b> - Query timeout in milliseconds (required)</li>
  *   <li><b>ingestion.min_bucket_size</b> - Minimum ingestion bucket size (default: 1048576)</li>
  *   <li><b>ingestion.max_delay_ms</b> - Maximum ingestion delay in ms (default: 2000)</li>
+ *   <li><b>ingestion.wal.enabled</b> - Log accepted batches and replay them on startup (default: false)</li>
+ *   <li><b>cache.enabled</b> - Enable the query result cache (default: false)</li>
+ *   <li><b>cache.ttl</b> - Maximum lifetime of a cached result (default: 300s)</li>
  * </ul>
  *
  * <h2>Example Usage</h2>
@@ -97,6 +111,8 @@ public final class FlightSqlProducerFactory {
      * The with* methods can be used to override specific values after construction.
      */
     public static class ProducerBuilder {
+        private static final long SESSION_POOL_MAINTENANCE_MS = 30_000;
+
         private final Config config;
         private Location location;
         private List<Location> dataProcessorLocations;
@@ -115,6 +131,13 @@ public final class FlightSqlProducerFactory {
         private Clock clock;
         private IngestionConfig ingestionConfig;
         private CursorConfig cursorConfig;
+        private CacheConfig cacheConfig;
+        private StreamingConfig streamingConfig;
+        private AdmissionConfig admissionConfig;
+        private MemoryBudgetConfig memoryBudgetConfig;
+        private long parseCacheMaxBytes;
+        private SessionPoolConfig sessionPoolConfig;
+        private HiveListingCacheConfig hiveListingCacheConfig;
         private FlightRecorder flightRecorder;
 
         private ProducerBuilder(Config config) {
@@ -165,6 +188,29 @@ public final class FlightSqlProducerFactory {
             // Cursor protection config
             this.cursorConfig = CursorConfig.fromConfig(config);
 
+            // Query result cache config
+            this.cacheConfig = CacheConfig.fromConfig(config);
+
+            // Result streaming flow control
+            this.streamingConfig = StreamingConfig.fromConfig(config);
+
+            // Per-tenant admission control
+            this.admissionConfig = AdmissionConfig.fromConfig(config);
+
+            // Arrow memory budgets
+            this.memoryBudgetConfig = MemoryBudgetConfig.fromConfig(config);
+
+            // Connection pool config
+            this.sessionPoolConfig = SessionPoolConfig.fromConfig(config);
+
+            // SQL parse cache size
+            this.parseCacheMaxBytes = config.hasPath(ConfigConstants.PARSE_CACHE_MAX_BYTES_KEY)
+                ? config.getBytes(ConfigConstants.PARSE_CACHE_MAX_BYTES_KEY)
+                : SqlParseCache.DEFAULT_MAX_BYTES;
+
+            // Hive file listing cache
+            this.hiveListingCacheConfig = HiveListingCacheConfig.fromConfig(config);
+
             // Load providers (query optimizer, post-ingestion factory)
             try {
                 this.queryOptimizer = loadQueryOptimizer(config);
@@ -245,6 +291,55 @@ public final class FlightSqlProducerFactory {
             return ingestionHandler;
         }
 
+        /**
+         * @return the configured query result cache settings
+         */
+        public CacheConfig getCacheConfig() {
+            return cacheConfig;
+        }
+
+        /**
+         * @return the configured byte budget of the shared SQL parse cache
+         */
+        public long getParseCacheMaxBytes() {
+            return parseCacheMaxBytes;
+        }
+
+        /**
+         * @return the configured result streaming settings
+         */
+        public StreamingConfig getStreamingConfig() {
+            return streamingConfig;
+        }
+
+        /**
+         * @return the configured admission control settings
+         */
+        public AdmissionConfig getAdmissionConfig() {
+            return admissionConfig;
+        }
+
+        /**
+         * @return the configured Arrow memory budgets
+         */
+        public MemoryBudgetConfig getMemoryBudgetConfig() {
+            return memoryBudgetConfig;
+        }
+
+        /**
+         * @return the configured connection pool settings
+         */
+        public SessionPoolConfig getSessionPoolConfig() {
+            return sessionPoolConfig;
+        }
+
+        /**
+         * @return the configured hive file listing cache settings
+         */
+        public HiveListingCacheConfig getHiveListingCacheConfig() {
+            return hiveListingCacheConfig;
+        }
+
         /**
          * @return the configured flight recorder, or null if not set
          */
@@ -409,6 +504,83 @@ public final class FlightSqlProducerFactory {
             return this;
         }
 
+        /**
+         * Sets custom query result cache settings.
+         *
+         * @param cacheConfig the cache settings
+         * @return this builder
+         */
+        public ProducerBuilder withCacheConfig(CacheConfig cacheConfig) {
+            this.cacheConfig = cacheConfig;
+            return this;
+        }
+
+        /**
+         * Sets custom result streaming settings.
+         *
+         * @param streamingConfig the streaming settings
+         * @return this builder
+         */
+        public ProducerBuilder withStreamingConfig(StreamingConfig streamingConfig) {
+            this.streamingConfig = streamingConfig;
+            return this;
+        }
+
+        /**
+         * Sets custom admission control settings.
+         *
+         * @param admissionConfig the admission settings
+         * @return this builder
+         */
+        public ProducerBuilder withAdmissionConfig(AdmissionConfig admissionConfig) {
+            this.admissionConfig = admissionConfig;
+            return this;
+        }
+
+        /**
+         * Sets custom Arrow memory budgets.
+         *
+         * @param memoryBudgetConfig the per-statement and per-identity budgets
+         * @return this builder
+         */
+        public ProducerBuilder withMemoryBudgetConfig(MemoryBudgetConfig memoryBudgetConfig) {
+            this.memoryBudgetConfig = memoryBudgetConfig;
+            return this;
+        }
+
+        /**
+         * Sets custom connection pool settings.
+         *
+         * @param sessionPoolConfig the pool settings
+         * @return this builder
+         */
+        public ProducerBuilder withSessionPoolConfig(SessionPoolConfig sessionPoolConfig) {
+            this.sessionPoolConfig = sessionPoolConfig;
+            return this;
+        }
+
+        /**
+         * Sets the byte budget of the shared SQL parse cache; {@code 0} disables it.
+         *
+         * @param parseCacheMaxBytes the budget in bytes
+         * @return this builder
+         */
+        public ProducerBuilder withParseCacheMaxBytes(long parseCacheMaxBytes) {
+            this.parseCacheMaxBytes = parseCacheMaxBytes;
+            return this;
+        }
+
+        /**
+         * Sets custom hive file listing cache settings.
+         *
+         * @param hiveListingCacheConfig the listing cache settings
+         * @return this builder
+         */
+        public ProducerBuilder withHiveListingCacheConfig(HiveListingCacheConfig hiveListingCacheConfig) {
+            this.hiveListingCacheConfig = hiveListingCacheConfig;
+            return this;
+        }
+
         /**
          * Sets a custom flight recorder for metrics and auditing.
          *
@@ -444,6 +616,19 @@ public final class FlightSqlProducerFactory {
                 ? flightRecorder
                 : buildRecorder();
 
+            var options = new ProducerOptions(buildQueryResultCache(finalExecutorService), streamingConfig,
+                    admissionConfig, memoryBudgetConfig);
+
+            // The parse and listing caches are process-wide; the last built producer sets them
+            Transformations.PARSE_CACHE.setMaxBytes(parseCacheMaxBytes);
+            HivePartitionPruning.LISTING_CACHE.setConfig(hiveListingCacheConfig);
+
+            // Likewise the connection pool; maintenance trims idle connections and keeps min_idle warm
+            var sessionPool = ConnectionPool.getSessionPool();
+            sessionPool.setConfig(sessionPoolConfig);
+            long maintainMs = Math.min(sessionPoolConfig.idleTimeout().toMillis(), SESSION_POOL_MAINTENANCE_MS);
+            sessionPool.scheduleMaintenance(finalExecutorService, Duration.ofMillis(maintainMs));
+
             // Create appropriate producer based on access mode
             if (accessMode == AccessMode.RESTRICTED ) {
                 return new RestrictedFlightSqlProducer(
@@ -462,7 +647,9 @@ public final class FlightSqlProducerFactory {
                     finalRecorder,
                     queryOptimizer,
                     ingestionConfig,
-                    dataProcessorLocations
+                    dataProcessorLocations,
+                    cursorConfig,
+                    options
                 );
             } else if (accessMode == AccessMode.RESTRICT_READ_ONLY) {
                 return new RestrictedReadOnlyFlightSqlProducer(
@@ -480,7 +667,9 @@ public final class FlightSqlProducerFactory {
                         clock,
                         finalRecorder,
                         ingestionConfig,
-                        dataProcessorLocations
+                        dataProcessorLocations,
+                        cursorConfig,
+                        options
                 );
             } else if (accessMode == AccessMode.READ_ONLY ) {
                 return new SelectOnlyFlightSqlProducer(
@@ -498,7 +687,9 @@ public final class FlightSqlProducerFactory {
                         clock,
                         finalRecorder,
                         ingestionConfig,
-                        dataProcessorLocations
+                        dataProcessorLocations,
+                        cursorConfig,
+                        options
                 );
             } else {
                 return new DuckDBFlightSqlProducer(
@@ -517,11 +708,35 @@ public final class FlightSqlProducerFactory {
                     finalRecorder,
                     ingestionConfig,
                     dataProcessorLocations,
-                    cursorConfig
+                    cursorConfig,
+                    options
                 );
             }
         }
 
+        /**
+         * Creates the query result cache. When enabled, the cache directory is wiped so entries
+         * written under a previous configuration are never served, and housekeeping is scheduled
+         * on {@code executorService}.
+         */
+        private QueryResultCache buildQueryResultCache(ScheduledExecutorService executorService) {
+            if (!cacheConfig.enabled()) {
+                return QueryResultCache.NOOP;
+            }
+            var directory = cacheConfig.directory();
+            try {
+                CacheHousekeeping.clear(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to clear query cache directory " + directory, e);
+            }
+            var cache = new FileBasedQueryResultCache(directory, cacheConfig.ttl().toSeconds(),
+                    cacheConfig.memorySize(), cacheConfig.maxEntrySize(), clock);
+            long intervalMs = cacheConfig.housekeepingInterval().toMillis();
+            executorService.scheduleWithFixedDelay(new CacheHousekeeping(directory, clock),
+                    intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            return cache;
+        }
+
         private Location readLocationFromConfig() {
             String host = config.hasPath(ConfigConstants.FLIGHT_SQL_HOST_KEY)
                 ? config.getString(ConfigConstants.FLIGHT_SQL_HOST_KEY) : "0.0.0.0";
@@ -13,6 +13,7 @@ import org.apache.arrow.vector.compression.CompressionUtil;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
@@ -85,6 +86,21 @@ public interface HttpFlightAdaptor {
                             FlightProducer.CallContext context,
                             FlightProducer.ServerStreamListener listener);
 
+    /**
+     * Gets the stream for a statement query that runs in the background, such as an async query
+     * whose result is spooled. {@code queryTimeout} replaces the interactive default and maximum
+     * query timeout: it applies when the client asks for none and caps the one it asks for.
+     *
+     * @param ticket the statement query ticket
+     * @param context the call context
+     * @param listener the stream listener to receive results
+     * @param queryTimeout the timeout of the query; {@link Duration#ZERO} for none
+     */
+    void getStreamStatement(FlightSql.TicketStatementQuery ticket,
+                            FlightProducer.CallContext context,
+                            FlightProducer.ServerStreamListener listener,
+                            Duration queryTimeout);
+
     /**
      * Gets flight info for a statement query command.
      * This method provides a typed API for HTTP services to get query planning info.
@@ -124,10 +140,17 @@ public interface HttpFlightAdaptor {
     default CompletableFuture<Void> streamTsv(FlightSql.TicketStatementQuery ticket,
                                                FlightProducer.CallContext context,
                                                Supplier<OutputStream> outputStreamSupplier) {
-        return TsvOutputStreamListener.pipeArrowToTsv(
-                pipe -> getStreamStatementDirect(ticket, context, pipe,
-                        CompressionUtil.CodecType.NO_COMPRESSION),
-                outputStreamSupplier);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        getStreamStatement(ticket, context, new TsvOutputStreamListener(outputStreamSupplier, future));
+        return future;
+    }
+
+    default CompletableFuture<Void> streamJson(FlightSql.TicketStatementQuery ticket,
+                                                FlightProducer.CallContext context,
+                                                Supplier<OutputStream> outputStreamSupplier) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        getStreamStatement(ticket, context, new JsonOutputStreamListener(outputStreamSupplier, future));
+        return future;
     }
 
     default CompletableFuture<Void> streamTsv(String sql, FlightProducer.CallContext context,
@@ -22,17 +22,26 @@ public final class IngestionConfig {
                 minBucketSize, maxBucketSize, maxBatches, maxPendingWrite, maxDelay, configRefreshDelay);
     }
 
+    private IngestionConfig(io.dazzleduck.sql.commons.ingestion.IngestionConfig delegate) {
+        this.delegate = delegate;
+    }
+
     public long     minBucketSize()    { return delegate.minBucketSize(); }
     public long     maxBucketSize()    { return delegate.maxBucketSize(); }
     public int      maxBatches()       { return delegate.maxBatches(); }
     public long     maxPendingWrite()  { return delegate.maxPendingWrite(); }
     public Duration maxDelay()         { return delegate.maxDelay(); }
     public Duration configRefreshDelay(){ return delegate.configRefreshDelay(); }
+    public io.dazzleduck.sql.commons.ingestion.IngestionWalConfig wal() { return delegate.wal(); }
+    public long     inMemoryMaxBytes() { return delegate.inMemoryMaxBytes(); }
+    public int      writerThreads()    { return delegate.writerThreads(); }
+    public int      writersPerQueue()  { return delegate.writersPerQueue(); }
+    public io.dazzleduck.sql.commons.ingestion.AdaptiveFlushConfig adaptiveFlush() { return delegate.adaptiveFlush(); }
+    public io.dazzleduck.sql.commons.ingestion.ParquetWriteConfig parquetWrite() { return delegate.parquetWrite(); }
+    public io.dazzleduck.sql.commons.ingestion.ProducerDedupConfig producerDedup() { return delegate.producerDedup(); }
 
     public static IngestionConfig fromConfig(Config config) {
-        var b = io.dazzleduck.sql.commons.ingestion.IngestionConfig.fromConfig(config);
-        return new IngestionConfig(b.minBucketSize(), b.maxBucketSize(), b.maxBatches(),
-                b.maxPendingWrite(), b.maxDelay(), b.configRefreshDelay());
+        return new IngestionConfig(io.dazzleduck.sql.commons.ingestion.IngestionConfig.fromConfig(config));
     }
 
     /** Converts to the canonical commons type. */
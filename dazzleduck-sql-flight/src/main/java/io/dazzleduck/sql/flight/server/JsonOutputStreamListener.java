@@ -1,11 +1,9 @@
 package io.dazzleduck.sql.flight.server;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dazzleduck.sql.commons.io.JsonEncoder;
 import org.apache.arrow.flight.FlightProducer;
 import org.apache.arrow.memory.ArrowBuf;
-import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.dictionary.DictionaryProvider;
 import org.apache.arrow.vector.ipc.message.IpcOption;
 import org.slf4j.Logger;
@@ -13,10 +11,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalTime;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
@@ -24,20 +18,19 @@ import java.util.function.Supplier;
 /**
  * A ServerStreamListener that writes Arrow batches as JSON to an OutputStream.
  *
- * <p>Can write either a JSON array of objects or a single JSON object (first row only).
+ * <p>Can write either a JSON array of objects or a single JSON object (first row only). Batches
+ * are rendered column by column with {@link JsonEncoder}.
  */
 public class JsonOutputStreamListener implements FlightProducer.ServerStreamListener {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonOutputStreamListener.class);
-    private static final JsonFactory JSON_FACTORY = new JsonFactory();
-    private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private final Supplier<OutputStream> outputStreamSupplier;
     private final CompletableFuture<Void> future;
     private final boolean includeArrayBrackets;
     
     private OutputStream outputStream;
-    private JsonGenerator generator;
+    private JsonEncoder encoder;
     private VectorSchemaRoot root;
     private boolean firstRowWritten = false;
 
@@ -53,7 +46,8 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
 
     @Override
     public boolean isCancelled() {
-        return future.isCancelled();
+        // A failed write completes the future; stop producing batches nobody will receive
+        return future.isDone();
     }
 
     @Override
@@ -72,7 +66,7 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
         this.root = root;
         try {
             if (includeArrayBrackets) {
-                ensureGenerator();
+                ensureEncoder();
             }
             logger.debug("JsonOutputStreamListener started with schema: {}, includeArrayBrackets: {}", 
                     root.getSchema(), includeArrayBrackets);
@@ -82,12 +76,12 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
         }
     }
 
-    private void ensureGenerator() throws IOException {
-        if (generator == null) {
+    private void ensureEncoder() throws IOException {
+        if (encoder == null) {
             this.outputStream = outputStreamSupplier.get();
-            this.generator = JSON_FACTORY.createGenerator(outputStream);
+            this.encoder = new JsonEncoder(outputStream);
             if (includeArrayBrackets) {
-                this.generator.writeStartArray();
+                this.encoder.writeStartArray();
             }
         }
     }
@@ -95,9 +89,9 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
     @Override
     public synchronized void putNext() {
         try {
-            ensureGenerator();
+            ensureEncoder();
             writeRows();
-            generator.flush();
+            encoder.flush();
         } catch (IOException e) {
             logger.error("Error in putNext()", e);
             future.completeExceptionally(e);
@@ -117,9 +111,7 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
     @Override
     public synchronized void error(Throwable ex) {
         try {
-            if (generator != null) {
-                generator.close();
-            } else if (outputStream != null) {
+            if (outputStream != null) {
                 outputStream.close();
             }
         } catch (Exception ignored) {
@@ -134,12 +126,12 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
             if (!firstRowWritten && !includeArrayBrackets) {
                 throw new NoSuchElementException("No rows found");
             }
-            if (generator != null) {
+            if (encoder != null) {
                 if (includeArrayBrackets) {
-                    generator.writeEndArray();
+                    encoder.writeEndArray();
                 }
-                generator.flush();
-                generator.close();
+                encoder.flush();
+                outputStream.close();
             }
             future.complete(null);
         } catch (Exception e) {
@@ -151,111 +143,11 @@ public class JsonOutputStreamListener implements FlightProducer.ServerStreamList
     }
 
     private void writeRows() throws IOException {
-        List<FieldVector> vectors = root.getFieldVectors();
-        int rowCount = root.getRowCount();
-        for (int row = 0; row < rowCount; row++) {
-            if (!includeArrayBrackets && firstRowWritten) {
-                break; // Only write one row if not using array brackets
-            }
-            generator.writeStartObject();
-            for (FieldVector vector : vectors) {
-                writeField(vector, row);
-            }
-            generator.writeEndObject();
-            firstRowWritten = true;
-        }
-    }
-
-    private void writeField(FieldVector vector, int row) throws IOException {
-        String name = vector.getName();
-        if (vector.isNull(row)) {
-            generator.writeNullField(name);
-            return;
-        }
-
-        switch (vector.getMinorType()) {
-            case TINYINT:
-                generator.writeNumberField(name, ((TinyIntVector) vector).get(row));
-                break;
-            case SMALLINT:
-                generator.writeNumberField(name, ((SmallIntVector) vector).get(row));
-                break;
-            case INT:
-                generator.writeNumberField(name, ((IntVector) vector).get(row));
-                break;
-            case BIGINT:
-                generator.writeNumberField(name, ((BigIntVector) vector).get(row));
-                break;
-            case FLOAT4:
-                generator.writeNumberField(name, ((Float4Vector) vector).get(row));
-                break;
-            case FLOAT8:
-                generator.writeNumberField(name, ((Float8Vector) vector).get(row));
-                break;
-            case BIT:
-                generator.writeBooleanField(name, ((BitVector) vector).get(row) != 0);
-                break;
-            case VARCHAR:
-                generator.writeStringField(name, ((VarCharVector) vector).getObject(row).toString());
-                break;
-            case VARBINARY:
-                generator.writeBinaryField(name, ((VarBinaryVector) vector).get(row));
-                break;
-
-            // Date types
-            case DATEDAY:
-                generator.writeStringField(name, LocalDate.ofEpochDay(((DateDayVector) vector).get(row)).toString());
-                break;
-            case DATEMILLI:
-                generator.writeStringField(name, LocalDate.ofEpochDay(((DateMilliVector) vector).get(row) / 86_400_000L).toString());
-                break;
-
-            // Time types
-            case TIMESEC:
-                generator.writeStringField(name, LocalTime.ofSecondOfDay(((TimeSecVector) vector).get(row)).toString());
-                break;
-            case TIMEMILLI:
-                generator.writeStringField(name, LocalTime.ofNanoOfDay((long) ((TimeMilliVector) vector).get(row) * 1_000_000L).toString());
-                break;
-            case TIMEMICRO:
-                generator.writeStringField(name, LocalTime.ofNanoOfDay(((TimeMicroVector) vector).get(row) * 1_000L).toString());
-                break;
-            case TIMENANO:
-                generator.writeStringField(name, LocalTime.ofNanoOfDay(((TimeNanoVector) vector).get(row)).toString());
-                break;
-
-            // Timezone-aware timestamp types
-            case TIMESTAMPSECTZ:
-                generator.writeStringField(name, Instant.ofEpochSecond(((TimeStampSecTZVector) vector).get(row)).toString());
-                break;
-            case TIMESTAMPMILLITZ:
-                generator.writeStringField(name, Instant.ofEpochMilli(((TimeStampMilliTZVector) vector).get(row)).toString());
-                break;
-            case TIMESTAMPMICROTZ: {
-                long micros = ((TimeStampMicroTZVector) vector).get(row);
-                generator.writeStringField(name, Instant.ofEpochSecond(
-                        Math.floorDiv(micros, 1_000_000L),
-                        Math.floorMod(micros, 1_000_000L) * 1_000L).toString());
-                break;
-            }
-            case TIMESTAMPNANOTZ: {
-                long nanos = ((TimeStampNanoTZVector) vector).get(row);
-                generator.writeStringField(name, Instant.ofEpochSecond(
-                        Math.floorDiv(nanos, 1_000_000_000L),
-                        Math.floorMod(nanos, 1_000_000_000L)).toString());
-                break;
-            }
-
-            // Fallback for complex types (List, Struct, Map etc)
-            default:
-                Object value = vector.getObject(row);
-                if (value != null) {
-                    generator.writeFieldName(name);
-                    MAPPER.writeValue(generator, value);
-                } else {
-                    generator.writeNullField(name);
-                }
-                break;
+        if (includeArrayBrackets) {
+            firstRowWritten |= encoder.writeRows(root, Integer.MAX_VALUE) > 0;
+        } else if (!firstRowWritten) {
+            // Only write one row if not using array brackets
+            firstRowWritten = encoder.writeRows(root, 1) > 0;
         }
     }
 }
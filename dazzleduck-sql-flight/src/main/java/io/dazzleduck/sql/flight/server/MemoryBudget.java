@@ -0,0 +1,93 @@
+package io.dazzleduck.sql.flight.server;
+
+import org.apache.arrow.memory.AllocationListener;
+import org.apache.arrow.memory.BufferAllocator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out statement allocators whose limits enforce a {@link MemoryBudgetConfig}.
+ *
+ * <p>Allocators form a {@code root -> identity -> statement} hierarchy. An identity allocator is
+ * created when the identity's first statement starts and closed when its last statement allocator
+ * is closed, so idle identities hold nothing. Allocations past a limit fail with Arrow's
+ * {@link org.apache.arrow.memory.OutOfMemoryException}, which ends only the offending stream.
+ *
+ * <p>An identity allocator learns that one of its statement allocators closed through its
+ * {@link AllocationListener}. Statement allocators get {@link AllocationListener#NOOP} rather than
+ * inheriting it, and only the statement allocators handed out here are counted, so allocators
+ * created below a statement do not affect when its identity closes.
+ */
+final class MemoryBudget {
+
+    private final BufferAllocator root;
+    private final MemoryBudgetConfig config;
+    private final Map<String, Identity> identities = new HashMap<>();
+    private final AtomicLong statementIds = new AtomicLong();
+
+    private final class Identity implements AllocationListener {
+        final String name;
+        final Set<BufferAllocator> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        BufferAllocator allocator;
+
+        Identity(String name) {
+            this.name = name;
+        }
+
+        // Runs when a statement allocator is closed
+        @Override
+        public void onChildRemoved(BufferAllocator parentAllocator, BufferAllocator childAllocator) {
+            synchronized (MemoryBudget.this) {
+                if (statements.remove(childAllocator) && statements.isEmpty()) {
+                    identities.remove(name);
+                    allocator.close();
+                }
+            }
+        }
+    }
+
+    MemoryBudget(BufferAllocator root, MemoryBudgetConfig config) {
+        this.root = root;
+        this.config = config;
+    }
+
+    /**
+     * Opens the allocator of one statement run by {@code identity}. Closing it releases the
+     * identity's share when it was the identity's last running statement.
+     */
+    synchronized BufferAllocator newStatementAllocator(String identity) {
+        var entry = identities.get(identity);
+        if (entry == null) {
+            entry = new Identity(identity);
+            entry.allocator = root.newChildAllocator("identity-" + identity, entry, 0,
+                    limit(config.perIdentityBytes(), root.getLimit()));
+            identities.put(identity, entry);
+        }
+        var allocator = entry.allocator.newChildAllocator(
+                "statement-" + identity + "-" + statementIds.incrementAndGet(), AllocationListener.NOOP, 0,
+                limit(config.perStatementBytes(), entry.allocator.getLimit()));
+        entry.statements.add(allocator);
+        return allocator;
+    }
+
+    /**
+     * @return bytes currently allocated by the running statements of {@code identity}
+     */
+    synchronized long getAllocatedMemory(String identity) {
+        var entry = identities.get(identity);
+        return entry == null ? 0 : entry.allocator.getAllocatedMemory();
+    }
+
+    MemoryBudgetConfig getConfig() {
+        return config;
+    }
+
+    private static long limit(long budget, long parentLimit) {
+        return budget <= 0 ? parentLimit : Math.min(budget, parentLimit);
+    }
+}
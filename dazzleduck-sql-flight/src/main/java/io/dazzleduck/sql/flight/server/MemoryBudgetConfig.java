@@ -0,0 +1,30 @@
+package io.dazzleduck.sql.flight.server;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+/**
+ * Arrow memory budgets of query results ({@code dazzleduck_server.memory_budget}).
+ *
+ * Every statement streams through an allocator limited to {@code perStatementBytes}, nested
+ * under an allocator of its identity limited to {@code perIdentityBytes} that all of the
+ * identity's running statements share. {@code 0} means no limit below the parent allocator.
+ */
+public record MemoryBudgetConfig(
+        long perStatementBytes,
+        long perIdentityBytes
+) {
+
+    public static final MemoryBudgetConfig DEFAULT = new MemoryBudgetConfig(0, 0);
+
+    public static MemoryBudgetConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.MEMORY_BUDGET_KEY)) {
+            return DEFAULT;
+        }
+        var budget = config.getConfig(ConfigConstants.MEMORY_BUDGET_KEY);
+        return new MemoryBudgetConfig(
+                budget.getBytes(ConfigConstants.MEMORY_BUDGET_PER_STATEMENT_KEY),
+                budget.getBytes(ConfigConstants.MEMORY_BUDGET_PER_IDENTITY_KEY)
+        );
+    }
+}
@@ -0,0 +1,207 @@
+package io.dazzleduck.sql.flight.server;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link ArrowReader} that loads batches from a source reader on a background thread, up to
+ * {@code depth} batches ahead of the consumer, so exporting the next batch from DuckDB overlaps
+ * with writing the current one to the client.
+ *
+ * <p>Prefetched batches are unloaded from the source root by reference (no copy) and loaded into
+ * this reader's own root when the consumer asks for them. Closing the reader stops the background
+ * task, releases unconsumed batches and closes the source.
+ *
+ * <p>The background task runs on a shared pool with as many threads as there are statement
+ * workers. It only holds a thread while it exports batches: once {@code depth} batches are
+ * waiting it returns, and the consumer submits it again when it takes one. A stream whose client
+ * stalls therefore holds no prefetch thread.
+ */
+class PrefetchingArrowReader extends ArrowReader {
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private static final ExecutorService PREFETCH_EXECUTOR =
+            Executors.newFixedThreadPool(DuckDBFlightSqlProducer.WORKER_THREADS, r -> {
+                var thread = new Thread(r, "result-prefetch-" + THREAD_ID.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** An element of the hand-off queue: a batch, the end of the stream, or the producer's failure. */
+    private record Item(ArrowRecordBatch batch, Throwable error) {
+        static final Item END = new Item(null, null);
+    }
+
+    private final ArrowReader source;
+    private final BlockingQueue<Item> queue;
+    private VectorUnloader unloader;
+    // Guarded by this: whether the background task is submitted or running, and whether it queued
+    // the end of the stream or a failure
+    private boolean producing;
+    private boolean exhausted;
+    private volatile boolean closed;
+    private boolean finished;
+
+    private PrefetchingArrowReader(ArrowReader source, BufferAllocator allocator, int depth) {
+        super(allocator);
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(depth);
+    }
+
+    /**
+     * Wraps {@code source} so that it is read {@code depth} batches ahead. Returns {@code source}
+     * itself when {@code depth} is not positive.
+     */
+    static ArrowReader wrap(ArrowReader source, BufferAllocator allocator, int depth) {
+        if (depth <= 0) {
+            return source;
+        }
+        return new PrefetchingArrowReader(source, allocator, depth);
+    }
+
+    @Override
+    protected Schema readSchema() throws IOException {
+        return source.getVectorSchemaRoot().getSchema();
+    }
+
+    @Override
+    public boolean loadNextBatch() throws IOException {
+        prepareLoadNextBatch();
+        if (finished) {
+            return false;
+        }
+        resume();
+        Item item;
+        try {
+            item = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the next batch", e);
+        }
+        // The queue has room again, so a producer that stopped on a full queue may go on
+        resume();
+        if (item.error() != null) {
+            finished = true;
+            if (item.error() instanceof IOException io) {
+                throw io;
+            }
+            if (item.error() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (item.error() instanceof Error e) {
+                throw e;
+            }
+            throw new IOException(item.error());
+        }
+        if (item == Item.END) {
+            finished = true;
+            return false;
+        }
+        loadRecordBatch(item.batch());
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        return source.bytesRead();
+    }
+
+    @Override
+    protected void closeReadSource() throws IOException {
+        closed = true;
+        discardQueued();
+        boolean interrupted = false;
+        synchronized (this) {
+            while (producing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // The producer may have queued one last batch before it saw the close flag
+        discardQueued();
+        source.close();
+    }
+
+    /** Submits the background task unless it is already running or has nothing left to do. */
+    private synchronized void resume() {
+        if (producing || exhausted || closed) {
+            return;
+        }
+        producing = true;
+        try {
+            PREFETCH_EXECUTOR.execute(this::produce);
+        } catch (RejectedExecutionException e) {
+            producing = false;
+            exhausted = true;
+            queue.add(new Item(null, e));
+        }
+    }
+
+    private void produce() {
+        while (mayProduce()) {
+            var item = next();
+            // Never blocks: only this task adds, and mayProduce saw a free slot
+            queue.add(item);
+            if (item.batch() == null) {
+                synchronized (this) {
+                    exhausted = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the background task should export another batch. When it should not, the
+     * task is marked as stopped in the same step, so that {@link #resume} cannot miss a slot the
+     * consumer frees in between.
+     */
+    private synchronized boolean mayProduce() {
+        if (closed || exhausted || queue.remainingCapacity() == 0) {
+            producing = false;
+            notifyAll();
+            return false;
+        }
+        return true;
+    }
+
+    private Item next() {
+        try {
+            if (unloader == null) {
+                unloader = new VectorUnloader(source.getVectorSchemaRoot());
+            }
+            if (!source.loadNextBatch()) {
+                return Item.END;
+            }
+            return new Item(unloader.getRecordBatch(), null);
+        } catch (Throwable t) {
+            return new Item(null, t);
+        }
+    }
+
+    private void discardQueued() {
+        Item item;
+        while ((item = queue.poll()) != null) {
+            if (item.batch() != null) {
+                item.batch().close();
+            }
+        }
+    }
+}
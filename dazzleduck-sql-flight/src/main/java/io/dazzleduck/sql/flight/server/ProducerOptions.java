@@ -0,0 +1,37 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.cache.QueryResultCache;
+
+/**
+ * Optional features of a {@link DuckDBFlightSqlProducer}, passed as one argument so that a new
+ * feature does not add another constructor overload.
+ *
+ * {@link #DEFAULT} disables the result cache and leaves streaming, admission control and memory
+ * budgets at their defaults; the {@code with} methods return a copy with one setting replaced.
+ */
+public record ProducerOptions(
+        QueryResultCache queryResultCache,
+        StreamingConfig streamingConfig,
+        AdmissionConfig admissionConfig,
+        MemoryBudgetConfig memoryBudgetConfig
+) {
+
+    public static final ProducerOptions DEFAULT = new ProducerOptions(QueryResultCache.NOOP,
+            StreamingConfig.DEFAULT, AdmissionConfig.DEFAULT, MemoryBudgetConfig.DEFAULT);
+
+    public ProducerOptions withQueryResultCache(QueryResultCache queryResultCache) {
+        return new ProducerOptions(queryResultCache, streamingConfig, admissionConfig, memoryBudgetConfig);
+    }
+
+    public ProducerOptions withStreamingConfig(StreamingConfig streamingConfig) {
+        return new ProducerOptions(queryResultCache, streamingConfig, admissionConfig, memoryBudgetConfig);
+    }
+
+    public ProducerOptions withAdmissionConfig(AdmissionConfig admissionConfig) {
+        return new ProducerOptions(queryResultCache, streamingConfig, admissionConfig, memoryBudgetConfig);
+    }
+
+    public ProducerOptions withMemoryBudgetConfig(MemoryBudgetConfig memoryBudgetConfig) {
+        return new ProducerOptions(queryResultCache, streamingConfig, admissionConfig, memoryBudgetConfig);
+    }
+}
@@ -0,0 +1,272 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.flight.FlightRecorder;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Lets identical statements that arrive while one of them is still executing share that
+ * execution (single-flight).
+ *
+ * <p>The first statement for a key becomes the leader: {@link #join} hands it a listener that
+ * fans every call out to the leader's own listener and to each listener that joins later. Joining
+ * is possible while the leader waits to run and while it executes, until it sends the schema:
+ * {@code start} frees the key, so every participant sees the whole result from the schema
+ * onwards. The next identical statement leads a new execution.
+ *
+ * <p>A participant whose client goes away, or that is cancelled through {@link #cancel}, is
+ * dropped; the execution runs until the last one is gone, and its stream is paced by the slowest
+ * remaining reader. Once every participant is gone the handler given to the shared listener's
+ * {@code setOnCancelHandler} runs.
+ */
+final class QueryCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCoalescer.class);
+
+    private final Map<String, SharedExecution> executions = new HashMap<>();
+    private final Map<DuckDBFlightSqlProducer.CacheKey, SharedExecution> participants = new HashMap<>();
+    private final FlightRecorder recorder;
+
+    QueryCoalescer(FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Attaches {@code listener} to the execution of {@code key}.
+     *
+     * @param participant the statement {@code listener} streams for, so that it can be cancelled
+     * @return the listener the caller must stream the result into when it leads a new execution,
+     * or {@code null} when {@code listener} joined a running one and will be served by it
+     */
+    synchronized FlightProducer.ServerStreamListener join(String key, DuckDBFlightSqlProducer.CacheKey participant,
+                                                          FlightProducer.ServerStreamListener listener) {
+        var execution = executions.get(key);
+        if (execution != null && !execution.started) {
+            execution.add(participant, listener);
+            participants.put(participant, execution);
+            recorder.recordQueryCoalesced();
+            return null;
+        }
+        execution = new SharedExecution(key, participant, listener);
+        executions.put(key, execution);
+        participants.put(participant, execution);
+        return execution;
+    }
+
+    /**
+     * Detaches {@code participant} from the shared execution it takes part in and fails its stream
+     * with CANCELLED. The execution goes on for the other participants.
+     *
+     * @return false when {@code participant} does not take part in a shared execution
+     */
+    boolean cancel(DuckDBFlightSqlProducer.CacheKey participant) {
+        SharedExecution execution;
+        FlightProducer.ServerStreamListener listener;
+        synchronized (this) {
+            execution = participants.remove(participant);
+            if (execution == null) {
+                return false;
+            }
+            listener = execution.remove(participant);
+            if (execution.participants.isEmpty()) {
+                // Nobody is left to read it, so identical statements must not join it any more
+                seal(execution);
+            }
+        }
+        try {
+            listener.error(CallStatus.CANCELLED.withDescription("Statement was cancelled").toRuntimeException());
+        } catch (RuntimeException e) {
+            logger.atDebug().setCause(e).log("Failed to report cancellation to a coalesced listener");
+        }
+        execution.cancelIfAbandoned();
+        return true;
+    }
+
+    /**
+     * @return number of executions that still accept joiners
+     */
+    synchronized int getOpenExecutions() {
+        return executions.size();
+    }
+
+    private synchronized void seal(SharedExecution execution) {
+        execution.started = true;
+        executions.remove(execution.key, execution);
+    }
+
+    private synchronized void finish(SharedExecution execution) {
+        seal(execution);
+        execution.participants.keySet().forEach(participant -> participants.remove(participant, execution));
+    }
+
+    private final class SharedExecution implements FlightProducer.ServerStreamListener {
+
+        private final String key;
+        private final List<FlightProducer.ServerStreamListener> listeners = new CopyOnWriteArrayList<>();
+        // Guarded by QueryCoalescer.this
+        private final Map<DuckDBFlightSqlProducer.CacheKey, FlightProducer.ServerStreamListener> participants =
+                new HashMap<>();
+        private boolean started;
+        private Runnable onCancel;
+
+        SharedExecution(String key, DuckDBFlightSqlProducer.CacheKey leaderKey,
+                        FlightProducer.ServerStreamListener leader) {
+            this.key = key;
+            this.listeners.add(leader);
+            this.participants.put(leaderKey, leader);
+        }
+
+        // Called with QueryCoalescer.this held, before the execution has started
+        private void add(DuckDBFlightSqlProducer.CacheKey participant, FlightProducer.ServerStreamListener listener) {
+            listeners.add(listener);
+            participants.put(participant, listener);
+            if (onCancel != null) {
+                listener.setOnCancelHandler(this::cancelIfAbandoned);
+            }
+        }
+
+        // Called with QueryCoalescer.this held
+        private FlightProducer.ServerStreamListener remove(DuckDBFlightSqlProducer.CacheKey participant) {
+            var listener = participants.remove(participant);
+            listeners.remove(listener);
+            return listener;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            for (var listener : listeners) {
+                if (!listener.isCancelled()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable handler) {
+            synchronized (QueryCoalescer.this) {
+                onCancel = handler;
+                listeners.forEach(l -> l.setOnCancelHandler(this::cancelIfAbandoned));
+            }
+        }
+
+        private void cancelIfAbandoned() {
+            Runnable handler;
+            synchronized (QueryCoalescer.this) {
+                handler = onCancel;
+            }
+            if (handler != null && isCancelled()) {
+                handler.run();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            for (var listener : listeners) {
+                if (!listener.isCancelled() && !listener.isReady()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+            seal(this);
+            forEach(l -> l.start(root, dictionaries, option));
+        }
+
+        @Override
+        public void putNext() {
+            forEach(FlightProducer.ServerStreamListener::putNext);
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+            if (metadata == null) {
+                forEach(l -> l.putNext(null));
+            } else {
+                // Each listener takes ownership of the metadata buffer it is given
+                forEachWithBuffer(metadata, FlightProducer.ServerStreamListener::putNext);
+            }
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {
+            forEachWithBuffer(metadata, FlightProducer.ServerStreamListener::putMetadata);
+        }
+
+        @Override
+        public void error(Throwable ex) {
+            finish(this);
+            for (var listener : listeners) {
+                try {
+                    listener.error(ex);
+                } catch (RuntimeException e) {
+                    logger.atDebug().setCause(e).log("Failed to report error to a coalesced listener");
+                }
+            }
+        }
+
+        @Override
+        public void completed() {
+            finish(this);
+            forEach(FlightProducer.ServerStreamListener::completed);
+        }
+
+        private void forEachWithBuffer(ArrowBuf buffer,
+                                       BiConsumer<FlightProducer.ServerStreamListener, ArrowBuf> call) {
+            var targets = listeners.stream().filter(l -> !l.isCancelled()).toList();
+            if (targets.isEmpty()) {
+                buffer.close();
+                return;
+            }
+            if (targets.size() > 1) {
+                buffer.getReferenceManager().retain(targets.size() - 1);
+            }
+            for (var listener : targets) {
+                deliver(listener, l -> call.accept(l, buffer));
+            }
+        }
+
+        /**
+         * Delivers a call to every participant that is still reading. A participant whose listener
+         * fails is dropped and told so; the others keep receiving the result.
+         */
+        private void forEach(Consumer<FlightProducer.ServerStreamListener> call) {
+            for (var listener : listeners) {
+                if (!listener.isCancelled()) {
+                    deliver(listener, call);
+                }
+            }
+        }
+
+        private void deliver(FlightProducer.ServerStreamListener listener,
+                             Consumer<FlightProducer.ServerStreamListener> call) {
+            try {
+                call.accept(listener);
+            } catch (RuntimeException e) {
+                logger.atDebug().setCause(e).log("Dropping coalesced listener that failed");
+                listeners.remove(listener);
+                try {
+                    listener.error(e);
+                } catch (RuntimeException ignored) {
+                    // The listener is already broken
+                }
+            }
+        }
+    }
+}
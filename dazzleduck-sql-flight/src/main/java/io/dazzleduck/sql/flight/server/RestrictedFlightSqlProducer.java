@@ -42,7 +42,11 @@ public class RestrictedFlightSqlProducer extends DuckDBFlightSqlProducer {
     }
 
     public RestrictedFlightSqlProducer(Location serverLocation, String producerId, String secretKey, BufferAllocator allocator, String warehousePath, AccessMode accessMode, Path tempDir, IngestionHandler postIngestionHandler, ScheduledExecutorService scheduledExecutorService, Duration queryTimeout, Duration maxQueryTimeout, Clock clock, FlightRecorder recorder, QueryOptimizer queryOptimizer, IngestionConfig ingestionConfig, List<Location> dataProcessorLocations) {
-        super(serverLocation, producerId, secretKey, allocator, warehousePath, accessMode, tempDir, postIngestionHandler, scheduledExecutorService, queryTimeout, maxQueryTimeout, clock, recorder, ingestionConfig, dataProcessorLocations);
+        this(serverLocation, producerId, secretKey, allocator, warehousePath, accessMode, tempDir, postIngestionHandler, scheduledExecutorService, queryTimeout, maxQueryTimeout, clock, recorder, queryOptimizer, ingestionConfig, dataProcessorLocations, CursorConfig.DEFAULT, ProducerOptions.DEFAULT);
+    }
+
+    public RestrictedFlightSqlProducer(Location serverLocation, String producerId, String secretKey, BufferAllocator allocator, String warehousePath, AccessMode accessMode, Path tempDir, IngestionHandler postIngestionHandler, ScheduledExecutorService scheduledExecutorService, Duration queryTimeout, Duration maxQueryTimeout, Clock clock, FlightRecorder recorder, QueryOptimizer queryOptimizer, IngestionConfig ingestionConfig, List<Location> dataProcessorLocations, CursorConfig cursorConfig, ProducerOptions options) {
+        super(serverLocation, producerId, secretKey, allocator, warehousePath, accessMode, tempDir, postIngestionHandler, scheduledExecutorService, queryTimeout, maxQueryTimeout, clock, recorder, ingestionConfig, dataProcessorLocations, cursorConfig, options);
         this.queryOptimizer = queryOptimizer;
     }
 
@@ -490,8 +494,7 @@ public class RestrictedFlightSqlProducer extends DuckDBFlightSqlProducer {
     @Override
     protected FlightInfo getFlightInfoStatementFromQuery(final String query, final CallContext context, final FlightDescriptor descriptor) {
         JsonNode authorizedTree = null;
-        try {
-            var connection = getConnection(context, getAccessMode());
+        try (var connection = getConnection(context, getAccessMode())) {
             authorizedTree = transformQueryToTree(context, connection, query);
         } catch (Exception e) {
             ErrorHandling.handleThrowable(e);
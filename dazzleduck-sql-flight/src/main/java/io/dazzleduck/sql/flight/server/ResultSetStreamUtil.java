@@ -2,19 +2,22 @@ package io.dazzleduck.sql.flight.server;
 
 import io.dazzleduck.sql.commons.authorization.AccessMode;
 import io.dazzleduck.sql.flight.FlightRecorder;
+import org.apache.arrow.flight.CallStatus;
 import org.apache.arrow.flight.FlightProducer;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.ipc.ArrowReader;
-import org.duckdb.DuckDBConnection;
 import org.duckdb.DuckDBResultSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class ResultSetStreamUtil {
 
@@ -23,122 +26,194 @@ public class ResultSetStreamUtil {
     private ResultSetStreamUtil() {
         throw new UnsupportedOperationException("Utility class");
     }
-    static void streamResultSet(ExecutorService executorService,
+    static void streamResultSet(Executor executor,
                                 ResultSetSupplier supplier,
                                 BufferAllocator allocator,
                                 final int batchSize,
                                 final FlightProducer.ServerStreamListener listener,
                                 Runnable finalBlock,
-                                FlightRecorder recorder) {
-        executorService.submit(() -> {
+                                FlightRecorder recorder,
+                                StreamingConfig streamingConfig) {
+        execute(executor, listener, finalBlock, () -> {
             BufferAllocator childAllocator = null;
-            var error = false;
+            DuckDBResultSet resultSet = null;
+            ArrowReader reader = null;
             try {
                 childAllocator = allocator.newChildAllocator("statement-allocator", 0, allocator.getLimit());
                 recorder.startStream(false);
-                try (DuckDBResultSet resultSet = supplier.get();
-                     ArrowReader reader = (ArrowReader) resultSet.arrowExportStream(childAllocator, batchSize)) {
-                    listener.start(reader.getVectorSchemaRoot());
-                    while (reader.loadNextBatch()) {
-                        var size = childAllocator.getAllocatedMemory();
-                        recorder.recordGetStream(false, size);
-                        listener.putNext();
-                    }
-                }
+                resultSet = supplier.get();
+                reader = PrefetchingArrowReader.wrap(
+                        (ArrowReader) resultSet.arrowExportStream(childAllocator, batchSize),
+                        childAllocator, streamingConfig.prefetchDepth());
+                listener.start(reader.getVectorSchemaRoot());
             } catch (Throwable throwable) {
-                error = true;
-                recorder.errorStream(false);
-                ErrorHandling.handleThrowable(listener, throwable);
-            } finally {
-                if (!error) {
-                    listener.completed();
-                }
-                recorder.endStream(false);
-                finalBlock.run();
-                if (childAllocator != null) {
-                    childAllocator.close();
-                }
+                closeQuietly(reader, resultSet);
+                ended(listener, throwable, false, recorder, finalBlock, childAllocator);
+                return;
             }
+            var streamAllocator = childAllocator;
+            var openReader = reader;
+            var openResultSet = resultSet;
+            new BatchPump(executor, listener, new StreamBackpressure(listener, streamingConfig, recorder), reader,
+                    () -> recorder.recordGetStream(false, streamAllocator.getAllocatedMemory()),
+                    () -> closeAll(openReader, openResultSet),
+                    (error, cancelled) -> ended(listener, error, cancelled, recorder, finalBlock, streamAllocator))
+                    .run();
         });
     }
 
-    static <T extends Statement> void streamResultSet(ExecutorService executorService,
+    private static void ended(FlightProducer.ServerStreamListener listener, Throwable error, boolean cancelled,
+                              FlightRecorder recorder, Runnable finalBlock, BufferAllocator childAllocator) {
+        try {
+            if (error != null) {
+                recorder.errorStream(false);
+                ErrorHandling.handleThrowable(listener, error);
+            } else if (!cancelled) {
+                listener.completed();
+            }
+        } finally {
+            recorder.endStream(false);
+            finalBlock.run();
+            if (childAllocator != null) {
+                recorder.recordStreamPeakMemory(childAllocator.getPeakMemoryAllocation());
+                childAllocator.close();
+            }
+        }
+    }
+
+    /**
+     * Streams the result of a statement. The statement starts on {@code executor}, typically the
+     * tenant's admission executor. A stream that had to wait for its client continues on
+     * {@code workers}, the pool behind it, so that it is admitted once and is not queued behind
+     * statements that have not started yet.
+     */
+    static <T extends Statement> void streamResultSet(Executor executor,
+                                                      Executor workers,
                                                       StatementContext<T> statementContext,
                                                       DuckDBFlightSqlProducer.CacheKey key,
                                                       OptionalResultSetSupplier supplier,
-                                                      BufferAllocator allocator,
+                                                      Supplier<BufferAllocator> allocatorSupplier,
                                                       final int batchSize,
                                                       final FlightProducer.ServerStreamListener listener,
-                                                      Runnable finalBlock, FlightRecorder recorder) {
+                                                      Runnable finalBlock, FlightRecorder recorder,
+                                                      StreamingConfig streamingConfig) {
 
-        executorService.submit(() -> {
+        execute(executor, listener, finalBlock, () -> {
             BufferAllocator childAllocator = null;
-            var error = false;
+            DuckDBResultSet resultSet = null;
+            ArrowReader reader = null;
             try {
-                childAllocator = allocator.newChildAllocator("statement-allocator", 0, allocator.getLimit());
+                childAllocator = allocatorSupplier.get();
+                statementContext.attachAllocator(childAllocator);
                 statementContext.start();
                 recorder.startStream(statementContext.isPreparedStatementContext());
                 recorder.recordStatementStreamStart(key, statementContext);
                 supplier.execute();
                 if (supplier.hasResultSet()) {
-                    try (DuckDBResultSet resultSet = supplier.get();
-                         ArrowReader reader = (ArrowReader) resultSet.arrowExportStream(childAllocator, batchSize)) {
-                        listener.start(reader.getVectorSchemaRoot());
-                        while (reader.loadNextBatch()) {
-                            listener.putNext();
-                            var size = childAllocator.getAllocatedMemory();
-                            statementContext.bytesOut(size);
-                            recorder.recordGetStream(statementContext.isPreparedStatementContext(),
-                                    size);
-                        }
-                    }
+                    resultSet = supplier.get();
+                    reader = PrefetchingArrowReader.wrap(
+                            (ArrowReader) resultSet.arrowExportStream(childAllocator, batchSize),
+                            childAllocator, streamingConfig.prefetchDepth());
+                    listener.start(reader.getVectorSchemaRoot());
                 } else {
                     listener.start(new VectorSchemaRoot(List.of()));
                 }
             } catch (Throwable throwable) {
-                error = true;
-                recorder.errorStream(statementContext.isPreparedStatementContext());
-                recorder.recordStatementStreamError(key, statementContext, throwable);
-                ErrorHandling.handleThrowable(listener, throwable);
-            } finally {
-                try {
-                    if (!error) {
-                        listener.completed();
-                    }
-                    statementContext.end();
-                    recorder.endStream(statementContext.isPreparedStatementContext());
-                    recorder.recordStatementStreamEnd(key, statementContext);
-                    finalBlock.run();
-                    if (childAllocator != null) {
-                        childAllocator.close();
-                    }
-                } catch (Exception e){
-                    logger.atError().setCause(e).log("Error running finally block");
-                }
+                closeQuietly(reader, resultSet);
+                ended(statementContext, key, listener, throwable, false, recorder, finalBlock, childAllocator);
+                return;
+            }
+            var streamAllocator = childAllocator;
+            if (reader == null) {
+                ended(statementContext, key, listener, null, false, recorder, finalBlock, streamAllocator);
+                return;
             }
+            var openReader = reader;
+            var openResultSet = resultSet;
+            new BatchPump(workers, listener, new StreamBackpressure(listener, streamingConfig, recorder), reader,
+                    () -> {
+                        var size = streamAllocator.getAllocatedMemory();
+                        statementContext.bytesOut(size);
+                        recorder.recordGetStream(statementContext.isPreparedStatementContext(), size);
+                    },
+                    () -> closeAll(openReader, openResultSet),
+                    (error, cancelled) -> ended(statementContext, key, listener, error, cancelled, recorder,
+                            finalBlock, streamAllocator))
+                    .run();
         });
     }
 
-    static void streamResultSet(ExecutorService executorService,
+    private static <T extends Statement> void ended(StatementContext<T> statementContext,
+                                                    DuckDBFlightSqlProducer.CacheKey key,
+                                                    FlightProducer.ServerStreamListener listener,
+                                                    Throwable error, boolean cancelled, FlightRecorder recorder,
+                                                    Runnable finalBlock, BufferAllocator childAllocator) {
+        if (error != null) {
+            recorder.errorStream(statementContext.isPreparedStatementContext());
+            recorder.recordStatementStreamError(key, statementContext, error);
+            ErrorHandling.handleThrowable(listener, error);
+        }
+        try {
+            if (error == null && !cancelled) {
+                listener.completed();
+            }
+            statementContext.end();
+            recorder.endStream(statementContext.isPreparedStatementContext());
+            recorder.recordStatementStreamEnd(key, statementContext);
+            finalBlock.run();
+            if (childAllocator != null) {
+                statementContext.detachAllocator();
+                recorder.recordStreamPeakMemory(childAllocator.getPeakMemoryAllocation());
+                childAllocator.close();
+            }
+        } catch (Exception e){
+            logger.atError().setCause(e).log("Error running finally block");
+        }
+    }
+
+    /** Closes the reader before the result set it reads, like try-with-resources would. */
+    private static void closeAll(ArrowReader reader, DuckDBResultSet resultSet) throws Exception {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+        }
+    }
+
+    private static void closeQuietly(ArrowReader reader, DuckDBResultSet resultSet) {
+        try {
+            closeAll(reader, resultSet);
+        } catch (Exception e) {
+            logger.atWarn().setCause(e).log("Error closing result set");
+        }
+    }
+
+    static void streamResultSet(Executor executor,
                                 ResultSetSupplierFromConnection supplier,
                                 FlightProducer.CallContext context, AccessMode accessMode,
                                 BufferAllocator allocator,
-                                final FlightProducer.ServerStreamListener listener, FlightRecorder recorder) {
+                                final FlightProducer.ServerStreamListener listener, FlightRecorder recorder,
+                                StreamingConfig streamingConfig) {
 
-        streamResultSet(executorService, supplier, context, accessMode, allocator, listener, () -> {}, recorder);
+        streamResultSet(executor, supplier, context, accessMode, allocator, listener, () -> {}, recorder, streamingConfig);
     }
 
-    static void streamResultSet(ExecutorService executorService,
+    static void streamResultSet(Executor executor,
                                         ResultSetSupplierFromConnection supplier,
                                         FlightProducer.CallContext context,
                                         AccessMode  accessMode,
                                         BufferAllocator allocator,
                                         final FlightProducer.ServerStreamListener listener,
                                         Runnable finalBlock,
-                                        FlightRecorder recorder) {
+                                        FlightRecorder recorder,
+                                        StreamingConfig streamingConfig) {
         try {
-            DuckDBConnection connection = DuckDBFlightSqlProducer.getConnection(context, accessMode );
-            streamResultSet(executorService,
+            Connection connection = DuckDBFlightSqlProducer.getConnection(context, accessMode );
+            streamResultSet(executor,
                     () -> supplier.get(connection),
                     allocator,
                     DuckDBFlightSqlProducer.getBatchSize(context),
@@ -150,9 +225,102 @@ public class ResultSetStreamUtil {
                             logger.atError().setCause(e).log("Error closing connection");
                         }
                         finalBlock.run();
-                    }, recorder);
+                    }, recorder, streamingConfig);
         } catch (Throwable t) {
             ErrorHandling.handleThrowable(listener, t);
         }
     }
+
+    /**
+     * Submits a streaming task. When admission control turns it away the client gets
+     * RESOURCE_EXHAUSTED and {@code finalBlock} releases what was set up for the stream.
+     */
+    static void execute(Executor executor, FlightProducer.ServerStreamListener listener,
+                        Runnable finalBlock, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            try {
+                finalBlock.run();
+            } finally {
+                listener.error(CallStatus.RESOURCE_EXHAUSTED
+                        .withDescription(e.getMessage())
+                        .toRuntimeException());
+            }
+        }
+    }
+
+    /**
+     * Sends the batches of an open stream. When the client is not ready the pump returns, giving its
+     * worker back, and continues on {@code workers} once {@link StreamBackpressure} sees the
+     * transport drain, so a slow client does not tie up a statement worker for up to
+     * {@code maxStall}. {@code end} runs once, after {@code close} released the stream.
+     */
+    private static final class BatchPump implements Runnable {
+
+        interface End {
+            void ended(Throwable error, boolean cancelled);
+        }
+
+        private final Executor workers;
+        private final FlightProducer.ServerStreamListener listener;
+        private final StreamBackpressure backpressure;
+        private final ArrowReader reader;
+        private final Runnable onBatch;
+        private final AutoCloseable close;
+        private final End end;
+
+        BatchPump(Executor workers, FlightProducer.ServerStreamListener listener, StreamBackpressure backpressure,
+                  ArrowReader reader, Runnable onBatch, AutoCloseable close, End end) {
+            this.workers = workers;
+            this.listener = listener;
+            this.backpressure = backpressure;
+            this.reader = reader;
+            this.onBatch = onBatch;
+            this.close = close;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    if (!backpressure.tryAcquire()) {
+                        backpressure.onReady(this::resume, () -> end(null, true), error -> end(error, false));
+                        return;
+                    }
+                    if (!reader.loadNextBatch()) {
+                        end(null, false);
+                        return;
+                    }
+                    listener.putNext();
+                    onBatch.run();
+                }
+            } catch (Throwable throwable) {
+                end(throwable, false);
+            }
+        }
+
+        private void resume() {
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The pool is shutting down
+                end(CallStatus.UNAVAILABLE.withDescription(e.getMessage()).toRuntimeException(), false);
+            }
+        }
+
+        private void end(Throwable error, boolean cancelled) {
+            try {
+                close.close();
+            } catch (Throwable throwable) {
+                if (error == null && !cancelled) {
+                    error = throwable;
+                } else {
+                    logger.atWarn().setCause(throwable).log("Error closing result set");
+                }
+            }
+            end.ended(error, cancelled);
+        }
+    }
 }
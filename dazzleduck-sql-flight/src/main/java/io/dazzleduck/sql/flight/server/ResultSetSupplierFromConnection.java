@@ -1,10 +1,10 @@
 package io.dazzleduck.sql.flight.server;
 
-import org.duckdb.DuckDBConnection;
 import org.duckdb.DuckDBResultSet;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 
 public interface ResultSetSupplierFromConnection {
-    DuckDBResultSet get(DuckDBConnection connection) throws SQLException;
+    DuckDBResultSet get(Connection connection) throws SQLException;
 }
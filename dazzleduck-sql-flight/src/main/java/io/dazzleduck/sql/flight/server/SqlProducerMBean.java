@@ -23,4 +23,19 @@ public interface SqlProducerMBean {
     List<RunningStatementInfo> getOpenPreparedStatementDetails();
     List<RunningStatementInfo> getRunningBulkIngestDetails();
     List<Stats> getIngestionDetails();
+
+    /**
+     * @return bytes of Arrow memory currently allocated by this producer
+     */
+    long getAllocatedMemory();
+
+    /**
+     * @return the highest Arrow memory allocation of this producer since it started
+     */
+    long getPeakAllocatedMemory();
+
+    /**
+     * @return the configured per-statement and per-identity memory budgets
+     */
+    MemoryBudgetConfig getMemoryBudget();
 }
@@ -17,6 +17,7 @@
 package io.dazzleduck.sql.flight.server;
 
 import org.apache.arrow.flight.sql.FlightSqlProducer;
+import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.AutoCloseables;
 import org.duckdb.DuckDBConnection;
 
@@ -44,6 +45,9 @@ public final class StatementContext<T extends Statement> implements AutoCloseabl
 
     private long bytesOut;
 
+    private BufferAllocator allocator;
+    private long peakAllocatedMemory;
+
     private final boolean isPreparedStatementContext;
 
     private final Connection connection;
@@ -148,6 +152,39 @@ public final class StatementContext<T extends Statement> implements AutoCloseabl
         return useCount;
     }
 
+    /**
+     * Associates the allocator the current run streams its results through, so its memory use
+     * can be reported while the statement runs.
+     */
+    public synchronized void attachAllocator(BufferAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * Drops the allocator before it is closed, keeping its peak allocation.
+     */
+    public synchronized void detachAllocator() {
+        if (allocator != null) {
+            peakAllocatedMemory = Math.max(peakAllocatedMemory, allocator.getPeakMemoryAllocation());
+            allocator = null;
+        }
+    }
+
+    /**
+     * @return bytes currently allocated for this statement's results
+     */
+    public synchronized long allocatedMemory() {
+        return allocator == null ? 0 : allocator.getAllocatedMemory();
+    }
+
+    /**
+     * @return the highest allocation of any run of this statement so far
+     */
+    public synchronized long peakAllocatedMemory() {
+        return allocator == null ? peakAllocatedMemory
+                : Math.max(peakAllocatedMemory, allocator.getPeakMemoryAllocation());
+    }
+
     public String getDatabase() {
         try { return connection.getCatalog(); } catch (SQLException e) { return null; }
     }
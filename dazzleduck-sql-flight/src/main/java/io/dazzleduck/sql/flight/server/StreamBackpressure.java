@@ -0,0 +1,102 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.flight.FlightRecorder;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.flight.FlightRuntimeException;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Paces {@code putNext} calls against {@link FlightProducer.ServerStreamListener#isReady()}.
+ *
+ * <p>Each batch handed to the listener keeps its Arrow buffers alive until gRPC has written it, so
+ * without pacing a slow client lets a whole result accumulate in direct memory. The gate lets a
+ * stream run {@code maxInFlight} batches past the last time the transport reported ready, then
+ * waits for it to drain.
+ *
+ * <p>A waiting stream does not hold a statement worker: {@link #onReady} checks the listener from
+ * one shared poller thread with a capped exponential back-off and calls back once the stream may
+ * continue. Polling rather than an on-ready callback keeps this working through listener wrappers
+ * that do not forward one.
+ */
+final class StreamBackpressure {
+
+    private static final long MIN_POLL_NANOS = 50_000;
+    private static final long MAX_POLL_NANOS = 10_000_000;
+
+    // The checks are two volatile reads, so a single thread serves every waiting stream
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "stream-backpressure");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FlightProducer.ServerStreamListener listener;
+    private final int maxInFlight;
+    private final long maxStallNanos;
+    private final FlightRecorder recorder;
+    private int inFlight;
+
+    StreamBackpressure(FlightProducer.ServerStreamListener listener, StreamingConfig config, FlightRecorder recorder) {
+        this.listener = listener;
+        this.maxInFlight = Math.max(1, config.maxInFlightBatches());
+        this.maxStallNanos = config.maxStall().toNanos();
+        this.recorder = recorder;
+    }
+
+    /**
+     * Returns whether another batch may be sent now. When it returns false the caller should stop
+     * sending and wait with {@link #onReady}.
+     */
+    boolean tryAcquire() {
+        if (listener.isReady()) {
+            inFlight = 1;
+            return true;
+        }
+        if (inFlight < maxInFlight) {
+            inFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits without blocking the caller for the transport to drain. Exactly one callback runs, on
+     * the poller thread, so callbacks should hand any real work to another executor.
+     *
+     * @param ready     called once another batch may be sent
+     * @param cancelled called if the client cancelled while waiting
+     * @param stalled   called with TIMED_OUT if the client stalls past {@code maxStall}
+     */
+    void onReady(Runnable ready, Runnable cancelled, Consumer<FlightRuntimeException> stalled) {
+        schedule(System.nanoTime(), MIN_POLL_NANOS, ready, cancelled, stalled);
+    }
+
+    private void schedule(long start, long delay, Runnable ready, Runnable cancelled,
+                          Consumer<FlightRuntimeException> stalled) {
+        POLLER.schedule(() -> poll(start, delay, ready, cancelled, stalled), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void poll(long start, long delay, Runnable ready, Runnable cancelled,
+                      Consumer<FlightRuntimeException> stalled) {
+        long waited = System.nanoTime() - start;
+        if (listener.isReady()) {
+            recorder.recordBackpressureWait(waited);
+            inFlight = 1;
+            ready.run();
+        } else if (listener.isCancelled()) {
+            cancelled.run();
+        } else if (waited > maxStallNanos) {
+            recorder.recordBackpressureWait(waited);
+            stalled.accept(CallStatus.TIMED_OUT
+                    .withDescription("Client did not read results for %d ms".formatted(waited / 1_000_000))
+                    .toRuntimeException());
+        } else {
+            schedule(start, Math.min(delay * 2, MAX_POLL_NANOS), ready, cancelled, stalled);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.dazzleduck.sql.flight.server;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.time.Duration;
+
+/**
+ * Flow control of result streams ({@code dazzleduck_server.streaming}).
+ *
+ * A stream may run at most {@code maxInFlightBatches} batches ahead of the transport's readiness
+ * signal; beyond that it waits for the client to drain. A client that reads nothing for
+ * {@code maxStall} has its stream cancelled, which releases the connection and buffers it holds.
+ * Up to {@code prefetchDepth} batches are exported from DuckDB ahead of the one being written;
+ * {@code 0} exports each batch on the sending thread. With {@code coalesce}, identical SELECT
+ * statements that arrive before one of them has sent its schema share its execution and result.
+ */
+public record StreamingConfig(
+        int maxInFlightBatches,
+        Duration maxStall,
+        int prefetchDepth,
+        boolean coalesce
+) {
+
+    public static final StreamingConfig DEFAULT = new StreamingConfig(4, Duration.ofMinutes(5), 1, true);
+
+    public static StreamingConfig fromConfig(Config config) {
+        if (!config.hasPath(ConfigConstants.STREAMING_KEY)) {
+            return DEFAULT;
+        }
+        var streaming = config.getConfig(ConfigConstants.STREAMING_KEY);
+        return new StreamingConfig(
+                streaming.getInt(ConfigConstants.STREAMING_MAX_IN_FLIGHT_BATCHES_KEY),
+                streaming.getDuration(ConfigConstants.STREAMING_MAX_STALL_KEY),
+                streaming.getInt(ConfigConstants.STREAMING_PREFETCH_DEPTH_KEY),
+                streaming.getBoolean(ConfigConstants.STREAMING_COALESCE_KEY)
+        );
+    }
+}
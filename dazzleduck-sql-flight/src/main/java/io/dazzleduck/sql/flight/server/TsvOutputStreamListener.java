@@ -1,6 +1,7 @@
 package io.dazzleduck.sql.flight.server;
 
 import io.dazzleduck.sql.commons.io.ResultStreams;
+import io.dazzleduck.sql.commons.io.TsvEncoder;
 import org.apache.arrow.flight.FlightProducer;
 import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.memory.RootAllocator;
@@ -13,11 +14,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -27,7 +26,8 @@ import java.util.function.Supplier;
  *
  * <p>The first batch triggers writing the header row (column names). Each subsequent call to
  * {@link #putNext()} writes all rows from the current {@link VectorSchemaRoot} as TSV lines.
- * Null values are written as empty strings.
+ * Null values are written as empty strings. Batches are rendered by a {@link TsvEncoder} straight
+ * from the producer's vectors, on the thread that streams the result.
  */
 public class TsvOutputStreamListener implements FlightProducer.ServerStreamListener {
 
@@ -36,7 +36,7 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
     private final Supplier<OutputStream> outputStreamSupplier;
     private final CompletableFuture<Void> future;
     private OutputStream outputStream;
-    private Writer writer;
+    private TsvEncoder encoder;
     private VectorSchemaRoot root;
     private boolean headerWritten = false;
 
@@ -47,7 +47,8 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
 
     @Override
     public boolean isCancelled() {
-        return future.isCancelled();
+        // A failed write completes the future; stop producing batches nobody will receive
+        return future.isDone();
     }
 
     @Override
@@ -57,7 +58,7 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
 
     @Override
     public boolean isReady() {
-        return writer != null;
+        return encoder != null;
     }
 
     @Override
@@ -65,7 +66,7 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
         try {
             this.root = root;
             this.outputStream = outputStreamSupplier.get();
-            this.writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            this.encoder = new TsvEncoder(outputStream);
             logger.debug("TsvOutputStreamListener started with schema: {}", root.getSchema());
         } catch (Exception e) {
             logger.error("Error in start()", e);
@@ -80,8 +81,8 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
                 writeHeader();
                 headerWritten = true;
             }
-            writeRows();
-            writer.flush();
+            encoder.writeRows(root);
+            encoder.flush();
         } catch (IOException e) {
             logger.error("Error in putNext()", e);
             future.completeExceptionally(e);
@@ -117,9 +118,9 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
                 writeHeader();
                 headerWritten = true;
             }
-            if (writer != null) {
-                writer.flush();
-                writer.close();
+            if (encoder != null) {
+                encoder.flush();
+                outputStream.close();
             }
             future.complete(null);
         } catch (Exception e) {
@@ -129,18 +130,18 @@ public class TsvOutputStreamListener implements FlightProducer.ServerStreamListe
     }
 
     private void writeHeader() throws IOException {
-        ResultStreams.writeTsvHeader(root, writer);
-    }
-
-    private void writeRows() throws IOException {
-        ResultStreams.writeTsvRows(root, writer);
+        encoder.writeHeader(root);
     }
 
     /**
      * Pipes Arrow IPC bytes from {@code arrowStreamFn} through an {@link ArrowStreamReader}
      * and writes TSV output to {@code outputStreamSupplier}. Reusable by any HTTP service
      * that needs Arrow-IPC-to-TSV conversion without holding a shared allocator.
+     *
+     * @deprecated serializes every result twice and crosses an extra thread; stream into a
+     * {@link TsvOutputStreamListener} directly instead.
      */
+    @Deprecated
     public static CompletableFuture<Void> pipeArrowToTsv(
             Function<Supplier<OutputStream>, CompletableFuture<Void>> arrowStreamFn,
             Supplier<OutputStream> outputStreamSupplier) {
@@ -0,0 +1,110 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+    /** Tasks handed to the "pool"; the test runs them one at a time to control completion order. */
+    private final Deque<Runnable> pool = new ArrayDeque<>();
+    private final List<String> ran = new ArrayList<>();
+    private SimpleFlightRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        pool.clear();
+        ran.clear();
+        recorder = new SimpleFlightRecorder();
+    }
+
+    private AdmissionController controller(int workers, int perTenant, int queued, Map<String, Integer> weights) {
+        return new AdmissionController(new AdmissionConfig(true, perTenant, queued, "", weights),
+                pool::addLast, workers, recorder);
+    }
+
+    private void submit(AdmissionController controller, String tenant, String name) {
+        controller.forTenant(tenant).execute(() -> ran.add(name));
+    }
+
+    private void runAll() {
+        while (!pool.isEmpty()) {
+            pool.pollFirst().run();
+        }
+    }
+
+    @Test
+    void tenantLimitQueuesExtraStatements() {
+        var controller = controller(4, 1, 10, Map.of());
+        submit(controller, "a", "a1");
+        submit(controller, "a", "a2");
+        submit(controller, "b", "b1");
+        assertEquals(2, controller.getRunning());
+        assertEquals(1, controller.getQueued());
+
+        runAll();
+        assertEquals(List.of("a1", "b1", "a2"), ran);
+        assertEquals(0, controller.getRunning());
+        assertEquals(3, recorder.getAdmittedQueries());
+    }
+
+    @Test
+    void fullQueueFailsFast() {
+        var controller = controller(1, 1, 1, Map.of());
+        submit(controller, "a", "a1");
+        submit(controller, "a", "a2");
+        var e = assertThrows(RejectedExecutionException.class, () -> submit(controller, "a", "a3"));
+        assertTrue(e.getMessage().contains("'a'"));
+        assertEquals(1, recorder.getRejectedQueries());
+
+        // other tenants still get a place in the queue
+        submit(controller, "b", "b1");
+        runAll();
+        assertEquals(List.of("a1", "a2", "b1"), ran);
+    }
+
+    @Test
+    void heavyTenantDoesNotStarveOthers() {
+        var controller = controller(1, 0, 100, Map.of());
+        for (int i = 1; i <= 5; i++) {
+            submit(controller, "heavy", "h" + i);
+        }
+        submit(controller, "light", "l1");
+        submit(controller, "light", "l2");
+
+        runAll();
+        assertEquals(List.of("h1", "h2", "l1", "h3", "l2", "h4", "h5"), ran);
+    }
+
+    @Test
+    void weightsShareWorkersProportionally() {
+        var controller = controller(1, 0, 100, Map.of("gold", 2));
+        submit(controller, "bronze", "b0");
+        for (int i = 1; i <= 4; i++) {
+            submit(controller, "gold", "g" + i);
+            submit(controller, "bronze", "b" + i);
+        }
+
+        runAll();
+        assertEquals(List.of("b0", "g1", "g2", "b1", "g3", "g4", "b2", "b3", "b4"), ran);
+    }
+
+    @Test
+    void disabledControllerRunsDirectly() {
+        var controller = new AdmissionController(new AdmissionConfig(false, 1, 0, "", Map.of()),
+                pool::addLast, 1, recorder);
+        submit(controller, "a", "a1");
+        submit(controller, "a", "a2");
+        assertEquals(2, pool.size());
+        assertEquals(0, controller.getRunning());
+    }
+}
@@ -0,0 +1,151 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryBudgetTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private RootAllocator root;
+
+    @BeforeEach
+    void setUp() {
+        root = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        assertEquals(0, root.getAllocatedMemory());
+        root.close();
+    }
+
+    @Test
+    void statementLimitIsEnforced() {
+        var budget = new MemoryBudget(root, new MemoryBudgetConfig(MB, 0));
+        try (var allocator = budget.newStatementAllocator("alice")) {
+            allocator.buffer(MB / 2).close();
+            assertThrows(OutOfMemoryException.class, () -> allocator.buffer(2 * MB));
+        }
+    }
+
+    @Test
+    void identityLimitIsSharedByItsStatements() {
+        var budget = new MemoryBudget(root, new MemoryBudgetConfig(2 * MB, 3 * MB));
+        try (var first = budget.newStatementAllocator("alice");
+             var second = budget.newStatementAllocator("alice");
+             var other = budget.newStatementAllocator("bob");
+             var held = first.buffer(2 * MB)) {
+            assertEquals(2 * MB, budget.getAllocatedMemory("alice"));
+            assertThrows(OutOfMemoryException.class, () -> second.buffer(2 * MB));
+            // another identity has its own budget
+            other.buffer(2 * MB).close();
+        }
+        assertEquals(0, budget.getAllocatedMemory("alice"));
+    }
+
+    @Test
+    void identityAllocatorIsReleasedWithItsLastStatement() {
+        var budget = new MemoryBudget(root, new MemoryBudgetConfig(0, MB));
+        for (int i = 0; i < 3; i++) {
+            var allocator = budget.newStatementAllocator("alice");
+            assertEquals(MB, allocator.getLimit());
+            allocator.buffer(MB / 2).close();
+            allocator.close();
+        }
+        // closing the root in tearDown fails if an identity allocator is still open
+    }
+
+    @Test
+    void childOfStatementAllocatorDoesNotReleaseIdentity() {
+        var budget = new MemoryBudget(root, new MemoryBudgetConfig(0, MB));
+        try (var statement = budget.newStatementAllocator("alice")) {
+            statement.newChildAllocator("reader", 0, MB).close();
+            try (var buffer = statement.buffer(MB / 2)) {
+                assertEquals(MB / 2, budget.getAllocatedMemory("alice"));
+            }
+        }
+        assertEquals(0, budget.getAllocatedMemory("alice"));
+    }
+
+    @Test
+    void overBudgetQueryFailsWithResourceExhausted() throws Exception {
+        var budget = new MemoryBudget(root, new MemoryBudgetConfig(64 * 1024, 0));
+        var executor = Executors.newSingleThreadExecutor();
+        var connection = ConnectionPool.getConnection();
+        var statement = connection.createStatement();
+        var context = new StatementContext<>(connection, statement, "SELECT * FROM range(1000000)");
+        var error = new CompletableFuture<Throwable>();
+        ResultSetStreamUtil.streamResultSet(executor, executor, context, new DuckDBFlightSqlProducer.CacheKey("alice", 1),
+                OptionalResultSetSupplier.of(statement, context.getQuery()),
+                () -> budget.newStatementAllocator("alice"), 100_000,
+                new ErrorCapturingListener(error), context::close, new SimpleFlightRecorder(),
+                StreamingConfig.DEFAULT);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        var e = assertInstanceOf(FlightRuntimeException.class, error.getNow(null));
+        assertEquals(FlightStatusCode.RESOURCE_EXHAUSTED, e.status().code());
+        assertTrue(e.getMessage().contains("memory budget"), e.getMessage());
+        assertTrue(context.peakAllocatedMemory() > 0);
+        assertEquals(0, context.allocatedMemory());
+    }
+
+    private record ErrorCapturingListener(CompletableFuture<Throwable> error)
+            implements FlightProducer.ServerStreamListener {
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable handler) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {
+        }
+
+        @Override
+        public void error(Throwable ex) {
+            error.complete(ex);
+        }
+
+        @Override
+        public void completed() {
+            error.complete(null);
+        }
+    }
+}
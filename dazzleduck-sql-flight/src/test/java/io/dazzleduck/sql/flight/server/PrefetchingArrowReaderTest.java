@@ -0,0 +1,111 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.duckdb.DuckDBResultSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefetchingArrowReaderTest {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private BufferAllocator allocator;
+    private Connection connection;
+    private Statement statement;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        allocator = new RootAllocator();
+        connection = ConnectionPool.getConnection();
+        statement = connection.createStatement();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+        allocator.close();
+    }
+
+    private ArrowReader open(String sql, int depth) throws SQLException {
+        var resultSet = (DuckDBResultSet) statement.executeQuery(sql);
+        return PrefetchingArrowReader.wrap(
+                (ArrowReader) resultSet.arrowExportStream(allocator, BATCH_SIZE), allocator, depth);
+    }
+
+    @Test
+    void readsAllBatchesInOrder() throws Exception {
+        int rows = 25 * BATCH_SIZE + 17;
+        try (var reader = open("SELECT i FROM range(%d) t(i)".formatted(rows), 3)) {
+            assertInstanceOf(PrefetchingArrowReader.class, reader);
+            long expected = 0;
+            while (reader.loadNextBatch()) {
+                var vector = (BigIntVector) reader.getVectorSchemaRoot().getVector("i");
+                for (int i = 0; i < vector.getValueCount(); i++) {
+                    assertEquals(expected++, vector.get(i));
+                }
+            }
+            assertEquals(rows, expected);
+            assertFalse(reader.loadNextBatch());
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    void earlyCloseReleasesPrefetchedBatches() throws Exception {
+        try (var reader = open("SELECT i, i::VARCHAR AS s FROM range(100000) t(i)", 4)) {
+            assertTrue(reader.loadNextBatch());
+            // give the prefetch thread time to fill its queue
+            Thread.sleep(100);
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    @Test
+    void stalledConsumerHoldsNoPrefetchThread() throws Exception {
+        int rows = 10 * BATCH_SIZE;
+        try (var reader = open("SELECT i FROM range(%d) t(i)".formatted(rows), 1)) {
+            assertTrue(reader.loadNextBatch());
+            // The producer fills the queue and returns its thread instead of waiting for room
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (isProducing() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(isProducing());
+
+            long read = reader.getVectorSchemaRoot().getRowCount();
+            while (reader.loadNextBatch()) {
+                read += reader.getVectorSchemaRoot().getRowCount();
+            }
+            assertEquals(rows, read);
+        }
+        assertEquals(0, allocator.getAllocatedMemory());
+    }
+
+    private static boolean isProducing() {
+        return Thread.getAllStackTraces().values().stream()
+                .flatMap(Arrays::stream)
+                .anyMatch(frame -> frame.getClassName().equals(PrefetchingArrowReader.class.getName())
+                        && frame.getMethodName().equals("produce"));
+    }
+
+    @Test
+    void zeroDepthReturnsSource() throws Exception {
+        try (var reader = open("SELECT 1", 0)) {
+            assertFalse(reader instanceof PrefetchingArrowReader);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryCoalescerTest {
+
+    private SimpleFlightRecorder recorder;
+    private QueryCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new SimpleFlightRecorder();
+        coalescer = new QueryCoalescer(recorder);
+    }
+
+    @Test
+    void identicalStatementsShareOneExecution() {
+        var leader = new RecordingListener();
+        var joiner = new RecordingListener();
+        var shared = coalescer.join("q", key(1), leader);
+        assertNotNull(shared);
+        assertNull(coalescer.join("q", key(2), joiner));
+        assertEquals(1, recorder.getCoalescedQueries());
+
+        try (var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            shared.putNext();
+            shared.putNext();
+            shared.completed();
+        }
+        var expected = List.of("start", "putNext", "putNext", "completed");
+        assertEquals(expected, leader.events);
+        assertEquals(expected, joiner.events);
+        assertEquals(0, coalescer.getOpenExecutions());
+    }
+
+    @Test
+    void lateStatementLeadsNewExecution() {
+        var shared = coalescer.join("q", key(1), new RecordingListener());
+        try (var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            var late = new RecordingListener();
+            var second = coalescer.join("q", key(2), late);
+            assertNotNull(second);
+            assertNotSame(shared, second);
+            shared.putNext();
+            assertTrue(late.events.isEmpty());
+        }
+        assertEquals(0, recorder.getCoalescedQueries());
+    }
+
+    @Test
+    void cancelledJoinerIsDetached() {
+        var leader = new RecordingListener();
+        var joiner = new RecordingListener();
+        var shared = coalescer.join("q", key(1), leader);
+        var cancelled = new AtomicBoolean();
+        shared.setOnCancelHandler(() -> cancelled.set(true));
+        coalescer.join("q", key(2), joiner);
+
+        assertTrue(coalescer.cancel(key(2)));
+        assertFalse(cancelled.get());
+        try (var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            shared.completed();
+        }
+        assertEquals(List.of("start", "completed"), leader.events);
+        assertEquals(List.of("error"), joiner.events);
+        assertFalse(coalescer.cancel(key(1)));
+    }
+
+    @Test
+    void cancellingEveryParticipantCancelsExecution() {
+        var shared = coalescer.join("q", key(1), new RecordingListener());
+        var cancelled = new AtomicBoolean();
+        shared.setOnCancelHandler(() -> cancelled.set(true));
+        coalescer.join("q", key(2), new RecordingListener());
+
+        assertTrue(coalescer.cancel(key(1)));
+        assertFalse(cancelled.get());
+        assertTrue(coalescer.cancel(key(2)));
+        assertTrue(cancelled.get());
+        // An abandoned execution takes no new joiners
+        assertNotNull(coalescer.join("q", key(3), new RecordingListener()));
+    }
+
+    @Test
+    void unknownParticipantIsNotCancelled() {
+        coalescer.join("q", key(1), new RecordingListener());
+        assertFalse(coalescer.cancel(key(2)));
+    }
+
+    @Test
+    void differentKeysDoNotShare() {
+        assertNotNull(coalescer.join("a", key(1), new RecordingListener()));
+        assertNotNull(coalescer.join("b", key(2), new RecordingListener()));
+        assertEquals(2, coalescer.getOpenExecutions());
+    }
+
+    @Test
+    void errorReachesEveryParticipant() {
+        var leader = new RecordingListener();
+        var joiner = new RecordingListener();
+        var shared = coalescer.join("q", key(1), leader);
+        coalescer.join("q", key(2), joiner);
+        shared.error(new IllegalStateException("boom"));
+        assertEquals(List.of("error"), leader.events);
+        assertEquals(List.of("error"), joiner.events);
+        assertEquals(0, coalescer.getOpenExecutions());
+    }
+
+    @Test
+    void cancelledParticipantIsSkipped() {
+        var leader = new RecordingListener();
+        var joiner = new RecordingListener();
+        var shared = coalescer.join("q", key(1), leader);
+        coalescer.join("q", key(2), joiner);
+        try (var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            leader.cancelled = true;
+            assertFalse(shared.isCancelled());
+            shared.putNext();
+            joiner.cancelled = true;
+            assertTrue(shared.isCancelled());
+        }
+        assertEquals(List.of("start"), leader.events);
+        assertEquals(List.of("start", "putNext"), joiner.events);
+    }
+
+    @Test
+    void failingParticipantIsDropped() {
+        var leader = new RecordingListener();
+        var broken = new RecordingListener() {
+            @Override
+            public void putNext(ArrowBuf metadata) {
+                throw new IllegalStateException("client gone");
+            }
+        };
+        var shared = coalescer.join("q", key(1), leader);
+        coalescer.join("q", key(2), broken);
+        try (var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            shared.putNext();
+            shared.putNext();
+            shared.completed();
+        }
+        assertEquals(List.of("start", "putNext", "putNext", "completed"), leader.events);
+        assertEquals(List.of("start", "error"), broken.events);
+    }
+
+    @Test
+    void metadataIsRetainedForEachParticipant() {
+        var leader = new RecordingListener();
+        var joiner = new RecordingListener();
+        var shared = coalescer.join("q", key(1), leader);
+        coalescer.join("q", key(2), joiner);
+        try (var allocator = new RootAllocator();
+             var root = VectorSchemaRoot.of()) {
+            shared.start(root);
+            var metadata = allocator.buffer(8);
+            shared.putMetadata(metadata);
+            assertEquals(2, metadata.refCnt());
+            leader.received.forEach(ArrowBuf::close);
+            joiner.received.forEach(ArrowBuf::close);
+            assertEquals(0, allocator.getAllocatedMemory());
+        }
+    }
+
+    private static DuckDBFlightSqlProducer.CacheKey key(long id) {
+        return new DuckDBFlightSqlProducer.CacheKey("user", id);
+    }
+
+    private static class RecordingListener implements FlightProducer.ServerStreamListener {
+        final List<String> events = new ArrayList<>();
+        final List<ArrowBuf> received = new ArrayList<>();
+        volatile boolean cancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable handler) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+            events.add("start");
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+            events.add("putNext");
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {
+            events.add("putMetadata");
+            received.add(metadata);
+        }
+
+        @Override
+        public void error(Throwable ex) {
+            events.add("error");
+        }
+
+        @Override
+        public void completed() {
+            events.add("completed");
+        }
+    }
+}
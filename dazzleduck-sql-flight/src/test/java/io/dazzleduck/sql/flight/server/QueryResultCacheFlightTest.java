@@ -0,0 +1,118 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.commons.authorization.AccessMode;
+import io.dazzleduck.sql.commons.cache.FileBasedQueryResultCache;
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import io.dazzleduck.sql.flight.server.auth2.AuthUtils;
+import org.apache.arrow.flight.*;
+import org.apache.arrow.flight.sql.FlightSqlClient;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs identical cacheable queries through a Flight server with the query result cache enabled.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryResultCacheFlightTest {
+
+    private BufferAllocator allocator;
+    private FlightServer server;
+    private FlightSqlClient client;
+    private SimpleFlightRecorder recorder;
+
+    @BeforeAll
+    void setup() throws Exception {
+        allocator = new RootAllocator(Long.MAX_VALUE);
+        ConnectionPool.executeBatch(new String[]{"INSTALL arrow FROM community", "LOAD arrow"});
+        recorder = new SimpleFlightRecorder();
+        var cache = new FileBasedQueryResultCache(Files.createTempDirectory("query_cache"), 300,
+                1024 * 1024, 1024 * 1024, Clock.systemUTC());
+
+        Location location = FlightTestUtils.findNextLocation();
+        var producer = new DuckDBFlightSqlProducer(
+                location,
+                UUID.randomUUID().toString(),
+                "test-secret",
+                allocator,
+                System.getProperty("java.io.tmpdir"),
+                AccessMode.COMPLETE,
+                DuckDBFlightSqlProducer.newTempDir(),
+                null,
+                Executors.newSingleThreadScheduledExecutor(),
+                Duration.ofMinutes(2),
+                Duration.ZERO,
+                Clock.systemDefaultZone(),
+                recorder,
+                DuckDBFlightSqlProducer.DEFAULT_INGESTION_CONFIG,
+                List.of(),
+                CursorConfig.DEFAULT,
+                ProducerOptions.DEFAULT.withQueryResultCache(cache)
+                        .withAdmissionConfig(new AdmissionConfig(true, 0, 256, "", Map.of()))
+        );
+
+        server = FlightServer.builder(allocator, location, producer)
+                .headerAuthenticator(AuthUtils.getTestAuthenticator())
+                .build()
+                .start();
+
+        client = new FlightSqlClient(FlightClient.builder(allocator, location)
+                .intercept(AuthUtils.createClientMiddlewareFactory("admin", "password", Map.of()))
+                .build());
+    }
+
+    @AfterAll
+    void teardown() throws Exception {
+        if (client != null) client.close();
+        if (server != null) server.close();
+        if (allocator != null) allocator.close();
+    }
+
+    private List<String> run(String query) throws Exception {
+        var rows = new ArrayList<String>();
+        FlightInfo info = client.execute(query);
+        try (FlightStream stream = client.getStream(info.getEndpoints().get(0).getTicket())) {
+            while (stream.next()) {
+                var root = stream.getRoot();
+                for (int i = 0; i < root.getRowCount(); i++) {
+                    var row = new StringBuilder();
+                    for (var vector : root.getFieldVectors()) {
+                        row.append(vector.getObject(i)).append('|');
+                    }
+                    rows.add(row.toString());
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void secondIdenticalQueryIsServedFromTheCache() throws Exception {
+        var query = "SELECT i % 7 AS g, count(*) AS c FROM range(100) t(i) GROUP BY g ORDER BY g";
+        long hits = recorder.getCacheHits();
+        long misses = recorder.getCacheMisses();
+        long admitted = recorder.getAdmittedQueries();
+
+        var first = run(query);
+        var second = run(query);
+
+        assertEquals(7, first.size());
+        assertEquals(first, second);
+        assertEquals(misses + 1, recorder.getCacheMisses());
+        assertEquals(hits + 1, recorder.getCacheHits());
+        // The hit is streamed through admission control like the execution it replaces
+        assertEquals(admitted + 2, recorder.getAdmittedQueries());
+    }
+}
@@ -0,0 +1,230 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.duckdb.DuckDBResultSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamBackpressureTest {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int ROWS = 64 * BATCH_SIZE;
+
+    private BufferAllocator allocator;
+    private ExecutorService executor;
+    private ScheduledExecutorService client;
+    private SimpleFlightRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator();
+        executor = Executors.newSingleThreadExecutor();
+        client = Executors.newSingleThreadScheduledExecutor();
+        recorder = new SimpleFlightRecorder();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdownNow();
+        executor.shutdownNow();
+        allocator.close();
+    }
+
+    /**
+     * Stands in for the gRPC transport: every {@code putNext} queues a message, a slow client
+     * drains one at a time, and the transport reports ready only while its queue is empty.
+     */
+    private static class SlowListener implements FlightProducer.ServerStreamListener {
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger maxPending = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        volatile boolean cancelled;
+        volatile boolean completed;
+        volatile Throwable error;
+
+        void drainOne() {
+            pending.updateAndGet(p -> Math.max(0, p - 1));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable handler) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return pending.get() == 0;
+        }
+
+        @Override
+        public void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+        }
+
+        @Override
+        public void putNext() {
+            putNext(null);
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+            batches.incrementAndGet();
+            maxPending.accumulateAndGet(pending.incrementAndGet(), Math::max);
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {
+        }
+
+        @Override
+        public void error(Throwable ex) {
+            error = ex;
+        }
+
+        @Override
+        public void completed() {
+            completed = true;
+        }
+    }
+
+    private CountDownLatch stream(SlowListener listener, StreamingConfig config) throws SQLException {
+        Connection connection = ConnectionPool.getConnection();
+        var done = new CountDownLatch(1);
+        ResultSetSupplier supplier = () -> (DuckDBResultSet) connection.createStatement()
+                .executeQuery("SELECT i, i::VARCHAR AS s FROM range(%d) t(i)".formatted(ROWS));
+        ResultSetStreamUtil.streamResultSet(executor, supplier, allocator, BATCH_SIZE, listener, () -> {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+            done.countDown();
+        }, recorder, config);
+        return done;
+    }
+
+    @Test
+    void slowClientKeepsInFlightBatchesBounded() throws Exception {
+        var config = new StreamingConfig(3, Duration.ofSeconds(30), 1, true);
+        var listener = new SlowListener();
+        client.scheduleWithFixedDelay(listener::drainOne, 1, 1, TimeUnit.MILLISECONDS);
+
+        assertTrue(stream(listener, config).await(60, TimeUnit.SECONDS));
+        assertNull(listener.error);
+        assertTrue(listener.completed);
+        assertEquals(ROWS / BATCH_SIZE, listener.batches.get());
+        assertTrue(listener.maxPending.get() <= config.maxInFlightBatches(),
+                "pending batches " + listener.maxPending.get());
+        assertTrue(recorder.getBackpressureWaits() > 0);
+        assertTrue(recorder.getMaxStreamPeakMemory() > 0);
+    }
+
+    @Test
+    void stalledClientTimesOut() throws Exception {
+        var config = new StreamingConfig(2, Duration.ofMillis(200), 1, true);
+        var listener = new SlowListener();
+
+        assertTrue(stream(listener, config).await(30, TimeUnit.SECONDS));
+        assertFalse(listener.completed);
+        var error = assertInstanceOf(FlightRuntimeException.class, listener.error);
+        assertEquals(FlightStatusCode.TIMED_OUT, error.status().code());
+        assertEquals(config.maxInFlightBatches(), listener.batches.get());
+    }
+
+    @Test
+    void cancelWhileWaitingEndsStream() throws Exception {
+        var config = new StreamingConfig(1, Duration.ofSeconds(30), 1, true);
+        var listener = new SlowListener();
+        client.schedule(() -> listener.cancelled = true, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(stream(listener, config).await(30, TimeUnit.SECONDS));
+        assertFalse(listener.completed);
+        assertNull(listener.error);
+        assertEquals(1, listener.batches.get());
+    }
+
+    @Test
+    void waitingStreamReleasesItsWorker() throws Exception {
+        var config = new StreamingConfig(1, Duration.ofSeconds(30), 1, true);
+        var listener = new SlowListener();
+        var done = stream(listener, config);
+
+        // The single worker is free to run other statements while the stream waits for the client
+        var other = new CountDownLatch(1);
+        executor.execute(other::countDown);
+        assertTrue(other.await(10, TimeUnit.SECONDS));
+        assertEquals(1, listener.batches.get());
+
+        client.scheduleWithFixedDelay(listener::drainOne, 1, 1, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue(listener.completed);
+        assertEquals(ROWS / BATCH_SIZE, listener.batches.get());
+    }
+
+    @Test
+    void resumedStreamIsAdmittedOnce() throws Exception {
+        var config = new StreamingConfig(1, Duration.ofSeconds(30), 1, true);
+        var admission = new AdmissionController(new AdmissionConfig(true, 1, 1, "", Map.of()),
+                executor, 1, recorder);
+        var listener = new SlowListener();
+        client.scheduleWithFixedDelay(listener::drainOne, 1, 1, TimeUnit.MILLISECONDS);
+        var connection = ConnectionPool.getConnection();
+        var statement = connection.createStatement();
+        var query = "SELECT i FROM range(%d) t(i)".formatted(ROWS);
+        var context = new StatementContext<>(connection, statement, query);
+        var done = new CountDownLatch(1);
+        ResultSetStreamUtil.streamResultSet(admission.forTenant("a"), executor, context,
+                new DuckDBFlightSqlProducer.CacheKey("a", 1), OptionalResultSetSupplier.of(statement, query),
+                () -> allocator.newChildAllocator("statement", 0, Long.MAX_VALUE), BATCH_SIZE, listener, () -> {
+                    context.close();
+                    done.countDown();
+                }, recorder, config);
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue(listener.completed);
+        assertTrue(recorder.getBackpressureWaits() > 0);
+        assertEquals(1, recorder.getAdmittedQueries());
+    }
+
+    @Test
+    void fastClientIsNotPaced() throws Exception {
+        var listener = new SlowListener() {
+            @Override
+            public boolean isReady() {
+                pending.set(0);
+                return true;
+            }
+        };
+
+        assertTrue(stream(listener, StreamingConfig.DEFAULT).await(30, TimeUnit.SECONDS));
+        assertTrue(listener.completed);
+        assertEquals(0, recorder.getBackpressureWaits());
+        assertEquals(1, listener.maxPending.get());
+    }
+}
@@ -0,0 +1,63 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.apache.arrow.memory.RootAllocator;
+import org.duckdb.DuckDBResultSet;
+
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams a wide scan through a ZSTD-compressing {@link DirectOutputStreamListener} with
+ * different prefetch depths. With depth 0 the DuckDB export and the compression/write of each
+ * batch run back to back on one thread; with prefetching they overlap.
+ */
+public class StreamPrefetchBenchmark {
+
+    private static final String QUERY = """
+            SELECT i, i * 2 AS a, i % 1000 AS b, md5(i::VARCHAR) AS c, (i * 0.5)::DOUBLE AS d,
+                   'row-' || i AS e, i::VARCHAR || '-' || (i % 97)::VARCHAR AS f
+            FROM range(5000000) t(i)""";
+
+    public static void main(String[] args) throws Exception {
+        final int iteration = 3;
+        var executor = Executors.newSingleThreadExecutor();
+        try (var allocator = new RootAllocator()) {
+            for (int depth : new int[]{0, 1, 2, 4}) {
+                var config = new StreamingConfig(4, Duration.ofMinutes(5), depth, true);
+                // warm up
+                run(executor, allocator, config);
+                long start = System.nanoTime();
+                for (int i = 0; i < iteration; i++) {
+                    run(executor, allocator, config);
+                }
+                long end = System.nanoTime();
+                System.out.printf("prefetch_depth=%d %10.1f ms/query%n", depth, (end - start) / 1e6 / iteration);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void run(ExecutorService executor, RootAllocator allocator,
+                            StreamingConfig config) throws Exception {
+        Connection connection = ConnectionPool.getConnection();
+        var future = new CompletableFuture<Void>();
+        var listener = new DirectOutputStreamListener(OutputStream::nullOutputStream, future);
+        ResultSetStreamUtil.streamResultSet(executor,
+                () -> (DuckDBResultSet) connection.createStatement().executeQuery(QUERY),
+                allocator, 64 * 1024, listener, () -> {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                    }
+                }, new SimpleFlightRecorder(), config);
+        future.get();
+    }
+}
@@ -0,0 +1,83 @@
+package io.dazzleduck.sql.flight.server;
+
+import io.dazzleduck.sql.commons.ConnectionPool;
+import io.dazzleduck.sql.flight.SimpleFlightRecorder;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.duckdb.DuckDBResultSet;
+
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Compares TSV export through the Arrow IPC pipe ({@link TsvOutputStreamListener#pipeArrowToTsv},
+ * which serializes each batch to IPC, reads it back on a second thread and renders it with the
+ * per-cell formatter) against a {@link TsvOutputStreamListener} that renders batches directly.
+ */
+public class TsvStreamBenchmark {
+
+    private static final String QUERY = """
+            SELECT i, i * 2 AS a, i % 1000 AS b, md5(i::VARCHAR) AS c, (i * 0.5)::DOUBLE AS d,
+                   'row-' || i AS e, DATE '2020-01-01' + (i % 3650)::INTEGER AS f, i % 3 = 0 AS g
+            FROM range(5000000) t(i)""";
+
+    private static final long ROWS = 5_000_000;
+
+    public static void main(String[] args) throws Exception {
+        final int iteration = 3;
+        var executor = Executors.newSingleThreadExecutor();
+        try (var allocator = new RootAllocator()) {
+            bench("piped ", iteration, () -> runPiped(executor, allocator));
+            bench("direct", iteration, () -> runDirect(executor, allocator));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static void bench(String name, int iteration, Run run) throws Exception {
+        // warm up
+        run.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < iteration; i++) {
+            run.run();
+        }
+        double nanos = (double) (System.nanoTime() - start) / iteration;
+        System.out.printf("%s %10.1f ms/query %8.1f ns/row%n", name, nanos / 1e6, nanos / ROWS);
+    }
+
+    private static void runPiped(ExecutorService executor, RootAllocator allocator) throws Exception {
+        TsvOutputStreamListener.pipeArrowToTsv(pipe -> stream(executor, allocator,
+                        future -> new DirectOutputStreamListener(pipe, future, CompressionUtil.CodecType.NO_COMPRESSION)),
+                OutputStream::nullOutputStream).get();
+    }
+
+    private static void runDirect(ExecutorService executor, RootAllocator allocator) throws Exception {
+        stream(executor, allocator,
+                future -> new TsvOutputStreamListener(OutputStream::nullOutputStream, future)).get();
+    }
+
+    private static CompletableFuture<Void> stream(ExecutorService executor, RootAllocator allocator,
+                                                  Function<CompletableFuture<Void>, FlightProducer.ServerStreamListener> listenerFactory) {
+        Connection connection = ConnectionPool.getConnection();
+        var future = new CompletableFuture<Void>();
+        ResultSetStreamUtil.streamResultSet(executor,
+                () -> (DuckDBResultSet) connection.createStatement().executeQuery(QUERY),
+                allocator, 64 * 1024, listenerFactory.apply(future), () -> {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                    }
+                }, new SimpleFlightRecorder(), StreamingConfig.DEFAULT);
+        return future;
+    }
+}
@@ -0,0 +1,254 @@
+package io.dazzleduck.sql.http.server;
+
+import io.dazzleduck.sql.common.ContentTypes;
+import io.dazzleduck.sql.flight.server.HttpFlightAdaptor;
+import io.dazzleduck.sql.flight.server.StatementHandle;
+import io.dazzleduck.sql.http.server.model.QueryRequest;
+import io.helidon.http.HeaderNames;
+import io.helidon.http.Status;
+import io.helidon.webserver.http.HttpRules;
+import io.helidon.webserver.http.ServerRequest;
+import io.helidon.webserver.http.ServerResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Submit / poll / fetch API for queries that outlive an HTTP request.
+ *
+ * <ul>
+ *   <li>{@code POST /} (or {@code GET /?q=}) submits a query and returns its status with
+ *       {@code 202 Accepted} right away; the result is spooled by {@link ResultSpool}.
+ *       {@code x-dd-arrow-compression} selects the codec of the spooled stream.</li>
+ *   <li>{@code GET /{id}} returns the status: state, and batches, rows and bytes spooled so far.</li>
+ *   <li>{@code GET /{id}/result} returns the Arrow IPC stream once the query succeeded, or a part
+ *       of it: a single {@code Range: bytes=...} of the file, or the batches selected by the
+ *       {@code batch_offset} and {@code batch_limit} parameters as a stream of their own. Batch
+ *       ranges can be fetched while the query is still running.</li>
+ *   <li>{@code DELETE /{id}} cancels the query if it is running and deletes its result.</li>
+ * </ul>
+ *
+ * Queries are only visible to the identity that submitted them. They run with the async
+ * {@code query_timeout} instead of the interactive query timeout.
+ */
+public class AsyncQueryService extends AbstractQueryBasedService {
+
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final HttpFlightAdaptor httpFlightAdaptor;
+    private final String producerId;
+    private final ResultSpool spool;
+    private final Duration queryTimeout;
+
+    public AsyncQueryService(HttpFlightAdaptor httpFlightAdaptor, ResultSpool spool, Duration queryTimeout) {
+        this.httpFlightAdaptor = httpFlightAdaptor;
+        this.producerId = httpFlightAdaptor.getProducerId();
+        this.spool = spool;
+        this.queryTimeout = queryTimeout;
+    }
+
+    @Override
+    public void routing(HttpRules rules) {
+        super.routing(rules);
+        rules.get("/{id}", this::handleStatus)
+             .get("/{id}/result", this::handleResult)
+             .delete("/{id}", this::handleDelete);
+    }
+
+    /** Submits the query; the response does not wait for it to run. */
+    @Override
+    protected void handleInternal(ServerRequest request, ServerResponse response, QueryRequest query) {
+        var context = ControllerService.createContext(request);
+        try {
+            var codec = ParameterUtils.getArrowCompression(request);
+            var id = query.id() == null ? StatementHandle.nextStatementId() : query.id();
+            var spooled = spool.create(id, context.peerIdentity(), codec);
+            try {
+                var ticket = QueryService.createTicket(StatementHandle.newStatementHandle(id, query.query(), producerId, -1));
+                httpFlightAdaptor.getStreamStatement(ticket, context, spooled, queryTimeout);
+            } catch (Exception e) {
+                spool.remove(spooled);
+                throw e;
+            }
+            logger.debug("Submitted async query {}: {}", id, query.query());
+            response.status(Status.ACCEPTED_202);
+            response.headers().set(HeaderNames.LOCATION, request.path().path().replaceAll("/+$", "") + "/" + id);
+            sendStatus(response, spooled);
+        } catch (IllegalArgumentException e) {
+            response.status(Status.BAD_REQUEST_400).send(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error submitting async query", e);
+            ControllerService.sendFlightError(response, e);
+        }
+    }
+
+    private void handleStatus(ServerRequest request, ServerResponse response) {
+        findQuery(request, response).ifPresent(query -> sendStatus(response, query));
+    }
+
+    private void handleDelete(ServerRequest request, ServerResponse response) {
+        findQuery(request, response).ifPresent(query -> {
+            if (query.state() == ResultSpool.State.RUNNING) {
+                try {
+                    httpFlightAdaptor.tryCancel(query.id(), ControllerService.createContext(request));
+                } catch (Exception e) {
+                    logger.warn("Error cancelling async query {}", query.id(), e);
+                }
+            }
+            spool.remove(query);
+            response.status(Status.OK_200).send("query removed");
+        });
+    }
+
+    private void handleResult(ServerRequest request, ServerResponse response) {
+        var found = findQuery(request, response);
+        if (found.isEmpty()) {
+            return;
+        }
+        var query = found.get();
+        var state = query.state();
+        if (state == ResultSpool.State.FAILED || state == ResultSpool.State.CANCELLED) {
+            var status = query.status();
+            response.status(Status.CONFLICT_409).send("Query " + status.state().toLowerCase()
+                    + (status.error() != null ? ": " + status.error() : ""));
+            return;
+        }
+        try {
+            Long batchOffset = ParameterUtils.getParameterValue("batch_offset", request, null, Long.class);
+            Long batchLimit = ParameterUtils.getParameterValue("batch_limit", request, null, Long.class);
+            if (batchOffset != null || batchLimit != null) {
+                sendBatches(response, query, batchOffset == null ? 0 : batchOffset, batchLimit);
+                return;
+            }
+            if (state == ResultSpool.State.RUNNING) {
+                response.status(Status.CONFLICT_409).send("Query is still running");
+                return;
+            }
+            var range = request.headers().value(HeaderNames.RANGE);
+            if (range.isPresent()) {
+                sendByteRange(response, query, range.get());
+            } else {
+                response.headers().set(HeaderNames.ACCEPT_RANGES, "bytes");
+                sendFile(response, query, 0, query.size());
+            }
+        } catch (NumberFormatException e) {
+            response.status(Status.BAD_REQUEST_400).send("Invalid batch_offset or batch_limit: " + e.getMessage());
+        } catch (IOException e) {
+            logger.error("Error sending async query result {}", query.id(), e);
+            if (!response.isSent()) {
+                response.status(Status.INTERNAL_SERVER_ERROR_500).send(e.getMessage());
+            }
+        }
+    }
+
+    private void sendByteRange(ServerResponse response, ResultSpool.SpooledQuery query, String range) throws IOException {
+        long size = query.size();
+        var matcher = BYTE_RANGE.matcher(range.trim());
+        long start;
+        long end;
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            start = -1;
+            end = -1;
+        } else if (matcher.group(1).isEmpty()) {
+            // Suffix range: the last n bytes
+            start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+            end = size - 1;
+        } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+        }
+        if (start < 0 || start > end) {
+            response.headers().set(HeaderNames.CONTENT_RANGE, "bytes */" + size);
+            response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE_416).send();
+            return;
+        }
+        response.status(Status.PARTIAL_CONTENT_206);
+        response.headers().set(HeaderNames.ACCEPT_RANGES, "bytes");
+        response.headers().set(HeaderNames.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, size));
+        sendFile(response, query, start, end + 1);
+    }
+
+    /**
+     * Sends batches {@code [offset, offset + limit)} as a complete stream: the header of the
+     * spooled stream, the batches' bytes and an end-of-stream marker.
+     */
+    private void sendBatches(ServerResponse response, ResultSpool.SpooledQuery query, long offset, Long limit) throws IOException {
+        int available = query.batchCount();
+        if (offset < 0 || (limit != null && limit < 0)) {
+            response.status(Status.BAD_REQUEST_400).send("batch_offset and batch_limit must not be negative");
+            return;
+        }
+        long to = available;
+        // Compare against what is left rather than computing offset + limit, which can overflow
+        if (limit != null && limit <= available - offset) {
+            to = offset + limit;
+        } else if (limit != null && query.state() == ResultSpool.State.RUNNING) {
+            response.status(Status.CONFLICT_409).send("Only " + available + " batches are available so far");
+            return;
+        }
+        long from = Math.min(offset, to);
+        long headerEnd = query.headerEnd();
+        long start = query.batchStart((int) from);
+        long end = query.batchStart((int) to);
+        response.headers().set(HeaderNames.CONTENT_TYPE, ContentTypes.APPLICATION_ARROW);
+        response.headers().contentLength(headerEnd + (end - start) + ResultSpool.END_OF_STREAM.length);
+        try (var out = response.outputStream();
+             var channel = FileChannel.open(query.path(), StandardOpenOption.READ)) {
+            var target = Channels.newChannel(out);
+            transfer(channel, 0, headerEnd, target);
+            transfer(channel, start, end, target);
+            out.write(ResultSpool.END_OF_STREAM);
+        }
+    }
+
+    private void sendFile(ServerResponse response, ResultSpool.SpooledQuery query, long start, long end) throws IOException {
+        response.headers().set(HeaderNames.CONTENT_TYPE, ContentTypes.APPLICATION_ARROW);
+        response.headers().contentLength(end - start);
+        try (OutputStream out = response.outputStream();
+             var channel = FileChannel.open(query.path(), StandardOpenOption.READ)) {
+            transfer(channel, start, end, Channels.newChannel(out));
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, WritableByteChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) {
+                throw new IOException("Spool file ended at " + position + ", expected " + end + " bytes");
+            }
+            position += n;
+        }
+    }
+
+    private Optional<ResultSpool.SpooledQuery> findQuery(ServerRequest request, ServerResponse response) {
+        long id;
+        try {
+            id = Long.parseLong(request.path().pathParameters().get("id"));
+        } catch (NumberFormatException e) {
+            response.status(Status.BAD_REQUEST_400).send("Invalid query id");
+            return Optional.empty();
+        }
+        var query = spool.get(id, ControllerService.createContext(request).peerIdentity());
+        if (query.isEmpty()) {
+            response.status(Status.NOT_FOUND_404).send("query not found");
+        }
+        return query;
+    }
+
+    private static void sendStatus(ServerResponse response, ResultSpool.SpooledQuery query) {
+        try {
+            response.headers().set(HeaderNames.CONTENT_TYPE, ContentTypes.APPLICATION_JSON);
+            response.send(MAPPER.writeValueAsBytes(query.status()));
+        } catch (IOException e) {
+            response.status(Status.INTERNAL_SERVER_ERROR_500).send(e.getMessage());
+        }
+    }
+}
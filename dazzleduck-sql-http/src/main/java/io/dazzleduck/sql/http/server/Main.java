@@ -9,6 +9,7 @@ import io.dazzleduck.sql.commons.util.CommandLineConfigUtil;
 import io.dazzleduck.sql.commons.authorization.AccessMode;
 import io.dazzleduck.sql.flight.server.DuckDBFlightSqlProducer;
 import io.dazzleduck.sql.flight.namedquery.DefaultNamedQueryServiceAdaptor;
+import io.dazzleduck.sql.http.server.model.AsyncQueryConfig;
 import io.dazzleduck.sql.http.server.model.HttpConfig;
 import io.dazzleduck.sql.login.LoginService;
 import io.dazzleduck.sql.login.ProxyLoginService;
@@ -49,6 +50,7 @@ public class Main {
     private static final String ENDPOINT_INGEST = API_VERSION_PREFIX + "/ingest";
     private static final String ENDPOINT_UI = API_VERSION_PREFIX + "/ui";
     private static final String ENDPOINT_NAMED_QUERY = API_VERSION_PREFIX + "/named-query";
+    private static final String ENDPOINT_ASYNC_QUERY = API_VERSION_PREFIX + "/async-query";
 
     // Configuration keys
     private static final String CONFIG_HTTP = ConfigConstants.HTTP_PREFIX;
@@ -60,9 +62,11 @@ public class Main {
     private static final String CORS_DEFAULT_ALLOW_ORIGIN = "*";
     private static final String HTTP_METHOD_GET = "GET";
     private static final String HTTP_METHOD_POST = "POST";
+    private static final String HTTP_METHOD_DELETE = "DELETE";
     private static final String HEADER_CONTENT_TYPE = "Content-Type";
     private static final String HEADER_AUTHORIZATION = "Authorization";
     private static final String HEADER_ARROW_COMPRESSION = "x-dd-arrow-compression";
+    private static final String HEADER_RANGE = "Range";
 
     // Authentication types
     private static final String AUTH_NONE = ConfigConstants.AUTH_NONE;
@@ -293,8 +297,8 @@ public class Main {
         var cors = CorsSupport.builder()
                 .addCrossOrigin(CrossOriginConfig.builder()
                         .allowOrigins(httpConfig.getStringList(CONFIG_ALLOW_ORIGIN).toArray(new String[0]))
-                        .allowMethods(HTTP_METHOD_GET, HTTP_METHOD_POST)
-                        .allowHeaders(HEADER_CONTENT_TYPE, HEADER_AUTHORIZATION, HEADER_ARROW_COMPRESSION)
+                        .allowMethods(HTTP_METHOD_GET, HTTP_METHOD_POST, HTTP_METHOD_DELETE)
+                        .allowHeaders(HEADER_CONTENT_TYPE, HEADER_AUTHORIZATION, HEADER_ARROW_COMPRESSION, HEADER_RANGE)
                         .build())
                 .build();
         HttpService loginService;
@@ -305,6 +309,9 @@ public class Main {
             loginService = new LoginService(appConfig, secretKey, jwtExpiration);
         }
 
+        var asyncQueryConfig = AsyncQueryConfig.fromConfig(httpConfig);
+        var resultSpool = asyncQueryConfig.enabled() ? new ResultSpool(asyncQueryConfig) : null;
+
         // All versioned endpoints now require JWT authentication
         logger.info("JWT authentication is required for all versioned API endpoints (auth={}, accessMode={})", auth, accessMode);
 
@@ -330,10 +337,15 @@ public class Main {
                         logger.info("Named query endpoint enabled, table: {}", namedQueryTable);
                     }
 
+                    if (resultSpool != null) {
+                        b.register(ENDPOINT_ASYNC_QUERY, new AsyncQueryService(producer, resultSpool, asyncQueryConfig.queryTimeout()));
+                        logger.info("Async query endpoint enabled, spool directory: {}", asyncQueryConfig.directory());
+                    }
+
                     // JWT filter is always applied to all versioned endpoints
                     b.addFilter(new JwtAuthenticationFilter(
                             List.of(ENDPOINT_QUERY, ENDPOINT_PLAN, ENDPOINT_INGEST, ENDPOINT_CANCEL,
-                                    ENDPOINT_UI, ENDPOINT_NAMED_QUERY),
+                                    ENDPOINT_UI, ENDPOINT_NAMED_QUERY, ENDPOINT_ASYNC_QUERY),
                             appConfig,
                             secretKey,
                             producer.getSqlAuthorizer()
@@ -369,6 +381,11 @@ public class Main {
                 logger.error("Error stopping server", e);
             }
 
+            if (resultSpool != null) {
+                resultSpool.close();
+                logger.info("Async query spool closed");
+            }
+
             try {
                 producer.close();
                 logger.info("Producer closed");
@@ -51,12 +51,17 @@ public class QueryService extends AbstractQueryBasedService {
 
             var acceptHeader = request.headers().value(HeaderNames.ACCEPT);
             boolean wantsTsv = acceptHeader.isPresent() && acceptHeader.get().contains(ContentTypes.TEXT_TSV);
+            boolean wantsJson = acceptHeader.isPresent() && acceptHeader.get().contains(ContentTypes.APPLICATION_JSON);
 
             CompletableFuture<Void> future;
             if (wantsTsv) {
                 logger.debug("TSV output requested for query: {}", query.query());
                 response.header("Content-Type", ContentTypes.TEXT_TSV_UTF8);
                 future = httpFlightAdaptor.streamTsv(ticket, context, () -> response.outputStream());
+            } else if (wantsJson) {
+                logger.debug("JSON output requested for query: {}", query.query());
+                response.header("Content-Type", ContentTypes.APPLICATION_JSON);
+                future = httpFlightAdaptor.streamJson(ticket, context, () -> response.outputStream());
             } else {
                 // Get Arrow compression codec from header (defaults to ZSTD)
                 CompressionUtil.CodecType compressionCodec = ParameterUtils.getArrowCompression(request);
@@ -103,7 +108,7 @@ public class QueryService extends AbstractQueryBasedService {
         }
     }
 
-    private FlightSql.TicketStatementQuery createTicket(StatementHandle statementHandle) throws JsonProcessingException {
+    static FlightSql.TicketStatementQuery createTicket(StatementHandle statementHandle) throws JsonProcessingException {
         var builder = FlightSql.TicketStatementQuery.newBuilder();
         builder.setStatementHandle(ByteString.copyFrom(MAPPER.writeValueAsBytes(statementHandle)));
         return builder.build();
@@ -0,0 +1,403 @@
+package io.dazzleduck.sql.http.server;
+
+import io.dazzleduck.sql.commons.io.ResultStreams;
+import io.dazzleduck.sql.http.server.model.AsyncQueryConfig;
+import io.dazzleduck.sql.http.server.model.AsyncQueryStatus;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of asynchronous queries, spooled to Arrow IPC stream files while the queries run.
+ *
+ * <p>Each query gets a {@link SpooledQuery}, which is the {@link FlightProducer.ServerStreamListener}
+ * its result is streamed into. The listener remembers where every record batch ends in the file,
+ * so a range of batches can later be served by copying bytes: the stream header (schema and
+ * dictionaries), the batches, and an end-of-stream marker.
+ *
+ * <p>Finished results are deleted {@link AsyncQueryConfig#retention()} after their query ended.
+ * A result larger than {@link AsyncQueryConfig#maxResultBytes()} fails its query; new queries are
+ * rejected, after evicting the oldest finished results, while the spool holds
+ * {@link AsyncQueryConfig#maxTotalBytes()}, and a running query that pushes it beyond fails.
+ */
+public class ResultSpool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultSpool.class);
+    private static final String FILE_SUFFIX = ".arrows";
+    /** Continuation marker followed by a zero metadata length, as {@link ArrowStreamWriter#end()} writes it. */
+    static final byte[] END_OF_STREAM = {-1, -1, -1, -1, 0, 0, 0, 0};
+
+    public enum State { RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final AsyncQueryConfig config;
+    private final Clock clock;
+    private final ConcurrentHashMap<Long, SpooledQuery> queries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final ScheduledExecutorService housekeeping;
+
+    public ResultSpool(AsyncQueryConfig config) throws IOException {
+        this(config, Clock.systemUTC());
+    }
+
+    ResultSpool(AsyncQueryConfig config, Clock clock) throws IOException {
+        this.config = config;
+        this.clock = clock;
+        Files.createDirectories(config.directory());
+        try (var files = Files.list(config.directory())) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(FILE_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        this.housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "async-query-housekeeping");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.housekeepingInterval().toMillis();
+        housekeeping.scheduleWithFixedDelay(this::evictExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a new query whose result will be spooled with the given codec.
+     *
+     * @throws org.apache.arrow.flight.FlightRuntimeException {@code ALREADY_EXISTS} when the id is
+     *         taken, {@code UNAVAILABLE} when the spool is full
+     */
+    public SpooledQuery create(long id, String owner, CompressionUtil.CodecType codec) {
+        evictExpired();
+        if (totalBytes.get() >= config.maxTotalBytes()) {
+            evictOldestFinished();
+        }
+        if (totalBytes.get() >= config.maxTotalBytes()) {
+            throw CallStatus.UNAVAILABLE
+                    .withDescription("Async query result spool is full, fetch or delete earlier results first")
+                    .toRuntimeException();
+        }
+        var query = new SpooledQuery(id, owner, codec, config.directory().resolve(id + FILE_SUFFIX));
+        if (queries.putIfAbsent(id, query) != null) {
+            throw CallStatus.ALREADY_EXISTS.withDescription("Query id already in use: " + id).toRuntimeException();
+        }
+        return query;
+    }
+
+    /** The query with the given id, if it exists and was submitted by {@code owner}. */
+    public Optional<SpooledQuery> get(long id, String owner) {
+        var query = queries.get(id);
+        return query != null && Objects.equals(query.owner, owner) ? Optional.of(query) : Optional.empty();
+    }
+
+    /** Cancels the query if it is still running and deletes its result. */
+    public void remove(SpooledQuery query) {
+        if (queries.remove(query.id, query)) {
+            query.cancel();
+            query.delete();
+        }
+    }
+
+    public long totalBytes() {
+        return totalBytes.get();
+    }
+
+    void evictExpired() {
+        long cutoff = clock.millis() - config.retention().toMillis();
+        for (var query : queries.values()) {
+            Long completedAt = query.completedAt;
+            if (completedAt != null && completedAt <= cutoff) {
+                logger.debug("Evicting expired async query result {}", query.id);
+                remove(query);
+            }
+        }
+    }
+
+    private void evictOldestFinished() {
+        var finished = queries.values().stream()
+                .filter(q -> q.completedAt != null)
+                .sorted(Comparator.comparingLong(q -> q.completedAt))
+                .toList();
+        for (var query : finished) {
+            if (totalBytes.get() < config.maxTotalBytes()) {
+                return;
+            }
+            logger.info("Evicting async query result {} to free spool space", query.id);
+            remove(query);
+        }
+    }
+
+    @Override
+    public void close() {
+        housekeeping.shutdownNow();
+        for (var query : queries.values()) {
+            remove(query);
+        }
+    }
+
+    /**
+     * One spooled result. Receives the query's batches as a stream listener and serves them
+     * back to {@link AsyncQueryService}.
+     */
+    public final class SpooledQuery implements FlightProducer.ServerStreamListener {
+
+        private final long id;
+        private final String owner;
+        private final CompressionUtil.CodecType codec;
+        private final Path path;
+        private final long submittedAt;
+        private volatile State state = State.RUNNING;
+        private volatile String error;
+        private volatile Long completedAt;
+        private Runnable onCancel;
+
+        private CountingOutputStream out;
+        private ArrowStreamWriter writer;
+        private VectorSchemaRoot root;
+        /** Offset of the first record batch, i.e. the length of the schema and dictionary messages. */
+        private long headerEnd;
+        /** {@code batchEnds[i]} is the offset right after record batch {@code i}. */
+        private long[] batchEnds = new long[16];
+        private int batches;
+        private long rows;
+        private long charged;
+
+        private SpooledQuery(long id, String owner, CompressionUtil.CodecType codec, Path path) {
+            this.id = id;
+            this.owner = owner;
+            this.codec = codec;
+            this.path = path;
+            this.submittedAt = clock.millis();
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public synchronized AsyncQueryStatus status() {
+            return new AsyncQueryStatus(id, state.name(), batches, rows, charged, error, submittedAt, completedAt);
+        }
+
+        /** Bytes of the spool file readable so far; the complete stream once the query succeeded. */
+        public synchronized long size() {
+            return charged;
+        }
+
+        public synchronized int batchCount() {
+            return batches;
+        }
+
+        public synchronized long headerEnd() {
+            return headerEnd;
+        }
+
+        /** Offset at which record batch {@code batch} starts ({@code batch <= batchCount()}). */
+        public synchronized long batchStart(int batch) {
+            return batch == 0 ? headerEnd : batchEnds[batch - 1];
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state != State.RUNNING;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public synchronized void setOnCancelHandler(Runnable handler) {
+            this.onCancel = handler;
+        }
+
+        @Override
+        public synchronized void start(VectorSchemaRoot root, DictionaryProvider dictionaries, IpcOption option) {
+            if (state != State.RUNNING) {
+                return;
+            }
+            try {
+                this.root = root;
+                this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+                this.writer = ResultStreams.newArrowStreamWriter(root, dictionaries, out, codec,
+                        CommonsCompressionFactory.INSTANCE, option);
+                writer.start();
+                out.flush();
+                headerEnd = out.count;
+                charge();
+            } catch (IOException e) {
+                fail("Failed to spool result: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void putNext() {
+            if (state != State.RUNNING) {
+                return;
+            }
+            try {
+                writer.writeBatch();
+                out.flush();
+                if (batches == batchEnds.length) {
+                    batchEnds = Arrays.copyOf(batchEnds, batches * 2);
+                }
+                batchEnds[batches++] = out.count;
+                rows += root.getRowCount();
+                charge();
+            } catch (IOException e) {
+                fail("Failed to spool result: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+            putNext();
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {
+            // Metadata is not spooled
+        }
+
+        @Override
+        public synchronized void error(Throwable ex) {
+            if (state == State.RUNNING) {
+                finish(State.FAILED, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+            }
+        }
+
+        @Override
+        public synchronized void completed() {
+            if (state != State.RUNNING) {
+                return;
+            }
+            try {
+                if (writer != null) {
+                    writer.end();
+                    out.flush();
+                    charge();
+                }
+                if (state == State.RUNNING) {
+                    finish(State.SUCCEEDED, null);
+                }
+            } catch (IOException e) {
+                fail("Failed to spool result: " + e.getMessage());
+            }
+        }
+
+        synchronized void cancel() {
+            if (state == State.RUNNING) {
+                finish(State.CANCELLED, null);
+                runOnCancel();
+            }
+        }
+
+        /** Accounts the bytes written since the last call against the result and spool limits. */
+        private void charge() {
+            long delta = out.count - charged;
+            charged = out.count;
+            long total = totalBytes.addAndGet(delta);
+            if (charged > config.maxResultBytes()) {
+                fail("Result exceeds the async query limit of " + config.maxResultBytes() + " bytes");
+            } else if (total > config.maxTotalBytes()) {
+                fail("Async query result spool is full");
+            }
+        }
+
+        private void fail(String message) {
+            logger.warn("Async query {} failed: {}", id, message);
+            finish(State.FAILED, message);
+            runOnCancel();
+        }
+
+        private void finish(State finalState, String message) {
+            this.error = message;
+            this.state = finalState;
+            this.completedAt = clock.millis();
+            closeQuietly();
+        }
+
+        private void runOnCancel() {
+            if (onCancel != null) {
+                try {
+                    onCancel.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Cancel handler of async query {} failed", id, e);
+                }
+            }
+        }
+
+        private void closeQuietly() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close spool file {}", path, e);
+                }
+            }
+        }
+
+        private synchronized void delete() {
+            closeQuietly();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spool file {}", path, e);
+            }
+            totalBytes.addAndGet(-charged);
+            charged = 0;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
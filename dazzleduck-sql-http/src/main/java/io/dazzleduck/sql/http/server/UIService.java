@@ -146,6 +146,7 @@ public class UIService implements HttpService {
     private String buildMetricsTables() {
         return buildApplicationMetricsTable()
                 + buildNetworkMetricsTable()
+                + buildMemoryMetricsTable()
                 + buildRunningStatementsTable()
                 + buildOpenPreparedStatementsTable()
                 + buildRunningBulkIngestTable();
@@ -218,10 +219,39 @@ public class UIService implements HttpService {
                 completedBatchesOut);
     }
 
+    private String buildMemoryMetricsTable() {
+        var budget = producerMBean.getMemoryBudget();
+        return """
+                <table>
+                    <caption>Memory</caption>
+                    <thead>
+                        <tr>
+                            <th>Allocated</th>
+                            <th>Peak Allocated</th>
+                            <th>Budget per Statement</th>
+                            <th>Budget per Identity</th>
+                        </tr>
+                    </thead>
+                    <tbody>
+                        <tr>
+                            <td>%s</td>
+                            <td>%s</td>
+                            <td>%s</td>
+                            <td>%s</td>
+                        </tr>
+                    </tbody>
+                </table>
+                """.formatted(
+                formatBytes(producerMBean.getAllocatedMemory()),
+                formatBytes(producerMBean.getPeakAllocatedMemory()),
+                formatBudget(budget.perStatementBytes()),
+                formatBudget(budget.perIdentityBytes()));
+    }
+
     private String buildRunningStatementsTable() {
         List<RunningStatementInfo> statements = producerMBean.getRunningStatementDetails();
         String rows = statements.isEmpty()
-                ? "<tr><td colspan=\"6\" style=\"text-align: center;\">No running statements</td></tr>"
+                ? "<tr><td colspan=\"8\" style=\"text-align: center;\">No running statements</td></tr>"
                 : statements.stream()
                 .map(info -> buildStatementRow(info, true))
                 .collect(Collectors.joining());
@@ -232,7 +262,7 @@ public class UIService implements HttpService {
     private String buildOpenPreparedStatementsTable() {
         List<RunningStatementInfo> statements = producerMBean.getOpenPreparedStatementDetails();
         String rows = statements.isEmpty()
-                ? "<tr><td colspan=\"6\" style=\"text-align: center;\">No open prepared statements</td></tr>"
+                ? "<tr><td colspan=\"8\" style=\"text-align: center;\">No open prepared statements</td></tr>"
                 : statements.stream()
                 .map(info -> buildStatementRow(info, true))
                 .collect(Collectors.joining());
@@ -307,6 +337,8 @@ public class UIService implements HttpService {
                     <td>%s</td>
                     <td>%s</td>
                     <td>%s</td>
+                    <td>%s</td>
+                    <td>%s</td>
                 </tr>
                 """.formatted(
                 escapeHtml(info.user()),
@@ -314,6 +346,8 @@ public class UIService implements HttpService {
                 escapeHtml(info.query()),
                 startTime,
                 duration,
+                formatBytes(info.allocatedBytes()),
+                formatBytes(info.peakAllocatedBytes()),
                 action);
     }
 
@@ -328,6 +362,8 @@ public class UIService implements HttpService {
                             <th>Query</th>
                             <th>Start Time</th>
                             <th>Duration</th>
+                            <th>Memory</th>
+                            <th>Peak Memory</th>
                             <th>Action</th>
                         </tr>
                     </thead>
@@ -359,6 +395,10 @@ public class UIService implements HttpService {
         return String.format("%.2f GB", bytes / (1024 * 1024 * 1024));
     }
 
+    private static String formatBudget(long bytes) {
+        return bytes <= 0 ? "Unlimited" : formatBytes(bytes);
+    }
+
     private String escapeHtml(String text) {
         return text == null ? "" : text
                 .replace("&", "&amp;")
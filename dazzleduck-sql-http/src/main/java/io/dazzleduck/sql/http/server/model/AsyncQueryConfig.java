@@ -0,0 +1,48 @@
+package io.dazzleduck.sql.http.server.model;
+
+import com.typesafe.config.Config;
+import io.dazzleduck.sql.common.ConfigConstants;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of asynchronous queries with spooled results ({@code dazzleduck_server.http.async_query}).
+ *
+ * A spooled result is deleted {@code retention} after its query ends. {@code maxResultBytes}
+ * bounds a single result and {@code maxTotalBytes} all results on disk together.
+ * {@code queryTimeout} replaces the interactive query timeout and its maximum for async queries
+ * ({@link Duration#ZERO} = no timeout).
+ */
+public record AsyncQueryConfig(
+        boolean enabled,
+        Path directory,
+        Duration retention,
+        long maxResultBytes,
+        long maxTotalBytes,
+        Duration housekeepingInterval,
+        Duration queryTimeout
+) {
+
+    public static final AsyncQueryConfig DISABLED = new AsyncQueryConfig(false, null, Duration.ofHours(1),
+            4L * 1024 * 1024 * 1024, 16L * 1024 * 1024 * 1024, Duration.ofSeconds(60), Duration.ofHours(1));
+
+    /**
+     * @param httpConfig the {@code http} section of the server configuration
+     */
+    public static AsyncQueryConfig fromConfig(Config httpConfig) {
+        if (!httpConfig.hasPath(ConfigConstants.ASYNC_QUERY_KEY)) {
+            return DISABLED;
+        }
+        var asyncQuery = httpConfig.getConfig(ConfigConstants.ASYNC_QUERY_KEY);
+        return new AsyncQueryConfig(
+                asyncQuery.getBoolean(ConfigConstants.ENABLED_KEY),
+                Path.of(asyncQuery.getString(ConfigConstants.ASYNC_QUERY_DIRECTORY_KEY)),
+                asyncQuery.getDuration(ConfigConstants.ASYNC_QUERY_RETENTION_KEY),
+                asyncQuery.getBytes(ConfigConstants.ASYNC_QUERY_MAX_RESULT_BYTES_KEY),
+                asyncQuery.getBytes(ConfigConstants.ASYNC_QUERY_MAX_TOTAL_BYTES_KEY),
+                asyncQuery.getDuration(ConfigConstants.ASYNC_QUERY_HOUSEKEEPING_INTERVAL_KEY),
+                asyncQuery.getDuration(ConfigConstants.ASYNC_QUERY_QUERY_TIMEOUT_KEY)
+        );
+    }
+}
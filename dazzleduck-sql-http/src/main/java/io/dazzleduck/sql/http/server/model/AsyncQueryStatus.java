@@ -0,0 +1,17 @@
+package io.dazzleduck.sql.http.server.model;
+
+import javax.annotation.Nullable;
+
+/**
+ * State of an asynchronous query as returned by {@code /v1/async-query}. {@code batches},
+ * {@code rows} and {@code bytes} count what has been spooled so far; times are epoch milliseconds.
+ */
+public record AsyncQueryStatus(long id,
+                               String state,
+                               long batches,
+                               long rows,
+                               long bytes,
+                               @Nullable String error,
+                               long submittedAt,
+                               @Nullable Long completedAt) {
+}
@@ -0,0 +1,206 @@
+package io.dazzleduck.sql.http.server;
+
+import io.dazzleduck.sql.common.Headers;
+import io.dazzleduck.sql.http.server.model.AsyncQueryStatus;
+import io.dazzleduck.sql.http.server.model.QueryRequest;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpServerAsyncQueryTest extends HttpServerTestBase {
+
+    private static final String QUERY = "select generate_series as i from generate_series(0, 9999) order by 1";
+
+    @BeforeAll
+    static void setup() throws Exception {
+        initWarehouse();
+        initClient();
+        initPort();
+        startServer("--conf", "dazzleduck_server.http.async_query.directory=%s/async_results".formatted(warehousePath));
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        cleanupWarehouse();
+    }
+
+    private AsyncQueryStatus submit(String query, String compression, String... headers) throws Exception {
+        var body = objectMapper.writeValueAsBytes(new QueryRequest(query, null, null));
+        var builder = authenticatedRequestBuilder(URI.create(baseUrl + "/v1/async-query"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/json")
+                .header(Headers.HEADER_FETCH_SIZE, "1000")
+                .header(Headers.HEADER_ARROW_COMPRESSION, compression);
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        var request = builder.build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(202, response.statusCode(), response.body());
+        var status = objectMapper.readValue(response.body(), AsyncQueryStatus.class);
+        assertEquals("/v1/async-query/" + status.id(), response.headers().firstValue("Location").orElseThrow());
+        return status;
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        var builder = authenticatedRequestBuilder(URI.create(baseUrl + "/v1/async-query/" + path)).GET();
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private AsyncQueryStatus awaitCompletion(long id) throws Exception {
+        while (true) {
+            var response = get(String.valueOf(id));
+            assertEquals(200, response.statusCode());
+            var status = objectMapper.readValue(response.body(), AsyncQueryStatus.class);
+            if (!status.state().equals("RUNNING")) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static List<Long> readValues(byte[] arrowStream) throws IOException {
+        var values = new ArrayList<Long>();
+        try (var allocator = new RootAllocator();
+             var reader = new ArrowStreamReader(new ByteArrayInputStream(arrowStream), allocator)) {
+            while (reader.loadNextBatch()) {
+                var vector = (BigIntVector) reader.getVectorSchemaRoot().getVector(0);
+                for (int i = 0; i < vector.getValueCount(); i++) {
+                    values.add(vector.get(i));
+                }
+            }
+        }
+        return values;
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testSubmitPollAndFetch() throws Exception {
+        var submitted = submit(QUERY, "zstd");
+        var status = awaitCompletion(submitted.id());
+        assertEquals("SUCCEEDED", status.state(), status.error());
+        assertEquals(10000, status.rows());
+        assertNotNull(status.completedAt());
+
+        var result = get(submitted.id() + "/result");
+        assertEquals(200, result.statusCode());
+        assertEquals(status.bytes(), result.body().length);
+        var values = readValues(result.body());
+        assertEquals(10000, values.size());
+        assertEquals(9999L, values.get(9999));
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testFetchBatchRange() throws Exception {
+        var submitted = submit(QUERY, "none");
+        var status = awaitCompletion(submitted.id());
+        assertTrue(status.batches() > 2, "expected several batches, got " + status.batches());
+
+        var all = readValues(get(submitted.id() + "/result").body());
+        var first = readValues(get(submitted.id() + "/result?batch_offset=0&batch_limit=1").body());
+        var second = readValues(get(submitted.id() + "/result?batch_offset=1&batch_limit=1").body());
+        var rest = readValues(get(submitted.id() + "/result?batch_offset=2").body());
+        var combined = new ArrayList<>(first);
+        combined.addAll(second);
+        combined.addAll(rest);
+        assertEquals(all, combined);
+        assertFalse(first.isEmpty());
+        assertEquals(first.size(), (long) second.get(0));
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testFetchBatchRangeOutOfBounds() throws Exception {
+        var submitted = submit(QUERY, "none");
+        awaitCompletion(submitted.id());
+        var all = readValues(get(submitted.id() + "/result").body());
+
+        var huge = get(submitted.id() + "/result?batch_offset=1&batch_limit=" + Long.MAX_VALUE);
+        assertEquals(200, huge.statusCode());
+        var rest = readValues(get(submitted.id() + "/result?batch_offset=1").body());
+        assertEquals(rest, readValues(huge.body()));
+        assertTrue(rest.size() < all.size());
+
+        var past = get(submitted.id() + "/result?batch_offset=" + Long.MAX_VALUE + "&batch_limit=" + Long.MAX_VALUE);
+        assertEquals(200, past.statusCode());
+        assertTrue(readValues(past.body()).isEmpty());
+
+        assertEquals(400, get(submitted.id() + "/result?batch_offset=-1").statusCode());
+        assertEquals(400, get(submitted.id() + "/result?batch_limit=-1").statusCode());
+        assertEquals(400, get(submitted.id() + "/result?batch_limit=many").statusCode());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testFetchByteRange() throws Exception {
+        var submitted = submit(QUERY, "none");
+        var status = awaitCompletion(submitted.id());
+        var all = get(submitted.id() + "/result").body();
+
+        var head = get(submitted.id() + "/result", "Range", "bytes=0-99");
+        assertEquals(206, head.statusCode());
+        assertEquals("bytes 0-99/" + status.bytes(), head.headers().firstValue("Content-Range").orElseThrow());
+        var tail = get(submitted.id() + "/result", "Range", "bytes=100-");
+        assertEquals(206, tail.statusCode());
+        var joined = new byte[head.body().length + tail.body().length];
+        System.arraycopy(head.body(), 0, joined, 0, head.body().length);
+        System.arraycopy(tail.body(), 0, joined, head.body().length, tail.body().length);
+        assertArrayEquals(all, joined);
+
+        assertEquals(416, get(submitted.id() + "/result", "Range", "bytes=" + status.bytes() + "-").statusCode());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testCancelAndDelete() throws Exception {
+        var submitted = submit(LONG_RUNNING_QUERY, "zstd");
+        assertEquals(409, get(submitted.id() + "/result").statusCode());
+
+        var delete = authenticatedRequestBuilder(URI.create(baseUrl + "/v1/async-query/" + submitted.id()))
+                .DELETE().build();
+        assertEquals(200, client.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(404, get(String.valueOf(submitted.id())).statusCode());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testTimeoutAboveInteractiveMaximum() throws Exception {
+        // max_query_timeout_ms (5 minutes) does not apply; the async query_timeout (1 hour) does
+        var submitted = submit(QUERY, "zstd", Headers.HEADER_QUERY_TIMEOUT, "600");
+        var status = awaitCompletion(submitted.id());
+        assertEquals("SUCCEEDED", status.state(), status.error());
+
+        var tooLong = awaitCompletion(submit(QUERY, "zstd", Headers.HEADER_QUERY_TIMEOUT, "7200").id());
+        assertEquals("FAILED", tooLong.state());
+        assertTrue(tooLong.error().contains("exceeds server maximum"), tooLong.error());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testFailedQuery() throws Exception {
+        var submitted = submit("select * from missing_table", "zstd");
+        var status = awaitCompletion(submitted.id());
+        assertEquals("FAILED", status.state());
+        assertNotNull(status.error());
+        assertEquals(409, get(submitted.id() + "/result").statusCode());
+    }
+}